@@ -3,6 +3,7 @@ package app;
 import com.sun.net.httpserver.HttpServer;
 import network.Endpoint;
 import network.server.ServerListener;
+import network.server.state.ServerState;
 
 import java.io.IOException;
 import java.io.PrintStream;
@@ -36,17 +37,28 @@ public class AppNetworkServer
 
     private void start(String... args) throws IOException
     {
-        // Read port
+        // Read port and the optional -exact flag
         Integer port = null;
-        if (args != null && args.length > 0)
+        if (args != null)
         {
-            try
+            for (var arg : args)
             {
-                port = Integer.parseInt(args[0]);
-            }
-            catch (NumberFormatException e)
-            {
-                OUT.println("WARNING: Cannot read parameter as port: " + args[0]);
+                if (equalsIgnoreCase(arg, "-exact"))
+                {
+                    // Use the exact calculation of the activation functions and the softmax on all workers
+                    ServerState.getServerState().setExact(true);
+                }
+                else if (port == null)
+                {
+                    try
+                    {
+                        port = Integer.parseInt(arg);
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        OUT.println("WARNING: Cannot read parameter as port: " + arg);
+                    }
+                }
             }
         }
 
@@ -10,6 +10,7 @@ import math.MathUtil;
 import parameters.download.DownloadMissingFiles;
 import parameters.safetensors.SafetensorsReader;
 import network.info.Models;
+import transformer.SamplerSettings;
 import transformer.TransformerType;
 import ui.DownloadProgressBar;
 import ui.ModelSelector;
@@ -105,6 +106,12 @@ public class AppStandaloneLauncher
                         : "";
 
                 var parallel = config.isParallel() ? " -parallel" : "";
+                var threads = arguments.getThreadCount() > 0 ? " -threads=" + arguments.getThreadCount() : "";
+                var parallelAttention = arguments.getMinParallelAttentionSize() >= 0
+                        ? " -parallelAttention=" + arguments.getMinParallelAttentionSize()
+                        : "";
+                var exact = arguments.isExact() ? " -exact" : "";
+                var sampling = toArguments(arguments.getSamplerSettings());
 
                 // Open the main app to launch the model
                 var command = "java" + incubatorVector +
@@ -114,7 +121,11 @@ public class AppStandaloneLauncher
                                 " \"" + arguments.getModelId() + "\"" +
                                 " -max=" + config.getLengthLimit() +
                                 " -topK=" + config.getTopK() +
-                                parallel;
+                                parallel +
+                                threads +
+                                parallelAttention +
+                                exact +
+                                sampling;
 
                 OUT.println("Command:\n" + command + "\n");
                 Runtime.getRuntime().exec("cmd /k start cmd /c " + command); // TODO: Deprecated
@@ -162,4 +173,28 @@ public class AppStandaloneLauncher
 
         return memorySize;
     }
+
+    /**
+     * Converts the non-default sampler settings to command line arguments
+     */
+    private static String toArguments(SamplerSettings settings)
+    {
+        var defaults = new SamplerSettings();
+        var text = new StringBuilder();
+
+        if (settings.getTemperature() != defaults.getTemperature())
+            text.append(" -temperature=").append(settings.getTemperature());
+        if (settings.getTopP() != defaults.getTopP())
+            text.append(" -topP=").append(settings.getTopP());
+        if (settings.getMinP() != defaults.getMinP())
+            text.append(" -minP=").append(settings.getMinP());
+        if (settings.getRepetitionPenalty() != defaults.getRepetitionPenalty())
+            text.append(" -repetitionPenalty=").append(settings.getRepetitionPenalty());
+        if (settings.getFrequencyPenalty() != defaults.getFrequencyPenalty())
+            text.append(" -frequencyPenalty=").append(settings.getFrequencyPenalty());
+        if (settings.getSeed() != null)
+            text.append(" -seed=").append(settings.getSeed());
+
+        return text.toString();
+    }
 }
@@ -4,6 +4,8 @@ import config.Arguments;
 import config.Config;
 import config.ModelConfig;
 import config.TokenizerConfig;
+import math.FastMath;
+import math.ParallelUtil;
 import parameters.safetensors.SafetensorsReader;
 import tokenizer.TokenizerType;
 import transformer.TransformerFlow;
@@ -46,6 +48,13 @@ public class AppStandaloneMain
         // Read arguments
         var arguments = Arguments.read(args);
 
+        // Set the number of threads used by the multithreaded math operations
+        ParallelUtil.setThreadCount(arguments.getThreadCount());
+        ParallelUtil.setMinParallelAttentionSize(arguments.getMinParallelAttentionSize());
+
+        // Use the exact or the fast (approximate) calculation of the activation functions and the softmax
+        FastMath.setExact(arguments.isExact());
+
         // Read the modelConfig of the selected model
         var modelConfig = ModelConfig.read(arguments.getConfigPath(), arguments.getModelPath());
 
@@ -1,9 +1,13 @@
 package config;
 
+import transformer.SamplerSettings;
+
 import java.io.*;
 
 import static ui.TextUtil.equalsIgnoreCase;
+import static ui.TextUtil.readFloat;
 import static ui.TextUtil.readInt;
+import static ui.TextUtil.readLong;
 
 /**
  * Holder of the app's input parameters
@@ -15,6 +19,17 @@ public class Arguments
     private static final String ARG_TOP_K = "-topK";
     private static final String ARG_MEM = "-mem";
     private static final String ARG_PARALLEL = "-parallel";
+    private static final String ARG_THREADS = "-threads";
+    private static final String ARG_EXACT = "-exact";
+    private static final String ARG_GREEDY = "-greedy";
+    private static final String ARG_TEMPERATURE = "-temperature";
+    private static final String ARG_TOP_P = "-topP";
+    private static final String ARG_MIN_P = "-minP";
+    private static final String ARG_REPETITION_PENALTY = "-repetitionPenalty";
+    private static final String ARG_FREQUENCY_PENALTY = "-frequencyPenalty";
+    private static final String ARG_SEED = "-seed";
+    private static final String ARG_KV_BLOCK_SIZE = "-kvBlockSize";
+    private static final String ARG_PARALLEL_ATTENTION = "-parallelAttention";
 
     // The root folder of the model configurations
     // The default is the "models", but it can be overridden by the OPEN_ALL_GPT_MODELS_ROOT environment variable
@@ -35,9 +50,34 @@ public class Arguments
     private final String serverAddress;
     private final Integer port;
 
+    // Number of threads used by the multithreaded math operations (zero means the number of available processors)
+    private final int threadCount;
+
+    // Use the exact (java.lang.Math) calculation of the activation functions and the softmax (see FastMath)
+    private final boolean isExact;
+
+    // Settings of the token selection (temperature, top-p, min-p, penalties, seed)
+    private final SamplerSettings samplerSettings;
+
+    // Number of positions in a block of the paged KV cache (0: continuous KV cache per layer)
+    private final int kvBlockSize;
+
+    // Minimum number of stored positions to process the attention heads parallel (negative: default, see ParallelUtil)
+    private final int minParallelAttentionSize;
+
     public Arguments(String configRoot, String downloadRoot, String modelId,
                      int lengthLimit, int topK, boolean isCalculationOnly, int requestedMemorySize,
                      boolean isParallel, String serverAddress, Integer port)
+    {
+        this(configRoot, downloadRoot, modelId, lengthLimit, topK, isCalculationOnly, requestedMemorySize,
+                isParallel, serverAddress, port, 0, false, new SamplerSettings(), 0, -1);
+    }
+
+    public Arguments(String configRoot, String downloadRoot, String modelId,
+                     int lengthLimit, int topK, boolean isCalculationOnly, int requestedMemorySize,
+                     boolean isParallel, String serverAddress, Integer port, int threadCount,
+                     boolean isExact, SamplerSettings samplerSettings, int kvBlockSize,
+                     int minParallelAttentionSize)
     {
         this.configRoot = configRoot;
         this.downloadRoot = downloadRoot;
@@ -49,6 +89,11 @@ public class Arguments
         this.isParallel = isParallel;
         this.serverAddress = serverAddress;
         this.port = port;
+        this.threadCount = threadCount;
+        this.isExact = isExact;
+        this.samplerSettings = samplerSettings;
+        this.kvBlockSize = kvBlockSize;
+        this.minParallelAttentionSize = minParallelAttentionSize;
     }
 
     public static Arguments read(String[] args)
@@ -69,6 +114,16 @@ public class Arguments
         var requestedMemorySize = 0;
         var isCalculationOnly = false;
         var isParallel = false;
+        var threadCount = 0;
+        var isExact = false;
+        var temperature = 1f;
+        var topP = 1f;
+        var minP = 0f;
+        var repetitionPenalty = 1f;
+        var frequencyPenalty = 0f;
+        Long seed = null;
+        var kvBlockSize = 0;
+        var minParallelAttentionSize = -1;
         String serverAddress = null;
         Integer port = null;
 
@@ -80,7 +135,9 @@ public class Arguments
                 if (arg.charAt(0) == '-')
                 {
                     if (equalsIgnoreCase(arg, ARG_CALC)) isCalculationOnly = true;
-                    if (equalsIgnoreCase(arg, ARG_PARALLEL)) isParallel = true;
+                    else if (equalsIgnoreCase(arg, ARG_PARALLEL)) isParallel = true;
+                    else if (equalsIgnoreCase(arg, ARG_EXACT)) isExact = true;
+                    else if (equalsIgnoreCase(arg, ARG_GREEDY)) temperature = 0;
                     else
                     {
                         var parts = arg.split("=");
@@ -92,6 +149,18 @@ public class Arguments
                             if (equalsIgnoreCase(key, ARG_MAX)) maxLength = readInt(value, maxLength);
                             else if (equalsIgnoreCase(key, ARG_TOP_K)) topK = readInt(value, topK);
                             else if (equalsIgnoreCase(key, ARG_MEM)) requestedMemorySize = readInt(value, 0);
+                            else if (equalsIgnoreCase(key, ARG_THREADS)) threadCount = readInt(value, 0);
+                            else if (equalsIgnoreCase(key, ARG_TEMPERATURE)) temperature = readFloat(value, temperature);
+                            else if (equalsIgnoreCase(key, ARG_TOP_P)) topP = readFloat(value, topP);
+                            else if (equalsIgnoreCase(key, ARG_MIN_P)) minP = readFloat(value, minP);
+                            else if (equalsIgnoreCase(key, ARG_REPETITION_PENALTY))
+                                repetitionPenalty = readFloat(value, repetitionPenalty);
+                            else if (equalsIgnoreCase(key, ARG_FREQUENCY_PENALTY))
+                                frequencyPenalty = readFloat(value, frequencyPenalty);
+                            else if (equalsIgnoreCase(key, ARG_SEED)) seed = readLong(value, null);
+                            else if (equalsIgnoreCase(key, ARG_KV_BLOCK_SIZE)) kvBlockSize = readInt(value, 0);
+                            else if (equalsIgnoreCase(key, ARG_PARALLEL_ATTENTION))
+                                minParallelAttentionSize = readInt(value, -1);
                         }
                         else
                         {
@@ -110,8 +179,25 @@ public class Arguments
             }
         }
 
+        // The penalties can only decrease the logits (see SamplerSettings.validate())
+        if (repetitionPenalty < 1)
+        {
+            System.out.println("\nWARNING: The repetition penalty can't be lower than 1, it is ignored: "
+                    + repetitionPenalty + "\n");
+            repetitionPenalty = 1f;
+        }
+
+        if (frequencyPenalty < 0)
+        {
+            System.out.println("\nWARNING: The frequency penalty can't be negative, it is ignored: "
+                    + frequencyPenalty + "\n");
+            frequencyPenalty = 0f;
+        }
+
         return new Arguments(configRoot, downloadRoot, modelPath, maxLength, topK, isCalculationOnly,
-                requestedMemorySize, isParallel, serverAddress, port);
+                requestedMemorySize, isParallel, serverAddress, port, threadCount, isExact,
+                new SamplerSettings(temperature, topP, minP, repetitionPenalty, frequencyPenalty, seed), kvBlockSize,
+                minParallelAttentionSize);
     }
 
     // Getters, setters
@@ -125,6 +211,11 @@ public class Arguments
     public boolean isParallel() {return isParallel;}
     public String getServerAddress() {return serverAddress;}
     public Integer getPort() {return port;}
+    public int getThreadCount() {return threadCount;}
+    public boolean isExact() {return isExact;}
+    public SamplerSettings getSamplerSettings() {return samplerSettings;}
+    public int getKvBlockSize() {return kvBlockSize;}
+    public int getMinParallelAttentionSize() {return minParallelAttentionSize;}
 
     // Setters
     public void setModelId(String modelId) {this.modelId = modelId;}
@@ -7,8 +7,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import app.IdentifiedException;
 import math.dataType.DataType;
 import parameters.safetensors.SafetensorsReader;
+import quantization.QuantizationCache;
 import quantization.QuantizationConfig;
 import quantization.QuantizeConfig;
+import transformer.KvBlockPool;
+import transformer.SamplerSettings;
 
 import java.io.IOException;
 import java.util.*;
@@ -26,6 +29,8 @@ public class Config
     private ModelConfig modelConfig;
     private TokenizerConfig tokenizerConfig;
     private SafetensorsReader reader;
+    private QuantizationCache quantizationCache;
+    private KvBlockPool kvBlockPool;
     private boolean isCalculationOnly;
     private DataType internalFloatType;
 
@@ -171,6 +176,19 @@ public class Config
         }
     }
 
+    public float getFloatOptional(String key, float defaultValue)
+    {
+        try
+        {
+            var value = allEntries.get(key);
+            return value == null ? defaultValue : Float.parseFloat(value.toString());
+        }
+        catch (Exception e)
+        {
+            throw new IdentifiedException("Cannot read float property: " + key + " exception: " + e.getMessage());
+        }
+    }
+
     // Getters
     public ModelConfig getModelConfig() {return modelConfig;}
     public SafetensorsReader getReader() {return reader;}
@@ -190,10 +208,12 @@ public class Config
     public String getModelPath() {return arguments.getModelPath();}
     public int getLengthLimit() {return arguments.getLengthLimit();}
     public int getTopK() {return arguments.getTopK();}
+    public SamplerSettings getSamplerSettings() {return arguments == null ? new SamplerSettings() : arguments.getSamplerSettings();}
     public boolean isCalculationOnly() {return isCalculationOnly;}
     public boolean isParallel() {return arguments.isParallel();}
     public void setCalculationOnly(boolean isCalculationOnly) {this.isCalculationOnly = isCalculationOnly;}
     public Integer getRequestedMemorySize() {return arguments.getRequestedMemorySize();}
+    public int getKvBlockSize() {return arguments == null ? 0 : arguments.getKvBlockSize();}
     public DataType getInternalFloatType() {return internalFloatType;}
 
     // Getters to ModelConfig
@@ -211,6 +231,30 @@ public class Config
     public Map<BlockType, Integer> getMemorySizes() {return modelConfig.getMemorySizes();}
     public QuantizationConfig getQuantizationConfig() {return modelConfig.getQuantizationConfig();}
     public QuantizeConfig getQuantizeConfig() {return modelConfig.getQuantizeConfig();}
+    public boolean isTransposeHorizontalWeights() {return modelConfig.getTransposeHorizontalWeights();}
+
+    public synchronized QuantizationCache getQuantizationCache()
+    {
+        if (quantizationCache == null)
+        {
+            quantizationCache = new QuantizationCache(this);
+        }
+
+        return quantizationCache;
+    }
+
+    /**
+     * Returns the pool of the paged KV cache blocks, shared by all attention layers (and sessions) of the model
+     */
+    public synchronized KvBlockPool getKvBlockPool()
+    {
+        if (kvBlockPool == null)
+        {
+            kvBlockPool = new KvBlockPool(getKvBlockSize());
+        }
+
+        return kvBlockPool;
+    }
 
     public int getHeadSize()
     {
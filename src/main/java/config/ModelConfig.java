@@ -36,6 +36,12 @@ public class ModelConfig implements RepoConfig
     private Map<BlockType, Integer> memorySizes;
     private Config configOverride;
 
+    /**
+     * Store the horizontal weights in transposed (vertical) orientation,
+     * so the multiplications can be calculated as dot products on the rows (values next to each other in the memory)
+     */
+    private boolean transposeHorizontalWeights;
+
     /**
      * Settings of the quantization (if the model is already quantized)
      */
@@ -99,6 +105,7 @@ public class ModelConfig implements RepoConfig
     public Integer getMemorySize() {return memorySize;}
     public Map<BlockType, Integer> getMemorySizes() {return memorySizes;}
     public Config getConfigOverride() {return configOverride;}
+    public boolean getTransposeHorizontalWeights() {return transposeHorizontalWeights;}
 
     public QuantizationConfig getQuantizationConfig() {return quantizationConfig;}
     public QuantizeConfig getQuantizeConfig() {return quantizeConfig;}
@@ -1,12 +1,13 @@
 package math;
 
+import app.IdentifiedException;
+import math.dataType.matrix.Float32FlatMatrix;
 import math.dataType.matrix.Matrix;
-import math.dataType.matrix.VectorArrayMatrix;
+import math.dataType.matrix.TransposedMatrix;
+import math.dataType.vector.Float32Vector;
 import math.dataType.vector.Vector;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.TreeSet;
 
 import static math.MathUtil.MATH;
 import static math.dataType.matrix.Matrix.emptyMatrix;
@@ -19,11 +20,33 @@ public abstract class AbstractMathUtility
      */
     public abstract String getMathProviderName();
 
+    /**
+     * Converts a loaded (non-quantized) parameter matrix into the representation preferred by the math provider
+     * (Called once at load, the default implementation keeps the matrix as it is.)
+     */
+    public Matrix prepareMatrix(Matrix matrix)
+    {
+        return matrix;
+    }
+
     /**
      * Vector to vector addition
      */
     public abstract Vector addVectors(Vector vector1, Vector vector2);
 
+    /**
+     * Vector to vector addition, writing the result into the provided vector (which can be one of the inputs)
+     */
+    public abstract Vector addVectors(Vector vector1, Vector vector2, Vector result);
+
+    /**
+     * Add a vector to another, modifying the values of the first vector
+     */
+    public void addInPlace(Vector vector, Vector addition)
+    {
+        addVectors(vector, addition, vector);
+    }
+
     /**
      * Matrix to matrix addition
      */
@@ -44,6 +67,19 @@ public abstract class AbstractMathUtility
      */
     public abstract Vector mulVectorByScalar(Vector vector, float scalar);
 
+    /**
+     * Multiply vector by a scalar, writing the result into the provided vector (which can be the input)
+     */
+    public abstract Vector mulVectorByScalar(Vector vector, float scalar, Vector result);
+
+    /**
+     * Multiply vector by a scalar, modifying the values of the vector
+     */
+    public void scaleInPlace(Vector vector, float scalar)
+    {
+        mulVectorByScalar(vector, scalar, vector);
+    }
+
     /**
      * Multiply matrix by scalar
      */
@@ -54,21 +90,78 @@ public abstract class AbstractMathUtility
      */
     public abstract Vector mulVectorByMatrix(Vector vector, Matrix matrix);
 
+    /**
+     * Multiply vector by matrix, writing the result into the provided vector (which can't be the input)
+     */
+    public abstract Vector mulVectorByMatrix(Vector vector, Matrix matrix, Vector result);
+
     /**
      * Multiply vector by transposed matrix
      */
     public abstract Vector mulVectorByTransposedMatrix(Vector vector, Matrix matrix);
 
+    /**
+     * Multiply vector by transposed matrix, writing the result into the provided vector (which can't be the input)
+     */
+    public abstract Vector mulVectorByTransposedMatrix(Vector vector, Matrix matrix, Vector result);
+
     /**
      * Multiply matrix by matrix
      */
     public abstract Matrix mulMatrixByMatrix(Matrix matrix1, Matrix matrix2);
 
+    /**
+     * Multiply matrix by matrix, writing the result into the provided matrix (which can't be one of the inputs)
+     */
+    public abstract Matrix mulMatrixByMatrix(Matrix matrix1, Matrix matrix2, Matrix result);
+
     /**
      * Multiply matrix by transposed matrix
      */
     public abstract Matrix mulMatrixByTransposedMatrix(Matrix matrix1, Matrix matrix2);
 
+    /**
+     * Multiply matrix by transposed matrix, writing the result into the provided matrix (which can't be one of the inputs)
+     */
+    public abstract Matrix mulMatrixByTransposedMatrix(Matrix matrix1, Matrix matrix2, Matrix result);
+
+    /**
+     * Gated linear unit (feed-forward block of the SwiGLU, GeGLU models), writing the result into the provided vector
+     * result[i] = activation(vector * gateWeight[i]) * (vector * upWeight[i])
+     * The gate and up values are calculated row by row in a single sweep, the intermediate vectors aren't stored.
+     */
+    public Vector gatedLinearUnit(Vector vector, Matrix gateWeight, Matrix upWeight, ActivationFunction activation,
+                                  Vector result)
+    {
+        if (vector.size() != gateWeight.getColCount() || vector.size() != upWeight.getColCount()
+                || gateWeight.getRowCount() != upWeight.getRowCount())
+        {
+            throw new IdentifiedException("Vector and matrix shapes are incompatible at gated linear unit. " +
+                    "Vector size: " + vector.size() +
+                    ", gate shape: " + gateWeight.getRowCount() + ", " + gateWeight.getColCount() +
+                    ", up shape: " + upWeight.getRowCount() + ", " + upWeight.getColCount());
+        }
+
+        gatedLinearUnit(vector, gateWeight, upWeight, activation, result, 0, gateWeight.getRowCount());
+
+        return result;
+    }
+
+    /**
+     * Gated linear unit, calculating only the rows (output neurons) between from (inclusive) and to (exclusive)
+     */
+    public void gatedLinearUnit(Vector vector, Matrix gateWeight, Matrix upWeight, ActivationFunction activation,
+                                Vector result, int from, int to)
+    {
+        for (var row = from; row < to; row++)
+        {
+            var gate = dotProduct(vector, gateWeight.row(row));
+            var up = dotProduct(vector, upWeight.row(row));
+
+            result.set(row, activation.apply(gate) * up);
+        }
+    }
+
     /**
      * Split a vector to a matrix
      */
@@ -104,11 +197,34 @@ public abstract class AbstractMathUtility
         return vector;
     }
 
+    /**
+     * Join three vectors, writing the result into the provided vector
+     */
+    public Vector joinVectors(Vector vector1, Vector vector2, Vector vector3, Vector result)
+    {
+        var i = 0;
+        for (var vector : new Vector[] {vector1, vector2, vector3})
+        {
+            for (var j = 0; j < vector.size(); j++)
+            {
+                result.set(i, vector.get(j));
+                i++;
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Merge the rows of a matrix to a single vector
      */
     public abstract Vector flattenMatrix(Matrix matrix);
 
+    /**
+     * Merge the rows of a matrix into the provided vector
+     */
+    public abstract Vector flattenMatrix(Matrix matrix, Vector result);
+
     /**
      * Merge multiple matrices into a single matrix
      */
@@ -118,7 +234,7 @@ public abstract class AbstractMathUtility
         for (Matrix matrix : matrices) size += matrix.getColCount();
 
         var first = matrices.getFirst();
-        Matrix result = emptyMatrix(first.getInternalFloatType(), first.getRowCount(), first.getColCount());
+        Matrix result = emptyMatrix(first.getInternalFloatType(), first.getRowCount(), size);
 
         for (var i = 0; i < first.getRowCount(); i++)
         {
@@ -146,6 +262,68 @@ public abstract class AbstractMathUtility
         return result;
     }
 
+    /**
+     * Stack the rows of multiple matrices (with the same number of columns) into a single matrix
+     */
+    public Matrix stackMatrices(List<Matrix> matrices)
+    {
+        int rows = 0;
+        for (Matrix matrix : matrices) rows += matrix.getRowCount();
+
+        var first = matrices.getFirst();
+        Matrix result = emptyMatrix(first.getInternalFloatType(), rows, first.getColCount());
+
+        var pos = 0;
+        for (var matrix : matrices)
+        {
+            for (var i = 0; i < matrix.getRowCount(); i++)
+            {
+                result.setRow(pos + i, matrix.row(i));
+            }
+
+            pos += matrix.getRowCount();
+        }
+
+        return result;
+    }
+
+    /**
+     * Return a segment of a vector (a view if possible, so writing into it modifies the original vector)
+     */
+    public Vector sliceVector(Vector vector, int from, int size)
+    {
+        if (vector instanceof Float32Vector float32Vector)
+        {
+            return new Float32Vector(float32Vector.getArray(), float32Vector.getOffset() + from, size);
+        }
+
+        var result = emptyVector(vector.getFloatType(), size);
+        for (var i = 0; i < size; i++)
+        {
+            result.set(i, vector.get(from + i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Return a range of columns of a matrix (as a new matrix)
+     */
+    public Matrix sliceMatrix(Matrix matrix, int fromCol, int cols)
+    {
+        var result = emptyMatrix(matrix.getInternalFloatType(), matrix.getRowCount(), cols);
+
+        for (var row = 0; row < matrix.getRowCount(); row++)
+        {
+            for (var i = 0; i < cols; i++)
+            {
+                result.setValue(row, i, matrix.getValue(row, fromCol + i));
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Transpose a matrix
      */
@@ -204,9 +382,17 @@ public abstract class AbstractMathUtility
      * Standard normalization on a vector with applying normalization weights and biases
      */
     public Vector layerNorm(Vector vector, Vector weight, Vector bias, float epsilon)
+    {
+        return layerNorm(vector, weight, bias, epsilon, emptyVector(vector.getFloatType(), vector.size()));
+    }
+
+    /**
+     * Standard normalization on a vector, writing the result into the provided vector (which can be the input)
+     */
+    public Vector layerNorm(Vector vector, Vector weight, Vector bias, float epsilon, Vector result)
     {
         // Standard normalization
-        Vector result = normalize(vector, epsilon);
+        normalize(vector, epsilon, result);
 
         // Applying the trained weights and biases
         applyWeightAndBias(result, weight, bias);
@@ -241,6 +427,19 @@ public abstract class AbstractMathUtility
     }
 
     public Vector RMSLayerNorm(Vector vector, Vector weight, float epsilon, float bias)
+    {
+        return RMSLayerNorm(vector, weight, epsilon, bias, emptyVector(vector.getFloatType(), vector.size()));
+    }
+
+    /**
+     * RMS normalization, writing the result into the provided vector (which can be the input)
+     */
+    public Vector RMSLayerNorm(Vector vector, Vector weight, float epsilon, Vector result)
+    {
+        return RMSLayerNorm(vector, weight, epsilon, 0f, result);
+    }
+
+    public Vector RMSLayerNorm(Vector vector, Vector weight, float epsilon, float bias, Vector result)
     {
         var size = vector.size();
 
@@ -256,8 +455,6 @@ public abstract class AbstractMathUtility
         sum = 1f / BasicMathUtility.sqrt(sum / size + epsilon);
 
         //  Normalize and scale
-        Vector result = emptyVector(vector.getFloatType(), size);
-
         for (var i = 0; i < size; i++)
         {
             result.set(i, (weight.get(i) + bias) * sum * vector.get(i));
@@ -292,26 +489,415 @@ public abstract class AbstractMathUtility
      */
     public Vector softmax(Vector vector)
     {
+        return softmax(vector, emptyVector(vector.getFloatType(), vector.size()));
+    }
+
+    /**
+     * Calculate softmax, writing the result into the provided vector (which can be the input)
+     */
+    public Vector softmax(Vector vector, Vector result)
+    {
+        if (result instanceof Float32Vector float32Vector)
+        {
+            // Calculated directly on the backing array of the result
+            if (result != vector)
+            {
+                for (var i = 0; i < vector.size(); i++)
+                {
+                    result.set(i, vector.get(i));
+                }
+            }
+
+            softmaxInPlace(float32Vector.getArray(), float32Vector.getOffset(), vector.size());
+
+            return result;
+        }
+
         var max = max(vector);
 
+        // The exponents are stored temporarily in the result vector
         double total = 0;
-        var exponents = new float[vector.size()];
         for (var i = 0; i < vector.size(); i++)
         {
-            var exponent = BasicMathUtility.exp(vector.get(i) - max);
-            exponents[i] = exponent;
+            var exponent = exp(vector.get(i) - max);
+            result.set(i, exponent);
 
             total = total + exponent;
         }
 
-        Vector ret = emptyVector(vector.getFloatType(), vector.size());
-
         for (var i = 0; i < vector.size(); i++)
         {
-            ret.set(i, (float) (exponents[i] / total));
+            result.set(i, (float) (result.get(i) / total));
         }
 
-        return ret;
+        return result;
+    }
+
+    /**
+     * Calculate softmax, modifying the values of the vector
+     */
+    public void softmaxInPlace(Vector vector)
+    {
+        softmax(vector, vector);
+    }
+
+    /**
+     * Calculate softmax on a segment of a float array, modifying the values
+     */
+    public void softmaxInPlace(float[] values, int offset, int size)
+    {
+        var max = Float.NEGATIVE_INFINITY;
+        for (var i = offset; i < offset + size; i++)
+        {
+            max = Math.max(max, values[i]);
+        }
+
+        double total = 0;
+        for (var i = offset; i < offset + size; i++)
+        {
+            values[i] = exp(values[i] - max);
+            total = total + values[i];
+        }
+
+        var scale = (float) (1 / total);
+        for (var i = offset; i < offset + size; i++)
+        {
+            values[i] = values[i] * scale;
+        }
+    }
+
+    /**
+     * Dot product attention of a query over the stored keys and values (without scaling)
+     */
+    public Vector dotProductAttention(Vector query, Matrix keys, Matrix values)
+    {
+        return attention(query, keys, values, 1, 0, 0);
+    }
+
+    /**
+     * Scaled dot product attention of a query over the stored keys and values
+     */
+    public Vector scaledDotProductAttention(Vector query, Matrix keys, Matrix values, float scale)
+    {
+        return attention(query, keys, values, scale, 0, 0);
+    }
+
+    /**
+     * Scaled dot product attention, writing the result into the provided vector
+     */
+    public Vector scaledDotProductAttention(Vector query, Matrix keys, Matrix values, float scale, Vector result)
+    {
+        return attention(query, keys, values, scale, 0, 0, result);
+    }
+
+    /**
+     * Attention of a query over the stored keys and values, with the optional ALiBi bias and soft-capping
+     */
+    public Vector attention(Vector query, Matrix keys, Matrix values, float scale, float alibiSlope, float softCap)
+    {
+        return attention(query, keys, values, scale, alibiSlope, softCap,
+                emptyVector(query.getFloatType(), values.getColCount()));
+    }
+
+    /**
+     * Attention of a query over the stored keys and values (a row per position), calculated in a single pass
+     * (online softmax): the maximum and the sum of the exponents are collected together with the weighted sum
+     * of the values, which is rescaled if a larger score is found. So the scores aren't stored,
+     * and the weighted values are added directly to a single array (no vector is allocated per position).
+
+     * score = scale * query·key, soft-capped if softCap > 0 (softCap * tanh(score / softCap)),
+     * and reduced by the ALiBi bias (alibiSlope * distance from the last position)
+     */
+    public Vector attention(Vector query, Matrix keys, Matrix values, float scale, float alibiSlope, float softCap,
+                            Vector result)
+    {
+        var tokenCount = keys.getRowCount();
+        var sums = new float[values.getColCount()];
+
+        var max = Float.NEGATIVE_INFINITY;
+        var total = 0f;
+
+        for (var pos = 0; pos < tokenCount; pos++)
+        {
+            var score = dotProduct(query, keys.row(pos)) * scale;
+
+            if (softCap > 0)
+            {
+                score = softCap * (float) Math.tanh(score / softCap);
+            }
+
+            score = score - alibiSlope * (tokenCount - 1 - pos);
+
+            if (score > max)
+            {
+                // Rescale the collected values to the new maximum
+                var correction = exp(max - score);
+                total = total * correction;
+                scaleInPlace(sums, correction);
+
+                max = score;
+            }
+
+            var weight = exp(score - max);
+            total = total + weight;
+            addScaledInPlace(sums, values.row(pos), weight);
+        }
+
+        for (var i = 0; i < sums.length; i++)
+        {
+            result.set(i, sums[i] / total);
+        }
+
+        return result;
+    }
+
+    /**
+     * Attention of a group of queries (a row per query head) which share the same key-value head (GQA, MQA)
+     */
+    public Matrix groupedAttention(Matrix queries, Matrix keys, Matrix values, float scale, float softCap)
+    {
+        var result = emptyMatrix(queries.getInternalFloatType(), queries.getRowCount(), values.getColCount());
+        groupedAttention(queries, keys, values, scale, softCap, result, 0, queries.getRowCount());
+
+        return result;
+    }
+
+    /**
+     * Attention of the query heads between [fromRow] and [toRow] which share the same key-value head (GQA, MQA),
+     * writing the results into the same rows of the result matrix
+     * The stored keys and values are read only once for the whole group: every key and value row is applied
+     * on all queries of the group (using online softmax, see attention()), instead of repeating it by query head.
+     */
+    public void groupedAttention(Matrix queries, Matrix keys, Matrix values, float scale, float softCap,
+                                 Matrix result, int fromRow, int toRow)
+    {
+        var state = new AttentionState(toRow - fromRow, values.getColCount());
+        collectAttention(queries, keys, values, scale, null, softCap, fromRow, 0, keys.getRowCount(), state);
+
+        state.writeResult(result, fromRow);
+    }
+
+    /**
+     * Attention of all query heads (a row per head) over the stored keys and values of every key-value head,
+     * writing the results into the same rows of the result matrix
+     * The query heads are grouped by key-value head (MHA: a single query head per group, GQA/MQA: more),
+     * so the heads of the group [kvHead] are between [kvHead * groupSize] and [(kvHead + 1) * groupSize].
+     * The heads are independent, so a multithreaded math provider can process them parallel.
+     * (alibiSlopes: the ALiBi slope by query head, or null if there isn't any ALiBi bias)
+     */
+    public Matrix multiHeadAttention(Matrix queries, Matrix[] keys, Matrix[] values, float scale,
+                                     float[] alibiSlopes, float softCap, Matrix result)
+    {
+        var groupSize = queries.getRowCount() / keys.length;
+
+        for (var kvHead = 0; kvHead < keys.length; kvHead++)
+        {
+            var state = new AttentionState(groupSize, values[kvHead].getColCount());
+            collectAttention(queries, keys[kvHead], values[kvHead], scale, alibiSlopes, softCap,
+                    kvHead * groupSize, 0, keys[kvHead].getRowCount(), state);
+
+            state.writeResult(result, kvHead * groupSize);
+        }
+
+        return result;
+    }
+
+    /**
+     * Collects the attention of the query heads starting at [fromRow] (as many as the state has)
+     * over the positions between [fromPos] and [toPos] into the state (online softmax, see attention())
+     * The states of the different position ranges can be merged, and the result written by the state.
+     */
+    public void collectAttention(Matrix queries, Matrix keys, Matrix values, float scale, float[] alibiSlopes,
+                                 float softCap, int fromRow, int fromPos, int toPos, AttentionState state)
+    {
+        var groupSize = state.getQueryCount();
+        var tokenCount = keys.getRowCount();
+
+        var queryRows = new Vector[groupSize];
+        for (var i = 0; i < groupSize; i++)
+        {
+            queryRows[i] = queries.row(fromRow + i);
+        }
+
+        var max = state.max;
+        var total = state.total;
+        var sums = state.sums;
+
+        for (var pos = fromPos; pos < toPos; pos++)
+        {
+            var key = keys.row(pos);
+            var value = values.row(pos);
+
+            for (var i = 0; i < groupSize; i++)
+            {
+                var score = dotProduct(queryRows[i], key) * scale;
+
+                if (softCap > 0)
+                {
+                    score = softCap * (float) Math.tanh(score / softCap);
+                }
+
+                if (alibiSlopes != null)
+                {
+                    score = score - alibiSlopes[fromRow + i] * (tokenCount - 1 - pos);
+                }
+
+                if (score > max[i])
+                {
+                    // Rescale the collected values to the new maximum
+                    var correction = exp(max[i] - score);
+                    total[i] = total[i] * correction;
+                    scaleInPlace(sums[i], correction);
+
+                    max[i] = score;
+                }
+
+                var weight = exp(score - max[i]);
+                total[i] = total[i] + weight;
+                addScaledInPlace(sums[i], value, weight);
+            }
+        }
+    }
+
+    private static void scaleInPlace(float[] values, float scalar)
+    {
+        for (var i = 0; i < values.length; i++)
+        {
+            values[i] = values[i] * scalar;
+        }
+    }
+
+    /**
+     * Add a vector multiplied by a scalar to the values of the array
+     */
+    protected void addScaledInPlace(float[] values, Vector vector, float scalar)
+    {
+        if (vector instanceof Float32Vector float32Vector)
+        {
+            var array = float32Vector.getArray();
+            var offset = float32Vector.getOffset();
+
+            for (var i = 0; i < values.length; i++)
+            {
+                values[i] = values[i] + array[offset + i] * scalar;
+            }
+        }
+        else
+        {
+            for (var i = 0; i < values.length; i++)
+            {
+                values[i] = values[i] + vector.get(i) * scalar;
+            }
+        }
+    }
+
+    /**
+     * Apply the SwiGLU activation function on all values of the vector
+     */
+    public void swigluInPlace(Vector vector)
+    {
+        activationInPlace(vector, ActivationFunction.SWIGLU);
+    }
+
+    /**
+     * Apply the SwiGLU activation function on all values of the array
+     */
+    public void swigluInPlace(float[] values)
+    {
+        swigluInPlace(values, 0, values.length);
+    }
+
+    /**
+     * Apply the SwiGLU activation function on a segment of a float array
+     */
+    public void swigluInPlace(float[] values, int offset, int size)
+    {
+        for (var i = offset; i < offset + size; i++)
+        {
+            values[i] = ActivationFunction.SWIGLU.apply(values[i]);
+        }
+    }
+
+    /**
+     * Apply the GELU activation function on all values of the vector
+     */
+    public void geluInPlace(Vector vector)
+    {
+        activationInPlace(vector, ActivationFunction.GELU);
+    }
+
+    /**
+     * Apply the GELU activation function on all values of the matrix
+     */
+    public void geluInPlace(Matrix matrix)
+    {
+        if (matrix instanceof Float32FlatMatrix float32Matrix)
+        {
+            // The rows are next to each other in the backing array, so they are processed at once
+            geluInPlace(float32Matrix.getArray(), float32Matrix.getOffset(),
+                    matrix.getRowCount() * matrix.getColCount());
+        }
+        else
+        {
+            for (var i = 0; i < matrix.getRowCount(); i++)
+            {
+                for (var j = 0; j < matrix.getColCount(); j++)
+                {
+                    matrix.setValue(i, j, ActivationFunction.GELU.apply(matrix.getValue(i, j)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply the GELU activation function on all values of the array
+     */
+    public void geluInPlace(float[] values)
+    {
+        geluInPlace(values, 0, values.length);
+    }
+
+    /**
+     * Apply the GELU activation function on a segment of a float array
+     */
+    public void geluInPlace(float[] values, int offset, int size)
+    {
+        for (var i = offset; i < offset + size; i++)
+        {
+            values[i] = ActivationFunction.GELU.apply(values[i]);
+        }
+    }
+
+    /**
+     * Apply an activation function on all values of the vector
+     * (The GELU and SwiGLU are applied on the backing array of a Float 32 vector by the bulk functions above,
+     * so a math provider can calculate them on multiple values at once.)
+     */
+    public void activationInPlace(Vector vector, ActivationFunction activation)
+    {
+        if (vector instanceof Float32Vector float32Vector && activation == ActivationFunction.GELU)
+        {
+            geluInPlace(float32Vector.getArray(), float32Vector.getOffset(), vector.size());
+        }
+        else if (vector instanceof Float32Vector float32Vector && activation == ActivationFunction.SWIGLU)
+        {
+            swigluInPlace(float32Vector.getArray(), float32Vector.getOffset(), vector.size());
+        }
+        else
+        {
+            for (var i = 0; i < vector.size(); i++)
+            {
+                vector.set(i, activation.apply(vector.get(i)));
+            }
+        }
+    }
+
+    /**
+     * e^x (approximate, or the exact double precision calculation if it is requested, see FastMath)
+     */
+    protected static float exp(float value)
+    {
+        return FastMath.isExact() ? BasicMathUtility.exp(value) : FastMath.exp(value);
     }
 
     /**
@@ -323,7 +909,7 @@ public abstract class AbstractMathUtility
 
         for (var i = 0; i < matrix.getRowCount(); i++)
         {
-            result.setRow(i, MATH.softmax(matrix.getVectorArray()[i]));
+            result.setRow(i, MATH.softmax(matrix.row(i)));
         }
 
         return result;
@@ -340,7 +926,7 @@ public abstract class AbstractMathUtility
         var exponents = new float[values.size()];
         for (var i = 0; i < values.size(); i++)
         {
-            var exponent = BasicMathUtility.exp(values.get(i).value() - max);
+            var exponent = exp(values.get(i).value() - max);
             exponents[i] = exponent;
 
             total = total + exponent;
@@ -418,18 +1004,24 @@ public abstract class AbstractMathUtility
      * Normalization on a vector
      */
     public Vector normalize(Vector vector, float epsilon)
+    {
+        return normalize(vector, epsilon, emptyVector(vector.getFloatType(), vector.size()));
+    }
+
+    /**
+     * Normalization on a vector, writing the result into the provided vector (which can be the input)
+     */
+    public Vector normalize(Vector vector, float epsilon, Vector result)
     {
         var average = average(vector);
         var averageDiff = averageDiff(vector, average, epsilon);
 
-        var norm = emptyVector(vector.getFloatType(), vector.size());
-
         for (var i = 0; i < vector.size(); i++)
         {
-            norm.set(i, (vector.get(i) - average) / averageDiff);
+            result.set(i, (vector.get(i) - average) / averageDiff);
         }
 
-        return norm;
+        return result;
     }
 
     /**
@@ -438,7 +1030,7 @@ public abstract class AbstractMathUtility
     public Matrix normalize(Matrix matrix, float epsilon)
     {
         var rows = matrix.getRowCount();
-        var result = new VectorArrayMatrix(matrix.getInternalFloatType(), rows, matrix.getColCount());
+        var result = emptyMatrix(matrix.getInternalFloatType(), rows, matrix.getColCount());
 
         for (var i = 0; i < rows; i++)
         {
@@ -450,40 +1042,87 @@ public abstract class AbstractMathUtility
 
     public float averageDiff(Vector values, float average, float epsilon)
     {
-        var squareDiff = emptyVector(values.getFloatType(), values.size());
+        var sum = 0f;
 
         for (var i = 0; i < values.size(); i++)
         {
             var diff = values.get(i) - average;
-            squareDiff.set(i, diff * diff);
+            sum = sum + diff * diff;
         }
 
-        var averageSquareDiff = average(squareDiff);
+        var averageSquareDiff = sum / values.size();
 
         return (float) java.lang.Math.sqrt(averageSquareDiff + epsilon);
     }
 
     /**
-     * Sort values to reversed order and filter out the lowest values (retain the top [count] values)
+     * Multiplies the vector by the transposed matrix (dot product with all rows), and returns only the top [count]
+     * results in reverse order. (Fused calculation of the logits and the top K selection: the logits of all tokens
+     * aren't stored, only the best values are collected during a single pass over the token embeddings.)
      */
-    public List<IndexedValue> reverseAndFilter(float[] values, int count)
+    public List<IndexedValue> mulVectorByTransposedMatrixTopK(Vector vector, Matrix matrix, int count)
     {
-        var indexedValues = new TreeSet<>(new IndexedValue.ReverseComparator());
-        for (var i = 0; i < values.length; i++)
+        if (matrix instanceof TransposedMatrix)
+        {
+            // The rows aren't stored together, so it's simpler to calculate all logits
+            return reverseAndFilter(mulVectorByTransposedMatrix(vector, matrix), count);
+        }
+
+        if (vector.size() != matrix.getColCount())
         {
-            indexedValues.add(new IndexedValue(values[i], i));
+            throw new IdentifiedException("Vector and matrix shape is incompatible at multiplication (transposed). " +
+                    "Vector size: " + vector.size() + ", matrix shape: " + matrix.getRowCount() + ", " + matrix.getColCount());
         }
 
-        var filteredValues = new ArrayList<IndexedValue>(count);
+        var topK = new TopK(Math.min(count, matrix.getRowCount()));
+        mulVectorByTransposedMatrixTopK(vector, matrix, topK, 0, matrix.getRowCount());
 
-        var i = 0;
-        for (var indexedValue : indexedValues)
+        return topK.toList();
+    }
+
+    /**
+     * Calculates the dot products of the vector with the rows between [from] and [to] (exclusive),
+     * and offers the results to the provided top K collector (used by the multithreaded implementation)
+     */
+    public void mulVectorByTransposedMatrixTopK(Vector vector, Matrix matrix, TopK topK, int from, int to)
+    {
+        for (var row = from; row < to; row++)
         {
-            filteredValues.add(indexedValue);
-            i++;
-            if (i == count) break;
+            topK.add(dotProduct(vector, matrix.row(row)), row);
         }
+    }
+
+    /**
+     * Sort values to reversed order and filter out the lowest values (retain the top [count] values)
+     */
+    public List<IndexedValue> reverseAndFilter(float[] values, int count)
+    {
+        return reverseAndFilter(values, 0, values.length, count);
+    }
+
+    /**
+     * Sort values to reversed order and filter out the lowest values (retain the top [count] values)
+     * (Without copying the values of a float vector)
+     */
+    public List<IndexedValue> reverseAndFilter(Vector values, int count)
+    {
+        if (values instanceof Float32Vector float32Vector)
+        {
+            return reverseAndFilter(float32Vector.getArray(), float32Vector.getOffset(), values.size(), count);
+        }
+
+        return reverseAndFilter(values.getValues(), count);
+    }
+
+    /**
+     * Sort the values of an array segment to reversed order and filter out the lowest values
+     * Only the top [count] values are kept in a heap, so it isn't necessary to sort all values
+     */
+    public List<IndexedValue> reverseAndFilter(float[] values, int offset, int size, int count)
+    {
+        var topK = new TopK(Math.min(count, size));
+        topK.addAll(values, offset, size);
 
-        return filteredValues;
+        return topK.toList();
     }
 }
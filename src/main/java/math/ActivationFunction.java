@@ -0,0 +1,30 @@
+package math;
+
+/**
+ * Activation functions which can be passed to the fused math operations (see AbstractMathUtility.gatedLinearUnit())
+ */
+public enum ActivationFunction implements NeuralNetUtil
+{
+    RELU
+    {
+        @Override
+        public float apply(float value) {return relu(value);}
+    },
+    GELU
+    {
+        @Override
+        public float apply(float value) {return gelu(value);}
+    },
+    GELU_FAST
+    {
+        @Override
+        public float apply(float value) {return geluFast(value);}
+    },
+    SWIGLU
+    {
+        @Override
+        public float apply(float value) {return swiglu(value);}
+    };
+
+    public abstract float apply(float value);
+}
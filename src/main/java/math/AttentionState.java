@@ -0,0 +1,80 @@
+package math;
+
+import math.dataType.matrix.Matrix;
+
+/**
+ * Partial result of the attention of a group of queries, collected over a range of positions (online softmax)
+ * For every query it holds the maximum score, the sum of the exponents (relative to the maximum)
+ * and the weighted sum of the values. The states of different position ranges can be merged (log-sum-exp),
+ * so the positions can be split between threads.
+ */
+public class AttentionState
+{
+    final float[] max;
+    final float[] total;
+    final float[][] sums;
+
+    public AttentionState(int queryCount, int size)
+    {
+        this.max = new float[queryCount];
+        this.total = new float[queryCount];
+        this.sums = new float[queryCount][size];
+
+        for (var i = 0; i < queryCount; i++)
+        {
+            max[i] = Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Adds the collected values of an other state (the same queries, but a different range of positions)
+     * Both sums are rescaled to the higher maximum, so the result is the same as if all positions were collected here.
+     */
+    public void merge(AttentionState other)
+    {
+        for (var i = 0; i < max.length; i++)
+        {
+            if (other.total[i] == 0) continue;
+
+            if (total[i] == 0)
+            {
+                max[i] = other.max[i];
+                total[i] = other.total[i];
+                System.arraycopy(other.sums[i], 0, sums[i], 0, sums[i].length);
+                continue;
+            }
+
+            var newMax = Math.max(max[i], other.max[i]);
+            var correction = AbstractMathUtility.exp(max[i] - newMax);
+            var otherCorrection = AbstractMathUtility.exp(other.max[i] - newMax);
+
+            for (var j = 0; j < sums[i].length; j++)
+            {
+                sums[i][j] = sums[i][j] * correction + other.sums[i][j] * otherCorrection;
+            }
+
+            total[i] = total[i] * correction + other.total[i] * otherCorrection;
+            max[i] = newMax;
+        }
+    }
+
+    /**
+     * Writes the attention results (the weighted sums divided by the sum of the weights) into the rows of a matrix,
+     * starting at [fromRow]
+     */
+    public void writeResult(Matrix result, int fromRow)
+    {
+        for (var i = 0; i < sums.length; i++)
+        {
+            for (var j = 0; j < sums[i].length; j++)
+            {
+                result.setValue(fromRow + i, j, sums[i][j] / total[i]);
+            }
+        }
+    }
+
+    public int getQueryCount()
+    {
+        return max.length;
+    }
+}
@@ -0,0 +1,91 @@
+package math;
+
+/**
+ * Fast (approximate) float implementations of the transcendental functions used by the activation functions
+ * and the softmax. (The java.lang.Math functions calculate in double precision, which is slower than necessary.)
+
+ * Error bounds (tested by FastMathTest):
+ *   - exp:     relative error below 1e-6 (0 below -87.33, infinity above 88.72, as the float can't represent these)
+ *   - tanh:    absolute error below 1e-6
+ *   - sigmoid: absolute error below 1e-6
+
+ * The exact (java.lang.Math) calculation can be requested by the -exact argument.
+ */
+public class FastMath
+{
+    public static final float LOG2E = 1.44269504f;
+
+    // ln(2) split into two parts, so the range reduction (x - n * ln2) is precise (Cody-Waite reduction)
+    public static final float LN2_HIGH = 0.693145752f;
+    public static final float LN2_LOW = 1.42860677e-6f;
+
+    // Limits of the float range for exp()
+    public static final float EXP_MIN = -87.33f;
+    public static final float EXP_MAX = 88.72f;
+
+    // Above this value tanh(x) is 1 in float precision
+    public static final float TANH_LIMIT = 9f;
+
+    private static volatile boolean isExact = false;
+
+    /**
+     * Sets the exact (java.lang.Math) calculation of the activation functions and the softmax
+     */
+    public static void setExact(boolean exact)
+    {
+        isExact = exact;
+    }
+
+    public static boolean isExact()
+    {
+        return isExact;
+    }
+
+    /**
+     * e^x, calculated as 2^n * e^f, where n is an integer, and |f| <= ln(2) / 2
+     * The e^f is approximated by a polynomial (Taylor series up to the 6th degree),
+     * the 2^n is constructed directly in the exponent bits of the float.
+     */
+    public static float exp(float x)
+    {
+        if (x < EXP_MIN) return 0f;
+        if (x > EXP_MAX) return Float.POSITIVE_INFINITY;
+
+        var n = Math.round(x * LOG2E);
+        var f = x - n * LN2_HIGH - n * LN2_LOW;
+
+        var p = 1 + f * (1 + f * (1 / 2f + f * (1 / 6f + f * (1 / 24f + f * (1 / 120f + f * (1 / 720f))))));
+
+        // The 2^n is split into two factors, so both are normal floats in the whole range (n is between -126 and 128)
+        var half = n >> 1;
+        return p * pow2(half) * pow2(n - half);
+    }
+
+    /**
+     * Hyperbolic tangent: tanh(x) = (e^2x - 1) / (e^2x + 1)
+     */
+    public static float tanh(float x)
+    {
+        if (x > TANH_LIMIT) return 1f;
+        if (x < -TANH_LIMIT) return -1f;
+
+        var e = exp(2 * x);
+        return (e - 1) / (e + 1);
+    }
+
+    /**
+     * Logistic sigmoid: 1 / (1 + e^-x)
+     */
+    public static float sigmoid(float x)
+    {
+        return 1 / (1 + exp(-x));
+    }
+
+    /**
+     * Returns 2^n as a float (n should be between -126 and 127)
+     */
+    private static float pow2(int n)
+    {
+        return Float.intBitsToFloat((n + 127) << 23);
+    }
+}
@@ -9,7 +9,8 @@ public enum MathUtil
 {
     STANDARD("math.impl.standard.StandardMath"),
     ND4J("math.impl.nd4j.ND4JMath"),
-    VECTOR_API("math.impl.vectorApi.VectorApiMath");
+    VECTOR_API("math.impl.vectorApi.VectorApiMath"),
+    PARALLEL("math.impl.parallel.ParallelMath");
 
     public static final AbstractMathUtility MATH = MathUtil.getInstance();
 
@@ -6,6 +6,7 @@ import static java.lang.Math.tanh;
 public interface NeuralNetUtil
 {
     double SQRT_2_PER_PI = java.lang.Math.sqrt(2 / PI);
+    float SQRT_2_PER_PI_FLOAT = (float) SQRT_2_PER_PI;
 
     default float relu(float value)
     {
@@ -18,7 +19,12 @@ public interface NeuralNetUtil
      */
     default float gelu(float value)
     {
-        return (float) (0.5 * value * (1 + tanh(SQRT_2_PER_PI * (value + 0.044715 * value * value * value))));
+        if (FastMath.isExact())
+        {
+            return (float) (0.5 * value * (1 + tanh(SQRT_2_PER_PI * (value + 0.044715 * value * value * value))));
+        }
+
+        return 0.5f * value * (1 + FastMath.tanh(SQRT_2_PER_PI_FLOAT * (value + 0.044715f * value * value * value)));
     }
 
     /**
@@ -27,7 +33,12 @@ public interface NeuralNetUtil
      */
     default float geluFast(float value)
     {
-        return (float) (0.5 * value * (1 + tanh(value * 0.7978845608 * (0.044715 * value * value + 1))));
+        if (FastMath.isExact())
+        {
+            return (float) (0.5 * value * (1 + tanh(value * 0.7978845608 * (0.044715 * value * value + 1))));
+        }
+
+        return 0.5f * value * (1 + FastMath.tanh(value * 0.7978845608f * (0.044715f * value * value + 1)));
     }
 
     /**
@@ -36,6 +47,11 @@ public interface NeuralNetUtil
      */
     default float swiglu(float value)
     {
-        return (float) (value * (1f / (1f + java.lang.Math.exp(-value))));
+        if (FastMath.isExact())
+        {
+            return (float) (value * (1f / (1f + java.lang.Math.exp(-value))));
+        }
+
+        return value * FastMath.sigmoid(value);
     }
 }
@@ -0,0 +1,141 @@
+package math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Holder of the thread pool shared by the multithreaded math operations
+ * The number of threads can be set by the -threads argument (default: number of available processors)
+ * The minimum number of stored positions to process the attention heads parallel can be set by -parallelAttention.
+ */
+public class ParallelUtil
+{
+    private static int threadCount = Runtime.getRuntime().availableProcessors();
+    private static ForkJoinPool pool;
+
+    // Below this number of stored positions the attention heads are processed on the caller thread
+    // (At short context the attention is too small to gain on splitting it, see AttentionBenchmark.)
+    public static final int DEFAULT_MIN_PARALLEL_ATTENTION_SIZE = 128;
+    private static int minParallelAttentionSize = DEFAULT_MIN_PARALLEL_ATTENTION_SIZE;
+
+    /**
+     * Processor of a range of indexes (from inclusive, to exclusive)
+     */
+    public interface RangeTask
+    {
+        void process(int from, int to);
+    }
+
+    /**
+     * Sets the number of threads. Zero or a negative value means the number of available processors.
+     */
+    public static synchronized void setThreadCount(int requestedThreadCount)
+    {
+        var count = requestedThreadCount > 0 ? requestedThreadCount : Runtime.getRuntime().availableProcessors();
+
+        if (count != threadCount)
+        {
+            threadCount = count;
+
+            if (pool != null)
+            {
+                pool.shutdown();
+                pool = null;
+            }
+        }
+    }
+
+    public static synchronized int getThreadCount()
+    {
+        return threadCount;
+    }
+
+    /**
+     * Sets the minimum number of stored positions to process the attention heads parallel
+     * Zero means always, a negative value means the default.
+     */
+    public static synchronized void setMinParallelAttentionSize(int size)
+    {
+        minParallelAttentionSize = size >= 0 ? size : DEFAULT_MIN_PARALLEL_ATTENTION_SIZE;
+    }
+
+    public static synchronized int getMinParallelAttentionSize()
+    {
+        return minParallelAttentionSize;
+    }
+
+    public static synchronized ForkJoinPool getPool()
+    {
+        if (pool == null)
+        {
+            pool = new ForkJoinPool(threadCount);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Executes the task on the [0, count) range, split into blocks which are processed parallel
+     * A block is never smaller than minBlockSize, so if the count is small, the task is executed on the caller thread
+     */
+    public static void forEachBlock(int count, int minBlockSize, RangeTask task)
+    {
+        var threads = getThreadCount();
+
+        if (threads < 2 || count < 2 * minBlockSize)
+        {
+            task.process(0, count);
+            return;
+        }
+
+        // A few blocks per thread to balance the load if some threads are slower
+        var blockSize = Math.max(minBlockSize, (count + 4 * threads - 1) / (4 * threads));
+
+        var action = new BlockAction(task, 0, count, blockSize);
+
+        var currentPool = getPool();
+        if (ForkJoinTask.getPool() == currentPool)
+        {
+            // Already in a worker thread of the pool (nested call)
+            action.invoke();
+        }
+        else
+        {
+            currentPool.invoke(action);
+        }
+    }
+
+    private static class BlockAction extends RecursiveAction
+    {
+        private final RangeTask task;
+        private final int from;
+        private final int to;
+        private final int blockSize;
+
+        BlockAction(RangeTask task, int from, int to, int blockSize)
+        {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+            this.blockSize = blockSize;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= blockSize)
+            {
+                task.process(from, to);
+            }
+            else
+            {
+                var middle = from + ((to - from) / blockSize / 2) * blockSize;
+                if (middle == from) middle = from + blockSize;
+
+                invokeAll(new BlockAction(task, from, middle, blockSize),
+                          new BlockAction(task, middle, to, blockSize));
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collector of the highest [count] values (with their indices), without storing or sorting all the values
+ * It is a primitive min-heap, the lowest retained value is at the root, so a new value has to be compared only to that.
+ * (Selecting the top K from N values needs O(N log K) time, and no allocation per value.)
+ */
+public class TopK
+{
+    private final float[] values;
+    private final int[] indices;
+    private int size;
+
+    public TopK(int count)
+    {
+        this.values = new float[Math.max(0, count)];
+        this.indices = new int[Math.max(0, count)];
+    }
+
+    /**
+     * Offers a value to the collection, it is retained only if it is higher than the lowest retained value
+     * (At equal values the earlier (lower) index wins.)
+     */
+    public void add(float value, int index)
+    {
+        if (size < values.length)
+        {
+            // Not full yet: put the new value to the end, and move it up to its position
+            var i = size++;
+            while (i > 0)
+            {
+                var parent = (i - 1) >> 1;
+                if ( !isLower(value, index, values[parent], indices[parent])) break;
+
+                values[i] = values[parent];
+                indices[i] = indices[parent];
+                i = parent;
+            }
+
+            values[i] = value;
+            indices[i] = index;
+        }
+        else if (size > 0 && isLower(values[0], indices[0], value, index))
+        {
+            // Replace the lowest value (the root) and move it down to its position
+            siftDown(value, index);
+        }
+    }
+
+    /**
+     * Adds all values of an array segment (the index is relative to the offset)
+     */
+    public void addAll(float[] values, int offset, int size)
+    {
+        for (var i = 0; i < size; i++)
+        {
+            add(values[offset + i], i);
+        }
+    }
+
+    /**
+     * Adds all retained values of an other collection (used to merge the partial results of multiple threads)
+     */
+    public void merge(TopK other)
+    {
+        for (var i = 0; i < other.size; i++)
+        {
+            add(other.values[i], other.indices[i]);
+        }
+    }
+
+    /**
+     * Returns the lowest retained value (or negative infinity if the collection isn't full yet)
+     */
+    public float getThreshold()
+    {
+        return size < values.length ? Float.NEGATIVE_INFINITY : values[0];
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the retained values in reverse order (highest first)
+     */
+    public List<IndexedValue> toList()
+    {
+        var valuesCopy = values.clone();
+        var indicesCopy = indices.clone();
+        var originalSize = size;
+
+        // Remove the lowest value one by one, and put it to the end of the result
+        var result = new IndexedValue[size];
+        for (var i = size - 1; i >= 0; i--)
+        {
+            result[i] = new IndexedValue(values[0], indices[0]);
+
+            size--;
+            if (size > 0)
+            {
+                siftDown(values[size], indices[size]);
+            }
+        }
+
+        System.arraycopy(valuesCopy, 0, values, 0, originalSize);
+        System.arraycopy(indicesCopy, 0, indices, 0, originalSize);
+        size = originalSize;
+
+        return new ArrayList<>(List.of(result));
+    }
+
+    private void siftDown(float value, int index)
+    {
+        var i = 0;
+        while (true)
+        {
+            var child = 2 * i + 1;
+            if (child >= size) break;
+
+            if (child + 1 < size && isLower(values[child + 1], indices[child + 1], values[child], indices[child]))
+            {
+                child++;
+            }
+
+            if ( !isLower(values[child], indices[child], value, index)) break;
+
+            values[i] = values[child];
+            indices[i] = indices[child];
+            i = child;
+        }
+
+        values[i] = value;
+        indices[i] = index;
+    }
+
+    /**
+     * Ordering of the heap: lower value, or at equal values the later index is lower
+     */
+    private static boolean isLower(float value1, int index1, float value2, int index2)
+    {
+        return value1 < value2 || (value1 == value2 && index1 > index2);
+    }
+}
@@ -21,6 +21,23 @@ public class TypeConversionUtility
         array[offset + 7] =  (value & 0b0000_0000_0000_0000_0000_0000_0000_1111)         - 8;
     }
 
+    /**
+     * Unpacks an int (32 bit) value into 8 unsigned 4-bit int values in AWQ order,
+     * and appends it into an array at the given offset.
+     * (AWQ packs the values in interleaved order: 0, 2, 4, 6, 1, 3, 5, 7, starting at the lowest bits.)
+     */
+    public static void unpackAwq4bitsFromInt32(int value, int[] array, int offset)
+    {
+        array[offset    ] =  (value & 0b0000_0000_0000_0000_0000_0000_0000_1111);
+        array[offset + 2] =  (value & 0b0000_0000_0000_0000_0000_0000_1111_0000) >>>  4;
+        array[offset + 4] =  (value & 0b0000_0000_0000_0000_0000_1111_0000_0000) >>>  8;
+        array[offset + 6] =  (value & 0b0000_0000_0000_0000_1111_0000_0000_0000) >>> 12;
+        array[offset + 1] =  (value & 0b0000_0000_0000_1111_0000_0000_0000_0000) >>> 16;
+        array[offset + 3] =  (value & 0b0000_0000_1111_0000_0000_0000_0000_0000) >>> 20;
+        array[offset + 5] =  (value & 0b0000_1111_0000_0000_0000_0000_0000_0000) >>> 24;
+        array[offset + 7] =  (value & 0b1111_0000_0000_0000_0000_0000_0000_0000) >>> 28;
+    }
+
     public static int[][] unpack4bitsFromIntMatrixByRow(int[][] matrix)
     {
         int[][] result = new int[matrix.length][matrix[0].length * 8];
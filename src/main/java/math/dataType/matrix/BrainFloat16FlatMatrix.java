@@ -0,0 +1,92 @@
+package math.dataType.matrix;
+
+import math.dataType.BrainFloat16;
+import math.dataType.DataType;
+import math.dataType.vector.BrainFloat16Vector;
+import math.dataType.vector.Vector;
+
+import java.util.Arrays;
+
+/**
+ * Brain Float 16 matrix stored in a single, row-major short array
+ */
+public class BrainFloat16FlatMatrix extends FlatMatrix
+{
+    private short[] values;
+
+    public BrainFloat16FlatMatrix(int rows, int cols)
+    {
+        this(new short[flatSize(rows, cols)], 0, rows, cols);
+    }
+
+    public BrainFloat16FlatMatrix(short[] values, int rows, int cols)
+    {
+        this(values, 0, rows, cols);
+    }
+
+    /**
+     * Matrix as a view of a segment of an array (the values aren't copied)
+     */
+    public BrainFloat16FlatMatrix(short[] values, int offset, int rows, int cols)
+    {
+        super(offset, rows, cols);
+        this.values = values;
+    }
+
+    /**
+     * Returns the backing array (which can be larger than the matrix, see getOffset())
+     */
+    public short[] getArray()
+    {
+        return values;
+    }
+
+    @Override
+    public float getValue(int rowId, int colId)
+    {
+        return BrainFloat16.toFloat32(values[offset + rowId * cols + colId]);
+    }
+
+    @Override
+    public void setValue(int rowId, int colId, float value)
+    {
+        values[offset + rowId * cols + colId] = BrainFloat16.toShort(value);
+    }
+
+    @Override
+    public Vector row(int rowId)
+    {
+        return new BrainFloat16Vector(values, offset + rowId * cols, cols);
+    }
+
+    @Override
+    public void setRow(int rowId, Vector vector)
+    {
+        if (vector instanceof BrainFloat16Vector sameTypeVector)
+        {
+            System.arraycopy(sameTypeVector.getArray(), sameTypeVector.getOffset(), values, rowOffset(rowId), cols);
+        }
+        else
+        {
+            super.setRow(rowId, vector);
+        }
+    }
+
+    @Override
+    public DataType getInternalFloatType()
+    {
+        return DataType.BRAIN_FLOAT_16;
+    }
+
+    @Override
+    protected int capacity()
+    {
+        return values.length;
+    }
+
+    @Override
+    protected void grow(int capacity)
+    {
+        values = Arrays.copyOf(values, capacity);
+    }
+}
@@ -0,0 +1,113 @@
+package math.dataType.matrix;
+
+import math.dataType.vector.Vector;
+
+/**
+ * Matrix which stores all values in a single (flat) primitive array, row by row (row-major order)
+
+ * The rows are returned as views of the same array, so reading a row doesn't copy the values,
+ * and the values of the neighbouring rows are next to each other in the memory.
+ */
+public abstract class FlatMatrix extends AbstractMatrix
+{
+    // Position of the first value within the backing array
+    protected final int offset;
+
+    protected int rows;
+    protected int cols;
+
+    protected FlatMatrix(int offset, int rows, int cols)
+    {
+        this.offset = offset;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Returns the position of the first value of a row within the backing array
+     */
+    public int rowOffset(int rowId)
+    {
+        return offset + rowId * cols;
+    }
+
+    /**
+     * Returns the position of the first value within the backing array
+     */
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Returns the allocated size of the backing array
+     */
+    protected abstract int capacity();
+
+    /**
+     * Replaces the backing array by a larger one (keeping the existing values)
+     */
+    protected abstract void grow(int capacity);
+
+    @Override
+    public void setRow(int rowId, Vector vector)
+    {
+        // The values are copied into the backing array (the vector instance isn't stored)
+        for (var i = 0; i < cols; i++)
+        {
+            setValue(rowId, i, vector.get(i));
+        }
+    }
+
+    @Override
+    public Vector[] getVectorArray()
+    {
+        var vectorArray = new Vector[rows];
+
+        for (var i = 0; i < rows; i++)
+        {
+            vectorArray[i] = row(i);
+        }
+
+        return vectorArray;
+    }
+
+    @Override
+    public void addRow(Vector vector)
+    {
+        if (rows == 0)
+        {
+            cols = vector.size();
+        }
+
+        var required = offset + (rows + 1) * cols;
+        if (required > capacity())
+        {
+            // Double the capacity, so appending a row has an amortized constant cost
+            grow(Math.max(required, offset + 2 * rows * cols));
+        }
+
+        rows++;
+        setRow(rows - 1, vector);
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return rows;
+    }
+
+    @Override
+    public int getColCount()
+    {
+        return cols;
+    }
+
+    /**
+     * Returns the size of the backing array required to store a matrix with the given shape
+     */
+    protected static int flatSize(int rows, int cols)
+    {
+        return Math.multiplyExact(rows, cols);
+    }
+}
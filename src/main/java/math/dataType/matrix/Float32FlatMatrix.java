@@ -0,0 +1,91 @@
+package math.dataType.matrix;
+
+import math.dataType.DataType;
+import math.dataType.vector.Float32Vector;
+import math.dataType.vector.Vector;
+
+import java.util.Arrays;
+
+/**
+ * Float 32 matrix stored in a single, row-major float array
+ */
+public class Float32FlatMatrix extends FlatMatrix
+{
+    private float[] values;
+
+    public Float32FlatMatrix(int rows, int cols)
+    {
+        this(new float[flatSize(rows, cols)], 0, rows, cols);
+    }
+
+    public Float32FlatMatrix(float[] values, int rows, int cols)
+    {
+        this(values, 0, rows, cols);
+    }
+
+    /**
+     * Matrix as a view of a segment of an array (the values aren't copied)
+     */
+    public Float32FlatMatrix(float[] values, int offset, int rows, int cols)
+    {
+        super(offset, rows, cols);
+        this.values = values;
+    }
+
+    /**
+     * Returns the backing array (which can be larger than the matrix, see getOffset())
+     */
+    public float[] getArray()
+    {
+        return values;
+    }
+
+    @Override
+    public float getValue(int rowId, int colId)
+    {
+        return values[offset + rowId * cols + colId];
+    }
+
+    @Override
+    public void setValue(int rowId, int colId, float value)
+    {
+        values[offset + rowId * cols + colId] = value;
+    }
+
+    @Override
+    public Vector row(int rowId)
+    {
+        return new Float32Vector(values, offset + rowId * cols, cols);
+    }
+
+    @Override
+    public void setRow(int rowId, Vector vector)
+    {
+        if (vector instanceof Float32Vector float32Vector)
+        {
+            System.arraycopy(float32Vector.getArray(), float32Vector.getOffset(), values, rowOffset(rowId), cols);
+        }
+        else
+        {
+            super.setRow(rowId, vector);
+        }
+    }
+
+    @Override
+    public DataType getInternalFloatType()
+    {
+        return DataType.FLOAT_32;
+    }
+
+    @Override
+    protected int capacity()
+    {
+        return values.length;
+    }
+
+    @Override
+    protected void grow(int capacity)
+    {
+        values = Arrays.copyOf(values, capacity);
+    }
+}
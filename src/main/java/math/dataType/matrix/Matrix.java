@@ -10,7 +10,7 @@ public interface Matrix
     void setValue(int rowId, int colId, float value);
 
     /**
-     * Returns a row of the matrix (referencing to the original row instance, if possible)
+     * Returns a row of the matrix (referencing to the original row instance or a view of the original values, if possible)
      */
     Vector row(int rowId);
 
@@ -44,9 +44,9 @@ public interface Matrix
     {
         return switch (floatType)
         {
-            case FLOAT_32           -> MatrixType.VECTOR_ARRAY_FLOAT_32;
-            case FLOAT_16           -> MatrixType.VECTOR_ARRAY_FLOAT_16;
-            case BRAIN_FLOAT_16     -> MatrixType.VECTOR_ARRAY_BRAIN_FLOAT_16;
+            case FLOAT_32           -> MatrixType.FLAT_FLOAT_32;
+            case FLOAT_16           -> MatrixType.FLAT_FLOAT_16;
+            case BRAIN_FLOAT_16     -> MatrixType.FLAT_BRAIN_FLOAT_16;
             default
                     -> throw new RuntimeException("Unsupported data type at emptyVector: " + floatType);
         };
@@ -64,6 +64,9 @@ public interface Matrix
             case VECTOR_ARRAY_FLOAT_32          -> new VectorArrayMatrix(DataType.FLOAT_32, rows, cols);
             case VECTOR_ARRAY_FLOAT_16          -> new VectorArrayMatrix(DataType.FLOAT_16, rows, cols);
             case VECTOR_ARRAY_BRAIN_FLOAT_16    -> new VectorArrayMatrix(DataType.BRAIN_FLOAT_16, rows, cols);
+            case FLAT_FLOAT_32                  -> new Float32FlatMatrix(rows, cols);
+            case FLAT_FLOAT_16                  -> new Float16FlatMatrix(rows, cols);
+            case FLAT_BRAIN_FLOAT_16            -> new BrainFloat16FlatMatrix(rows, cols);
         };
     }
 }
@@ -4,5 +4,8 @@ public enum MatrixType
 {
     VECTOR_ARRAY_FLOAT_32, // Vector array, Float 32 values
     VECTOR_ARRAY_FLOAT_16, // Vector array, Float 16 values
-    VECTOR_ARRAY_BRAIN_FLOAT_16 // Vector array, Brain Float 16 values
+    VECTOR_ARRAY_BRAIN_FLOAT_16, // Vector array, Brain Float 16 values
+    FLAT_FLOAT_32, // Single row-major array, Float 32 values
+    FLAT_FLOAT_16, // Single row-major array, Float 16 values
+    FLAT_BRAIN_FLOAT_16 // Single row-major array, Brain Float 16 values
 }
@@ -0,0 +1,132 @@
+package math.dataType.matrix;
+
+import app.IdentifiedException;
+import math.dataType.DataType;
+import math.dataType.vector.Vector;
+
+import java.util.List;
+
+/**
+ * Matrix which contains the rows of multiple matrices (with the same number of columns) stacked on each other
+
+ * It is used to fuse the query, key and value weights into a single parameter, if the parts can't be merged
+ * into a single flat matrix (for example the quantized matrices). The parts are kept, the rows are delegated to them.
+ */
+public class StackedMatrix extends AbstractMatrix
+{
+    private final Matrix[] parts;
+
+    // The id of the first row of every part (plus the total row count at the end)
+    private final int[] firstRows;
+
+    public StackedMatrix(List<Matrix> matrices)
+    {
+        this.parts = matrices.toArray(new Matrix[0]);
+        this.firstRows = new int[parts.length + 1];
+
+        for (var i = 0; i < parts.length; i++)
+        {
+            if (parts[i].getColCount() != parts[0].getColCount())
+            {
+                throw new IdentifiedException("Stacked matrices should have the same number of columns. " +
+                        "Found: " + parts[0].getColCount() + ", " + parts[i].getColCount());
+            }
+
+            firstRows[i + 1] = firstRows[i] + parts[i].getRowCount();
+        }
+    }
+
+    private int partOf(int rowId)
+    {
+        var part = 0;
+        while (rowId >= firstRows[part + 1])
+        {
+            part++;
+        }
+
+        return part;
+    }
+
+    public int getPartCount()
+    {
+        return parts.length;
+    }
+
+    public Matrix getPart(int index)
+    {
+        return parts[index];
+    }
+
+    /**
+     * Returns the id of the first row of the part (in the stacked matrix)
+     */
+    public int getFirstRow(int index)
+    {
+        return firstRows[index];
+    }
+
+    @Override
+    public float getValue(int rowId, int colId)
+    {
+        var part = partOf(rowId);
+        return parts[part].getValue(rowId - firstRows[part], colId);
+    }
+
+    @Override
+    public void setValue(int rowId, int colId, float value)
+    {
+        var part = partOf(rowId);
+        parts[part].setValue(rowId - firstRows[part], colId, value);
+    }
+
+    @Override
+    public Vector row(int rowId)
+    {
+        var part = partOf(rowId);
+        return parts[part].row(rowId - firstRows[part]);
+    }
+
+    @Override
+    public void setRow(int rowId, Vector vector)
+    {
+        var part = partOf(rowId);
+        parts[part].setRow(rowId - firstRows[part], vector);
+    }
+
+    @Override
+    public Vector[] getVectorArray()
+    {
+        var vectorArray = new Vector[getRowCount()];
+
+        for (var i = 0; i < getRowCount(); i++)
+        {
+            vectorArray[i] = row(i);
+        }
+
+        return vectorArray;
+    }
+
+    @Override
+    public void addRow(Vector vector)
+    {
+        throw new IdentifiedException("addRow isn't supported for stacked matrix.");
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return firstRows[parts.length];
+    }
+
+    @Override
+    public int getColCount()
+    {
+        return parts[0].getColCount();
+    }
+
+    @Override
+    public DataType getInternalFloatType()
+    {
+        return parts[0].getInternalFloatType();
+    }
+}
@@ -0,0 +1,105 @@
+package math.dataType.matrix;
+
+import app.IdentifiedException;
+import math.dataType.DataType;
+import math.dataType.vector.Vector;
+
+/**
+ * Matrix which holds its values in transposed orientation (wrapping the transposed matrix)
+
+ * It is used to store a horizontal weight in vertical orientation. The vector-matrix multiplication
+ * on this matrix is calculated as a multiplication by the transposed (stored) matrix, so the dot products
+ * are calculated on rows, where the values are next to each other in the memory.
+ * (The stored matrix can be any matrix type, including the quantized matrices.)
+ */
+public class TransposedMatrix extends AbstractMatrix
+{
+    private final Matrix transposed;
+
+    public TransposedMatrix(Matrix transposed)
+    {
+        this.transposed = transposed;
+    }
+
+    /**
+     * Returns the stored (transposed) matrix
+     */
+    public Matrix getTransposed()
+    {
+        return transposed;
+    }
+
+    @Override
+    public float getValue(int rowId, int colId)
+    {
+        return transposed.getValue(colId, rowId);
+    }
+
+    @Override
+    public void setValue(int rowId, int colId, float value)
+    {
+        transposed.setValue(colId, rowId, value);
+    }
+
+    /**
+     * Returns a row of the matrix (which is a column of the stored matrix, so the values are copied)
+     */
+    @Override
+    public Vector row(int rowId)
+    {
+        var vector = Vector.emptyVector(getInternalFloatType(), getColCount());
+
+        for (var colId = 0; colId < getColCount(); colId++)
+        {
+            vector.set(colId, transposed.getValue(colId, rowId));
+        }
+
+        return vector;
+    }
+
+    @Override
+    public void setRow(int rowId, Vector vector)
+    {
+        for (var colId = 0; colId < getColCount(); colId++)
+        {
+            transposed.setValue(colId, rowId, vector.get(colId));
+        }
+    }
+
+    @Override
+    public Vector[] getVectorArray()
+    {
+        var vectorArray = new Vector[getRowCount()];
+
+        for (var i = 0; i < getRowCount(); i++)
+        {
+            vectorArray[i] = row(i);
+        }
+
+        return vectorArray;
+    }
+
+    @Override
+    public void addRow(Vector vector)
+    {
+        throw new IdentifiedException("addRow isn't supported for transposed matrix.");
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return transposed.getColCount();
+    }
+
+    @Override
+    public int getColCount()
+    {
+        return transposed.getRowCount();
+    }
+
+    @Override
+    public DataType getInternalFloatType()
+    {
+        return transposed.getInternalFloatType();
+    }
+}
@@ -10,19 +10,35 @@ public class BrainFloat16Vector extends AbstractVector
 {
     private final short[] values;
 
+    // The vector can be a view of a larger array (for example a row of a flat matrix)
+    private final int offset;
+    private final int size;
+
     public BrainFloat16Vector(int size)
     {
-        this.values = new short[size];
+        this(new short[size]);
     }
 
     public BrainFloat16Vector(short[] values)
+    {
+        this(values, 0, values.length);
+    }
+
+    /**
+     * Vector as a view of a segment of an array (the values aren't copied)
+     */
+    public BrainFloat16Vector(short[] values, int offset, int size)
     {
         this.values = values;
+        this.offset = offset;
+        this.size = size;
     }
 
     public BrainFloat16Vector(float[] values)
     {
         this.values = new short[values.length];
+        this.offset = 0;
+        this.size = values.length;
 
         for (var i = 0; i < values.length; i++)
         {
@@ -39,11 +55,11 @@ public class BrainFloat16Vector extends AbstractVector
     @Override
     public float[] getValues()
     {
-        var floatValues = new float[values.length];
+        var floatValues = new float[size];
 
-        for (var i = 0; i < values.length; i++)
+        for (var i = 0; i < size; i++)
         {
-            floatValues[i] = BrainFloat16.toFloat32(values[i]);
+            floatValues[i] = BrainFloat16.toFloat32(values[offset + i]);
         }
 
         return floatValues;
@@ -52,18 +68,34 @@ public class BrainFloat16Vector extends AbstractVector
     @Override
     public float get(int index)
     {
-        return BrainFloat16.toFloat32(values[index]);
+        return BrainFloat16.toFloat32(values[offset + index]);
     }
 
     @Override
     public void set(int index, float value)
     {
-        values[index] = BrainFloat16.toShort(value);
+        values[offset + index] = BrainFloat16.toShort(value);
     }
 
     @Override
     public int size()
     {
-        return values.length;
+        return size;
+    }
+
+    /**
+     * Returns the backing array (which can be larger than the vector, see getOffset())
+     */
+    public short[] getArray()
+    {
+        return values;
+    }
+
+    /**
+     * Returns the position of the first value within the backing array
+     */
+    public int getOffset()
+    {
+        return offset;
     }
 }
@@ -2,18 +2,34 @@ package math.dataType.vector;
 
 import math.dataType.DataType;
 
+import java.util.Arrays;
+
 public class Float32Vector extends AbstractVector
 {
     private final float[] values;
 
+    // The vector can be a view of a larger array (for example a row of a flat matrix)
+    private final int offset;
+    private final int size;
+
     public Float32Vector(int size)
     {
-        this.values = new float[size];
+        this(new float[size]);
     }
 
     public Float32Vector(float[] values)
+    {
+        this(values, 0, values.length);
+    }
+
+    /**
+     * Vector as a view of a segment of an array (the values aren't copied)
+     */
+    public Float32Vector(float[] values, int offset, int size)
     {
         this.values = values;
+        this.offset = offset;
+        this.size = size;
     }
 
     @Override
@@ -22,27 +38,51 @@ public class Float32Vector extends AbstractVector
         return DataType.FLOAT_32;
     }
 
+    /**
+     * Returns the values as an array (the original array, or a copy if this vector is a view of a larger array)
+     */
     @Override
     public float[] getValues()
     {
-        return values;
+        if (offset == 0 && size == values.length)
+        {
+            return values;
+        }
+
+        return Arrays.copyOfRange(values, offset, offset + size);
     }
 
     @Override
     public float get(int index)
     {
-        return values[index];
+        return values[offset + index];
     }
 
     @Override
     public void set(int index, float value)
     {
-        values[index] = value;
+        values[offset + index] = value;
     }
 
     @Override
     public int size()
     {
-        return values.length;
+        return size;
+    }
+
+    /**
+     * Returns the backing array (which can be larger than the vector, see getOffset())
+     */
+    public float[] getArray()
+    {
+        return values;
+    }
+
+    /**
+     * Returns the position of the first value within the backing array
+     */
+    public int getOffset()
+    {
+        return offset;
     }
 }
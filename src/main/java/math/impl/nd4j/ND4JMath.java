@@ -1,13 +1,30 @@
 package math.impl.nd4j;
 
+import math.dataType.matrix.Float32FlatMatrix;
 import math.dataType.matrix.Matrix;
+import math.dataType.matrix.StackedMatrix;
+import math.dataType.matrix.TransposedMatrix;
+import math.dataType.vector.Float32Vector;
 import math.dataType.vector.Vector;
 import math.AbstractMathUtility;
+import math.ActivationFunction;
+import math.IndexedValue;
 import math.impl.standard.StandardMath;
+import quantization.QuantizedMatrix;
+import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.Arrays;
+import java.util.List;
 
 import static math.dataType.matrix.Matrix.emptyMatrix;
 
+/**
+ * Math provider using ND4J (native BLAS)
+ * The weights are converted to ND4J arrays once at load (see prepareMatrix()), so the multiplications
+ * by the weights copy only the (much smaller) input vector or matrix into an ND4J array.
+ */
 public class ND4JMath extends AbstractMathUtility
 {
     private static final AbstractMathUtility STANDARD_MATH = new StandardMath();
@@ -18,6 +35,20 @@ public class ND4JMath extends AbstractMathUtility
         return "ND4j";
     }
 
+    /**
+     * The non-quantized parameter matrices are stored in ND4J arrays (ND4JMatrix)
+     */
+    @Override
+    public Matrix prepareMatrix(Matrix matrix)
+    {
+        if (matrix instanceof QuantizedMatrix || matrix instanceof TransposedMatrix || matrix instanceof ND4JMatrix)
+        {
+            return matrix;
+        }
+
+        return new ND4JMatrix(toArray(matrix));
+    }
+
     @Override
     public Vector addVectors(Vector vector1, Vector vector2)
     {
@@ -28,6 +59,12 @@ public class ND4JMath extends AbstractMathUtility
         }
     }
 
+    @Override
+    public Vector addVectors(Vector vector1, Vector vector2, Vector result)
+    {
+        return copyInto(addVectors(vector1, vector2), result);
+    }
+
     @Override
     public Matrix addMatrices(Matrix matrix1, Matrix matrix2)
     {
@@ -59,6 +96,12 @@ public class ND4JMath extends AbstractMathUtility
         }
     }
 
+    @Override
+    public Vector mulVectorByScalar(Vector vector, float scalar, Vector result)
+    {
+        return copyInto(mulVectorByScalar(vector, scalar), result);
+    }
+
     @Override
     public Matrix mulMatrixByScalar(Matrix matrix, float scalar)
     {
@@ -68,50 +111,205 @@ public class ND4JMath extends AbstractMathUtility
     // TODO: It seems not too effective. We convert the vector to matrix and do a matrix-matrix multiplication
     public Vector mulVectorByMatrix(Vector vector, Matrix matrix)
     {
-        var floatVector = new float[][] {vector.getValues()};
+        if (matrix instanceof TransposedMatrix transposedMatrix)
+        {
+            // The matrix is stored in transposed orientation, so the dot products can be calculated on its rows
+            return mulVectorByTransposedMatrix(vector, transposedMatrix.getTransposed());
+        }
 
-        var floatMatrix = new float[matrix.getRowCount()][];
-        for (var i = 0; i < matrix.getRowCount(); i++)
+        if (matrix instanceof QuantizedMatrix)
         {
-            floatMatrix[i] = matrix.row(i).getValues();
+            // Calculated directly on the quantized values (without creating a de-quantized copy of the matrix)
+            return STANDARD_MATH.mulVectorByMatrix(vector, matrix);
+        }
+
+        if (matrix instanceof ND4JMatrix nd4jMatrix)
+        {
+            // Only the vector is copied, the matrix is used directly (vector-matrix multiplication, gemv)
+            try (var input = toRowArray(vector))
+            {
+                return Vector.of(vector.getFloatType(), input.mmul(nd4jMatrix.getArray()).toFloatVector());
+            }
         }
 
+        var floatVector = new float[][] {vector.getValues()};
+
         try (var array1 = Nd4j.create(floatVector);
-             var array2 = Nd4j.create(floatMatrix))
+             var array2 = toArray(matrix))
         {
             return Vector.of(vector.getFloatType(), array1.mmul(array2).toFloatVector());
         }
     }
 
+    @Override
+    public Vector mulVectorByMatrix(Vector vector, Matrix matrix, Vector result)
+    {
+        return copyInto(mulVectorByMatrix(vector, matrix), result);
+    }
+
     @Override
     public Vector mulVectorByTransposedMatrix(Vector vector, Matrix matrix)
     {
-        var array = new float[1][vector.size()];
-        array[0] = vector.getValues();
+        if (matrix instanceof TransposedMatrix transposedMatrix)
+        {
+            return mulVectorByMatrix(vector, transposedMatrix.getTransposed());
+        }
 
-        var floatMatrix = new float[matrix.getRowCount()][];
-        for (var i = 0; i < matrix.getRowCount(); i++)
+        if (matrix instanceof QuantizedMatrix || matrix instanceof StackedMatrix)
         {
-            floatMatrix[i] = matrix.row(i).getValues();
+            // Calculated directly on the quantized values (without creating a de-quantized copy of the matrix)
+            return STANDARD_MATH.mulVectorByTransposedMatrix(vector, matrix);
         }
 
+        if (matrix instanceof ND4JMatrix nd4jMatrix)
+        {
+            // The transpose is handled by the BLAS call (the matrix isn't copied)
+            try (var input = toRowArray(vector))
+            {
+                return Vector.of(vector.getFloatType(),
+                        Nd4j.gemm(input, nd4jMatrix.getArray(), false, true).toFloatVector());
+            }
+        }
+
+        var array = new float[1][vector.size()];
+        array[0] = vector.getValues();
+
         try (var array1 = Nd4j.create(array);
-             var array2 = Nd4j.create(floatMatrix))
+             var array2 = toArray(matrix))
         {
             return Vector.of(vector.getFloatType(), array1.mmul(array2.transpose()).toFloatVector());
         }
     }
 
+    @Override
+    public Vector mulVectorByTransposedMatrix(Vector vector, Matrix matrix, Vector result)
+    {
+        return copyInto(mulVectorByTransposedMatrix(vector, matrix), result);
+    }
+
+    @Override
+    public Vector gatedLinearUnit(Vector vector, Matrix gateWeight, Matrix upWeight, ActivationFunction activation,
+                                  Vector result)
+    {
+        // ND4J calculates the whole matrix multiplications faster than the dot products row by row
+        var gate = mulVectorByTransposedMatrix(vector, gateWeight);
+        var up = mulVectorByTransposedMatrix(vector, upWeight);
+
+        for (var i = 0; i < result.size(); i++)
+        {
+            result.set(i, activation.apply(gate.get(i)) * up.get(i));
+        }
+
+        return result;
+    }
+
     @Override
     public Matrix mulMatrixByMatrix(Matrix matrix1, Matrix matrix2)
     {
-        return STANDARD_MATH.mulMatrixByMatrix(matrix1, matrix2);
+        return mulMatrixByMatrix(matrix1, matrix2,
+                emptyMatrix(matrix1.getInternalFloatType(), matrix1.getRowCount(), matrix2.getColCount()));
+    }
+
+    @Override
+    public Matrix mulMatrixByMatrix(Matrix matrix1, Matrix matrix2, Matrix result)
+    {
+        if (matrix2 instanceof ND4JMatrix nd4jMatrix)
+        {
+            // Matrix-matrix multiplication (gemm), only the first matrix is copied
+            return mulByArray(matrix1, nd4jMatrix.getArray(), false, result);
+        }
+
+        if (matrix2 instanceof TransposedMatrix transposedMatrix
+                && transposedMatrix.getTransposed() instanceof ND4JMatrix nd4jMatrix)
+        {
+            return mulByArray(matrix1, nd4jMatrix.getArray(), true, result);
+        }
+
+        return STANDARD_MATH.mulMatrixByMatrix(matrix1, matrix2, result);
     }
 
     @Override
     public Matrix mulMatrixByTransposedMatrix(Matrix matrix1, Matrix matrix2)
     {
-        return STANDARD_MATH.mulMatrixByTransposedMatrix(matrix1, matrix2);
+        return mulMatrixByTransposedMatrix(matrix1, matrix2,
+                emptyMatrix(matrix1.getInternalFloatType(), matrix1.getRowCount(), matrix2.getRowCount()));
+    }
+
+    @Override
+    public Matrix mulMatrixByTransposedMatrix(Matrix matrix1, Matrix matrix2, Matrix result)
+    {
+        if (matrix2 instanceof ND4JMatrix nd4jMatrix)
+        {
+            return mulByArray(matrix1, nd4jMatrix.getArray(), true, result);
+        }
+
+        return STANDARD_MATH.mulMatrixByTransposedMatrix(matrix1, matrix2, result);
+    }
+
+    /**
+     * Multiplies the matrix by an ND4J array (optionally transposed, which is handled by the BLAS call)
+     */
+    private Matrix mulByArray(Matrix matrix, INDArray array, boolean isTransposed, Matrix result)
+    {
+        try (var input = toArray(matrix))
+        {
+            var rows = Nd4j.gemm(input, array, false, isTransposed).toFloatMatrix();
+
+            for (var i = 0; i < rows.length; i++)
+            {
+                result.setRow(i, new Float32Vector(rows[i]));
+            }
+
+            return result;
+        }
+    }
+
+    @Override
+    public Matrix stackMatrices(List<Matrix> matrices)
+    {
+        for (var matrix : matrices)
+        {
+            if ( !(matrix instanceof ND4JMatrix)) return super.stackMatrices(matrices);
+        }
+
+        // The rows of the ND4J arrays are stacked into a new ND4J array
+        var arrays = new INDArray[matrices.size()];
+        for (var i = 0; i < arrays.length; i++)
+        {
+            arrays[i] = ((ND4JMatrix) matrices.get(i)).getArray();
+        }
+
+        return new ND4JMatrix(Nd4j.vstack(arrays));
+    }
+
+    @Override
+    public List<IndexedValue> mulVectorByTransposedMatrixTopK(Vector vector, Matrix matrix, int count)
+    {
+        if (matrix instanceof ND4JMatrix)
+        {
+            // The rows aren't accessible one by one efficiently, so all logits are calculated by a single multiplication
+            return reverseAndFilter(mulVectorByTransposedMatrix(vector, matrix), count);
+        }
+
+        return super.mulVectorByTransposedMatrixTopK(vector, matrix, count);
+    }
+
+    @Override
+    public Matrix softmax(Matrix matrix)
+    {
+        try (var array = toArray(matrix))
+        {
+            // Softmax of every row (along the last dimension)
+            var rows = Transforms.softmax(array, false).toFloatMatrix();
+
+            var result = emptyMatrix(matrix.getInternalFloatType(), rows.length, matrix.getColCount());
+            for (var i = 0; i < rows.length; i++)
+            {
+                result.setRow(i, new Float32Vector(rows[i]));
+            }
+
+            return result;
+        }
     }
 
     @Override
@@ -149,21 +347,26 @@ public class ND4JMath extends AbstractMathUtility
     {
         var size = (long) matrix.getRowCount() * matrix.getColCount();
 
-        var floatMatrix = new float[matrix.getRowCount()][];
-        for (var i = 0; i < matrix.getRowCount(); i++)
-        {
-            floatMatrix[i] = matrix.row(i).getValues();
-        }
-
-        try (var array = Nd4j.create(floatMatrix))
+        try (var array = toArray(matrix))
         {
             return Vector.of(matrix.row(0).getFloatType(), array.reshape(size).toFloatVector());
         }
     }
 
+    @Override
+    public Vector flattenMatrix(Matrix matrix, Vector result)
+    {
+        return STANDARD_MATH.flattenMatrix(matrix, result);
+    }
+
     @Override
     public Matrix transposeMatrix(Matrix matrix)
     {
+        if (matrix instanceof ND4JMatrix nd4jMatrix)
+        {
+            return new ND4JMatrix(nd4jMatrix.getArray().transpose().dup('c'));
+        }
+
         return STANDARD_MATH.transposeMatrix(matrix);
     }
 
@@ -175,4 +378,62 @@ public class ND4JMath extends AbstractMathUtility
             return array.meanNumber().floatValue();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Copies the values of a calculated vector into the provided result vector
+     * (ND4J creates a new array for the results, so the destination variants can't avoid the allocation)
+     */
+    private Vector copyInto(Vector source, Vector result)
+    {
+        for (var i = 0; i < source.size(); i++)
+        {
+            result.set(i, source.get(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates an ND4J array (with a single row) from a vector
+     */
+    private INDArray toRowArray(Vector vector)
+    {
+        return Nd4j.create(vector.getValues(), new long[] {1, vector.size()}, 'c');
+    }
+
+    /**
+     * Creates an ND4J array from a matrix (a flat matrix is passed as a single array, without collecting the rows)
+     * The result is owned (closed) by the caller, so an ND4J matrix is copied as well.
+     */
+    private INDArray toArray(Matrix matrix)
+    {
+        if (matrix instanceof ND4JMatrix nd4jMatrix)
+        {
+            return nd4jMatrix.getArray().dup('c');
+        }
+
+        var rows = matrix.getRowCount();
+        var cols = matrix.getColCount();
+
+        if (matrix instanceof Float32FlatMatrix flatMatrix)
+        {
+            var size = rows * cols;
+            var values = flatMatrix.getArray();
+
+            if (flatMatrix.getOffset() != 0 || values.length != size)
+            {
+                values = Arrays.copyOfRange(values, flatMatrix.getOffset(), flatMatrix.getOffset() + size);
+            }
+
+            return Nd4j.create(values, new long[] {rows, cols}, 'c');
+        }
+
+        var floatMatrix = new float[rows][];
+        for (var i = 0; i < rows; i++)
+        {
+            floatMatrix[i] = matrix.row(i).getValues();
+        }
+
+        return Nd4j.create(floatMatrix);
+    }
+}
@@ -0,0 +1,103 @@
+package math.impl.nd4j;
+
+import app.IdentifiedException;
+import math.dataType.DataType;
+import math.dataType.matrix.AbstractMatrix;
+import math.dataType.vector.Float32Vector;
+import math.dataType.vector.Vector;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Matrix which owns an ND4J array (FLOAT 32, row-major)
+ * It is created once at load (see ND4JMath.prepareMatrix()), so the multiplications can pass the array directly
+ * to the native BLAS calls, without copying the matrix at every operation.
+
+ * The values are stored off-heap, so the access of the individual values (getValue, row) is slow,
+ * it should be used only for the rarely accessed values. (For example the embedding of a token.)
+ */
+public class ND4JMatrix extends AbstractMatrix
+{
+    private final INDArray array;
+
+    public ND4JMatrix(INDArray array)
+    {
+        if (array.rank() != 2)
+        {
+            throw new IdentifiedException("ND4J matrix should have 2 dimensions. Shape: " + array.shapeInfoToString());
+        }
+
+        this.array = array;
+    }
+
+    public INDArray getArray()
+    {
+        return array;
+    }
+
+    @Override
+    public float getValue(int rowId, int colId)
+    {
+        return array.getFloat(rowId, colId);
+    }
+
+    @Override
+    public void setValue(int rowId, int colId, float value)
+    {
+        array.putScalar(rowId, colId, value);
+    }
+
+    /**
+     * Returns a copy of a row (the values are copied from the off-heap storage)
+     */
+    @Override
+    public Vector row(int rowId)
+    {
+        return new Float32Vector(array.getRow(rowId).toFloatVector());
+    }
+
+    @Override
+    public void setRow(int rowId, Vector vector)
+    {
+        for (var colId = 0; colId < getColCount(); colId++)
+        {
+            array.putScalar(rowId, colId, vector.get(colId));
+        }
+    }
+
+    @Override
+    public Vector[] getVectorArray()
+    {
+        var vectorArray = new Vector[getRowCount()];
+
+        for (var i = 0; i < getRowCount(); i++)
+        {
+            vectorArray[i] = row(i);
+        }
+
+        return vectorArray;
+    }
+
+    @Override
+    public void addRow(Vector vector)
+    {
+        throw new IdentifiedException("addRow isn't supported for ND4J matrix.");
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return (int) array.rows();
+    }
+
+    @Override
+    public int getColCount()
+    {
+        return (int) array.columns();
+    }
+
+    @Override
+    public DataType getInternalFloatType()
+    {
+        return DataType.FLOAT_32;
+    }
+}
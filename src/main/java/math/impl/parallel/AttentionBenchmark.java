@@ -0,0 +1,130 @@
+package math.impl.parallel;
+
+import math.AbstractMathUtility;
+import math.ParallelUtil;
+import math.dataType.DataType;
+import math.dataType.matrix.Matrix;
+import math.impl.standard.StandardMath;
+
+import java.util.Random;
+
+import static math.dataType.matrix.Matrix.emptyMatrix;
+
+/**
+ * Measures the attention of a single token (decode step) on the caller thread and parallel, by the number of stored
+ * positions, to find the crossover (from which the parallel is faster), which can be set by -parallelAttention
+ * Usage: java -cp target/open-all-gpt.jar math.impl.parallel.AttentionBenchmark [threads]
+ */
+public class AttentionBenchmark
+{
+    private static final AbstractMathUtility STANDARD_MATH = new StandardMath();
+    private static final AbstractMathUtility PARALLEL_MATH = new ParallelMath();
+
+    private record Shape(String name, int headCount, int kvHeadCount, int headSize) {}
+
+    private static final Shape[] SHAPES = new Shape[] {
+            new Shape("MHA (12 heads, 64)", 12, 12, 64),
+            new Shape("GQA (32 heads, 8 kv heads, 128)", 32, 8, 128),
+            new Shape("MQA (8 heads, 1 kv head, 256)", 8, 1, 256)};
+
+    private static final int[] POSITIONS = new int[] {16, 32, 64, 128, 256, 512, 1024, 2048, 4096};
+
+    private static final Random RANDOM = new Random(42);
+
+    public static void main(String... args)
+    {
+        if (args.length > 0)
+        {
+            ParallelUtil.setThreadCount(Integer.parseInt(args[0]));
+        }
+
+        // Measure the parallel path at all sizes
+        ParallelUtil.setMinParallelAttentionSize(0);
+
+        System.out.println("Threads: " + ParallelUtil.getThreadCount() + "\n");
+
+        for (var shape : SHAPES)
+        {
+            System.out.println(shape.name());
+            System.out.println("positions    serial (us)  parallel (us)  speedup");
+
+            var crossover = -1;
+
+            for (var positions : POSITIONS)
+            {
+                var queries = randomMatrix(shape.headCount(), shape.headSize());
+                var keys = new Matrix[shape.kvHeadCount()];
+                var values = new Matrix[shape.kvHeadCount()];
+
+                for (var kvHead = 0; kvHead < shape.kvHeadCount(); kvHead++)
+                {
+                    keys[kvHead] = randomMatrix(positions, shape.headSize());
+                    values[kvHead] = randomMatrix(positions, shape.headSize());
+                }
+
+                var result = emptyMatrix(DataType.FLOAT_32, shape.headCount(), shape.headSize());
+                var scale = (float) (1 / Math.sqrt(shape.headSize()));
+
+                var serial = measure(STANDARD_MATH, queries, keys, values, scale, result);
+                var parallel = measure(PARALLEL_MATH, queries, keys, values, scale, result);
+
+                if (parallel < serial)
+                {
+                    if (crossover == -1) crossover = positions;
+                }
+                else
+                {
+                    crossover = -1;
+                }
+
+                System.out.printf("%9d  %13.1f  %13.1f  %7.2f%n", positions, serial / 1000, parallel / 1000,
+                        serial / parallel);
+            }
+
+            System.out.println(crossover == -1
+                    ? "The parallel attention wasn't faster\n"
+                    : "The parallel attention is faster from " + crossover + " positions\n");
+        }
+
+        ParallelUtil.getPool().shutdown();
+    }
+
+    /**
+     * Returns the average time of the attention in nanoseconds
+     */
+    private static double measure(AbstractMathUtility math, Matrix queries, Matrix[] keys, Matrix[] values,
+                                  float scale, Matrix result)
+    {
+        var work = (long) queries.getRowCount() * keys[0].getRowCount() * queries.getColCount();
+        var iterations = (int) Math.max(20, 200_000_000L / work);
+
+        // Warm up (JIT compilation)
+        for (var i = 0; i < iterations; i++)
+        {
+            math.multiHeadAttention(queries, keys, values, scale, null, 0, result);
+        }
+
+        var start = System.nanoTime();
+        for (var i = 0; i < iterations; i++)
+        {
+            math.multiHeadAttention(queries, keys, values, scale, null, 0, result);
+        }
+
+        return (double) (System.nanoTime() - start) / iterations;
+    }
+
+    private static Matrix randomMatrix(int rows, int cols)
+    {
+        var matrix = emptyMatrix(DataType.FLOAT_32, rows, cols);
+
+        for (var i = 0; i < rows; i++)
+        {
+            for (var j = 0; j < cols; j++)
+            {
+                matrix.setValue(i, j, RANDOM.nextFloat() - 0.5f);
+            }
+        }
+
+        return matrix;
+    }
+}
@@ -0,0 +1,497 @@
+package math.impl.parallel;
+
+import app.IdentifiedException;
+import math.AbstractMathUtility;
+import math.ActivationFunction;
+import math.AttentionState;
+import math.IndexedValue;
+import math.TopK;
+import math.dataType.matrix.Float32FlatMatrix;
+import math.dataType.matrix.Matrix;
+import math.dataType.matrix.StackedMatrix;
+import math.dataType.matrix.TransposedMatrix;
+import math.dataType.vector.Float32Vector;
+import math.dataType.vector.Vector;
+import math.impl.standard.StandardMath;
+import quantization.QuantizedMatrix;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static math.ParallelUtil.forEachBlock;
+import static math.ParallelUtil.getMinParallelAttentionSize;
+import static math.ParallelUtil.getThreadCount;
+import static math.dataType.matrix.Matrix.emptyMatrix;
+import static math.dataType.vector.Vector.emptyVector;
+
+/**
+ * Multithreaded math provider
+ * The matrix multiplications are split into blocks of rows (or columns), which are processed on the shared thread pool.
+ * The attention is split by key-value head (and by position chunks if there are fewer heads than threads).
+ * The small operations (and everything else) are executed by the standard math provider on the caller thread.
+ */
+public class ParallelMath extends AbstractMathUtility
+{
+    private static final AbstractMathUtility STANDARD_MATH = new StandardMath();
+
+    // Minimum number of multiply-add operations in a block. (Below that the overhead of a task is bigger than the gain.)
+    private static final int MIN_WORK_PER_BLOCK = 1 << 14;
+
+    // Minimum number of positions in a chunk of the attention (if the positions are split between the threads)
+    private static final int MIN_ATTENTION_CHUNK_SIZE = 64;
+
+    @Override
+    public String getMathProviderName()
+    {
+        return "Parallel (multithreaded)";
+    }
+
+    @Override
+    public Vector addVectors(Vector vector1, Vector vector2)
+    {
+        return STANDARD_MATH.addVectors(vector1, vector2);
+    }
+
+    @Override
+    public Vector addVectors(Vector vector1, Vector vector2, Vector result)
+    {
+        return STANDARD_MATH.addVectors(vector1, vector2, result);
+    }
+
+    @Override
+    public Matrix addMatrices(Matrix matrix1, Matrix matrix2)
+    {
+        return STANDARD_MATH.addMatrices(matrix1, matrix2);
+    }
+
+    @Override
+    public Matrix addBroadcastVector(Matrix matrix, Vector vector)
+    {
+        return STANDARD_MATH.addBroadcastVector(matrix, vector);
+    }
+
+    @Override
+    public float dotProduct(Vector vector1, Vector vector2)
+    {
+        return STANDARD_MATH.dotProduct(vector1, vector2);
+    }
+
+    @Override
+    public Vector mulVectorByScalar(Vector vector, float scalar)
+    {
+        return STANDARD_MATH.mulVectorByScalar(vector, scalar);
+    }
+
+    @Override
+    public Vector mulVectorByScalar(Vector vector, float scalar, Vector result)
+    {
+        return STANDARD_MATH.mulVectorByScalar(vector, scalar, result);
+    }
+
+    @Override
+    public Matrix mulMatrixByScalar(Matrix matrix, float scalar)
+    {
+        return STANDARD_MATH.mulMatrixByScalar(matrix, scalar);
+    }
+
+    @Override
+    public Vector mulVectorByMatrix(Vector vector, Matrix matrix)
+    {
+        return mulVectorByMatrix(vector, matrix, emptyVector(vector.getFloatType(), matrix.getColCount()));
+    }
+
+    @Override
+    public Vector mulVectorByMatrix(Vector vector, Matrix matrix, Vector result)
+    {
+        if (matrix instanceof TransposedMatrix transposedMatrix)
+        {
+            // The matrix is stored in transposed orientation, so the dot products can be calculated on its rows
+            return mulVectorByTransposedMatrix(vector, transposedMatrix.getTransposed(), result);
+        }
+
+        if (vector.size() != matrix.getRowCount())
+        {
+            throw new IdentifiedException("Vector and matrix shape is incompatible at multiplication. " +
+                    "Vector size: " + vector.size() + ", matrix shape: " + matrix.getRowCount() + ", " + matrix.getColCount());
+        }
+
+        var rows = matrix.getRowCount();
+        var cols = matrix.getColCount();
+
+        // The rows are summed up, so the columns (the result values) are split into blocks
+        forEachBlock(cols, minBlockSize(rows), (from, to) -> mulVectorByMatrixBlock(vector, matrix, result, from, to));
+
+        return result;
+    }
+
+    private void mulVectorByMatrixBlock(Vector vector, Matrix matrix, Vector result, int from, int to)
+    {
+        if (matrix instanceof Float32FlatMatrix flatMatrix && result instanceof Float32Vector float32Vector)
+        {
+            var values = flatMatrix.getArray();
+            var sums = float32Vector.getArray();
+            var sumOffset = float32Vector.getOffset();
+
+            Arrays.fill(sums, sumOffset + from, sumOffset + to, 0f);
+
+            for (var i = 0; i < vector.size(); i++)
+            {
+                var value = vector.get(i);
+                var offset = flatMatrix.rowOffset(i);
+
+                for (var col = from; col < to; col++)
+                {
+                    sums[sumOffset + col] += value * values[offset + col];
+                }
+            }
+        }
+        else if (matrix instanceof QuantizedMatrix quantizedMatrix)
+        {
+            quantizedMatrix.mulVector(vector, result, from, to);
+        }
+        else
+        {
+            var sums = new float[to - from];
+
+            for (var i = 0; i < vector.size(); i++)
+            {
+                var value = vector.get(i);
+
+                for (var col = from; col < to; col++)
+                {
+                    sums[col - from] += value * matrix.getValue(i, col);
+                }
+            }
+
+            for (var col = from; col < to; col++)
+            {
+                result.set(col, sums[col - from]);
+            }
+        }
+    }
+
+    @Override
+    public Vector mulVectorByTransposedMatrix(Vector vector, Matrix matrix)
+    {
+        return mulVectorByTransposedMatrix(vector, matrix, emptyVector(vector.getFloatType(), matrix.getRowCount()));
+    }
+
+    @Override
+    public Vector mulVectorByTransposedMatrix(Vector vector, Matrix matrix, Vector result)
+    {
+        if (matrix instanceof TransposedMatrix transposedMatrix)
+        {
+            return mulVectorByMatrix(vector, transposedMatrix.getTransposed(), result);
+        }
+
+        if (vector.size() != matrix.getColCount())
+        {
+            throw new IdentifiedException("Vector and matrix shape is incompatible at multiplication (transposed). " +
+                    "Vector size: " + vector.size() + ", matrix shape: " + matrix.getRowCount() + ", " + matrix.getColCount());
+        }
+
+        if (matrix instanceof StackedMatrix stackedMatrix && result instanceof Float32Vector)
+        {
+            // Every part is multiplied separately, writing its own segment of the result
+            for (var i = 0; i < stackedMatrix.getPartCount(); i++)
+            {
+                var part = stackedMatrix.getPart(i);
+                var partResult = sliceVector(result, stackedMatrix.getFirstRow(i), part.getRowCount());
+
+                mulVectorByTransposedMatrix(vector, part, partResult);
+            }
+
+            return result;
+        }
+
+        // Every row gives a separate result value, so the rows are split into blocks
+        forEachBlock(matrix.getRowCount(), minBlockSize(matrix.getColCount()),
+                (from, to) -> mulVectorByTransposedMatrixBlock(vector, matrix, result, from, to));
+
+        return result;
+    }
+
+    private void mulVectorByTransposedMatrixBlock(Vector vector, Matrix matrix, Vector result, int from, int to)
+    {
+        if (vector instanceof Float32Vector float32Vector && matrix instanceof Float32FlatMatrix flatMatrix)
+        {
+            var values = float32Vector.getArray();
+            var offset = float32Vector.getOffset();
+            var matrixValues = flatMatrix.getArray();
+            var size = vector.size();
+
+            for (var row = from; row < to; row++)
+            {
+                var matrixOffset = flatMatrix.rowOffset(row);
+                var sum = 0f;
+
+                for (var i = 0; i < size; i++)
+                {
+                    sum = sum + values[offset + i] * matrixValues[matrixOffset + i];
+                }
+
+                result.set(row, sum);
+            }
+        }
+        else if (matrix instanceof QuantizedMatrix quantizedMatrix)
+        {
+            quantizedMatrix.mulVectorByTransposed(vector, result, from, to);
+        }
+        else
+        {
+            for (var row = from; row < to; row++)
+            {
+                result.set(row, STANDARD_MATH.dotProduct(vector, matrix.row(row)));
+            }
+        }
+    }
+
+    @Override
+    public Vector gatedLinearUnit(Vector vector, Matrix gateWeight, Matrix upWeight, ActivationFunction activation,
+                                  Vector result)
+    {
+        if (vector.size() != gateWeight.getColCount() || vector.size() != upWeight.getColCount()
+                || gateWeight.getRowCount() != upWeight.getRowCount())
+        {
+            return STANDARD_MATH.gatedLinearUnit(vector, gateWeight, upWeight, activation, result);
+        }
+
+        // Every row gives a separate result value (using a row of both matrices), so the rows are split into blocks
+        forEachBlock(gateWeight.getRowCount(), minBlockSize(2L * vector.size()), (from, to) ->
+                STANDARD_MATH.gatedLinearUnit(vector, gateWeight, upWeight, activation, result, from, to));
+
+        return result;
+    }
+
+    @Override
+    public Matrix multiHeadAttention(Matrix queries, Matrix[] keys, Matrix[] values, float scale,
+                                     float[] alibiSlopes, float softCap, Matrix result)
+    {
+        var kvHeadCount = keys.length;
+        var tokenCount = keys[0].getRowCount();
+        var threads = getThreadCount();
+
+        if (threads < 2 || tokenCount < getMinParallelAttentionSize())
+        {
+            return STANDARD_MATH.multiHeadAttention(queries, keys, values, scale, alibiSlopes, softCap, result);
+        }
+
+        var groupSize = queries.getRowCount() / kvHeadCount;
+
+        // The key-value groups are independent, so they are processed parallel.
+        // If there are fewer groups than threads (MQA, GQA with a few groups), the positions are split into chunks too,
+        // and the partial results of the chunks are merged by group (log-sum-exp, see AttentionState)
+        var chunkCount = kvHeadCount >= threads ? 1 : attentionChunkCount(kvHeadCount, tokenCount, threads);
+        var states = new AttentionState[kvHeadCount * chunkCount];
+
+        forEachBlock(states.length, 1, (from, to) -> collectAttentionChunks(queries, keys, values, scale,
+                alibiSlopes, softCap, groupSize, chunkCount, states, from, to));
+
+        for (var kvHead = 0; kvHead < kvHeadCount; kvHead++)
+        {
+            var state = states[kvHead * chunkCount];
+
+            for (var chunk = 1; chunk < chunkCount; chunk++)
+            {
+                state.merge(states[kvHead * chunkCount + chunk]);
+            }
+
+            state.writeResult(result, kvHead * groupSize);
+        }
+
+        return result;
+    }
+
+    /**
+     * Number of position chunks per key-value group, to have at least as many chunks as threads
+     * (but a chunk isn't smaller than MIN_ATTENTION_CHUNK_SIZE)
+     */
+    private static int attentionChunkCount(int kvHeadCount, int tokenCount, int threads)
+    {
+        var chunkCount = (threads + kvHeadCount - 1) / kvHeadCount;
+
+        return Math.max(1, Math.min(chunkCount, tokenCount / MIN_ATTENTION_CHUNK_SIZE));
+    }
+
+    /**
+     * Collects the attention of the chunks (key-value group and range of positions) between [from] and [to],
+     * every chunk into its own state (so the threads don't share any buffer)
+     */
+    private void collectAttentionChunks(Matrix queries, Matrix[] keys, Matrix[] values, float scale,
+                                        float[] alibiSlopes, float softCap, int groupSize, int chunkCount,
+                                        AttentionState[] states, int from, int to)
+    {
+        for (var i = from; i < to; i++)
+        {
+            var kvHead = i / chunkCount;
+            var chunk = i % chunkCount;
+            var tokenCount = keys[kvHead].getRowCount();
+
+            var state = new AttentionState(groupSize, values[kvHead].getColCount());
+            STANDARD_MATH.collectAttention(queries, keys[kvHead], values[kvHead], scale, alibiSlopes, softCap,
+                    kvHead * groupSize, tokenCount * chunk / chunkCount, tokenCount * (chunk + 1) / chunkCount, state);
+
+            states[i] = state;
+        }
+    }
+
+    @Override
+    public List<IndexedValue> mulVectorByTransposedMatrixTopK(Vector vector, Matrix matrix, int count)
+    {
+        if (matrix instanceof TransposedMatrix || vector.size() != matrix.getColCount())
+        {
+            return STANDARD_MATH.mulVectorByTransposedMatrixTopK(vector, matrix, count);
+        }
+
+        var rows = matrix.getRowCount();
+        var topK = new TopK(Math.min(count, rows));
+
+        // Every block collects its own top K values, which are merged at the end of the block
+        forEachBlock(rows, minBlockSize(vector.size()), (from, to) ->
+        {
+            var blockTopK = new TopK(Math.min(count, to - from));
+            STANDARD_MATH.mulVectorByTransposedMatrixTopK(vector, matrix, blockTopK, from, to);
+
+            synchronized (topK)
+            {
+                topK.merge(blockTopK);
+            }
+        });
+
+        return topK.toList();
+    }
+
+    @Override
+    public Matrix mulMatrixByMatrix(Matrix matrix1, Matrix matrix2)
+    {
+        var result = emptyMatrix(matrix1.getInternalFloatType(), matrix1.getRowCount(), matrix2.getColCount());
+
+        return mulMatrixByMatrix(matrix1, matrix2, result);
+    }
+
+    @Override
+    public Matrix mulMatrixByMatrix(Matrix matrix1, Matrix matrix2, Matrix result)
+    {
+        if (matrix2 instanceof TransposedMatrix transposedMatrix)
+        {
+            return mulMatrixByTransposedMatrix(matrix1, transposedMatrix.getTransposed(), result);
+        }
+
+        var rows = matrix1.getRowCount();
+
+        if (rows < getThreadCount())
+        {
+            // Too few rows to keep all threads busy, so the threads work on the same row together
+            for (var i = 0; i < rows; i++)
+            {
+                mulVectorByMatrix(matrix1.row(i), matrix2, result.row(i));
+            }
+        }
+        else
+        {
+            var work = (long) matrix2.getRowCount() * matrix2.getColCount();
+
+            forEachBlock(rows, minBlockSize(work), (from, to) ->
+            {
+                for (var i = from; i < to; i++)
+                {
+                    STANDARD_MATH.mulVectorByMatrix(matrix1.row(i), matrix2, result.row(i));
+                }
+            });
+        }
+
+        return result;
+    }
+
+    @Override
+    public Matrix mulMatrixByTransposedMatrix(Matrix matrix1, Matrix matrix2)
+    {
+        var result = emptyMatrix(matrix1.getInternalFloatType(), matrix1.getRowCount(), matrix2.getRowCount());
+
+        return mulMatrixByTransposedMatrix(matrix1, matrix2, result);
+    }
+
+    @Override
+    public Matrix mulMatrixByTransposedMatrix(Matrix matrix1, Matrix matrix2, Matrix result)
+    {
+        if (matrix2 instanceof TransposedMatrix transposedMatrix)
+        {
+            return mulMatrixByMatrix(matrix1, transposedMatrix.getTransposed(), result);
+        }
+
+        var rows = matrix1.getRowCount();
+
+        if (rows < getThreadCount())
+        {
+            // Too few rows to keep all threads busy, so the threads work on the same row together
+            for (var i = 0; i < rows; i++)
+            {
+                mulVectorByTransposedMatrix(matrix1.row(i), matrix2, result.row(i));
+            }
+        }
+        else
+        {
+            var work = (long) matrix2.getRowCount() * matrix2.getColCount();
+
+            forEachBlock(rows, minBlockSize(work), (from, to) ->
+            {
+                for (var i = from; i < to; i++)
+                {
+                    STANDARD_MATH.mulVectorByTransposedMatrix(matrix1.row(i), matrix2, result.row(i));
+                }
+            });
+        }
+
+        return result;
+    }
+
+    @Override
+    public Matrix splitVector(Vector vector, int rows)
+    {
+        return STANDARD_MATH.splitVector(vector, rows);
+    }
+
+    @Override
+    public Vector partitionVector(Vector vector, int parts, int index)
+    {
+        return STANDARD_MATH.partitionVector(vector, parts, index);
+    }
+
+    @Override
+    public Matrix partitionMatrix(Matrix matrix, int parts, int index)
+    {
+        return STANDARD_MATH.partitionMatrix(matrix, parts, index);
+    }
+
+    @Override
+    public Vector flattenMatrix(Matrix matrix)
+    {
+        return STANDARD_MATH.flattenMatrix(matrix);
+    }
+
+    @Override
+    public Vector flattenMatrix(Matrix matrix, Vector result)
+    {
+        return STANDARD_MATH.flattenMatrix(matrix, result);
+    }
+
+    @Override
+    public Matrix transposeMatrix(Matrix matrix)
+    {
+        return STANDARD_MATH.transposeMatrix(matrix);
+    }
+
+    @Override
+    public float average(Vector vector)
+    {
+        return STANDARD_MATH.average(vector);
+    }
+
+    /**
+     * Minimum number of items (rows or columns) in a block, if the processing of an item needs the given work
+     */
+    private static int minBlockSize(long workPerItem)
+    {
+        return (int) Math.max(1, MIN_WORK_PER_BLOCK / Math.max(1, workPerItem));
+    }
+}
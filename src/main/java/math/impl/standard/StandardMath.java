@@ -1,10 +1,15 @@
 package math.impl.standard;
 
 import app.IdentifiedException;
+import math.dataType.matrix.Float32FlatMatrix;
 import math.dataType.matrix.Matrix;
-import math.dataType.matrix.VectorArrayMatrix;
+import math.dataType.matrix.StackedMatrix;
+import math.dataType.matrix.TransposedMatrix;
+import math.dataType.vector.Float32Vector;
 import math.dataType.vector.Vector;
 import math.AbstractMathUtility;
+import math.ActivationFunction;
+import quantization.QuantizedMatrix;
 
 import java.util.Arrays;
 
@@ -22,21 +27,25 @@ public class StandardMath extends AbstractMathUtility
     @Override
     public Vector addVectors(Vector vector1, Vector vector2)
     {
-        var ret = emptyVector(vector1.getFloatType(), vector1.size());
+        return addVectors(vector1, vector2, emptyVector(vector1.getFloatType(), vector1.size()));
+    }
 
+    @Override
+    public Vector addVectors(Vector vector1, Vector vector2, Vector result)
+    {
         for (var i = 0; i < vector1.size(); i++)
         {
-            ret.set(i, vector1.get(i) + vector2.get(i));
+            result.set(i, vector1.get(i) + vector2.get(i));
         }
 
-        return ret;
+        return result;
     }
 
     @Override
     public Matrix addMatrices(Matrix matrix1, Matrix matrix2)
     {
         var rows = matrix1.getRowCount();
-        var ret = new VectorArrayMatrix(matrix1.getInternalFloatType(), rows, matrix1.getColCount());
+        var ret = emptyMatrix(matrix1.getInternalFloatType(), rows, matrix1.getColCount());
 
         for (var i = 0; i < rows; i++)
         {
@@ -50,7 +59,7 @@ public class StandardMath extends AbstractMathUtility
     public Matrix addBroadcastVector(Matrix matrix, Vector vector)
     {
         var rows = matrix.getRowCount();
-        var ret = new VectorArrayMatrix(matrix.getInternalFloatType(), rows, matrix.getColCount());
+        var ret = emptyMatrix(matrix.getInternalFloatType(), rows, matrix.getColCount());
 
         for (var i = 0; i < rows; i++)
         {
@@ -63,6 +72,11 @@ public class StandardMath extends AbstractMathUtility
     @Override
     public float dotProduct(Vector vector1, Vector vector2)
     {
+        if (vector1 instanceof Float32Vector first && vector2 instanceof Float32Vector second)
+        {
+            return dotProduct(first.getArray(), first.getOffset(), second.getArray(), second.getOffset(), first.size());
+        }
+
         var sum = 0f;
 
         for (var i = 0; i < vector1.size(); i++)
@@ -76,8 +90,12 @@ public class StandardMath extends AbstractMathUtility
     @Override
     public Vector mulVectorByScalar(Vector vector, float scalar)
     {
-        var result = emptyVector(vector.getFloatType(), vector.size());
+        return mulVectorByScalar(vector, scalar, emptyVector(vector.getFloatType(), vector.size()));
+    }
 
+    @Override
+    public Vector mulVectorByScalar(Vector vector, float scalar, Vector result)
+    {
         for (var i = 0; i < vector.size(); i++)
         {
             result.set(i, vector.get(i) * scalar);
@@ -90,7 +108,7 @@ public class StandardMath extends AbstractMathUtility
     public Matrix mulMatrixByScalar(Matrix matrix, float scalar)
     {
         var rows = matrix.getRowCount();
-        var ret = new VectorArrayMatrix(matrix.getInternalFloatType(), rows, matrix.getColCount());
+        var ret = emptyMatrix(matrix.getInternalFloatType(), rows, matrix.getColCount());
 
         for (var i = 0; i < rows; i++)
         {
@@ -103,32 +121,94 @@ public class StandardMath extends AbstractMathUtility
     @Override
     public Vector mulVectorByMatrix(Vector vector, Matrix matrix)
     {
+        return mulVectorByMatrix(vector, matrix, emptyVector(vector.getFloatType(), matrix.getColCount()));
+    }
+
+    @Override
+    public Vector mulVectorByMatrix(Vector vector, Matrix matrix, Vector result)
+    {
+        if (matrix instanceof TransposedMatrix transposedMatrix)
+        {
+            // The matrix is stored in transposed orientation, so the dot products can be calculated on its rows
+            return mulVectorByTransposedMatrix(vector, transposedMatrix.getTransposed(), result);
+        }
+
         if (vector.size() != matrix.getRowCount())
         {
             throw new IdentifiedException("Vector and matrix shape is incompatible at multiplication. " +
                     "Vector size: " + vector.size() + ", matrix shape: " + matrix.getRowCount() + ", " + matrix.getRowCount());
         }
 
-        var ret = emptyVector(vector.getFloatType(), matrix.getColCount());
+        var cols = matrix.getColCount();
 
-        for (var col = 0; col < matrix.getColCount(); col++)
+        if (matrix instanceof QuantizedMatrix quantizedMatrix)
         {
-            var sum = 0f;
+            // Calculated directly on the quantized values (without de-quantizing the rows)
+            quantizedMatrix.mulVector(vector, result, 0, cols);
+            return result;
+        }
+
+        // The sums are collected directly in the result array (if it is a float array)
+        var sums = result instanceof Float32Vector float32Vector ? float32Vector.getArray() : new float[cols];
+        var sumOffset = result instanceof Float32Vector float32Vector ? float32Vector.getOffset() : 0;
+
+        Arrays.fill(sums, sumOffset, sumOffset + cols, 0f);
+
+        // Processing the matrix row by row, so the values are read in the same order as they are stored
+        if (matrix instanceof Float32FlatMatrix flatMatrix)
+        {
+            var values = flatMatrix.getArray();
+
+            for (var i = 0; i < vector.size(); i++)
+            {
+                var value = vector.get(i);
+                var offset = flatMatrix.rowOffset(i);
 
+                for (var col = 0; col < cols; col++)
+                {
+                    sums[sumOffset + col] += value * values[offset + col];
+                }
+            }
+        }
+        else
+        {
             for (var i = 0; i < vector.size(); i++)
             {
-                sum = sum + vector.get(i) * matrix.getValue(i, col);
+                var value = vector.get(i);
+                var row = matrix.row(i);
+
+                for (var col = 0; col < cols; col++)
+                {
+                    sums[sumOffset + col] += value * row.get(col);
+                }
             }
+        }
 
-            ret.set(col, sum);
+        if ( !(result instanceof Float32Vector))
+        {
+            for (var col = 0; col < cols; col++)
+            {
+                result.set(col, sums[col]);
+            }
         }
 
-        return ret;
+        return result;
     }
 
     @Override
     public Vector mulVectorByTransposedMatrix(Vector vector, Matrix matrix)
     {
+        return mulVectorByTransposedMatrix(vector, matrix, emptyVector(vector.getFloatType(), matrix.getRowCount()));
+    }
+
+    @Override
+    public Vector mulVectorByTransposedMatrix(Vector vector, Matrix matrix, Vector result)
+    {
+        if (matrix instanceof TransposedMatrix transposedMatrix)
+        {
+            return mulVectorByMatrix(vector, transposedMatrix.getTransposed(), result);
+        }
+
         if (vector.size() != matrix.getColCount())
         {
             var stackTrace = Thread.currentThread().getStackTrace();
@@ -137,14 +217,89 @@ public class StandardMath extends AbstractMathUtility
                     " Stack trace: " + Arrays.toString(stackTrace));
         }
 
-        var ret = emptyVector(vector.getFloatType(), matrix.getRowCount());
+        if (matrix instanceof StackedMatrix stackedMatrix && result instanceof Float32Vector)
+        {
+            // Every part is multiplied separately, writing its own segment of the result
+            for (var i = 0; i < stackedMatrix.getPartCount(); i++)
+            {
+                var part = stackedMatrix.getPart(i);
+                var partResult = sliceVector(result, stackedMatrix.getFirstRow(i), part.getRowCount());
+
+                mulVectorByTransposedMatrix(vector, part, partResult);
+            }
+        }
+        else if (matrix instanceof QuantizedMatrix quantizedMatrix)
+        {
+            // Calculated directly on the quantized values (without de-quantizing the rows)
+            quantizedMatrix.mulVectorByTransposed(vector, result, 0, matrix.getRowCount());
+        }
+        else if (vector instanceof Float32Vector float32Vector && matrix instanceof Float32FlatMatrix flatMatrix)
+        {
+            // Both are stored in float arrays, so the dot products are calculated directly on the arrays
+            for (var row = 0; row < matrix.getRowCount(); row++)
+            {
+                result.set(row, dotProduct(float32Vector.getArray(), float32Vector.getOffset(),
+                        flatMatrix.getArray(), flatMatrix.rowOffset(row), vector.size()));
+            }
+        }
+        else
+        {
+            for (var col = 0; col < matrix.getRowCount(); col++)
+            {
+                result.set(col, dotProduct(vector, matrix.row(col)));
+            }
+        }
+
+        return result;
+    }
+
+    private static float dotProduct(float[] values1, int offset1, float[] values2, int offset2, int size)
+    {
+        var sum = 0f;
 
-        for (var col = 0; col < matrix.getRowCount(); col++)
+        for (var i = 0; i < size; i++)
         {
-            ret.set(col, dotProduct(vector, matrix.row(col)));
+            sum = sum + values1[offset1 + i] * values2[offset2 + i];
         }
 
-        return ret;
+        return sum;
+    }
+
+    @Override
+    public void gatedLinearUnit(Vector vector, Matrix gateWeight, Matrix upWeight, ActivationFunction activation,
+                                Vector result, int from, int to)
+    {
+        if (vector instanceof Float32Vector float32Vector
+                && gateWeight instanceof Float32FlatMatrix gateMatrix && upWeight instanceof Float32FlatMatrix upMatrix)
+        {
+            var values = float32Vector.getArray();
+            var offset = float32Vector.getOffset();
+            var gateValues = gateMatrix.getArray();
+            var upValues = upMatrix.getArray();
+            var size = vector.size();
+
+            for (var row = from; row < to; row++)
+            {
+                var gateOffset = gateMatrix.rowOffset(row);
+                var upOffset = upMatrix.rowOffset(row);
+
+                // The gate and up sums are collected in the same loop, so the input is read only once
+                var gate = 0f;
+                var up = 0f;
+                for (var i = 0; i < size; i++)
+                {
+                    var value = values[offset + i];
+                    gate = gate + value * gateValues[gateOffset + i];
+                    up = up + value * upValues[upOffset + i];
+                }
+
+                result.set(row, activation.apply(gate) * up);
+            }
+        }
+        else
+        {
+            super.gatedLinearUnit(vector, gateWeight, upWeight, activation, result, from, to);
+        }
     }
 
     @Override
@@ -152,9 +307,20 @@ public class StandardMath extends AbstractMathUtility
     {
         var result = emptyMatrix(matrix1.getInternalFloatType(), matrix1.getRowCount(), matrix2.getColCount());
 
+        return mulMatrixByMatrix(matrix1, matrix2, result);
+    }
+
+    @Override
+    public Matrix mulMatrixByMatrix(Matrix matrix1, Matrix matrix2, Matrix result)
+    {
+        if (matrix2 instanceof TransposedMatrix transposedMatrix)
+        {
+            return mulMatrixByTransposedMatrix(matrix1, transposedMatrix.getTransposed(), result);
+        }
+
         for (var i = 0; i < matrix1.getRowCount(); i++)
         {
-            result.setRow(i, mulVectorByMatrix(matrix1.row(i), matrix2));
+            mulVectorByMatrix(matrix1.row(i), matrix2, result.row(i));
         }
 
         return result;
@@ -163,11 +329,22 @@ public class StandardMath extends AbstractMathUtility
     @Override
     public Matrix mulMatrixByTransposedMatrix(Matrix matrix1, Matrix matrix2)
     {
-        var result = emptyMatrix(matrix1.getInternalFloatType(), matrix1.getRowCount(), matrix2.getColCount());
+        var result = emptyMatrix(matrix1.getInternalFloatType(), matrix1.getRowCount(), matrix2.getRowCount());
+
+        return mulMatrixByTransposedMatrix(matrix1, matrix2, result);
+    }
+
+    @Override
+    public Matrix mulMatrixByTransposedMatrix(Matrix matrix1, Matrix matrix2, Matrix result)
+    {
+        if (matrix2 instanceof TransposedMatrix transposedMatrix)
+        {
+            return mulMatrixByMatrix(matrix1, transposedMatrix.getTransposed(), result);
+        }
 
         for (var i = 0; i < matrix1.getRowCount(); i++)
         {
-            result.setRow(i, mulVectorByTransposedMatrix(matrix1.row(i), matrix2));
+            mulVectorByTransposedMatrix(matrix1.row(i), matrix2, result.row(i));
         }
 
         return result;
@@ -216,7 +393,7 @@ public class StandardMath extends AbstractMathUtility
     public Matrix partitionMatrix(Matrix matrix, int parts, int index)
     {
         var width = matrix.getColCount() / parts;
-        var result = new VectorArrayMatrix(matrix.getInternalFloatType(), matrix.getRowCount(), width);
+        var result = emptyMatrix(matrix.getInternalFloatType(), matrix.getRowCount(), width);
 
         for (var row = 0; row < matrix.getRowCount(); row++)
         {
@@ -232,12 +409,17 @@ public class StandardMath extends AbstractMathUtility
     @Override
     public Vector flattenMatrix(Matrix matrix)
     {
-        var ret = emptyVector(matrix.getInternalFloatType(), matrix.getRowCount() * matrix.getColCount());
+        return flattenMatrix(matrix, emptyVector(matrix.getInternalFloatType(), matrix.getRowCount() * matrix.getColCount()));
+    }
 
+    @Override
+    public Vector flattenMatrix(Matrix matrix, Vector ret)
+    {
         var i = 0;
 
-        for (var row : matrix.getVectorArray())
+        for (var rowId = 0; rowId < matrix.getRowCount(); rowId++)
         {
+            var row = matrix.row(rowId);
             for (var j = 0; j < row.size(); j++)
             {
                 var value = row.get(j);
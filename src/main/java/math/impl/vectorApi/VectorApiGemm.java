@@ -0,0 +1,261 @@
+package math.impl.vectorApi;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+import math.dataType.matrix.Float32FlatMatrix;
+import math.dataType.matrix.Matrix;
+
+import java.util.Arrays;
+
+import static math.ParallelUtil.forEachBlock;
+
+/**
+ * Matrix by matrix multiplication (GEMM) using cache blocking and register tiling
+ * (The left matrix is the input (for example the hidden states of the tokens), the right matrix is usually a weight.)
+
+ * The right matrix is packed into panels of NR columns: the NR values of the same k index are next to each other,
+ * so the micro-kernel reads the panel sequentially. The micro-kernel multiplies MR rows of the left matrix
+ * by a panel, holding the MR x NR results in vector registers during the whole k loop.
+ * The k dimension is split into KC blocks, the columns into NC blocks, so a packed block fits into the cache.
+ * The tiles (MR rows x NR columns) are processed parallel on the shared thread pool.
+ */
+class VectorApiGemm
+{
+    private static final VectorSpecies<Float> SPECIES = VectorApiMath.PROCESSOR_BLOCK;
+    private static final int LANES = SPECIES.length();
+
+    // Size of a tile computed by the micro-kernel (MR rows and NR columns, which is two vector registers wide)
+    private static final int MR = 4;
+    private static final int NR = 2 * LANES;
+
+    // Cache blocking sizes (a packed block is KC * NC floats)
+    private static final int KC = 256;
+    private static final int NC = Math.max(NR, 512 / NR * NR);
+
+    // Minimum number of multiply-add operations in a parallel block
+    private static final int MIN_WORK_PER_BLOCK = 1 << 14;
+
+    /**
+     * Calculates result = left * right (or left * transposed right, if isTransposed)
+     * The left and result matrices are float matrices stored in flat arrays, the right can be any matrix.
+     */
+    static void multiply(Float32FlatMatrix left, Matrix right, boolean isTransposed, Float32FlatMatrix result)
+    {
+        var rows = left.getRowCount();
+        var depth = left.getColCount();
+        var cols = isTransposed ? right.getRowCount() : right.getColCount();
+
+        var resultValues = result.getArray();
+        for (var i = 0; i < rows; i++)
+        {
+            var offset = result.rowOffset(i);
+            Arrays.fill(resultValues, offset, offset + cols, 0f);
+        }
+
+        var packed = new float[KC * NC];
+        var rowBlocks = (rows + MR - 1) / MR;
+
+        for (var colStart = 0; colStart < cols; colStart += NC)
+        {
+            var colCount = Math.min(NC, cols - colStart);
+            var panels = (colCount + NR - 1) / NR;
+
+            for (var kStart = 0; kStart < depth; kStart += KC)
+            {
+                var kCount = Math.min(KC, depth - kStart);
+
+                var firstCol = colStart;
+                var firstK = kStart;
+
+                // Packing the block of the right matrix (panel by panel, parallel)
+                forEachBlock(panels, minBlockSize((long) kCount * NR),
+                        (from, to) -> pack(right, isTransposed, firstK, kCount, firstCol, colCount, packed, from, to));
+
+                // Processing the tiles (a block of tiles shares the same rows of the left matrix)
+                forEachBlock(rowBlocks * panels, minBlockSize((long) MR * NR * kCount), (from, to) ->
+                {
+                    for (var tile = from; tile < to; tile++)
+                    {
+                        var rowBlock = tile / panels;
+                        var panel = tile % panels;
+
+                        computeTile(left, packed, result, rowBlock * MR, firstK, kCount,
+                                firstCol + panel * NR, Math.min(NR, colCount - panel * NR), panel);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Copies the NR-wide panels of the right matrix block into the packed array (padded by zeroes at the last panel)
+     */
+    private static void pack(Matrix right, boolean isTransposed, int kStart, int kCount, int colStart, int colCount,
+                             float[] packed, int fromPanel, int toPanel)
+    {
+        for (var panel = fromPanel; panel < toPanel; panel++)
+        {
+            var panelOffset = panel * kCount * NR;
+            var panelCol = colStart + panel * NR;
+            var width = Math.min(NR, colStart + colCount - panelCol);
+
+            if (width < NR)
+            {
+                Arrays.fill(packed, panelOffset, panelOffset + kCount * NR, 0f);
+            }
+
+            if (right instanceof Float32FlatMatrix flatMatrix && !isTransposed)
+            {
+                // The values of the same k are next to each other in a row
+                var values = flatMatrix.getArray();
+                for (var k = 0; k < kCount; k++)
+                {
+                    System.arraycopy(values, flatMatrix.rowOffset(kStart + k) + panelCol,
+                            packed, panelOffset + k * NR, width);
+                }
+            }
+            else if (right instanceof Float32FlatMatrix flatMatrix)
+            {
+                // Transposed: a row of the stored matrix is a column of the panel
+                var values = flatMatrix.getArray();
+                for (var j = 0; j < width; j++)
+                {
+                    var rowOffset = flatMatrix.rowOffset(panelCol + j) + kStart;
+                    for (var k = 0; k < kCount; k++)
+                    {
+                        packed[panelOffset + k * NR + j] = values[rowOffset + k];
+                    }
+                }
+            }
+            else
+            {
+                for (var k = 0; k < kCount; k++)
+                {
+                    for (var j = 0; j < width; j++)
+                    {
+                        packed[panelOffset + k * NR + j] = isTransposed
+                                ? right.getValue(panelCol + j, kStart + k)
+                                : right.getValue(kStart + k, panelCol + j);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void computeTile(Float32FlatMatrix left, float[] packed, Float32FlatMatrix result,
+                                    int rowStart, int kStart, int kCount, int col, int width, int panel)
+    {
+        var leftValues = left.getArray();
+        var resultValues = result.getArray();
+        var panelOffset = panel * kCount * NR;
+
+        var rowCount = Math.min(MR, left.getRowCount() - rowStart);
+
+        if (rowCount == MR)
+        {
+            kernel(leftValues, left.rowOffset(rowStart) + kStart, left.getColCount(), packed, panelOffset, kCount,
+                    resultValues, result.rowOffset(rowStart) + col, result.getColCount(), width);
+        }
+        else
+        {
+            for (var row = rowStart; row < rowStart + rowCount; row++)
+            {
+                kernelSingleRow(leftValues, left.rowOffset(row) + kStart, packed, panelOffset, kCount,
+                        resultValues, result.rowOffset(row) + col, width);
+            }
+        }
+    }
+
+    /**
+     * Micro-kernel: adds the product of MR (4) rows and a packed panel to the result (MR x NR values)
+     */
+    private static void kernel(float[] left, int leftOffset, int leftStride, float[] packed, int panelOffset,
+                               int kCount, float[] result, int resultOffset, int resultStride, int width)
+    {
+        var sum00 = FloatVector.zero(SPECIES);
+        var sum01 = FloatVector.zero(SPECIES);
+        var sum10 = FloatVector.zero(SPECIES);
+        var sum11 = FloatVector.zero(SPECIES);
+        var sum20 = FloatVector.zero(SPECIES);
+        var sum21 = FloatVector.zero(SPECIES);
+        var sum30 = FloatVector.zero(SPECIES);
+        var sum31 = FloatVector.zero(SPECIES);
+
+        var offset0 = leftOffset;
+        var offset1 = leftOffset + leftStride;
+        var offset2 = leftOffset + 2 * leftStride;
+        var offset3 = leftOffset + 3 * leftStride;
+
+        for (var k = 0; k < kCount; k++)
+        {
+            var b0 = FloatVector.fromArray(SPECIES, packed, panelOffset + k * NR);
+            var b1 = FloatVector.fromArray(SPECIES, packed, panelOffset + k * NR + LANES);
+
+            var a0 = FloatVector.broadcast(SPECIES, left[offset0 + k]);
+            sum00 = b0.fma(a0, sum00);
+            sum01 = b1.fma(a0, sum01);
+
+            var a1 = FloatVector.broadcast(SPECIES, left[offset1 + k]);
+            sum10 = b0.fma(a1, sum10);
+            sum11 = b1.fma(a1, sum11);
+
+            var a2 = FloatVector.broadcast(SPECIES, left[offset2 + k]);
+            sum20 = b0.fma(a2, sum20);
+            sum21 = b1.fma(a2, sum21);
+
+            var a3 = FloatVector.broadcast(SPECIES, left[offset3 + k]);
+            sum30 = b0.fma(a3, sum30);
+            sum31 = b1.fma(a3, sum31);
+        }
+
+        store(sum00, sum01, result, resultOffset, width);
+        store(sum10, sum11, result, resultOffset + resultStride, width);
+        store(sum20, sum21, result, resultOffset + 2 * resultStride, width);
+        store(sum30, sum31, result, resultOffset + 3 * resultStride, width);
+    }
+
+    /**
+     * Micro-kernel for the remaining rows (if the number of rows isn't divisible by MR)
+     */
+    private static void kernelSingleRow(float[] left, int leftOffset, float[] packed, int panelOffset, int kCount,
+                                        float[] result, int resultOffset, int width)
+    {
+        var sum0 = FloatVector.zero(SPECIES);
+        var sum1 = FloatVector.zero(SPECIES);
+
+        for (var k = 0; k < kCount; k++)
+        {
+            var a = FloatVector.broadcast(SPECIES, left[leftOffset + k]);
+            sum0 = FloatVector.fromArray(SPECIES, packed, panelOffset + k * NR).fma(a, sum0);
+            sum1 = FloatVector.fromArray(SPECIES, packed, panelOffset + k * NR + LANES).fma(a, sum1);
+        }
+
+        store(sum0, sum1, result, resultOffset, width);
+    }
+
+    /**
+     * Adds the two registers (NR values) to the result (only the first "width" values at the last panel)
+     */
+    private static void store(FloatVector sum0, FloatVector sum1, float[] result, int offset, int width)
+    {
+        if (width == NR)
+        {
+            sum0.add(FloatVector.fromArray(SPECIES, result, offset)).intoArray(result, offset);
+            sum1.add(FloatVector.fromArray(SPECIES, result, offset + LANES)).intoArray(result, offset + LANES);
+        }
+        else
+        {
+            var mask0 = SPECIES.indexInRange(0, width);
+            var mask1 = SPECIES.indexInRange(LANES, width);
+
+            sum0.add(FloatVector.fromArray(SPECIES, result, offset, mask0)).intoArray(result, offset, mask0);
+            sum1.add(FloatVector.fromArray(SPECIES, result, offset + LANES, mask1))
+                    .intoArray(result, offset + LANES, mask1);
+        }
+    }
+
+    private static int minBlockSize(long workPerItem)
+    {
+        return (int) Math.max(1, MIN_WORK_PER_BLOCK / Math.max(1, workPerItem));
+    }
+}
@@ -1,19 +1,64 @@
 package math.impl.vectorApi;
 
 import math.AbstractMathUtility;
+import math.ActivationFunction;
+import math.FastMath;
+import math.NeuralNetUtil;
+import math.dataType.BrainFloat16;
+import math.dataType.Float16;
+import math.dataType.matrix.BrainFloat16FlatMatrix;
+import math.dataType.matrix.Float16FlatMatrix;
+import math.dataType.matrix.Float32FlatMatrix;
 import math.dataType.matrix.Matrix;
+import math.dataType.matrix.StackedMatrix;
+import math.dataType.matrix.TransposedMatrix;
+import math.dataType.vector.BrainFloat16Vector;
+import math.dataType.vector.Float16Vector;
+import math.dataType.vector.Float32Vector;
 import math.dataType.vector.Vector;
+import jdk.incubator.vector.ByteVector;
 import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
 import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
 import jdk.incubator.vector.VectorSpecies;
 import math.impl.standard.StandardMath;
+import quantization.block.BlockQuantizedMatrix;
+import quantization.block.Q4Matrix;
+import quantization.block.Q8Matrix;
+import quantization.llmInt8.LlmInt8Matrix;
+
+import java.util.Arrays;
+
+import static math.dataType.matrix.Matrix.emptyMatrix;
+import static math.dataType.vector.Vector.emptyVector;
+import static quantization.block.BlockQuantizedMatrix.BLOCK_SIZE;
 
 public class VectorApiMath extends AbstractMathUtility
 {
     static final VectorSpecies<Float> PROCESSOR_BLOCK = FloatVector.SPECIES_MAX;
 
+    // The 16-bit values are loaded into a half-sized register (to have the same number of lanes as the float block),
+    // and widened to int, then converted to float inside the registers
+    static final VectorSpecies<Short> SHORT_BLOCK =
+            VectorSpecies.of(short.class, VectorShape.forBitSize(PROCESSOR_BLOCK.vectorBitSize() / 2));
+    static final VectorSpecies<Integer> INT_BLOCK = VectorSpecies.of(int.class, PROCESSOR_BLOCK.vectorShape());
+
+    // The 8-bit values are loaded into a quarter-sized register (but at least 64 bits),
+    // and widened to float inside the registers (in one or more parts, depending on the number of lanes)
+    static final VectorSpecies<Byte> BYTE_BLOCK =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, PROCESSOR_BLOCK.vectorBitSize() / 4)));
+
+    // The block kernels process a block by whole byte registers (the 4-bit blocks are 16 bytes)
+    private static final boolean IS_BLOCK_ALIGNED = Q4Matrix.BYTES_PER_BLOCK % BYTE_BLOCK.length() == 0;
+
     private static final AbstractMathUtility STANDARD_MATH = new StandardMath();
 
+    // 1.5 * 2^23: adding it to a float (with smaller magnitude) rounds it to an integer (see exp())
+    private static final float ROUNDING_SHIFT = 12582912f;
+    private static final int ROUNDING_SHIFT_BITS = Float.floatToRawIntBits(ROUNDING_SHIFT);
+
     @Override
     public String getMathProviderName()
     {
@@ -23,17 +68,34 @@ public class VectorApiMath extends AbstractMathUtility
     @Override
     public Vector addVectors(Vector vector1, Vector vector2)
     {
-        var result = new float[vector1.size()];
+        return addVectors(vector1, vector2, emptyVector(vector1.getFloatType(), vector1.size()));
+    }
+
+    @Override
+    public Vector addVectors(Vector vector1, Vector vector2, Vector result)
+    {
+        if ( !(result instanceof Float32Vector float32Result))
+        {
+            return STANDARD_MATH.addVectors(vector1, vector2, result);
+        }
+
+        var size = vector1.size();
+        var values1 = arrayOf(vector1);
+        var offset1 = offsetOf(vector1);
+        var values2 = arrayOf(vector2);
+        var offset2 = offsetOf(vector2);
+        var resultValues = float32Result.getArray();
+        var resultOffset = float32Result.getOffset();
 
-        for (var i = 0; i < vector1.size(); i += PROCESSOR_BLOCK.length())
+        for (var i = 0; i < size; i += PROCESSOR_BLOCK.length())
         {
-            var mask = PROCESSOR_BLOCK.indexInRange(i, vector1.size());
-            var first = FloatVector.fromArray(PROCESSOR_BLOCK, vector1.getValues(), i, mask);
-            var second = FloatVector.fromArray(PROCESSOR_BLOCK, vector2.getValues(), i, mask);
-            first.add(second).intoArray(result, i, mask);
+            var mask = PROCESSOR_BLOCK.indexInRange(i, size);
+            var first = FloatVector.fromArray(PROCESSOR_BLOCK, values1, offset1 + i, mask);
+            var second = FloatVector.fromArray(PROCESSOR_BLOCK, values2, offset2 + i, mask);
+            first.add(second).intoArray(resultValues, resultOffset + i, mask);
         }
 
-        return Vector.of(vector1.getFloatType(), result);
+        return result;
     }
 
     @Override
@@ -50,9 +112,76 @@ public class VectorApiMath extends AbstractMathUtility
 
     @Override
     public float dotProduct(Vector vector1, Vector vector2)
+    {
+        // The 16-bit values are converted to float inside the registers, without creating a float array
+        var isBrainFloat = vector1 instanceof BrainFloat16Vector || vector2 instanceof BrainFloat16Vector;
+
+        if (vector1 instanceof Float32Vector float32Vector && is16Bit(vector2))
+        {
+            return dotProduct(float32Vector.getArray(), float32Vector.getOffset(),
+                    shortArrayOf(vector2), shortOffsetOf(vector2), vector1.size(), isBrainFloat);
+        }
+        else if (is16Bit(vector1) && vector2 instanceof Float32Vector float32Vector)
+        {
+            return dotProduct(float32Vector.getArray(), float32Vector.getOffset(),
+                    shortArrayOf(vector1), shortOffsetOf(vector1), vector1.size(), isBrainFloat);
+        }
+        else if (vector1 instanceof Float16Vector && vector2 instanceof Float16Vector
+                || vector1 instanceof BrainFloat16Vector && vector2 instanceof BrainFloat16Vector)
+        {
+            return dotProduct(shortArrayOf(vector1), shortOffsetOf(vector1),
+                    shortArrayOf(vector2), shortOffsetOf(vector2), vector1.size(), isBrainFloat);
+        }
+
+        // Using the backing arrays directly (the vectors can be views of a larger array)
+        return dotProduct(arrayOf(vector1), offsetOf(vector1), arrayOf(vector2), offsetOf(vector2), vector1.size());
+    }
+
+    /**
+     * Returns the values of a vector as a float array (the backing array for a Float 32 vector, see offsetOf())
+     */
+    private static float[] arrayOf(Vector vector)
+    {
+        return vector instanceof Float32Vector float32Vector ? float32Vector.getArray() : vector.getValues();
+    }
+
+    /**
+     * Returns the position of the first value within the array returned by arrayOf()
+     */
+    private static int offsetOf(Vector vector)
+    {
+        return vector instanceof Float32Vector float32Vector ? float32Vector.getOffset() : 0;
+    }
+
+    private static boolean is16Bit(Vector vector)
+    {
+        return vector instanceof Float16Vector || vector instanceof BrainFloat16Vector;
+    }
+
+    /**
+     * Returns the backing array of a 16-bit vector (see shortOffsetOf())
+     */
+    private static short[] shortArrayOf(Vector vector)
+    {
+        return vector instanceof Float16Vector float16Vector
+                ? float16Vector.getArray()
+                : ((BrainFloat16Vector) vector).getArray();
+    }
+
+    /**
+     * Returns the position of the first value within the backing array of a 16-bit vector
+     */
+    private static int shortOffsetOf(Vector vector)
+    {
+        return vector instanceof Float16Vector float16Vector
+                ? float16Vector.getOffset()
+                : ((BrainFloat16Vector) vector).getOffset();
+    }
+
+    private static float dotProduct(float[] values1, int offset1, float[] values2, int offset2, int size)
     {
         // Determine how many full loops can we do (vector size divided by the vector block size)
-        var fullLoops = PROCESSOR_BLOCK.loopBound(vector1.size());
+        var fullLoops = PROCESSOR_BLOCK.loopBound(size);
 
         // Processing the full loops using fma and reduceLanes
 
@@ -61,37 +190,318 @@ public class VectorApiMath extends AbstractMathUtility
         var i = 0;
         for (; i < fullLoops; i += PROCESSOR_BLOCK.length())
         {
-            var va = FloatVector.fromArray(PROCESSOR_BLOCK, vector1.getValues(), i);
-            var vb = FloatVector.fromArray(PROCESSOR_BLOCK, vector2.getValues(), i);
+            var va = FloatVector.fromArray(PROCESSOR_BLOCK, values1, offset1 + i);
+            var vb = FloatVector.fromArray(PROCESSOR_BLOCK, values2, offset2 + i);
             sum = va.fma(vb, sum);
         }
 
         var result = sum.reduceLanes(VectorOperators.ADD);
 
         // variable "i" has an incremented value from the previous loop
-        for (; i < vector1.size(); i++)
+        for (; i < size; i++)
         {
             // This will be executed only few times, for the last elements
             // if the vector size isn't divisible by the processor block size
-            result += vector1.get(i) * vector2.get(i);
+            result += values1[offset1 + i] * values2[offset2 + i];
         }
 
         return result;
     }
 
+    /**
+     * Dot product of a float array and a 16-bit (Float 16 or Brain Float 16) array
+     */
+    private static float dotProduct(float[] values1, int offset1, short[] values2, int offset2, int size,
+                                    boolean isBrainFloat)
+    {
+        var fullLoops = PROCESSOR_BLOCK.loopBound(size);
+
+        var sum = FloatVector.zero(PROCESSOR_BLOCK);
+
+        var i = 0;
+        for (; i < fullLoops; i += PROCESSOR_BLOCK.length())
+        {
+            var va = FloatVector.fromArray(PROCESSOR_BLOCK, values1, offset1 + i);
+            var vb = toFloatVector(values2, offset2 + i, isBrainFloat);
+            sum = va.fma(vb, sum);
+        }
+
+        var result = sum.reduceLanes(VectorOperators.ADD);
+
+        for (; i < size; i++)
+        {
+            result += values1[offset1 + i] * toFloat(values2[offset2 + i], isBrainFloat);
+        }
+
+        return result;
+    }
+
+    /**
+     * Dot product of two 16-bit arrays (both Float 16 or both Brain Float 16)
+     */
+    private static float dotProduct(short[] values1, int offset1, short[] values2, int offset2, int size,
+                                    boolean isBrainFloat)
+    {
+        var fullLoops = PROCESSOR_BLOCK.loopBound(size);
+
+        var sum = FloatVector.zero(PROCESSOR_BLOCK);
+
+        var i = 0;
+        for (; i < fullLoops; i += PROCESSOR_BLOCK.length())
+        {
+            var va = toFloatVector(values1, offset1 + i, isBrainFloat);
+            var vb = toFloatVector(values2, offset2 + i, isBrainFloat);
+            sum = va.fma(vb, sum);
+        }
+
+        var result = sum.reduceLanes(VectorOperators.ADD);
+
+        for (; i < size; i++)
+        {
+            result += toFloat(values1[offset1 + i], isBrainFloat) * toFloat(values2[offset2 + i], isBrainFloat);
+        }
+
+        return result;
+    }
+
+    /**
+     * Dot product of a float array and a byte array (the bytes are converted to float in the registers)
+     */
+    private static float dotProduct(float[] values, int offset, byte[] bytes, int size)
+    {
+        return dotProduct(values, offset, bytes, 0, size);
+    }
+
+    private static float dotProduct(float[] values, int offset, byte[] bytes, int byteOffset, int size)
+    {
+        var floatLanes = PROCESSOR_BLOCK.length();
+        var parts = BYTE_BLOCK.length() / floatLanes;
+        var fullLoops = BYTE_BLOCK.loopBound(size);
+
+        var sum = FloatVector.zero(PROCESSOR_BLOCK);
+
+        var i = 0;
+        for (; i < fullLoops; i += BYTE_BLOCK.length())
+        {
+            var byteVector = ByteVector.fromArray(BYTE_BLOCK, bytes, byteOffset + i);
+
+            for (var part = 0; part < parts; part++)
+            {
+                var weights = (FloatVector) byteVector.convertShape(VectorOperators.B2F, PROCESSOR_BLOCK, part);
+                var input = FloatVector.fromArray(PROCESSOR_BLOCK, values, offset + i + part * floatLanes);
+                sum = input.fma(weights, sum);
+            }
+        }
+
+        var result = sum.reduceLanes(VectorOperators.ADD);
+
+        for (; i < size; i++)
+        {
+            result += values[offset + i] * bytes[byteOffset + i];
+        }
+
+        return result;
+    }
+
+    /**
+     * Dot product of a float array and a Q8_0 block-quantized row (the scale is applied once per block)
+     */
+    private static float q8DotProduct(float[] values, int offset, byte[] bytes, short[] scales, int size)
+    {
+        var floatLanes = PROCESSOR_BLOCK.length();
+        var parts = BYTE_BLOCK.length() / floatLanes;
+        var fullBlocks = size / BLOCK_SIZE;
+
+        var sum = FloatVector.zero(PROCESSOR_BLOCK);
+
+        for (var block = 0; block < fullBlocks; block++)
+        {
+            var start = block * BLOCK_SIZE;
+            var blockSum = FloatVector.zero(PROCESSOR_BLOCK);
+
+            for (var i = start; i < start + BLOCK_SIZE; i += BYTE_BLOCK.length())
+            {
+                var byteVector = ByteVector.fromArray(BYTE_BLOCK, bytes, i);
+
+                for (var part = 0; part < parts; part++)
+                {
+                    var weights = (FloatVector) byteVector.convertShape(VectorOperators.B2F, PROCESSOR_BLOCK, part);
+                    var input = FloatVector.fromArray(PROCESSOR_BLOCK, values, offset + i + part * floatLanes);
+                    blockSum = input.fma(weights, blockSum);
+                }
+            }
+
+            sum = blockSum.fma(FloatVector.broadcast(PROCESSOR_BLOCK, Float16.toFloat32(scales[block])), sum);
+        }
+
+        var result = sum.reduceLanes(VectorOperators.ADD);
+
+        if (fullBlocks < scales.length)
+        {
+            // The last (partial) block
+            var start = fullBlocks * BLOCK_SIZE;
+            result += dotProduct(values, offset + start, bytes, start, size - start) * Float16.toFloat32(scales[fullBlocks]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Dot product of a float array and a Q4_0 block-quantized row (the scale is applied once per block)
+     * The lower and higher 4 bits of the bytes are unpacked in the registers (as the first and second half of the block),
+     * and converted to float after the offset is subtracted.
+     */
+    private static float q4DotProduct(float[] values, int offset, byte[] bytes, short[] scales, int size)
+    {
+        var floatLanes = PROCESSOR_BLOCK.length();
+        var parts = BYTE_BLOCK.length() / floatLanes;
+        var fullBlocks = size / BLOCK_SIZE;
+
+        var sum = FloatVector.zero(PROCESSOR_BLOCK);
+
+        for (var block = 0; block < fullBlocks; block++)
+        {
+            var start = block * BLOCK_SIZE;
+            var byteOffset = block * Q4Matrix.BYTES_PER_BLOCK;
+            var blockSum = FloatVector.zero(PROCESSOR_BLOCK);
+
+            for (var j = 0; j < Q4Matrix.BYTES_PER_BLOCK; j += BYTE_BLOCK.length())
+            {
+                var packed = ByteVector.fromArray(BYTE_BLOCK, bytes, byteOffset + j);
+                var low = packed.and((byte) 0x0F).sub((byte) Q4Matrix.OFFSET);
+                var high = packed.lanewise(VectorOperators.LSHR, 4).sub((byte) Q4Matrix.OFFSET);
+
+                for (var part = 0; part < parts; part++)
+                {
+                    var lowIndex = offset + start + j + part * floatLanes;
+                    var highIndex = lowIndex + Q4Matrix.BYTES_PER_BLOCK;
+
+                    var lowWeights = (FloatVector) low.convertShape(VectorOperators.B2F, PROCESSOR_BLOCK, part);
+                    var highWeights = (FloatVector) high.convertShape(VectorOperators.B2F, PROCESSOR_BLOCK, part);
+
+                    blockSum = FloatVector.fromArray(PROCESSOR_BLOCK, values, lowIndex).fma(lowWeights, blockSum);
+                    blockSum = FloatVector.fromArray(PROCESSOR_BLOCK, values, highIndex).fma(highWeights, blockSum);
+                }
+            }
+
+            sum = blockSum.fma(FloatVector.broadcast(PROCESSOR_BLOCK, Float16.toFloat32(scales[block])), sum);
+        }
+
+        var result = sum.reduceLanes(VectorOperators.ADD);
+
+        if (fullBlocks < scales.length)
+        {
+            // The last (partial) block
+            var start = fullBlocks * BLOCK_SIZE;
+            var byteOffset = fullBlocks * Q4Matrix.BYTES_PER_BLOCK;
+            var blockSum = 0f;
+
+            for (var i = start; i < size; i++)
+            {
+                var j = i - start;
+                var packed = bytes[byteOffset + j % Q4Matrix.BYTES_PER_BLOCK];
+                var value = j < Q4Matrix.BYTES_PER_BLOCK ? packed & 0x0F : (packed >> 4) & 0x0F;
+
+                blockSum += values[offset + i] * (value - Q4Matrix.OFFSET);
+            }
+
+            result += blockSum * Float16.toFloat32(scales[fullBlocks]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Multiplication by a block-quantized matrix, where every result value is a dot product of the vector
+     * and a stored row (an output) of the matrix
+     */
+    private static Vector mulVectorByBlockRows(Vector vector, BlockQuantizedMatrix matrix, Vector result)
+    {
+        var values = arrayOf(vector);
+        var offset = offsetOf(vector);
+        var quantizedValues = matrix.getQuantizedValues();
+        var scales = matrix.getScales();
+        var isQ4 = matrix instanceof Q4Matrix;
+
+        for (var output = 0; output < quantizedValues.length; output++)
+        {
+            result.set(output, isQ4
+                    ? q4DotProduct(values, offset, quantizedValues[output], scales[output], vector.size())
+                    : q8DotProduct(values, offset, quantizedValues[output], scales[output], vector.size()));
+        }
+
+        return result;
+    }
+
+    private static boolean isBlockRowMatrix(Matrix matrix, boolean isTransposed)
+    {
+        return IS_BLOCK_ALIGNED && matrix instanceof BlockQuantizedMatrix blockMatrix
+                && (blockMatrix instanceof Q8Matrix || blockMatrix instanceof Q4Matrix)
+                && blockMatrix.isTransposed() == isTransposed;
+    }
+
+    /**
+     * Loads a block of 16-bit values and converts them to float (in the registers)
+     */
+    private static FloatVector toFloatVector(short[] values, int offset, boolean isBrainFloat)
+    {
+        var shorts = ShortVector.fromArray(SHORT_BLOCK, values, offset);
+        var ints = (IntVector) shorts.convertShape(VectorOperators.S2I, INT_BLOCK, 0);
+
+        if (isBrainFloat)
+        {
+            // Brain Float 16 is the upper half of a float
+            return ints.lanewise(VectorOperators.LSHL, 16).reinterpretAsFloats();
+        }
+
+        // Float 16: the exponent and mantissa are moved to the float positions, then the exponent is rebased
+        // by multiplying with 2^(127-15). (This handles the subnormal values as well.)
+        var exponentAndMantissa = ints.and(0x7FFF);
+        var shifted = exponentAndMantissa.lanewise(VectorOperators.LSHL, 13);
+        var magnitude = shifted.reinterpretAsFloats().mul(0x1p112f);
+
+        // Infinity and NaN: the exponent is all ones (the payload is kept)
+        var isInfinityOrNaN = exponentAndMantissa.compare(VectorOperators.GE, 0x7C00).cast(PROCESSOR_BLOCK);
+        var infinityOrNaN = shifted.or(0x70000000).reinterpretAsFloats();
+        magnitude = magnitude.blend(infinityOrNaN, isInfinityOrNaN);
+
+        var sign = ints.and(0x8000).lanewise(VectorOperators.LSHL, 16);
+        return magnitude.reinterpretAsInts().or(sign).reinterpretAsFloats();
+    }
+
+    private static float toFloat(short value, boolean isBrainFloat)
+    {
+        return isBrainFloat ? BrainFloat16.toFloat32(value) : Float16.toFloat32(value);
+    }
+
     @Override
     public Vector mulVectorByScalar(Vector vector, float scalar)
     {
-        var result = new float[vector.size()];
+        return mulVectorByScalar(vector, scalar, emptyVector(vector.getFloatType(), vector.size()));
+    }
+
+    @Override
+    public Vector mulVectorByScalar(Vector vector, float scalar, Vector result)
+    {
+        if ( !(result instanceof Float32Vector float32Result))
+        {
+            return STANDARD_MATH.mulVectorByScalar(vector, scalar, result);
+        }
+
+        var size = vector.size();
+        var values = arrayOf(vector);
+        var offset = offsetOf(vector);
+        var resultValues = float32Result.getArray();
+        var resultOffset = float32Result.getOffset();
 
-        for (var i = 0; i < vector.size(); i += PROCESSOR_BLOCK.length())
+        for (var i = 0; i < size; i += PROCESSOR_BLOCK.length())
         {
-            var mask = PROCESSOR_BLOCK.indexInRange(i, vector.size());
-            var floatVector = FloatVector.fromArray(PROCESSOR_BLOCK, vector.getValues(), i, mask);
-            floatVector.mul(scalar).intoArray(result, i, mask);
+            var mask = PROCESSOR_BLOCK.indexInRange(i, size);
+            var floatVector = FloatVector.fromArray(PROCESSOR_BLOCK, values, offset + i, mask);
+            floatVector.mul(scalar).intoArray(resultValues, resultOffset + i, mask);
         }
 
-        return Vector.of(vector.getFloatType(), result);
+        return result;
     }
 
     @Override
@@ -103,25 +513,377 @@ public class VectorApiMath extends AbstractMathUtility
     @Override
     public Vector mulVectorByMatrix(Vector vector, Matrix matrix)
     {
-        return STANDARD_MATH.mulVectorByMatrix(vector, matrix);
+        return mulVectorByMatrix(vector, matrix, emptyVector(vector.getFloatType(), matrix.getColCount()));
+    }
+
+    @Override
+    public Vector mulVectorByMatrix(Vector vector, Matrix matrix, Vector result)
+    {
+        if (matrix instanceof TransposedMatrix transposedMatrix)
+        {
+            // The matrix is stored in transposed orientation, so the dot products can be calculated on its rows
+            return mulVectorByTransposedMatrix(vector, transposedMatrix.getTransposed(), result);
+        }
+
+        if (matrix instanceof Float32FlatMatrix flatMatrix && result instanceof Float32Vector float32Result
+                && vector.size() == matrix.getRowCount())
+        {
+            var cols = matrix.getColCount();
+            var values = flatMatrix.getArray();
+            var sums = float32Result.getArray();
+            var sumOffset = float32Result.getOffset();
+
+            Arrays.fill(sums, sumOffset, sumOffset + cols, 0f);
+
+            var fullLoops = PROCESSOR_BLOCK.loopBound(cols);
+
+            // Processing the matrix row by row, adding the scaled rows to the result
+            for (var i = 0; i < vector.size(); i++)
+            {
+                var value = vector.get(i);
+                var broadcast = FloatVector.broadcast(PROCESSOR_BLOCK, value);
+                var offset = flatMatrix.rowOffset(i);
+
+                var col = 0;
+                for (; col < fullLoops; col += PROCESSOR_BLOCK.length())
+                {
+                    var row = FloatVector.fromArray(PROCESSOR_BLOCK, values, offset + col);
+                    var sum = FloatVector.fromArray(PROCESSOR_BLOCK, sums, sumOffset + col);
+                    row.fma(broadcast, sum).intoArray(sums, sumOffset + col);
+                }
+
+                for (; col < cols; col++)
+                {
+                    sums[sumOffset + col] += value * values[offset + col];
+                }
+            }
+
+            return result;
+        }
+
+        if (isBlockRowMatrix(matrix, true) && vector.size() == matrix.getRowCount())
+        {
+            // Horizontal parameter: the outputs are the columns, which are stored as rows
+            return mulVectorByBlockRows(vector, (BlockQuantizedMatrix) matrix, result);
+        }
+
+        return STANDARD_MATH.mulVectorByMatrix(vector, matrix, result);
     }
 
     @Override
     public Vector mulVectorByTransposedMatrix(Vector vector, Matrix matrix)
     {
-        return STANDARD_MATH.mulVectorByTransposedMatrix(vector, matrix);
+        return mulVectorByTransposedMatrix(vector, matrix, emptyVector(vector.getFloatType(), matrix.getRowCount()));
+    }
+
+    @Override
+    public Vector mulVectorByTransposedMatrix(Vector vector, Matrix matrix, Vector result)
+    {
+        if (matrix instanceof TransposedMatrix transposedMatrix)
+        {
+            return mulVectorByMatrix(vector, transposedMatrix.getTransposed(), result);
+        }
+
+        if (matrix instanceof Float32FlatMatrix flatMatrix && vector.size() == matrix.getColCount())
+        {
+            var values = arrayOf(vector);
+            var offset = offsetOf(vector);
+
+            for (var row = 0; row < matrix.getRowCount(); row++)
+            {
+                result.set(row, dotProduct(values, offset, flatMatrix.getArray(), flatMatrix.rowOffset(row), vector.size()));
+            }
+
+            return result;
+        }
+
+        if (matrix instanceof Float16FlatMatrix flatMatrix && vector.size() == matrix.getColCount())
+        {
+            // The vector is converted once, the matrix rows are converted in the registers
+            var values = arrayOf(vector);
+            var offset = offsetOf(vector);
+
+            for (var row = 0; row < matrix.getRowCount(); row++)
+            {
+                result.set(row, dotProduct(values, offset, flatMatrix.getArray(), flatMatrix.rowOffset(row),
+                        vector.size(), false));
+            }
+
+            return result;
+        }
+
+        if (matrix instanceof BrainFloat16FlatMatrix flatMatrix && vector.size() == matrix.getColCount())
+        {
+            var values = arrayOf(vector);
+            var offset = offsetOf(vector);
+
+            for (var row = 0; row < matrix.getRowCount(); row++)
+            {
+                result.set(row, dotProduct(values, offset, flatMatrix.getArray(), flatMatrix.rowOffset(row),
+                        vector.size(), true));
+            }
+
+            return result;
+        }
+
+        if (matrix instanceof LlmInt8Matrix int8Matrix && vector.size() == matrix.getColCount())
+        {
+            // The scale is applied once per row (or on the input, if the scale belongs to the columns)
+            var scb = int8Matrix.getScb();
+            var quantizedValues = int8Matrix.getQuantizedValues();
+            var isVertical = int8Matrix.isVertical();
+
+            var values = isVertical ? arrayOf(vector) : int8Matrix.scaledInput(vector);
+            var offset = isVertical ? offsetOf(vector) : 0;
+
+            for (var row = 0; row < matrix.getRowCount(); row++)
+            {
+                var sum = dotProduct(values, offset, quantizedValues[row], vector.size());
+                result.set(row, isVertical ? sum * scb[row] / 127 : sum);
+            }
+
+            return result;
+        }
+
+        if (isBlockRowMatrix(matrix, false) && vector.size() == matrix.getColCount())
+        {
+            return mulVectorByBlockRows(vector, (BlockQuantizedMatrix) matrix, result);
+        }
+
+        if (matrix instanceof StackedMatrix stackedMatrix && result instanceof Float32Vector)
+        {
+            // Every part is multiplied separately, writing its own segment of the result
+            for (var i = 0; i < stackedMatrix.getPartCount(); i++)
+            {
+                var part = stackedMatrix.getPart(i);
+                var partResult = sliceVector(result, stackedMatrix.getFirstRow(i), part.getRowCount());
+
+                mulVectorByTransposedMatrix(vector, part, partResult);
+            }
+
+            return result;
+        }
+
+        return STANDARD_MATH.mulVectorByTransposedMatrix(vector, matrix, result);
+    }
+
+    /**
+     * Gated linear unit, where the GELU / SwiGLU activation is applied on all gate values at once
+     * (The gate values are collected into the result vector, which is multiplied by the up values afterward.)
+     */
+    @Override
+    public void gatedLinearUnit(Vector vector, Matrix gateWeight, Matrix upWeight, ActivationFunction activation,
+                                Vector result, int from, int to)
+    {
+        if (result instanceof Float32Vector float32Result
+                && (activation == ActivationFunction.SWIGLU || activation == ActivationFunction.GELU))
+        {
+            // The result vector is used as the gate buffer
+            for (var row = from; row < to; row++)
+            {
+                result.set(row, dotProduct(vector, gateWeight.row(row)));
+            }
+
+            // Activation on all gate values (vectorized exp / tanh)
+            var offset = float32Result.getOffset() + from;
+            if (activation == ActivationFunction.SWIGLU)
+            {
+                swigluInPlace(float32Result.getArray(), offset, to - from);
+            }
+            else
+            {
+                geluInPlace(float32Result.getArray(), offset, to - from);
+            }
+
+            // Multiply the activated gate values by the up values
+            for (var row = from; row < to; row++)
+            {
+                result.set(row, result.get(row) * dotProduct(vector, upWeight.row(row)));
+            }
+        }
+        else
+        {
+            super.gatedLinearUnit(vector, gateWeight, upWeight, activation, result, from, to);
+        }
+    }
+
+    @Override
+    public void softmaxInPlace(float[] values, int offset, int size)
+    {
+        if (FastMath.isExact())
+        {
+            super.softmaxInPlace(values, offset, size);
+            return;
+        }
+
+        var maxVector = FloatVector.broadcast(PROCESSOR_BLOCK, Float.NEGATIVE_INFINITY);
+        for (var i = 0; i < size; i += PROCESSOR_BLOCK.length())
+        {
+            var mask = PROCESSOR_BLOCK.indexInRange(i, size);
+            maxVector = maxVector.lanewise(VectorOperators.MAX,
+                    FloatVector.fromArray(PROCESSOR_BLOCK, values, offset + i, mask), mask);
+        }
+        var max = maxVector.reduceLanes(VectorOperators.MAX);
+
+        var totalVector = FloatVector.zero(PROCESSOR_BLOCK);
+        for (var i = 0; i < size; i += PROCESSOR_BLOCK.length())
+        {
+            var mask = PROCESSOR_BLOCK.indexInRange(i, size);
+            var exponents = exp(FloatVector.fromArray(PROCESSOR_BLOCK, values, offset + i, mask).sub(max));
+            exponents.intoArray(values, offset + i, mask);
+            totalVector = totalVector.add(exponents, mask);
+        }
+        var scale = 1 / totalVector.reduceLanes(VectorOperators.ADD);
+
+        for (var i = 0; i < size; i += PROCESSOR_BLOCK.length())
+        {
+            var mask = PROCESSOR_BLOCK.indexInRange(i, size);
+            FloatVector.fromArray(PROCESSOR_BLOCK, values, offset + i, mask).mul(scale)
+                    .intoArray(values, offset + i, mask);
+        }
+    }
+
+    @Override
+    public void swigluInPlace(float[] values, int offset, int size)
+    {
+        if (FastMath.isExact())
+        {
+            super.swigluInPlace(values, offset, size);
+            return;
+        }
+
+        // swiglu(x) = x * sigmoid(x) = x / (1 + e^-x)
+        for (var i = 0; i < size; i += PROCESSOR_BLOCK.length())
+        {
+            var mask = PROCESSOR_BLOCK.indexInRange(i, size);
+            var x = FloatVector.fromArray(PROCESSOR_BLOCK, values, offset + i, mask);
+            x.div(exp(x.neg()).add(1f)).intoArray(values, offset + i, mask);
+        }
+    }
+
+    @Override
+    public void geluInPlace(float[] values, int offset, int size)
+    {
+        if (FastMath.isExact())
+        {
+            super.geluInPlace(values, offset, size);
+            return;
+        }
+
+        // gelu(x) = 0.5 * x * (1 + tanh(sqrt(2 / PI) * (x + 0.044715 * x^3)))
+        for (var i = 0; i < size; i += PROCESSOR_BLOCK.length())
+        {
+            var mask = PROCESSOR_BLOCK.indexInRange(i, size);
+            var x = FloatVector.fromArray(PROCESSOR_BLOCK, values, offset + i, mask);
+            var y = x.mul(x).mul(x).mul(0.044715f).add(x).mul(NeuralNetUtil.SQRT_2_PER_PI_FLOAT);
+            x.mul(0.5f).mul(tanh(y).add(1f)).intoArray(values, offset + i, mask);
+        }
+    }
+
+    /**
+     * Vectorized version of FastMath.exp() (the same range reduction and polynomial on all lanes)
+     */
+    static FloatVector exp(FloatVector x)
+    {
+        var clamped = x.max(FastMath.EXP_MIN).min(FastMath.EXP_MAX);
+
+        // Adding 1.5 * 2^23 rounds to an integer, which will be at the low bits of the float
+        var shifted = clamped.mul(FastMath.LOG2E).add(ROUNDING_SHIFT);
+        var n = shifted.sub(ROUNDING_SHIFT);
+        var exponent = shifted.reinterpretAsInts().sub(ROUNDING_SHIFT_BITS);
+
+        var f = clamped.sub(n.mul(FastMath.LN2_HIGH)).sub(n.mul(FastMath.LN2_LOW));
+
+        var p = f.fma(1 / 720f, 1 / 120f);
+        p = p.mul(f).add(1 / 24f);
+        p = p.mul(f).add(1 / 6f);
+        p = p.mul(f).add(1 / 2f);
+        p = p.mul(f).add(1f);
+        p = p.mul(f).add(1f);
+
+        // The 2^n is split into two factors, so both are normal floats in the whole range
+        var half = exponent.lanewise(VectorOperators.ASHR, 1);
+        var pow1 = half.add(127).lanewise(VectorOperators.LSHL, 23).reinterpretAsFloats();
+        var pow2 = exponent.sub(half).add(127).lanewise(VectorOperators.LSHL, 23).reinterpretAsFloats();
+
+        var result = p.mul(pow1).mul(pow2);
+
+        result = result.blend(0f, x.compare(VectorOperators.LT, FastMath.EXP_MIN));
+        return result.blend(Float.POSITIVE_INFINITY, x.compare(VectorOperators.GT, FastMath.EXP_MAX));
+    }
+
+    /**
+     * Vectorized version of FastMath.tanh()
+     */
+    static FloatVector tanh(FloatVector x)
+    {
+        var clamped = x.max(-FastMath.TANH_LIMIT).min(FastMath.TANH_LIMIT);
+        var e = exp(clamped.mul(2f));
+
+        return e.sub(1f).div(e.add(1f));
     }
 
     @Override
     public Matrix mulMatrixByMatrix(Matrix matrix1, Matrix matrix2)
     {
-        return STANDARD_MATH.mulMatrixByMatrix(matrix1, matrix2);
+        var result = emptyMatrix(matrix1.getInternalFloatType(), matrix1.getRowCount(), matrix2.getColCount());
+
+        return mulMatrixByMatrix(matrix1, matrix2, result);
+    }
+
+    @Override
+    public Matrix mulMatrixByMatrix(Matrix matrix1, Matrix matrix2, Matrix result)
+    {
+        if (matrix2 instanceof TransposedMatrix transposedMatrix)
+        {
+            return mulMatrixByTransposedMatrix(matrix1, transposedMatrix.getTransposed(), result);
+        }
+
+        if (matrix1 instanceof Float32FlatMatrix left && result instanceof Float32FlatMatrix flatResult
+                && left.getRowCount() > 1 && left.getColCount() == matrix2.getRowCount())
+        {
+            // Multiple rows: tiled matrix multiplication (the right matrix is read only once per block of rows)
+            VectorApiGemm.multiply(left, matrix2, false, flatResult);
+            return result;
+        }
+
+        for (var i = 0; i < matrix1.getRowCount(); i++)
+        {
+            mulVectorByMatrix(matrix1.row(i), matrix2, result.row(i));
+        }
+
+        return result;
     }
 
     @Override
     public Matrix mulMatrixByTransposedMatrix(Matrix matrix1, Matrix matrix2)
     {
-        return STANDARD_MATH.mulMatrixByTransposedMatrix(matrix1, matrix2);
+        var result = emptyMatrix(matrix1.getInternalFloatType(), matrix1.getRowCount(), matrix2.getRowCount());
+
+        return mulMatrixByTransposedMatrix(matrix1, matrix2, result);
+    }
+
+    @Override
+    public Matrix mulMatrixByTransposedMatrix(Matrix matrix1, Matrix matrix2, Matrix result)
+    {
+        if (matrix2 instanceof TransposedMatrix transposedMatrix)
+        {
+            return mulMatrixByMatrix(matrix1, transposedMatrix.getTransposed(), result);
+        }
+
+        if (matrix1 instanceof Float32FlatMatrix left && result instanceof Float32FlatMatrix flatResult
+                && left.getRowCount() > 1 && left.getColCount() == matrix2.getColCount())
+        {
+            VectorApiGemm.multiply(left, matrix2, true, flatResult);
+            return result;
+        }
+
+        for (var i = 0; i < matrix1.getRowCount(); i++)
+        {
+            mulVectorByTransposedMatrix(matrix1.row(i), matrix2, result.row(i));
+        }
+
+        return result;
     }
 
     @Override
@@ -148,6 +910,12 @@ public class VectorApiMath extends AbstractMathUtility
         return STANDARD_MATH.flattenMatrix(matrix);
     }
 
+    @Override
+    public Vector flattenMatrix(Matrix matrix, Vector result)
+    {
+        return STANDARD_MATH.flattenMatrix(matrix, result);
+    }
+
     @Override
     public Matrix transposeMatrix(Matrix matrix)
     {
@@ -1,6 +1,7 @@
 package network.message.toServer.fromClient;
 
 import network.message.BaseRequest;
+import transformer.SamplerSettings;
 
 public class QueryRequest extends BaseRequest<QueryResponse>
 {
@@ -9,16 +10,24 @@ public class QueryRequest extends BaseRequest<QueryResponse>
     private int topK;
     private int maxLength;
     private String text;
+    private SamplerSettings samplerSettings;
 
     public QueryRequest() {} // Empty constructor for deserialization
 
     public QueryRequest(String modelId, String sessionUUID, String text, int topK, int maxLength)
+    {
+        this(modelId, sessionUUID, text, topK, maxLength, new SamplerSettings());
+    }
+
+    public QueryRequest(String modelId, String sessionUUID, String text, int topK, int maxLength,
+                        SamplerSettings samplerSettings)
     {
         this.modelId = modelId;
         this.sessionUUID = sessionUUID;
         this.topK = topK;
         this.maxLength = maxLength;
         this.text = text;
+        this.samplerSettings = samplerSettings;
     }
 
     // Getters
@@ -27,4 +36,5 @@ public class QueryRequest extends BaseRequest<QueryResponse>
     public int getTopK() {return topK;}
     public int getMaxLength() {return maxLength;}
     public String getText() {return text;}
+    public SamplerSettings getSamplerSettings() {return samplerSettings;}
 }
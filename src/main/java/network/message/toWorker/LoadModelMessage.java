@@ -12,15 +12,19 @@ public class LoadModelMessage extends BaseRequest<Acknowledge>
     private ModelConfig modelConfig;
     private WorkSegment workSegment;
 
+    // Exact calculation of the activation functions and the softmax (the same at all workers of the model)
+    private boolean exact;
+
     public LoadModelMessage() {} // Empty constructor for deserialization
 
     public LoadModelMessage(String taskUUID, String modelId, ModelConfig modelConfig,
-                            WorkSegment workSegment)
+                            WorkSegment workSegment, boolean exact)
     {
         this.taskUUID = taskUUID;
         this.modelId = modelId;
         this.modelConfig = modelConfig;
         this.workSegment = workSegment;
+        this.exact = exact;
     }
 
     // Getters
@@ -28,4 +32,5 @@ public class LoadModelMessage extends BaseRequest<Acknowledge>
     public String getModelId() {return modelId;}
     public ModelConfig getModelConfig() {return modelConfig;}
     public WorkSegment getWorkSegment() {return workSegment;}
+    public boolean getExact() {return exact;}
 }
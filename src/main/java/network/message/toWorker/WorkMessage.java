@@ -5,33 +5,56 @@ import network.message.BaseRequest;
 import network.info.input.Input;
 import network.info.WorkSegment;
 import network.server.state.QueryState;
+import transformer.SamplerSettings;
+
+import java.util.List;
 
 public class WorkMessage extends BaseRequest<Acknowledge>
 {
     private String workUUID;
     private String modelId;
+    private String sessionUUID;
     private Input input;
     private int topK;
+    private SamplerSettings samplerSettings;
     private boolean inputOnly;
     private WorkSegment workSegment;
 
+    // Tokens of the context to register in the sampler (sent only to the segment with the tail)
+    private List<Integer> contextTokens;
+
+    // The first tokens of the query are sent to the tail (the random generator of the sampler is restarted)
+    private boolean queryStart;
+
     public WorkMessage() {} // Empty constructor for deserialization
 
     public WorkMessage(String workUUID, QueryState queryState, Input input, WorkSegment workSegment)
     {
         this.workUUID = workUUID;
         this.modelId = queryState.getModelId();
+        this.sessionUUID = queryState.getSessionUUID();
         this.input = input;
         this.topK = queryState.getTopK();
+        this.samplerSettings = queryState.getSamplerSettings();
         this.inputOnly = queryState.isInputOnly();
         this.workSegment = workSegment;
+
+        if (workSegment.getWorkSegmentType().hasTail())
+        {
+            this.queryStart = !queryState.hasRegisteredTokens();
+            this.contextTokens = queryState.takeUnregisteredTokens();
+        }
     }
 
     // Getters
     public String getWorkUUID() {return workUUID;}
     public String getModelId() {return modelId;}
+    public String getSessionUUID() {return sessionUUID;}
     public Input getInput() {return input;}
     public int getTopK() {return topK;}
+    public SamplerSettings getSamplerSettings() {return samplerSettings;}
     public boolean getInputOnly() {return inputOnly;}
     public WorkSegment getWorkSegment() {return workSegment;}
+    public List<Integer> getContextTokens() {return contextTokens;}
+    public boolean getQueryStart() {return queryStart;}
 }
@@ -6,6 +6,7 @@ import network.message.toServer.fromClient.QueryResponse;
 import network.message.toWorker.WorkMessage;
 import network.server.state.QueryState;
 import tokenizer.Token;
+import transformer.SamplerSettings;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -26,6 +27,12 @@ public class QueryRequestProcessor
         var inputText = message.getText();
         var topK = message.getTopK();
         var maxLength = message.getMaxLength();
+        var samplerSettings = message.getSamplerSettings() == null
+                ? new SamplerSettings()
+                : message.getSamplerSettings();
+
+        // Reject the penalties which would increase the logits
+        samplerSettings.validate();
 
         System.out.println("QueryRequest received for " + modelId);
 
@@ -45,7 +52,8 @@ public class QueryRequestProcessor
         // Create new QueryState
         var queryUUID = UUID.randomUUID().toString();
         var workSegments = serverState.getWorkSegments(modelId);
-        var queryState = new QueryState(modelId, sessionUUID, queryUUID, inputTokens, topK, maxLength, workSegments);
+        var queryState = new QueryState(modelId, sessionUUID, queryUUID, inputTokens, topK, maxLength,
+                samplerSettings, workSegments);
         serverState.addPendingQuery(queryUUID, queryState);
 
         // Create new pending work
@@ -2,6 +2,7 @@ package network.server.state;
 
 import network.info.WorkSegment;
 import tokenizer.Token;
+import transformer.SamplerSettings;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -13,6 +14,7 @@ public class QueryState
     private final String queryUUID;
     private final int topK;
     private final int maxLength;
+    private final SamplerSettings samplerSettings;
     private final List<Token> inputTokens;
 
     // Starting values for a query processing:
@@ -23,14 +25,18 @@ public class QueryState
     private final List<WorkSegment> workSegments;
     private int workSegmentIndex = 0;
 
+    // Number of tokens of the query which are already sent to the worker of the token selection (tail)
+    private int registeredTokenCount = 0;
+
     public QueryState(String modelId, String sessionUUID, String queryUUID, List<Token> inputTokens,
-                      int topK, int maxLength, List<WorkSegment> workSegments)
+                      int topK, int maxLength, SamplerSettings samplerSettings, List<WorkSegment> workSegments)
     {
         this.modelId = modelId;
         this.sessionUUID = sessionUUID;
         this.queryUUID = queryUUID;
         this.topK = topK;
         this.maxLength = maxLength;
+        this.samplerSettings = samplerSettings;
         this.inputTokens = inputTokens;
         this.workSegments = workSegments;
     }
@@ -76,11 +82,39 @@ public class QueryState
         workSegmentIndex = 0;
     }
 
+    public boolean hasRegisteredTokens()
+    {
+        return registeredTokenCount > 0;
+    }
+
+    /**
+     * Returns the tokens which aren't sent yet to the worker of the token selection, up to the actual token
+     * (These are used by the penalties. If the tail is at a separate worker, it is skipped at the input tokens,
+     * so these are sent together at the next token selection.)
+     */
+    public List<Integer> takeUnregisteredTokens()
+    {
+        var pos = getPos();
+
+        List<Integer> tokens = new ArrayList<>();
+        for (var i = registeredTokenCount; i <= pos; i++)
+        {
+            tokens.add(i < inputTokens.size()
+                    ? inputTokens.get(i).getId()
+                    : generatedTokens.get(i - inputTokens.size()).getId());
+        }
+
+        registeredTokenCount = pos + 1;
+
+        return tokens;
+    }
+
     // Getters
     public String getModelId() {return modelId;}
     public String getSessionUUID() {return sessionUUID;}
     public String getQueryUUID() {return queryUUID;}
     public int getTopK() {return topK;}
+    public SamplerSettings getSamplerSettings() {return samplerSettings;}
     public int getMaxLength() {return maxLength;}
     public List<Token> getInputTokens() {return inputTokens;}
     public int getProcessedInputCount() {return processedInputCount;}
@@ -18,6 +18,9 @@ public class ServerState
     private final String downloadRoot;
     private Map<String, Models> models;
 
+    // Exact calculation of the activation functions and the softmax (sent to all workers at model loading)
+    private boolean isExact;
+
     private final Map<Address, WorkerInfo> workers = new HashMap<>();
 
     // Key: modelId
@@ -133,12 +136,14 @@ public class ServerState
     public String getConfigRoot() {return configRoot;}
     public String getDownloadRoot() {return downloadRoot;}
     public Map<String, Models> getModels() {return models;}
+    public boolean isExact() {return isExact;}
     public Map<Address, WorkerInfo> getWorkers() {return workers;}
     public Map<String, ModelState> getActiveModels() {return activeModels;}
     public Map<String, ModelState> getPendingModels() {return pendingModels;}
     public Map<String, QueryState> getFinishedQueries() {return finishedQueries;}
     public Map<String, QueryState> getPendingQueries() {return pendingQueries;}
 
-    // Setter
+    // Setters
     public void setModels(Map<String, Models> models) {this.models = models;}
+    public void setExact(boolean isExact) {this.isExact = isExact;}
 }
@@ -276,7 +276,8 @@ public class LoadModelPlanTask implements Runnable
             var loadTaskUUID = UUID.randomUUID().toString();
             modelState.getPendingTasks().put(loadTaskUUID, "LOAD request" + workSegment.getWorker());
 
-            loadRequests.add(new LoadModelMessage(loadTaskUUID, modelId, modelConfig, workSegment));
+            var isExact = ServerState.getServerState().isExact();
+            loadRequests.add(new LoadModelMessage(loadTaskUUID, modelId, modelConfig, workSegment, isExact));
         }
 
         return loadRequests;
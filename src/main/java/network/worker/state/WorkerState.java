@@ -1,5 +1,7 @@
 package network.worker.state;
 
+import transformer.Sampler;
+import transformer.SamplerSettings;
 import transformer.serial.BaseTransformer;
 
 import java.io.File;
@@ -18,6 +20,9 @@ public class WorkerState
     private final Map<String, BaseTransformer> activeModels = new HashMap<>();
     private final Set<String> pendingModels = new HashSet<>();
 
+    // Key: sessionUUID (the registered tokens of the session are kept between the queries)
+    private final Map<String, Sampler> samplers = new HashMap<>();
+
     private WorkerState()
     {
         var file = new File("models");
@@ -44,4 +49,13 @@ public class WorkerState
     {
         return activeModels.get(modelId);
     }
+
+    /**
+     * Returns the sampler of the session (creates it at the first query of the session)
+     */
+    synchronized
+    public Sampler getSampler(String sessionUUID, SamplerSettings settings)
+    {
+        return samplers.computeIfAbsent(sessionUUID, key -> new Sampler(settings));
+    }
 }
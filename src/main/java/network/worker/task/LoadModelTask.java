@@ -1,6 +1,7 @@
 package network.worker.task;
 
 import config.Config;
+import math.FastMath;
 import parameters.download.DownloadMissingFiles;
 import parameters.safetensors.SafetensorsReader;
 import network.Address;
@@ -35,6 +36,10 @@ public class LoadModelTask implements Runnable
             var workSegment = request.getWorkSegment();
             var segmentType = workSegment.getWorkSegmentType();
 
+            // Use the exact or the fast (approximate) calculation of the activation functions and the softmax
+            // (it is decided by the server, so all workers of the model calculate the same way)
+            FastMath.setExact(request.getExact());
+
             // Check necessary files
             var missingFiles = checkFiles(modelConfig, modelConfig.getDownloadPath());
 
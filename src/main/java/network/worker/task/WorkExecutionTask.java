@@ -13,6 +13,7 @@ import network.message.toWorker.WorkMessage;
 import network.message.toWorker.WorkResultMessage;
 import math.dataType.vector.Vector;
 import network.worker.state.WorkerState;
+import transformer.SamplerSettings;
 
 public class WorkExecutionTask implements Runnable
 {
@@ -85,9 +86,35 @@ public class WorkExecutionTask implements Runnable
                 }
             }
 
-            if (!isInputOnly && segmentType.hasTail())
+            if (segmentType.hasTail())
             {
-                token = transformer.generateToken(hiddenState, workMessage.getTopK());
+                var samplerSettings = workMessage.getSamplerSettings() == null
+                        ? new SamplerSettings()
+                        : workMessage.getSamplerSettings();
+
+                // Use the sampler of the session, with the settings of the query
+                var sampler = WorkerState.getWorkerState().getSampler(workMessage.getSessionUUID(), samplerSettings);
+                if (workMessage.getQueryStart())
+                {
+                    sampler.setSettings(samplerSettings);
+                    sampler.reseed();
+                }
+
+                // Register the tokens of the context (used by the penalties of the token selection)
+                if (workMessage.getContextTokens() != null)
+                {
+                    for (var contextToken : workMessage.getContextTokens())
+                    {
+                        sampler.accept(contextToken);
+                    }
+                }
+
+                transformer.setSampler(sampler);
+
+                if (!isInputOnly)
+                {
+                    token = transformer.generateToken(hiddenState, workMessage.getTopK());
+                }
             }
 
             // Determine which value should be the output
@@ -40,9 +40,10 @@ public abstract class ParameterLoader
 
     protected String getFinalParameterId(String parameterId, String name)
     {
-        var naming = config.getQuantizationConfig().getNaming();
+        var quantizationConfig = config.getQuantizationConfig();
+        var naming = quantizationConfig != null ? quantizationConfig.getNaming() : null;
 
-        name = naming != null ? naming.get(name) : defaultNamingMap.get(name);
+        name = naming != null && naming.containsKey(name) ? naming.get(name) : defaultNamingMap.get(name);
 
         name = name.replace("{name}", parameterId);
 
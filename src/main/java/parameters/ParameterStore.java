@@ -4,15 +4,22 @@ import config.Config;
 import config.Parameter;
 import math.dataType.DataType;
 import math.dataType.matrix.Matrix;
+import math.dataType.matrix.StackedMatrix;
+import math.dataType.matrix.TransposedMatrix;
 import parameters.safetensors.SafetensorsReader;
 import config.ParameterType;
 import math.dataType.vector.Vector;
 import quantization.QuantizationType;
 import quantization.QuantizedMatrix;
+import quantization.Quantizer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
+import static config.ParameterType.VERTICAL_WEIGHT;
+import static math.MathUtil.MATH;
+
 public abstract class ParameterStore
 {
     public Config config;
@@ -86,29 +93,74 @@ public abstract class ParameterStore
 
         if (!config.isCalculationOnly())
         {
-            // Load the matrix parameter (it can result a standard VectorArrayMatrix, or a quantized matrix as well
-            var matrix = parameterLoader.loadMatrix(reader, parameterType, finalParameterId, rows, cols);
+            // If requested, the horizontal weights are stored in transposed (vertical) orientation
+            var isTransposed = parameterType.isWeight() && config.isTransposeHorizontalWeights();
+            var storedType = isTransposed ? VERTICAL_WEIGHT : parameterType;
+
+            // If a non-quantized weight should be quantized, the result of an earlier quantization can be used
+            var isQuantizedOnLoad = parameterType.isWeight() && config.getQuantizeConfig() != null
+                    && !(parameterLoader instanceof Quantizer);
 
-            if (matrix instanceof QuantizedMatrix quantizedMatrix)
+            Matrix matrix = null;
+            if (isQuantizedOnLoad)
             {
-                // This is a quantized matrix, ...
-                if (config.getQuantizationConfig() != null && config.getQuantizationConfig().getDeQuantizeOnLoad())
-                {
-                    // ... but we can de-quantize it, if requested
-                    matrix = quantizedMatrix.toDeQuantized();
-                }
+                // Loaded in the stored orientation (with swapped row and col sizes if transposed), as the quantizers do
+                matrix = isTransposed
+                        ? config.getQuantizationCache().load(storedType, finalParameterId, cols, rows)
+                        : config.getQuantizationCache().load(storedType, finalParameterId, rows, cols);
             }
-            else
+
+            if (matrix == null)
             {
-                // This is a non-quantized matrix, ...
-                if (parameterType.isWeight() && config.getQuantizeConfig() != null)
+                if (isTransposed && parameterLoader instanceof Quantizer)
                 {
-                    // ... but we can quantize it, if requested
+                    // The quantizers can load the weights in vertical orientation directly (with swapped row and col sizes)
+                    matrix = parameterLoader.loadMatrix(reader, storedType, finalParameterId, cols, rows);
+                }
+                else
+                {
+                    // Load the matrix parameter (it can result a standard VectorArrayMatrix, or a quantized matrix as well
+                    matrix = parameterLoader.loadMatrix(reader, parameterType, finalParameterId, rows, cols);
+
+                    if (isTransposed)
+                    {
+                        matrix = MATH.transposeMatrix(matrix);
+                    }
+                }
+
+                if (matrix instanceof QuantizedMatrix quantizedMatrix)
+                {
+                    // This is a quantized matrix, ...
+                    if (config.getQuantizationConfig() != null && config.getQuantizationConfig().getDeQuantizeOnLoad())
+                    {
+                        // ... but we can de-quantize it, if requested
+                        matrix = quantizedMatrix.toDeQuantized();
+                    }
+                }
+                else if (isQuantizedOnLoad)
+                {
+                    // This is a non-quantized matrix, but we can quantize it, if requested
+                    // (The result is stored in the cache, so the next load doesn't have to quantize it again.)
                     var quantizationType = config.getQuantizeConfig().getQuantizationType();
-                    matrix = QuantizationType.getQuantizer(config, quantizationType).quantize(parameterType, matrix);
+                    var quantizedMatrix = QuantizationType.getQuantizer(config, quantizationType).quantize(storedType, matrix);
+
+                    config.getQuantizationCache().save(storedType, finalParameterId, quantizedMatrix);
+                    matrix = quantizedMatrix;
                 }
             }
 
+            if ( !(matrix instanceof QuantizedMatrix))
+            {
+                // The math provider can convert the matrix into its own representation (once, at load)
+                matrix = MATH.prepareMatrix(matrix);
+            }
+
+            if (isTransposed)
+            {
+                // The model sees the original (horizontal) shape, but the multiplication uses the stored rows
+                matrix = new TransposedMatrix(matrix);
+            }
+
             // Store the matrix
             params.put(parameterId, matrix);
         }
@@ -116,6 +168,35 @@ public abstract class ParameterStore
         return new Parameter(parameterType, parameterId);
     }
 
+    /**
+     * Stacks the rows of already loaded matrix parameters into a single (fused) matrix parameter
+     * (For example the query, key and value weights, so a single multiplication calculates all of them.)
+     * The original parameters are removed from the store, so the values aren't stored twice.
+     */
+    protected Parameter stackMatrices(ParameterType parameterType, String parameterId, Parameter... parameters)
+    {
+        if (!config.isCalculationOnly())
+        {
+            var matrices = new ArrayList<Matrix>(parameters.length);
+            var isQuantized = false;
+
+            for (var parameter : parameters)
+            {
+                var matrix = (Matrix) params.remove(parameter.getId());
+                isQuantized = isQuantized || matrix instanceof QuantizedMatrix;
+
+                matrices.add(matrix);
+            }
+
+            // The quantized matrices are kept as they are, otherwise the values are copied into a single matrix
+            var matrix = isQuantized ? new StackedMatrix(matrices) : MATH.stackMatrices(matrices);
+
+            params.put(parameterId, matrix);
+        }
+
+        return new Parameter(parameterType, parameterId);
+    }
+
     protected Parameter loadBoolArray(ParameterType parameterType, String parameterId, int rows, int cols)
     {
         var parameterLoader = getParameterLoader(ParameterType.BOOL_ARRAY, parameterId);
@@ -4,6 +4,9 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import app.IdentifiedException;
+import math.dataType.matrix.BrainFloat16FlatMatrix;
+import math.dataType.matrix.Float16FlatMatrix;
+import math.dataType.matrix.Float32FlatMatrix;
 import math.dataType.matrix.Matrix;
 import math.dataType.matrix.VectorArrayMatrix;
 import math.dataType.DataType;
@@ -36,10 +39,20 @@ import static parameters.FileUtil.readTextFile;
  */
 public class SafetensorsReader implements ParameterReader
 {
+    // Largest matrix which can be stored in a single (flat) array
+    private static final long MAX_FLAT_SIZE = Integer.MAX_VALUE - 8;
+
+    // Largest number of bytes mapped into memory at once
+    private static final int MAX_MAPPED_BYTES = 1 << 30;
+
     private final Map<String, SafetensorsHeader> parameterHeaders = new HashMap<>();
 
+    private final String path;
+
     public SafetensorsReader(String downloadPath)
     {
+        this.path = downloadPath;
+
         // Check the model folder
         var downloadFolder = new File(downloadPath);
         if (!downloadFolder.exists() || !downloadFolder.isDirectory())
@@ -66,8 +79,9 @@ public class SafetensorsReader implements ParameterReader
         }
     }
 
-    // Getter
+    // Getters
     public Map<String, SafetensorsHeader> getParameterHeaders() {return parameterHeaders;}
+    public String getPath() {return path;}
 
     private void createHeadersFromSafetensorsFiles(File modelFolder)
     {
@@ -435,13 +449,13 @@ public class SafetensorsReader implements ParameterReader
         var header = getHeader(parameterId, new long[] {rows, cols});
         try (var stream = new FileInputStream(header.getFileName()))
         {
-            var rowOffset = 0;
+            var rowOffset = 0L;
             for (int i = 0; i < rows; i++)
             {
                 var offset = header.getOffset() + rowOffset;
                 matrix[i] = readChannelAsShort(stream, offset, cols);
 
-                rowOffset += cols * 4;
+                rowOffset += cols * 2L;
             }
         }
         catch (IOException e)
@@ -465,27 +479,36 @@ public class SafetensorsReader implements ParameterReader
     @Override
     public Matrix readFloat32Matrix(String parameterId, int rows, int cols)
     {
-        var matrix = new VectorArrayMatrix(DataType.FLOAT_32, rows, cols);
-
         var header = getHeader(parameterId, new long[] {rows, cols});
         try (var stream = new FileInputStream(header.getFileName()))
         {
-            var rowOffset = 0;
+            if (isFlatSize(rows, cols))
+            {
+                var values = new float[rows * cols];
+                readChannelIntoFloatArray(stream, header.getOffset(), values);
+
+                return new Float32FlatMatrix(values, rows, cols);
+            }
+
+            // The matrix is too large to store in a single array, so it is stored row by row
+            var matrix = new VectorArrayMatrix(DataType.FLOAT_32, rows, cols);
+
+            var rowOffset = 0L;
             for (int i = 0; i < rows; i++)
             {
                 var offset = header.getOffset() + rowOffset;
                 var array = readChannelAsFloat(stream, offset, cols);
                 matrix.setRow(i, new Float32Vector(array));
 
-                rowOffset += cols * 4;
+                rowOffset += cols * 4L;
             }
+
+            return matrix;
         }
         catch (IOException e)
         {
             throw new IdentifiedException("Error reading float 32 matrix parameter " + parameterId, e);
         }
-
-        return matrix;
     }
 
     @Override
@@ -494,16 +517,25 @@ public class SafetensorsReader implements ParameterReader
         var header = getHeader(parameterId, new long[] {rows, cols});
         try (var stream = new FileInputStream(header.getFileName()))
         {
+            if (isFlatSize(rows, cols))
+            {
+                var values = new short[rows * cols];
+                readChannelIntoShortArray(stream, header.getOffset(), values);
+
+                return new Float16FlatMatrix(values, rows, cols);
+            }
+
+            // The matrix is too large to store in a single array, so it is stored row by row
             var matrix = new VectorArrayMatrix(DataType.FLOAT_16, rows, cols);
 
-            var rowOffset = 0;
+            var rowOffset = 0L;
             for (int i = 0; i < rows; i++)
             {
                 var offset = header.getOffset() + rowOffset;
                 var array = readChannelAsShort(stream, offset, cols);
                 matrix.setRow(i, new Float16Vector(array));
 
-                rowOffset += cols * 2;
+                rowOffset += cols * 2L;
             }
 
             return matrix;
@@ -520,16 +552,25 @@ public class SafetensorsReader implements ParameterReader
         var header = getHeader(parameterId, new long[] {rows, cols});
         try (var stream = new FileInputStream(header.getFileName()))
         {
+            if (isFlatSize(rows, cols))
+            {
+                var values = new short[rows * cols];
+                readChannelIntoShortArray(stream, header.getOffset(), values);
+
+                return new BrainFloat16FlatMatrix(values, rows, cols);
+            }
+
+            // The matrix is too large to store in a single array, so it is stored row by row
             var matrix = new VectorArrayMatrix(DataType.BRAIN_FLOAT_16, rows, cols);
 
-            var rowOffset = 0;
+            var rowOffset = 0L;
             for (int i = 0; i < rows; i++)
             {
                 var offset = header.getOffset() + rowOffset;
                 var array = readChannelAsShort(stream, offset, cols);
                 matrix.setRow(i, new BrainFloat16Vector(array));
 
-                rowOffset += cols * 2;
+                rowOffset += cols * 2L;
             }
 
             return matrix;
@@ -540,6 +581,41 @@ public class SafetensorsReader implements ParameterReader
         }
     }
 
+    private boolean isFlatSize(int rows, int cols)
+    {
+        return (long) rows * cols <= MAX_FLAT_SIZE;
+    }
+
+    private void readChannelIntoFloatArray(FileInputStream stream, long position, float[] array) throws IOException
+    {
+        // A mapped buffer is limited to 2 GB, so the content is read in chunks
+        var chunkSize = MAX_MAPPED_BYTES / 4;
+
+        for (var i = 0; i < array.length; i += chunkSize)
+        {
+            var size = Math.min(chunkSize, array.length - i);
+
+            var buffer = stream.getChannel().map(FileChannel.MapMode.READ_ONLY, position + i * 4L, size * 4L);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asFloatBuffer().get(array, i, size);
+        }
+    }
+
+    private void readChannelIntoShortArray(FileInputStream stream, long position, short[] array) throws IOException
+    {
+        // A mapped buffer is limited to 2 GB, so the content is read in chunks
+        var chunkSize = MAX_MAPPED_BYTES / 2;
+
+        for (var i = 0; i < array.length; i += chunkSize)
+        {
+            var size = Math.min(chunkSize, array.length - i);
+
+            var buffer = stream.getChannel().map(FileChannel.MapMode.READ_ONLY, position + i * 2L, size * 2L);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asShortBuffer().get(array, i, size);
+        }
+    }
+
     private byte[] readChannelAsByte(FileInputStream stream, long position, int size) throws IOException
     {
         var array = new byte[size];
@@ -0,0 +1,214 @@
+package parameters.safetensors;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import app.IdentifiedException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static parameters.safetensors.SafetensorsModel.TensorModel;
+
+/**
+ * Writer of a safetensors file (used to store the results of the quantization on load)
+ * The tensors are collected (only the references of the arrays are stored), and written at once by write().
+
+ * Format: size of the header (8 bytes, little endian long), header (JSON), values (little endian)
+ */
+public class SafetensorsWriter
+{
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private record Tensor(String id, SafetensorsDataType dataType, List<Integer> shape, Object values) {}
+
+    private final List<Tensor> tensors = new ArrayList<>();
+
+    public void addString(String id, String value)
+    {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        tensors.add(new Tensor(id, SafetensorsDataType.U8, List.of(bytes.length), bytes));
+    }
+
+    public void addByteArray(String id, byte[] values)
+    {
+        tensors.add(new Tensor(id, SafetensorsDataType.I8, List.of(values.length), values));
+    }
+
+    public void addByteArray2D(String id, byte[][] values)
+    {
+        tensors.add(new Tensor(id, SafetensorsDataType.I8, List.of(values.length, values[0].length), values));
+    }
+
+    public void addFloat16Array2D(String id, short[][] values)
+    {
+        tensors.add(new Tensor(id, SafetensorsDataType.F16, List.of(values.length, values[0].length), values));
+    }
+
+    public void addIntArray(String id, int[] values)
+    {
+        tensors.add(new Tensor(id, SafetensorsDataType.I32, List.of(values.length), values));
+    }
+
+    public void addIntArray2D(String id, int[][] values)
+    {
+        tensors.add(new Tensor(id, SafetensorsDataType.I32, List.of(values.length, values[0].length), values));
+    }
+
+    public void addFloatArray(String id, float[] values)
+    {
+        tensors.add(new Tensor(id, SafetensorsDataType.F32, List.of(values.length), values));
+    }
+
+    public void addFloatArray2D(String id, float[][] values)
+    {
+        tensors.add(new Tensor(id, SafetensorsDataType.F32, List.of(values.length, values[0].length), values));
+    }
+
+    /**
+     * Writes the collected tensors into the file
+     * (The content is written into a temporary file first, which is renamed at the end,
+     * so a partially written file is never visible under the final name.)
+     */
+    public void write(File file) throws IOException
+    {
+        var header = createHeader();
+
+        var tempFile = new File(file.getAbsolutePath() + ".tmp");
+        try (var stream = new FileOutputStream(tempFile))
+        {
+            var channel = stream.getChannel();
+
+            var buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, header.length + 8));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putLong(header.length);
+            buffer.put(header);
+            writeBuffer(channel, buffer);
+
+            for (var tensor : tensors)
+            {
+                writeValues(channel, buffer, tensor.values());
+            }
+
+            writeBuffer(channel, buffer);
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private byte[] createHeader()
+    {
+        var metadata = new HashMap<String, String>();
+        metadata.put("format", "pt");
+
+        var safetensorsModel = new SafetensorsModel(metadata);
+
+        var startOffset = 0L;
+        for (var tensor : tensors)
+        {
+            var size = 1L;
+            for (var dim : tensor.shape())
+            {
+                size *= dim;
+            }
+
+            var endOffset = startOffset + size * tensor.dataType().getBits() / 8;
+            safetensorsModel.addTensor(tensor.id(), new TensorModel(tensor.dataType(), tensor.shape(), startOffset, endOffset));
+
+            startOffset = endOffset;
+        }
+
+        try
+        {
+            var header = new StringBuilder(new ObjectMapper().writeValueAsString(safetensorsModel));
+
+            // The header is padded by spaces to have aligned values
+            while ((header.length() + 8) % 8 != 0)
+            {
+                header.append(' ');
+            }
+
+            return header.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new IdentifiedException("Error during safetensors header creation: " + e.getMessage());
+        }
+    }
+
+    private void writeValues(FileChannel channel, ByteBuffer buffer, Object values) throws IOException
+    {
+        if (values instanceof byte[][] rows)
+        {
+            for (var row : rows) writeValues(channel, buffer, row);
+        }
+        else if (values instanceof short[][] rows)
+        {
+            for (var row : rows) writeValues(channel, buffer, row);
+        }
+        else if (values instanceof int[][] rows)
+        {
+            for (var row : rows) writeValues(channel, buffer, row);
+        }
+        else if (values instanceof float[][] rows)
+        {
+            for (var row : rows) writeValues(channel, buffer, row);
+        }
+        else if (values instanceof byte[] array)
+        {
+            for (var value : array)
+            {
+                if (buffer.remaining() < 1) writeBuffer(channel, buffer);
+                buffer.put(value);
+            }
+        }
+        else if (values instanceof short[] array)
+        {
+            for (var value : array)
+            {
+                if (buffer.remaining() < 2) writeBuffer(channel, buffer);
+                buffer.putShort(value);
+            }
+        }
+        else if (values instanceof int[] array)
+        {
+            for (var value : array)
+            {
+                if (buffer.remaining() < 4) writeBuffer(channel, buffer);
+                buffer.putInt(value);
+            }
+        }
+        else if (values instanceof float[] array)
+        {
+            for (var value : array)
+            {
+                if (buffer.remaining() < 4) writeBuffer(channel, buffer);
+                buffer.putFloat(value);
+            }
+        }
+        else
+        {
+            throw new IdentifiedException("Unsupported tensor type: " + values.getClass().getSimpleName());
+        }
+    }
+
+    private void writeBuffer(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
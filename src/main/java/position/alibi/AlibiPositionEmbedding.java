@@ -33,4 +33,12 @@ public class AlibiPositionEmbedding
     {
         return score - positionSlope[head] * (relativePos - 1);
     }
+
+    /**
+     * Returns the slope of the head (the score is reduced by the slope multiplied by the distance of the token)
+     */
+    public float getSlope(int head)
+    {
+        return positionSlope[head];
+    }
 }
@@ -2,10 +2,12 @@ package quantization;
 
 import config.Config;
 import config.ParameterType;
+import math.dataType.DataType;
 import math.dataType.matrix.Matrix;
 import math.dataType.vector.Vector;
 import parameters.ParameterLoader;
 import parameters.ParameterReader;
+import parameters.safetensors.SafetensorsWriter;
 
 public abstract class AbstractQuantizer extends ParameterLoader implements Quantizer
 {
@@ -14,6 +16,32 @@ public abstract class AbstractQuantizer extends ParameterLoader implements Quant
         super(config);
     }
 
+    /**
+     * Adds the tensors of a quantized matrix to the writer, in the same format as the load() reads them
+     * (Used to store the result of the quantization on load.) Returns false if the matrix can't be stored.
+     */
+    public boolean save(SafetensorsWriter writer, ParameterType parameterType, String parameterId, QuantizedMatrix matrix)
+    {
+        return false;
+    }
+
+    /**
+     * Returns the float type of the de-quantized values (set in the quantization or in the quantize config)
+     */
+    protected DataType getOutputFloatType()
+    {
+        if (config.getQuantizationConfig() != null)
+        {
+            return config.getQuantizationConfig().getOutputFloatType();
+        }
+        else if (config.getQuantizeConfig() != null)
+        {
+            return config.getQuantizeConfig().getOutputFloatType();
+        }
+
+        return DataType.FLOAT_32;
+    }
+
     @Override
     public Matrix loadMatrix(ParameterReader reader, ParameterType parameterType, String parameterId, int rows, int cols)
     {
@@ -0,0 +1,156 @@
+package quantization;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import app.IdentifiedException;
+import config.Config;
+import config.ParameterType;
+import math.dataType.matrix.Matrix;
+import parameters.safetensors.SafetensorsReader;
+import parameters.safetensors.SafetensorsWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+
+/**
+ * Cache of the results of the quantization on load (quantize section of the model config)
+
+ * The quantized matrices are stored in safetensors files (one file per matrix) in the same format
+ * as the quantized models store them, so the quantizers can load them by the same logic (see Quantizer.load()).
+
+ * The cache folder is [model folder]/quantized/[key], where the key is a hash of the quantize settings
+ * and the safetensors files of the model (name, size, last modification time).
+ * So if the settings or the files are changed, a new cache folder is used.
+ * (The content of the files isn't hashed, because that would take almost as long as the quantization.)
+ */
+public class QuantizationCache
+{
+    private static final String CACHE_FOLDER = "quantized";
+
+    // Increased if the stored format changes
+    private static final int FORMAT_VERSION = 1;
+
+    private final Config config;
+    private final File folder;
+    private SafetensorsReader reader;
+
+    public QuantizationCache(Config config)
+    {
+        this.config = config;
+
+        var quantizeConfig = config.getQuantizeConfig();
+        var modelPath = config.getReader().getPath();
+
+        this.folder = new File(modelPath + "/" + CACHE_FOLDER + "/" + calculateKey(modelPath, quantizeConfig));
+    }
+
+    /**
+     * Loads a quantized matrix from the cache (returns null if it isn't cached)
+     */
+    public Matrix load(ParameterType parameterType, String parameterId, int rows, int cols)
+    {
+        if ( !isEnabled() || !getFile(parameterId).exists()) return null;
+
+        try
+        {
+            var quantizer = getQuantizer();
+            return quantizer.load(getReader(), parameterType, parameterId, rows, cols);
+        }
+        catch (Exception e)
+        {
+            System.out.println("WARNING: Cannot load the quantized parameter from the cache, it is quantized again. ("
+                    + parameterId + ", " + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    /**
+     * Stores a quantized matrix in the cache (if the quantization type supports it)
+     */
+    public void save(ParameterType parameterType, String parameterId, QuantizedMatrix matrix)
+    {
+        if ( !isEnabled()) return;
+
+        var writer = new SafetensorsWriter();
+        if ( !getQuantizer().save(writer, parameterType, parameterId, matrix)) return;
+
+        try
+        {
+            if ( !folder.exists() && !folder.mkdirs())
+            {
+                throw new IOException("Cannot create folder: " + folder.getAbsolutePath());
+            }
+
+            writer.write(getFile(parameterId));
+        }
+        catch (IOException e)
+        {
+            System.out.println("WARNING: Cannot store the quantized parameter in the cache. ("
+                    + parameterId + ", " + e.getMessage() + ")");
+        }
+    }
+
+    private boolean isEnabled()
+    {
+        return config.getQuantizeConfig() != null && config.getQuantizeConfig().getCacheOnDisk();
+    }
+
+    private AbstractQuantizer getQuantizer()
+    {
+        return QuantizationType.getQuantizer(config, config.getQuantizeConfig().getQuantizationType());
+    }
+
+    private synchronized SafetensorsReader getReader()
+    {
+        if (reader == null)
+        {
+            // The reader indexes the files existing at the first usage (the later files are stored in memory anyway)
+            reader = new SafetensorsReader(folder.getAbsolutePath());
+        }
+
+        return reader;
+    }
+
+    private File getFile(String parameterId)
+    {
+        return new File(folder, parameterId.replaceAll("[^A-Za-z0-9._-]", "_") + ".safetensors");
+    }
+
+    private static String calculateKey(String modelPath, QuantizeConfig quantizeConfig)
+    {
+        try
+        {
+            var digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update(("version:" + FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+            digest.update(new ObjectMapper().writeValueAsBytes(quantizeConfig));
+
+            var files = new File(modelPath).listFiles();
+            if (files != null)
+            {
+                Arrays.sort(files, Comparator.comparing(File::getName));
+
+                for (var file : files)
+                {
+                    if (file.isFile() && file.getName().endsWith("safetensors"))
+                    {
+                        var fileInfo = file.getName() + ":" + file.length() + ":" + file.lastModified();
+                        digest.update(fileInfo.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+            }
+
+            return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+        }
+        catch (NoSuchAlgorithmException | JsonProcessingException e)
+        {
+            throw new IdentifiedException("Cannot calculate the key of the quantization cache", e);
+        }
+    }
+}
@@ -2,6 +2,9 @@ package quantization;
 
 import app.IdentifiedException;
 import config.Config;
+import quantization.awq.AwqQuantizer;
+import quantization.block.Q4Quantizer;
+import quantization.block.Q8Quantizer;
 import quantization.gptq.GptqQuantizer;
 import quantization.llmInt8.LlmInt8Quantizer;
 import quantization.qlora.QloraQuantizer;
@@ -10,8 +13,10 @@ public enum QuantizationType
 {
     LLM_INT_8,
     QLORA,
-    GPTQ;
-    //AWQ,
+    GPTQ,
+    AWQ,
+    Q8_0,
+    Q4_0;
     //HQQ,
     //QUIP,
     //AQLM,
@@ -36,6 +41,9 @@ public enum QuantizationType
             case LLM_INT_8  -> new LlmInt8Quantizer(config);
             case QLORA      -> new QloraQuantizer(config);
             case GPTQ       -> new GptqQuantizer(config);
+            case AWQ        -> new AwqQuantizer(config);
+            case Q8_0       -> new Q8Quantizer(config);
+            case Q4_0       -> new Q4Quantizer(config);
         };
     }
 }
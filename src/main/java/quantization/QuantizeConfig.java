@@ -7,6 +7,7 @@ import math.dataType.DataType;
 import java.util.List;
 import java.util.Map;
 
+import static quantization.gptq.GptqQuantizationUtil.DEFAULT_GROUP_SIZE;
 import static ui.TextUtil.equalsIgnoreTypo;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -19,12 +20,20 @@ public class QuantizeConfig
     private boolean transposeMatrix;
     private boolean deQuantizeOnLoad;
 
+    // Number of values which share the same scale (used by the group-wise quantization types, like GPTQ)
+    private Integer groupSize;
+
+    // The result of the quantization is stored in a cache folder, so the next load doesn't have to quantize again
+    private Boolean cacheOnDisk;
+
     // Getters
     public String getQuantizationType() {return quantizationType;}
     public List<String> getParameters() {return parameters;}
     public Map<String, String> getNaming() {return naming;}
     public boolean getTransposeMatrix() {return transposeMatrix;}
     public boolean getDeQuantizeOnLoad() {return deQuantizeOnLoad;}
+    public int getGroupSize() {return groupSize != null ? groupSize : DEFAULT_GROUP_SIZE;}
+    public boolean getCacheOnDisk() {return cacheOnDisk == null || cacheOnDisk;}
 
     public DataType getOutputFloatType()
     {
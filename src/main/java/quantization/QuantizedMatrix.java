@@ -4,7 +4,6 @@ import app.IdentifiedException;
 import math.dataType.DataType;
 import math.dataType.matrix.AbstractMatrix;
 import math.dataType.matrix.Matrix;
-import math.dataType.matrix.VectorArrayMatrix;
 import math.dataType.vector.Vector;
 
 public abstract class QuantizedMatrix extends AbstractMatrix
@@ -18,7 +17,7 @@ public abstract class QuantizedMatrix extends AbstractMatrix
 
     public Matrix toDeQuantized()
     {
-        var result = new VectorArrayMatrix(getInternalFloatType(), getRowCount(), getColCount());
+        var result = Matrix.emptyMatrix(getInternalFloatType(), getRowCount(), getColCount());
         for (var i = 0; i < getRowCount(); i++)
         {
             result.setRow(i, row(i));
@@ -26,6 +25,49 @@ public abstract class QuantizedMatrix extends AbstractMatrix
         return result;
     }
 
+    /**
+     * Multiplies the vector by the transposed matrix (dot product with the rows),
+     * calculating the result values of the rows between [from] and [to] (exclusive)
+     * The default implementation de-quantizes the values one by one (without creating a vector for every row),
+     * the quantization types can override it by a calculation directly on the quantized values.
+     */
+    public void mulVectorByTransposed(Vector vector, Vector result, int from, int to)
+    {
+        for (var rowId = from; rowId < to; rowId++)
+        {
+            var sum = 0f;
+            for (var colId = 0; colId < getColCount(); colId++)
+            {
+                sum = sum + vector.get(colId) * getValue(rowId, colId);
+            }
+
+            result.set(rowId, sum);
+        }
+    }
+
+    /**
+     * Multiplies the vector by the matrix, calculating the result values of the columns between [from] and [to]
+     * (The default implementation de-quantizes the values one by one, see mulVectorByTransposed.)
+     */
+    public void mulVector(Vector vector, Vector result, int from, int to)
+    {
+        var sums = new float[to - from];
+
+        for (var rowId = 0; rowId < getRowCount(); rowId++)
+        {
+            var value = vector.get(rowId);
+            for (var colId = from; colId < to; colId++)
+            {
+                sums[colId - from] += value * getValue(rowId, colId);
+            }
+        }
+
+        for (var colId = from; colId < to; colId++)
+        {
+            result.set(colId, sums[colId - from]);
+        }
+    }
+
     @Override
     public void setValue(int rowId, int colId, float value)
     {
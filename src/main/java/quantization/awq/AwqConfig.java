@@ -0,0 +1,29 @@
+package quantization.awq;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AwqConfig
+{
+    // Bit size (only 4 is used in practice)
+    @JsonAlias({"bits", "w_bit"})
+    private int bits = 4;
+
+    @JsonAlias({"group_size", "q_group_size"})
+    private int groupSize = 128;
+
+    // Asymmetric quantization (with zeros)
+    @JsonAlias({"zero_point"})
+    private boolean zeroPoint = true;
+
+    // Packing format of the kernel (GEMM, GEMV, ...)
+    @JsonAlias({"version"})
+    private String version = "gemm";
+
+    // Getters
+    public int getBits() {return bits;}
+    public int getGroupSize() {return groupSize;}
+    public boolean getZeroPoint() {return zeroPoint;}
+    public String getVersion() {return version;}
+}
@@ -0,0 +1,222 @@
+package quantization.awq;
+
+import math.dataType.DataType;
+import math.dataType.vector.Vector;
+import quantization.QuantizedMatrix;
+
+import static math.TypeConversionUtility.unpackAwq4bitsFromInt32;
+
+/**
+ * Matrix which holds the AWQ quantized values packed (as they are stored in the checkpoint),
+ * and calculates the vector-matrix multiplications directly on the packed values
+
+ * The weights of the linear layer are stored in [input][output] layout, the 4-bit quantized values of 8 outputs
+ * are packed into an int (in AWQ order, see TypeConversionUtility.unpackAwq4bitsFromInt32()).
+ * The consecutive inputs are grouped, the scale and the zero of the group is stored for every output.
+ * The de-quantization: weight = scale * (quantizedValue - zero)
+
+ * The unpacking is fused into the multiplication (the ints are unpacked one by one into a small buffer),
+ * and the scale and zero are applied once per group:
+ *     sum(input * scale * (q - zero)) = scale * (sum(input * q) - zero * sum(input))
+ * In the vertical (transposed) orientation the rows and columns are swapped without materializing the transpose.
+ */
+public class AwqMatrix extends QuantizedMatrix
+{
+    public static final int BITS = 4;
+    public static final int VALUES_PER_INT = 32 / BITS;
+
+    // Position of the output within the packed int (index of the 4 bits, starting at the lowest bits)
+    private static final int[] SHIFTS = {0, 16, 4, 20, 8, 24, 12, 28};
+
+    // Packed quantized values: [input][output / 8]
+    private final int[][] quantizedWeights;
+
+    // Scale and zero by group and output
+    private final float[][] scales;
+    private final float[][] zeros;
+
+    private final int groupSize;
+    private final int outputs;
+
+    // Transposed orientation: the rows are the outputs, the columns are the inputs
+    private final boolean isTransposed;
+
+    public AwqMatrix(DataType outputFloatType, int[][] quantizedWeights, float[][] scales, float[][] zeros,
+                     int groupSize, boolean isTransposed)
+    {
+        super(outputFloatType);
+        this.quantizedWeights = quantizedWeights;
+        this.scales = scales;
+        this.zeros = zeros;
+        this.groupSize = groupSize;
+        this.outputs = scales[0].length;
+        this.isTransposed = isTransposed;
+    }
+
+    @Override
+    public float getValue(int rowId, int colId)
+    {
+        var input = isTransposed ? colId : rowId;
+        var output = isTransposed ? rowId : colId;
+
+        var quantizedValue = (quantizedWeights[input][output / VALUES_PER_INT] >>> SHIFTS[output % VALUES_PER_INT]) & 0xF;
+
+        // This is the AWQ de-quantization algorithm:
+        var group = input / groupSize;
+        return scales[group][output] * (quantizedValue - zeros[group][output]);
+    }
+
+    @Override
+    public void mulVectorByTransposed(Vector vector, Vector result, int from, int to)
+    {
+        if (isTransposed)
+        {
+            mulVectorByOutputs(vector, result, from, to);
+        }
+        else
+        {
+            mulVectorByInputs(vector, result, from, to);
+        }
+    }
+
+    @Override
+    public void mulVector(Vector vector, Vector result, int from, int to)
+    {
+        if (isTransposed)
+        {
+            mulVectorByInputs(vector, result, from, to);
+        }
+        else
+        {
+            mulVectorByOutputs(vector, result, from, to);
+        }
+    }
+
+    /**
+     * Calculates the result values of the outputs between [from] and [to] (the vector has a value for every input)
+     * The sums of the values multiplied by the inputs (and the sum of the inputs) are collected within a group,
+     * and the scale and zero are applied at the end of the group.
+     */
+    private void mulVectorByOutputs(Vector vector, Vector result, int from, int to)
+    {
+        var input = vector.getValues();
+        var sums = new float[to - from];
+        var groupSums = new float[to - from];
+        var groupInputSum = 0f;
+
+        // The ints which contain the outputs between [from] and [to]
+        var firstPack = from / VALUES_PER_INT;
+        var lastPack = (to - 1) / VALUES_PER_INT;
+        var unpacked = new int[VALUES_PER_INT];
+
+        for (var inputId = 0; inputId < input.length; inputId++)
+        {
+            var value = input[inputId];
+            var packedRow = quantizedWeights[inputId];
+
+            for (var pack = firstPack; pack <= lastPack; pack++)
+            {
+                unpackAwq4bitsFromInt32(packedRow[pack], unpacked, 0);
+
+                var first = Math.max(from, pack * VALUES_PER_INT);
+                var last = Math.min(to, (pack + 1) * VALUES_PER_INT);
+
+                for (var output = first; output < last; output++)
+                {
+                    groupSums[output - from] += value * unpacked[output - pack * VALUES_PER_INT];
+                }
+            }
+
+            groupInputSum += value;
+
+            if ((inputId + 1) % groupSize == 0 || inputId == input.length - 1)
+            {
+                applyGroup(inputId / groupSize, groupSums, groupInputSum, sums, from, to);
+                groupInputSum = 0f;
+            }
+        }
+
+        for (var output = from; output < to; output++)
+        {
+            result.set(output, sums[output - from]);
+        }
+    }
+
+    private void applyGroup(int group, float[] groupSums, float groupInputSum, float[] sums, int from, int to)
+    {
+        var groupScales = scales[group];
+        var groupZeros = zeros[group];
+
+        for (var output = from; output < to; output++)
+        {
+            var i = output - from;
+            sums[i] += groupScales[output] * (groupSums[i] - groupZeros[output] * groupInputSum);
+            groupSums[i] = 0;
+        }
+    }
+
+    /**
+     * Calculates the result values of the inputs between [from] and [to] (the vector has a value for every output)
+     * The vector is scaled by the scales of the group (once per group), and the sum of the zeros
+     * is subtracted from the dot product.
+     */
+    private void mulVectorByInputs(Vector vector, Vector result, int from, int to)
+    {
+        var input = vector.getValues();
+        var unpacked = new int[VALUES_PER_INT];
+
+        // Scaled input and the sum of the scaled zeros of the current group
+        var scaledInput = new float[outputs];
+        var zeroSum = 0f;
+        var group = -1;
+
+        for (var inputId = from; inputId < to; inputId++)
+        {
+            if (inputId / groupSize != group)
+            {
+                group = inputId / groupSize;
+                zeroSum = 0f;
+
+                for (var output = 0; output < outputs; output++)
+                {
+                    scaledInput[output] = input[output] * scales[group][output];
+                    zeroSum += scaledInput[output] * zeros[group][output];
+                }
+            }
+
+            var packedRow = quantizedWeights[inputId];
+            var sum = 0f;
+
+            for (var pack = 0; pack < packedRow.length; pack++)
+            {
+                unpackAwq4bitsFromInt32(packedRow[pack], unpacked, 0);
+
+                var offset = pack * VALUES_PER_INT;
+                for (var i = 0; i < VALUES_PER_INT; i++)
+                {
+                    sum += scaledInput[offset + i] * unpacked[i];
+                }
+            }
+
+            result.set(inputId, sum - zeroSum);
+        }
+    }
+
+    // Getters
+    public int[][] getQuantizedWeights() {return quantizedWeights;}
+    public float[][] getScales() {return scales;}
+    public float[][] getZeros() {return zeros;}
+    public int getGroupSize() {return groupSize;}
+
+    @Override
+    public int getRowCount()
+    {
+        return isTransposed ? outputs : quantizedWeights.length;
+    }
+
+    @Override
+    public int getColCount()
+    {
+        return isTransposed ? quantizedWeights.length : outputs;
+    }
+}
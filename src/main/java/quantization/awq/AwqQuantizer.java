@@ -0,0 +1,167 @@
+package quantization.awq;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import app.IdentifiedException;
+import config.Config;
+import config.ParameterType;
+import math.dataType.matrix.Matrix;
+import parameters.ParameterReader;
+import quantization.AbstractQuantizer;
+import quantization.QuantizedMatrix;
+
+import java.io.File;
+
+import static math.TypeConversionUtility.unpackAwq4bitsFromInt32;
+import static parameters.FileUtil.readTextFile;
+import static quantization.awq.AwqMatrix.BITS;
+import static quantization.awq.AwqMatrix.VALUES_PER_INT;
+
+/**
+ * Parameter reader for AWQ quantization (the weights are kept packed in an AwqMatrix)
+
+ * AWQ (Activation-aware Weight Quantization) (MIT, SJTU, Tsinghua)
+ * Publication (1 Jun 2023): https://arxiv.org/abs/2306.00978
+ * Code for the publication: https://github.com/mit-han-lab/llm-awq (Used format: AutoAWQ, GEMM version)
+
+ * The activation-aware part is applied at the quantization (the salient weights are scaled before rounding,
+ * and the inverse scale is merged into the previous operation), so the de-quantization is a simple group-wise
+ * asymmetric 4-bit de-quantization, similar to GPTQ. (But the values are packed along the outputs, and not the inputs.)
+
+ * @author Hunor Szegi
+ */
+public class AwqQuantizer extends AbstractQuantizer
+{
+    private static final String ZEROS_KEY = "zeros";
+    private static final String SCALES_KEY = "scales";
+    private static final String WEIGHTS_KEY = "weights";
+
+    private AwqConfig awqConfig;
+
+    public AwqQuantizer(Config config)
+    {
+        super(config);
+
+        addDefaultNaming(ZEROS_KEY, "{name-1}.qzeros");
+        addDefaultNaming(SCALES_KEY, "{name-1}.scales");
+        addDefaultNaming(WEIGHTS_KEY, "{name-1}.qweight");
+    }
+
+    @Override
+    public QuantizedMatrix quantize(ParameterType parameterType, Matrix matrix)
+    {
+        throw new IdentifiedException("Quantization to AWQ format isn't supported (only the loading of AWQ models)");
+    }
+
+    @Override
+    public Matrix load(ParameterReader reader, ParameterType parameterType, String parameterId, int rows, int cols)
+    {
+        var awqConfig = getAwqConfig();
+
+        if (awqConfig.getBits() != BITS || !awqConfig.getZeroPoint() || !awqConfig.getVersion().equalsIgnoreCase("gemm"))
+        {
+            throw new IdentifiedException("AWQ quantization is supported only with 4 bits, zero point, GEMM version. " +
+                    "(bits: " + awqConfig.getBits() + ", zero point: " + awqConfig.getZeroPoint() +
+                    ", version: " + awqConfig.getVersion() + ")");
+        }
+
+        if (parameterType.isVertical())
+        {
+            // The stored layout is the same in both orientations, the matrix is read as transposed
+            return readMatrixInternal(awqConfig, reader, parameterId, cols, rows, true);
+        }
+        else
+        {
+            return readMatrixInternal(awqConfig, reader, parameterId, rows, cols, false);
+        }
+    }
+
+    private Matrix readMatrixInternal(AwqConfig awqConfig, ParameterReader reader, String id, int inputs, int outputs,
+                                      boolean isTransposed)
+    {
+        var groupSize = awqConfig.getGroupSize() > 0 ? awqConfig.getGroupSize() : inputs;
+        var groups = (inputs + groupSize - 1) / groupSize;
+        var packedOutputs = outputs / VALUES_PER_INT;
+
+        // Quantized weights and zeros (packed ints), scales (FLOAT 16)
+        int[][] quantizedWeights = reader.readIntArray2D(getFinalParameterId(id, WEIGHTS_KEY), inputs, packedOutputs);
+        int[][] packedZeros = reader.readIntArray2D(getFinalParameterId(id, ZEROS_KEY), groups, packedOutputs);
+        Matrix scalesMatrix = reader.readFloat16Matrix(getFinalParameterId(id, SCALES_KEY), groups, outputs);
+
+        // The zeros and scales are small (one value per group), these are unpacked at load
+        var zeros = new float[groups][outputs];
+        var scales = new float[groups][];
+        var unpacked = new int[outputs];
+
+        for (var group = 0; group < groups; group++)
+        {
+            for (var pack = 0; pack < packedOutputs; pack++)
+            {
+                unpackAwq4bitsFromInt32(packedZeros[group][pack], unpacked, pack * VALUES_PER_INT);
+            }
+
+            for (var output = 0; output < outputs; output++)
+            {
+                zeros[group][output] = unpacked[output];
+            }
+
+            scales[group] = scalesMatrix.row(group).getValues();
+        }
+
+        return new AwqMatrix(getOutputFloatType(), quantizedWeights, scales, zeros, groupSize, isTransposed);
+    }
+
+    /**
+     * Reads the AWQ config from the quant_config.json, or from the quantization_config section of the config.json
+     * (If none of them exists, the default settings are used.)
+     */
+    private synchronized AwqConfig getAwqConfig()
+    {
+        if (awqConfig == null)
+        {
+            try
+            {
+                var mapper = new ObjectMapper();
+                var quantConfigFile = new File(config.getModelPath() + "/quant_config.json");
+                var configFile = new File(config.getModelPath() + "/config.json");
+
+                var configNode = configFile.exists()
+                        ? mapper.readTree(readTextFile(configFile.getPath())).get("quantization_config")
+                        : null;
+
+                if (quantConfigFile.exists())
+                {
+                    awqConfig = mapper.readValue(readTextFile(quantConfigFile.getPath()), AwqConfig.class);
+                }
+                else if (configNode != null)
+                {
+                    awqConfig = mapper.treeToValue(configNode, AwqConfig.class);
+                }
+                else
+                {
+                    System.out.println("WARNING: AWQ config not found, the default settings are used.");
+                    awqConfig = new AwqConfig();
+                }
+            }
+            catch (JsonProcessingException e)
+            {
+                throw new IdentifiedException("Error during reading the AWQ config", e);
+            }
+        }
+
+        return awqConfig;
+    }
+
+    @Override
+    public long calculateByteSize(ParameterReader reader, String parameterId, int size)
+    {
+        // 4 bits per value, the scales and zeros are small
+        return size / 2;
+    }
+
+    @Override
+    public long calculateByteSize(ParameterReader reader, String parameterId, int rows, int cols)
+    {
+        return (long) rows * cols / 2;
+    }
+}
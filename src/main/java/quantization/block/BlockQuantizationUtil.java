@@ -0,0 +1,145 @@
+package quantization.block;
+
+import math.dataType.DataType;
+import math.dataType.Float16;
+import math.dataType.matrix.Matrix;
+
+import static math.MathUtil.MATH;
+import static math.ParallelUtil.forEachBlock;
+import static quantization.block.BlockQuantizedMatrix.BLOCK_SIZE;
+import static quantization.block.BlockQuantizedMatrix.getBlockCount;
+
+/**
+ * Block-wise quantization of a weight matrix into Q8_0 or Q4_0 format (the result is a Q8Matrix or Q4Matrix)
+
+ * The quantization is a single pass on the values (every block is rounded to the nearest values by its own scale),
+ * and the outputs are independent, so the outputs are processed parallel.
+ */
+public class BlockQuantizationUtil
+{
+    private interface BlockQuantizer
+    {
+        /**
+         * Quantizes the values of a block (between [start] and [end]) into the result (from [resultOffset]),
+         * returns the scale of the block
+         */
+        float quantize(float[] values, int start, int end, byte[] result, int resultOffset);
+    }
+
+    /**
+     * Quantizes the matrix (in horizontal ([input][output]) or vertical ([output][input]) orientation) into Q8_0 format
+     */
+    public static Q8Matrix quantizeQ8(Matrix matrix, boolean isVertical, DataType outputFloatType)
+    {
+        var inputSize = isVertical ? matrix.getColCount() : matrix.getRowCount();
+        var outputs = isVertical ? matrix.getRowCount() : matrix.getColCount();
+
+        var quantizedValues = new byte[outputs][getBlockCount(inputSize) * Q8Matrix.BYTES_PER_BLOCK];
+        var scales = new short[outputs][getBlockCount(inputSize)];
+
+        quantize(matrix, isVertical, Q8Matrix.BYTES_PER_BLOCK, quantizedValues, scales, BlockQuantizationUtil::quantizeQ8Block);
+
+        return new Q8Matrix(outputFloatType, quantizedValues, scales, inputSize, !isVertical);
+    }
+
+    /**
+     * Quantizes the matrix (in horizontal ([input][output]) or vertical ([output][input]) orientation) into Q4_0 format
+     */
+    public static Q4Matrix quantizeQ4(Matrix matrix, boolean isVertical, DataType outputFloatType)
+    {
+        var inputSize = isVertical ? matrix.getColCount() : matrix.getRowCount();
+        var outputs = isVertical ? matrix.getRowCount() : matrix.getColCount();
+
+        var quantizedValues = new byte[outputs][getBlockCount(inputSize) * Q4Matrix.BYTES_PER_BLOCK];
+        var scales = new short[outputs][getBlockCount(inputSize)];
+
+        quantize(matrix, isVertical, Q4Matrix.BYTES_PER_BLOCK, quantizedValues, scales, BlockQuantizationUtil::quantizeQ4Block);
+
+        return new Q4Matrix(outputFloatType, quantizedValues, scales, inputSize, !isVertical);
+    }
+
+    private static void quantize(Matrix matrix, boolean isVertical, int bytesPerBlock, byte[][] quantizedValues,
+                                 short[][] scales, BlockQuantizer blockQuantizer)
+    {
+        // The values are quantized in [output][input] layout, so the horizontal parameters are transposed
+        var source = isVertical ? matrix : MATH.transposeMatrix(matrix);
+        var inputSize = source.getColCount();
+
+        // Every output is written to its own row of the result arrays, so the blocks are independent
+        forEachBlock(source.getRowCount(), 16, (from, to) ->
+        {
+            for (var output = from; output < to; output++)
+            {
+                var row = source.row(output).getValues();
+
+                for (var block = 0; block < scales[output].length; block++)
+                {
+                    var start = block * BLOCK_SIZE;
+                    var end = Math.min(start + BLOCK_SIZE, inputSize);
+
+                    var scale = blockQuantizer.quantize(row, start, end, quantizedValues[output], block * bytesPerBlock);
+                    scales[output][block] = Float16.toShort(scale);
+                }
+            }
+        });
+    }
+
+    /**
+     * Q8_0: symmetric quantization, the scale is the absolute maximum / 127
+     */
+    private static float quantizeQ8Block(float[] values, int start, int end, byte[] result, int resultOffset)
+    {
+        var absMax = 0f;
+        for (var i = start; i < end; i++)
+        {
+            absMax = Math.max(absMax, Math.abs(values[i]));
+        }
+
+        var scale = absMax / 127;
+        var inverseScale = scale == 0 ? 0 : 1 / scale;
+
+        for (var i = start; i < end; i++)
+        {
+            result[resultOffset + i - start] = (byte) Math.round(values[i] * inverseScale);
+        }
+
+        return scale;
+    }
+
+    /**
+     * Q4_0: the value with the largest magnitude is mapped to -8 (the extreme of the possible values, -8..7),
+     * so the sign of the scale follows the sign of that value
+     */
+    private static float quantizeQ4Block(float[] values, int start, int end, byte[] result, int resultOffset)
+    {
+        var max = 0f;
+        for (var i = start; i < end; i++)
+        {
+            if (Math.abs(values[i]) > Math.abs(max))
+            {
+                max = values[i];
+            }
+        }
+
+        var scale = max / -Q4Matrix.OFFSET;
+        var inverseScale = scale == 0 ? 0 : 1 / scale;
+
+        for (var j = 0; j < Q4Matrix.BYTES_PER_BLOCK; j++)
+        {
+            var low = quantizeQ4Value(values, start + j, end, inverseScale);
+            var high = quantizeQ4Value(values, start + j + Q4Matrix.BYTES_PER_BLOCK, end, inverseScale);
+
+            result[resultOffset + j] = (byte) (low | (high << 4));
+        }
+
+        return scale;
+    }
+
+    private static int quantizeQ4Value(float[] values, int index, int end, float inverseScale)
+    {
+        // The padding of a partial block is quantized to zero
+        if (index >= end) return Q4Matrix.OFFSET;
+
+        return Math.max(0, Math.min(15, Math.round(values[index] * inverseScale) + Q4Matrix.OFFSET));
+    }
+}
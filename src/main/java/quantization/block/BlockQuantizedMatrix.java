@@ -0,0 +1,161 @@
+package quantization.block;
+
+import math.dataType.DataType;
+import math.dataType.Float16;
+import math.dataType.vector.Vector;
+import quantization.QuantizedMatrix;
+
+/**
+ * Matrix which holds block-quantized values (in the style of the llama.cpp / GGML Q8_0 and Q4_0 formats)
+
+ * The values are stored in [output][input] layout, and the inputs are split into blocks of 32 values.
+ * Every block has its own scale (stored as FLOAT 16), the de-quantization: weight = scale * quantizedValue
+ * The scale is applied once per block at the calculations (and not for every value):
+ *     sum(input * scale * q) = scale * sum(input * q)
+
+ * In the horizontal (transposed) orientation the rows and columns are swapped without materializing the transpose.
+ */
+public abstract class BlockQuantizedMatrix extends QuantizedMatrix
+{
+    public static final int BLOCK_SIZE = 32;
+
+    // Quantized values: [output][input block * bytes per block]
+    protected final byte[][] quantizedValues;
+
+    // Scale (FLOAT 16) by output and input block
+    protected final short[][] scales;
+
+    protected final int inputSize;
+
+    // Transposed orientation: the rows are the inputs, the columns are the outputs
+    private final boolean isTransposed;
+
+    public BlockQuantizedMatrix(DataType outputFloatType, byte[][] quantizedValues, short[][] scales, int inputSize,
+                                boolean isTransposed)
+    {
+        super(outputFloatType);
+        this.quantizedValues = quantizedValues;
+        this.scales = scales;
+        this.inputSize = inputSize;
+        this.isTransposed = isTransposed;
+    }
+
+    /**
+     * Returns the quantized value of an input within the row of an output (without the scale)
+     */
+    protected abstract int getQuantizedValue(int output, int input);
+
+    /**
+     * Dot product of the input values and the quantized row of an output
+     */
+    protected abstract float dotProduct(float[] input, int output);
+
+    @Override
+    public float getValue(int rowId, int colId)
+    {
+        var output = isTransposed ? colId : rowId;
+        var input = isTransposed ? rowId : colId;
+
+        // This is the de-quantization algorithm:
+        return Float16.toFloat32(scales[output][input / BLOCK_SIZE]) * getQuantizedValue(output, input);
+    }
+
+    @Override
+    public void mulVectorByTransposed(Vector vector, Vector result, int from, int to)
+    {
+        if (isTransposed)
+        {
+            mulVectorByInputs(vector, result, from, to);
+        }
+        else
+        {
+            mulVectorByOutputs(vector, result, from, to);
+        }
+    }
+
+    @Override
+    public void mulVector(Vector vector, Vector result, int from, int to)
+    {
+        if (isTransposed)
+        {
+            mulVectorByOutputs(vector, result, from, to);
+        }
+        else
+        {
+            mulVectorByInputs(vector, result, from, to);
+        }
+    }
+
+    /**
+     * Calculates the result values of the outputs between [from] and [to] (the vector has a value for every input)
+     */
+    private void mulVectorByOutputs(Vector vector, Vector result, int from, int to)
+    {
+        var input = vector.getValues();
+
+        for (var output = from; output < to; output++)
+        {
+            result.set(output, dotProduct(input, output));
+        }
+    }
+
+    /**
+     * Calculates the result values of the inputs between [from] and [to] (the vector has a value for every output)
+     * The vector value is multiplied by the scale once per block.
+     */
+    private void mulVectorByInputs(Vector vector, Vector result, int from, int to)
+    {
+        var sums = new float[to - from];
+
+        for (var output = 0; output < quantizedValues.length; output++)
+        {
+            var value = vector.get(output);
+            var rowScales = scales[output];
+
+            var scaledValue = 0f;
+            var block = -1;
+
+            for (var input = from; input < to; input++)
+            {
+                if (input / BLOCK_SIZE != block)
+                {
+                    block = input / BLOCK_SIZE;
+                    scaledValue = value * Float16.toFloat32(rowScales[block]);
+                }
+
+                sums[input - from] += scaledValue * getQuantizedValue(output, input);
+            }
+        }
+
+        for (var input = from; input < to; input++)
+        {
+            result.set(input, sums[input - from]);
+        }
+    }
+
+    /**
+     * Returns the number of blocks in a row (the last block can be partial)
+     */
+    public static int getBlockCount(int inputSize)
+    {
+        return (inputSize + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    // Getters
+    public byte[][] getQuantizedValues() {return quantizedValues;}
+    public short[][] getScales() {return scales;}
+    public int getInputSize() {return inputSize;}
+    public boolean isTransposed() {return isTransposed;}
+
+    @Override
+    public int getRowCount()
+    {
+        return isTransposed ? inputSize : quantizedValues.length;
+    }
+
+    @Override
+    public int getColCount()
+    {
+        return isTransposed ? quantizedValues.length : inputSize;
+    }
+}
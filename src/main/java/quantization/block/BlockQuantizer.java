@@ -0,0 +1,83 @@
+package quantization.block;
+
+import config.Config;
+import config.ParameterType;
+import math.dataType.matrix.Matrix;
+import parameters.ParameterReader;
+import parameters.safetensors.SafetensorsWriter;
+import quantization.AbstractQuantizer;
+import quantization.QuantizedMatrix;
+
+import static quantization.block.BlockQuantizedMatrix.getBlockCount;
+
+/**
+ * Common parameter reader of the block-quantized formats (Q8_0, Q4_0)
+
+ * The values are stored in [output][input] layout (like the vertical parameters), in blocks of 32 inputs:
+ *   - `{name}`: the quantized values (I8 or U8, [outputs][blocks * bytes per block])
+ *   - `{name-1}.scales`: the scales of the blocks (F16, [outputs][blocks])
+
+ * The quantization on load is implemented in the BlockQuantizationUtil.
+ */
+public abstract class BlockQuantizer extends AbstractQuantizer
+{
+    private static final String SCALES_KEY = "scales";
+    private static final String WEIGHTS_KEY = "weights";
+
+    public BlockQuantizer(Config config)
+    {
+        super(config);
+        addDefaultNaming(SCALES_KEY, "{name-1}.scales");
+        addDefaultNaming(WEIGHTS_KEY, "{name}");
+    }
+
+    /**
+     * Number of bytes used by the quantized values of a block
+     */
+    protected abstract int getBytesPerBlock();
+
+    protected abstract BlockQuantizedMatrix createMatrix(byte[][] quantizedValues, short[][] scales, int inputSize,
+                                                         boolean isTransposed);
+
+    protected abstract Class<? extends BlockQuantizedMatrix> getMatrixClass();
+
+    @Override
+    public Matrix load(ParameterReader reader, ParameterType parameterType, String parameterId, int rows, int cols)
+    {
+        var isTransposed = parameterType.isHorizontal();
+        var outputs = isTransposed ? cols : rows;
+        var inputSize = isTransposed ? rows : cols;
+        var blocks = getBlockCount(inputSize);
+
+        var scales = reader.readShortArray2D(getFinalParameterId(parameterId, SCALES_KEY), outputs, blocks);
+        var quantizedValues = reader.readByteArray2D(getFinalParameterId(parameterId, WEIGHTS_KEY),
+                outputs, blocks * getBytesPerBlock());
+
+        return createMatrix(quantizedValues, scales, inputSize, isTransposed);
+    }
+
+    @Override
+    public boolean save(SafetensorsWriter writer, ParameterType parameterType, String parameterId, QuantizedMatrix matrix)
+    {
+        if ( !getMatrixClass().isInstance(matrix)) return false;
+
+        var blockMatrix = (BlockQuantizedMatrix) matrix;
+
+        writer.addFloat16Array2D(getFinalParameterId(parameterId, SCALES_KEY), blockMatrix.getScales());
+        writer.addByteArray2D(getFinalParameterId(parameterId, WEIGHTS_KEY), blockMatrix.getQuantizedValues());
+
+        return true;
+    }
+
+    @Override
+    public long calculateByteSize(ParameterReader reader, String parameterId, int size)
+    {
+        return getBlockCount(size) * (getBytesPerBlock() + 2L);
+    }
+
+    @Override
+    public long calculateByteSize(ParameterReader reader, String parameterId, int rows, int cols)
+    {
+        return rows * calculateByteSize(reader, parameterId, cols);
+    }
+}
@@ -0,0 +1,74 @@
+package quantization.block;
+
+import math.dataType.DataType;
+import math.dataType.Float16;
+
+/**
+ * Block-quantized matrix in Q4_0 format: a 4-bit value for every value (0..15, with an implicit offset of 8),
+ * and a scale for every block
+
+ * Two values are packed into a byte, in the same layout as llama.cpp uses:
+ * the byte [j] of a block holds the value [j] on the lower, and the value [j + 16] on the higher 4 bits.
+ * (So the lower and the higher halves of the bytes can be unpacked as two continuous parts of the block.)
+ */
+public class Q4Matrix extends BlockQuantizedMatrix
+{
+    public static final int BYTES_PER_BLOCK = BLOCK_SIZE / 2;
+    public static final int OFFSET = 8;
+
+    public Q4Matrix(DataType outputFloatType, byte[][] quantizedValues, short[][] scales, int inputSize,
+                    boolean isTransposed)
+    {
+        super(outputFloatType, quantizedValues, scales, inputSize, isTransposed);
+    }
+
+    @Override
+    protected int getQuantizedValue(int output, int input)
+    {
+        var index = input % BLOCK_SIZE;
+        var packed = quantizedValues[output][input / BLOCK_SIZE * BYTES_PER_BLOCK + index % BYTES_PER_BLOCK];
+
+        var value = index < BYTES_PER_BLOCK ? packed & 0x0F : (packed >> 4) & 0x0F;
+        return value - OFFSET;
+    }
+
+    @Override
+    protected float dotProduct(float[] input, int output)
+    {
+        var values = quantizedValues[output];
+        var rowScales = scales[output];
+        var fullBlocks = inputSize / BLOCK_SIZE;
+        var sum = 0f;
+
+        for (var block = 0; block < fullBlocks; block++)
+        {
+            var start = block * BLOCK_SIZE;
+            var byteOffset = block * BYTES_PER_BLOCK;
+            var blockSum = 0f;
+
+            for (var j = 0; j < BYTES_PER_BLOCK; j++)
+            {
+                var packed = values[byteOffset + j];
+
+                blockSum += input[start + j] * ((packed & 0x0F) - OFFSET)
+                        + input[start + j + BYTES_PER_BLOCK] * (((packed >> 4) & 0x0F) - OFFSET);
+            }
+
+            sum += blockSum * Float16.toFloat32(rowScales[block]);
+        }
+
+        if (fullBlocks < rowScales.length)
+        {
+            // The last (partial) block
+            var blockSum = 0f;
+            for (var i = fullBlocks * BLOCK_SIZE; i < inputSize; i++)
+            {
+                blockSum += input[i] * getQuantizedValue(output, i);
+            }
+
+            sum += blockSum * Float16.toFloat32(rowScales[fullBlocks]);
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,42 @@
+package quantization.block;
+
+import config.Config;
+import config.ParameterType;
+import math.dataType.matrix.Matrix;
+import quantization.QuantizedMatrix;
+
+/**
+ * Quantizer and parameter reader of the Q4_0 block-quantized format (see Q4Matrix)
+ */
+public class Q4Quantizer extends BlockQuantizer
+{
+    public Q4Quantizer(Config config)
+    {
+        super(config);
+    }
+
+    @Override
+    protected int getBytesPerBlock()
+    {
+        return Q4Matrix.BYTES_PER_BLOCK;
+    }
+
+    @Override
+    public QuantizedMatrix quantize(ParameterType parameterType, Matrix matrix)
+    {
+        return BlockQuantizationUtil.quantizeQ4(matrix, !parameterType.isHorizontal(), getOutputFloatType());
+    }
+
+    @Override
+    protected BlockQuantizedMatrix createMatrix(byte[][] quantizedValues, short[][] scales, int inputSize,
+                                                boolean isTransposed)
+    {
+        return new Q4Matrix(getOutputFloatType(), quantizedValues, scales, inputSize, isTransposed);
+    }
+
+    @Override
+    protected Class<? extends BlockQuantizedMatrix> getMatrixClass()
+    {
+        return Q4Matrix.class;
+    }
+}
@@ -0,0 +1,48 @@
+package quantization.block;
+
+import math.dataType.DataType;
+import math.dataType.Float16;
+
+/**
+ * Block-quantized matrix in Q8_0 format: a signed byte for every value (-127..127), and a scale for every block
+ */
+public class Q8Matrix extends BlockQuantizedMatrix
+{
+    public static final int BYTES_PER_BLOCK = BLOCK_SIZE;
+
+    public Q8Matrix(DataType outputFloatType, byte[][] quantizedValues, short[][] scales, int inputSize,
+                    boolean isTransposed)
+    {
+        super(outputFloatType, quantizedValues, scales, inputSize, isTransposed);
+    }
+
+    @Override
+    protected int getQuantizedValue(int output, int input)
+    {
+        return quantizedValues[output][input];
+    }
+
+    @Override
+    protected float dotProduct(float[] input, int output)
+    {
+        var values = quantizedValues[output];
+        var rowScales = scales[output];
+        var sum = 0f;
+
+        for (var block = 0; block < rowScales.length; block++)
+        {
+            var start = block * BLOCK_SIZE;
+            var end = Math.min(start + BLOCK_SIZE, inputSize);
+            var blockSum = 0f;
+
+            for (var i = start; i < end; i++)
+            {
+                blockSum += input[i] * values[i];
+            }
+
+            sum += blockSum * Float16.toFloat32(rowScales[block]);
+        }
+
+        return sum;
+    }
+}
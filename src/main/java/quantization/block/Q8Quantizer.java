@@ -0,0 +1,42 @@
+package quantization.block;
+
+import config.Config;
+import config.ParameterType;
+import math.dataType.matrix.Matrix;
+import quantization.QuantizedMatrix;
+
+/**
+ * Quantizer and parameter reader of the Q8_0 block-quantized format (see Q8Matrix)
+ */
+public class Q8Quantizer extends BlockQuantizer
+{
+    public Q8Quantizer(Config config)
+    {
+        super(config);
+    }
+
+    @Override
+    protected int getBytesPerBlock()
+    {
+        return Q8Matrix.BYTES_PER_BLOCK;
+    }
+
+    @Override
+    public QuantizedMatrix quantize(ParameterType parameterType, Matrix matrix)
+    {
+        return BlockQuantizationUtil.quantizeQ8(matrix, !parameterType.isHorizontal(), getOutputFloatType());
+    }
+
+    @Override
+    protected BlockQuantizedMatrix createMatrix(byte[][] quantizedValues, short[][] scales, int inputSize,
+                                                boolean isTransposed)
+    {
+        return new Q8Matrix(getOutputFloatType(), quantizedValues, scales, inputSize, isTransposed);
+    }
+
+    @Override
+    protected Class<? extends BlockQuantizedMatrix> getMatrixClass()
+    {
+        return Q8Matrix.class;
+    }
+}
@@ -0,0 +1,250 @@
+package quantization.gptq;
+
+import math.dataType.DataType;
+import math.dataType.vector.Vector;
+import quantization.QuantizedMatrix;
+
+/**
+ * Matrix which holds the GPTQ quantized values packed (as they are stored in the checkpoint),
+ * and calculates the vector-matrix multiplications directly on the packed values
+
+ * The weights of the linear layer are stored in [input][output] layout, the quantized values of multiple inputs
+ * are packed into an int (int4: 8 values). Every input belongs to a group (by the group index), the scale and the zero
+ * of the group is stored for every output. The de-quantization: weight = scale * (quantizedValue - zero)
+
+ * The group-wise calculation applies the scale and the zero once per group (and not for every value):
+ *     sum(input * scale * (q - zero)) = scale * (sum(input * q) - zero * sum(input))
+ * In the vertical (transposed) orientation the rows and columns are swapped without materializing the transpose.
+ */
+public class GptqMatrix extends QuantizedMatrix
+{
+    private final int bits;
+    private final int valuesPerInt;
+    private final int mask;
+
+    // Packed quantized values: [input / valuesPerInt][output]
+    private final int[][] quantizedWeights;
+
+    // Group index by input, and the scale and zero by group and output
+    private final int[] groupIndexes;
+    private final float[][] scales;
+    private final float[][] zeros;
+
+    // Transposed orientation: the rows are the outputs, the columns are the inputs
+    private final boolean isTransposed;
+
+    // The order of the inputs, where the members of a group are next to each other
+    // (With act order the groups are mixed, otherwise it is the natural order.)
+    private final int[] inputOrder;
+
+    public GptqMatrix(DataType outputFloatType, int bits, int[][] quantizedWeights, int[] groupIndexes,
+                      float[][] scales, float[][] zeros, boolean isTransposed)
+    {
+        super(outputFloatType);
+        this.bits = bits;
+        this.valuesPerInt = 32 / bits;
+        this.mask = (1 << bits) - 1;
+        this.quantizedWeights = quantizedWeights;
+        this.groupIndexes = groupIndexes;
+        this.scales = scales;
+        this.zeros = zeros;
+        this.isTransposed = isTransposed;
+        this.inputOrder = orderByGroup(groupIndexes, scales.length);
+    }
+
+    @Override
+    public float getValue(int rowId, int colId)
+    {
+        var input = isTransposed ? colId : rowId;
+        var output = isTransposed ? rowId : colId;
+
+        // This is the core GPTQ de-quantization algorithm:
+        var group = groupIndexes[input];
+        return scales[group][output] * (getQuantizedValue(input, output) - zeros[group][output]);
+    }
+
+    @Override
+    public void mulVectorByTransposed(Vector vector, Vector result, int from, int to)
+    {
+        if (isTransposed)
+        {
+            mulVectorByOutputs(vector, result, from, to);
+        }
+        else
+        {
+            mulVectorByInputs(vector, result, from, to);
+        }
+    }
+
+    @Override
+    public void mulVector(Vector vector, Vector result, int from, int to)
+    {
+        if (isTransposed)
+        {
+            mulVectorByInputs(vector, result, from, to);
+        }
+        else
+        {
+            mulVectorByOutputs(vector, result, from, to);
+        }
+    }
+
+    /**
+     * Calculates the result values of the outputs between [from] and [to] (the vector has a value for every input)
+     * The sums of the values multiplied by the inputs (and the sum of the inputs) are collected within a group,
+     * and the scale and zero are applied at the end of the group.
+     */
+    private void mulVectorByOutputs(Vector vector, Vector result, int from, int to)
+    {
+        var input = vector.getValues();
+        var sums = new float[to - from];
+        var groupSums = new float[to - from];
+        var groupInputSum = 0f;
+        var group = -1;
+
+        for (var inputId : inputOrder)
+        {
+            if (groupIndexes[inputId] != group)
+            {
+                applyGroup(group, groupSums, groupInputSum, sums, from, to);
+                group = groupIndexes[inputId];
+                groupInputSum = 0f;
+            }
+
+            var value = input[inputId];
+            var packedRow = quantizedWeights[inputId / valuesPerInt];
+            var shift = getShift(inputId);
+
+            for (var output = from; output < to; output++)
+            {
+                groupSums[output - from] += value * ((packedRow[output] >>> shift) & mask);
+            }
+
+            groupInputSum += value;
+        }
+
+        applyGroup(group, groupSums, groupInputSum, sums, from, to);
+
+        for (var output = from; output < to; output++)
+        {
+            result.set(output, sums[output - from]);
+        }
+    }
+
+    private void applyGroup(int group, float[] groupSums, float groupInputSum, float[] sums, int from, int to)
+    {
+        if (group < 0) return;
+
+        var groupScales = scales[group];
+        var groupZeros = zeros[group];
+
+        for (var output = from; output < to; output++)
+        {
+            var i = output - from;
+            sums[i] += groupScales[output] * (groupSums[i] - groupZeros[output] * groupInputSum);
+            groupSums[i] = 0;
+        }
+    }
+
+    /**
+     * Calculates the result values of the inputs between [from] and [to] (the vector has a value for every output)
+     * The vector is scaled by the scales of the group (once per group), and the sum of the zeros
+     * is subtracted from the dot product.
+     */
+    private void mulVectorByInputs(Vector vector, Vector result, int from, int to)
+    {
+        var input = vector.getValues();
+        var outputs = input.length;
+
+        // Scaled input and the sum of the scaled zeros by group (calculated on demand)
+        var scaledInputs = new float[scales.length][];
+        var zeroSums = new float[scales.length];
+
+        for (var inputId = from; inputId < to; inputId++)
+        {
+            var group = groupIndexes[inputId];
+            var scaledInput = scaledInputs[group];
+
+            if (scaledInput == null)
+            {
+                scaledInput = new float[outputs];
+                var zeroSum = 0f;
+
+                for (var output = 0; output < outputs; output++)
+                {
+                    scaledInput[output] = input[output] * scales[group][output];
+                    zeroSum += scaledInput[output] * zeros[group][output];
+                }
+
+                scaledInputs[group] = scaledInput;
+                zeroSums[group] = zeroSum;
+            }
+
+            var packedRow = quantizedWeights[inputId / valuesPerInt];
+            var shift = getShift(inputId);
+            var sum = 0f;
+
+            for (var output = 0; output < outputs; output++)
+            {
+                sum += scaledInput[output] * ((packedRow[output] >>> shift) & mask);
+            }
+
+            result.set(inputId, sum - zeroSums[group]);
+        }
+    }
+
+    private int getQuantizedValue(int input, int output)
+    {
+        return (quantizedWeights[input / valuesPerInt][output] >>> getShift(input)) & mask;
+    }
+
+    /**
+     * Position of the value within the packed int (the first value is on the highest bits)
+     */
+    private int getShift(int input)
+    {
+        return 32 - bits * (input % valuesPerInt + 1);
+    }
+
+    private static int[] orderByGroup(int[] groupIndexes, int groupCount)
+    {
+        // Counting sort by the group index (stable, so the natural order is kept within a group)
+        var starts = new int[groupCount + 1];
+        for (var group : groupIndexes)
+        {
+            starts[group + 1]++;
+        }
+
+        for (var group = 0; group < groupCount; group++)
+        {
+            starts[group + 1] += starts[group];
+        }
+
+        var order = new int[groupIndexes.length];
+        for (var input = 0; input < groupIndexes.length; input++)
+        {
+            order[starts[groupIndexes[input]]++] = input;
+        }
+
+        return order;
+    }
+
+    // Getters
+    public int getBits() {return bits;}
+    public int[][] getQuantizedWeights() {return quantizedWeights;}
+    public int[] getGroupIndexes() {return groupIndexes;}
+    public float[][] getScales() {return scales;}
+    public float[][] getZeros() {return zeros;}
+
+    @Override
+    public int getRowCount()
+    {
+        return isTransposed ? quantizedWeights[0].length : groupIndexes.length;
+    }
+
+    @Override
+    public int getColCount()
+    {
+        return isTransposed ? groupIndexes.length : quantizedWeights[0].length;
+    }
+}
@@ -0,0 +1,281 @@
+package quantization.gptq;
+
+import app.IdentifiedException;
+import math.dataType.DataType;
+import math.dataType.matrix.Matrix;
+
+import static math.ParallelUtil.forEachBlock;
+
+/**
+ * Group-wise 4-bit GPTQ quantization of a weight matrix (the result is a GptqMatrix)
+
+ * Every output neuron (column of the weights) is quantized independently, so the outputs are processed parallel.
+ * Within an output, every group of inputs has its own scale and zero (asymmetric quantization to 0..15).
+
+ * Without calibration data it is a simple round-to-nearest quantization.
+ * With calibration inputs (the inputs of the layer at a few sample tokens) the GPTQ error compensation is applied:
+ * the inputs are quantized one by one, and the quantization error of an input is compensated on the remaining
+ * (not yet quantized) inputs, using the inverse of the Hessian (2 * X^T * X) of the layer inputs.
+ * https://arxiv.org/abs/2210.17323 (Algorithm 1)
+ */
+public class GptqQuantizationUtil
+{
+    public static final int BITS = 4;
+    public static final int DEFAULT_GROUP_SIZE = 128;
+
+    private static final int MAX_VALUE = (1 << BITS) - 1;
+    private static final int VALUES_PER_INT = 32 / BITS;
+
+    // Dampening of the Hessian (relative to the average of its diagonal), for the numerical stability
+    private static final double DAMPENING = 0.01;
+
+    /**
+     * Quantizes the matrix, which is in horizontal ([input][output]) or vertical ([output][input]) orientation
+     * The calibration inputs (the rows are the samples) are optional, if null round-to-nearest is used.
+     */
+    public static GptqMatrix quantize(Matrix matrix, boolean isVertical, int groupSize, Matrix calibrationInputs,
+                                      DataType outputFloatType)
+    {
+        var inputs = isVertical ? matrix.getColCount() : matrix.getRowCount();
+        var outputs = isVertical ? matrix.getRowCount() : matrix.getColCount();
+
+        if (groupSize <= 0 || groupSize > inputs)
+        {
+            groupSize = inputs;
+        }
+
+        var groupCount = (inputs + groupSize - 1) / groupSize;
+
+        var groupIndexes = new int[inputs];
+        for (var input = 0; input < inputs; input++)
+        {
+            groupIndexes[input] = input / groupSize;
+        }
+
+        var quantizedWeights = new int[(inputs + VALUES_PER_INT - 1) / VALUES_PER_INT][outputs];
+        var scales = new float[groupCount][outputs];
+        var zeros = new float[groupCount][outputs];
+
+        var inverseHessian = calibrationInputs == null ? null : calculateInverseHessian(calibrationInputs, inputs);
+        var finalGroupSize = groupSize;
+
+        // Every output is written to its own column of the result arrays, so the blocks are independent
+        forEachBlock(outputs, 16, (from, to) ->
+        {
+            var weights = new float[inputs];
+
+            for (var output = from; output < to; output++)
+            {
+                for (var input = 0; input < inputs; input++)
+                {
+                    weights[input] = isVertical ? matrix.getValue(output, input) : matrix.getValue(input, output);
+                }
+
+                quantizeOutput(weights, output, finalGroupSize, inverseHessian, quantizedWeights, scales, zeros);
+            }
+        });
+
+        return new GptqMatrix(outputFloatType, BITS, quantizedWeights, groupIndexes, scales, zeros, isVertical);
+    }
+
+    /**
+     * Quantizes the weights of an output neuron (the weights array is modified by the error compensation)
+     */
+    private static void quantizeOutput(float[] weights, int output, int groupSize, double[][] inverseHessian,
+                                       int[][] quantizedWeights, float[][] scales, float[][] zeros)
+    {
+        var inputs = weights.length;
+        var scale = 1f;
+        var zero = 0f;
+
+        for (var input = 0; input < inputs; input++)
+        {
+            if (input % groupSize == 0)
+            {
+                // The scale and zero of the group is determined by the (already error compensated) weights
+                var group = input / groupSize;
+                var end = Math.min(inputs, input + groupSize);
+
+                var min = 0f;
+                var max = 0f;
+                for (var i = input; i < end; i++)
+                {
+                    min = Math.min(min, weights[i]);
+                    max = Math.max(max, weights[i]);
+                }
+
+                scale = max > min ? (max - min) / MAX_VALUE : 1f;
+                zero = Math.round(-min / scale);
+
+                scales[group][output] = scale;
+                zeros[group][output] = zero;
+            }
+
+            var weight = weights[input];
+            var quantizedValue = (int) Math.max(0, Math.min(MAX_VALUE, Math.round(weight / scale) + zero));
+
+            // Packed into int: the first value is on the highest bits
+            var shift = 32 - BITS * (input % VALUES_PER_INT + 1);
+            quantizedWeights[input / VALUES_PER_INT][output] |= quantizedValue << shift;
+
+            if (inverseHessian != null)
+            {
+                // Compensation of the quantization error on the remaining weights
+                var inverseRow = inverseHessian[input];
+                var error = (weight - scale * (quantizedValue - zero)) / inverseRow[input];
+
+                for (var i = input + 1; i < inputs; i++)
+                {
+                    weights[i] -= (float) (error * inverseRow[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the upper Cholesky factor of the inverse of the Hessian (2 * X^T * X / samples) of the inputs
+     */
+    public static double[][] calculateInverseHessian(Matrix calibrationInputs, int inputs)
+    {
+        if (calibrationInputs.getColCount() != inputs)
+        {
+            throw new IdentifiedException("The size of the calibration inputs (" + calibrationInputs.getColCount()
+                    + ") doesn't match the input size of the matrix (" + inputs + ")");
+        }
+
+        var samples = calibrationInputs.getRowCount();
+        var rows = new float[samples][];
+        for (var sample = 0; sample < samples; sample++)
+        {
+            rows[sample] = calibrationInputs.row(sample).getValues();
+        }
+
+        var hessian = new double[inputs][inputs];
+        forEachBlock(inputs, 16, (from, to) ->
+        {
+            for (var i = from; i < to; i++)
+            {
+                for (var row : rows)
+                {
+                    var value = 2.0 * row[i] / samples;
+                    for (var j = 0; j < inputs; j++)
+                    {
+                        hessian[i][j] += value * row[j];
+                    }
+                }
+            }
+        });
+
+        // Inputs which are always zero are irrelevant, a unit value on the diagonal keeps the matrix invertible
+        var diagonalSum = 0d;
+        for (var i = 0; i < inputs; i++)
+        {
+            if (hessian[i][i] == 0) hessian[i][i] = 1;
+            diagonalSum += hessian[i][i];
+        }
+
+        var dampening = DAMPENING * diagonalSum / inputs;
+        for (var i = 0; i < inputs; i++)
+        {
+            hessian[i][i] += dampening;
+        }
+
+        // H = L * L^T, H^-1 = L^-T * L^-1, and the upper factor of H^-1 is the transpose of its lower factor
+        var inverseLower = invertLowerTriangular(cholesky(hessian));
+
+        var inverse = new double[inputs][inputs];
+        for (var i = 0; i < inputs; i++)
+        {
+            for (var j = 0; j <= i; j++)
+            {
+                var sum = 0d;
+                for (var k = i; k < inputs; k++)
+                {
+                    sum += inverseLower[k][i] * inverseLower[k][j];
+                }
+
+                inverse[i][j] = sum;
+                inverse[j][i] = sum;
+            }
+        }
+
+        return transpose(cholesky(inverse));
+    }
+
+    /**
+     * Cholesky decomposition of a symmetric positive definite matrix (returns the lower triangular factor)
+     */
+    private static double[][] cholesky(double[][] matrix)
+    {
+        var size = matrix.length;
+        var lower = new double[size][size];
+
+        for (var i = 0; i < size; i++)
+        {
+            for (var j = 0; j <= i; j++)
+            {
+                var sum = matrix[i][j];
+                for (var k = 0; k < j; k++)
+                {
+                    sum -= lower[i][k] * lower[j][k];
+                }
+
+                if (i == j)
+                {
+                    if (sum <= 0)
+                    {
+                        throw new IdentifiedException("The Hessian isn't positive definite, GPTQ quantization failed");
+                    }
+
+                    lower[i][i] = Math.sqrt(sum);
+                }
+                else
+                {
+                    lower[i][j] = sum / lower[j][j];
+                }
+            }
+        }
+
+        return lower;
+    }
+
+    private static double[][] invertLowerTriangular(double[][] lower)
+    {
+        var size = lower.length;
+        var inverse = new double[size][size];
+
+        for (var i = 0; i < size; i++)
+        {
+            inverse[i][i] = 1 / lower[i][i];
+
+            for (var j = 0; j < i; j++)
+            {
+                var sum = 0d;
+                for (var k = j; k < i; k++)
+                {
+                    sum -= lower[i][k] * inverse[k][j];
+                }
+
+                inverse[i][j] = sum / lower[i][i];
+            }
+        }
+
+        return inverse;
+    }
+
+    private static double[][] transpose(double[][] matrix)
+    {
+        var size = matrix.length;
+        var result = new double[size][size];
+
+        for (var i = 0; i < size; i++)
+        {
+            for (var j = 0; j < size; j++)
+            {
+                result[j][i] = matrix[i][j];
+            }
+        }
+
+        return result;
+    }
+}
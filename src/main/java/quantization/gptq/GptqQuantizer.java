@@ -5,18 +5,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import app.IdentifiedException;
 import config.Config;
 import config.ParameterType;
+import math.dataType.DataType;
 import math.dataType.matrix.Matrix;
 import parameters.ParameterReader;
+import parameters.safetensors.SafetensorsWriter;
 import quantization.AbstractQuantizer;
 import quantization.QuantizedMatrix;
 
-import static math.MathUtil.MATH;
-import static math.dataType.matrix.Matrix.emptyMatrix;
 import static parameters.FileUtil.readTextFile;
-import static math.TypeConversionUtility.*;
+import static quantization.gptq.GptqQuantizationUtil.DEFAULT_GROUP_SIZE;
 
 /**
- * Parameter reader for GPTQ quantization (GPTQ de-quantization)
+ * Parameter reader for GPTQ quantization (the weights are kept packed in a GptqMatrix)
 
  * GPTQ (GPT Post-Training Quantization) (ETH Zurich, IST Austria, NeuralMagic)
  * Publication (31 Oct 2022): https://arxiv.org/abs/2210.17323
@@ -26,6 +26,7 @@ import static math.TypeConversionUtility.*;
  */
 public class GptqQuantizer extends AbstractQuantizer
 {
+    private static final String CONFIG_KEY = "config";
     private static final String GROUP_INDEX_KEY = "groupIndex";
     private static final String ZEROS_KEY = "zeros";
     private static final String SCALES_KEY = "scales";
@@ -35,46 +36,85 @@ public class GptqQuantizer extends AbstractQuantizer
     {
         super(config);
 
+        addDefaultNaming(CONFIG_KEY, "{name-1}.quantize_config");
         addDefaultNaming(GROUP_INDEX_KEY, "{name-1}.g_idx");
         addDefaultNaming(ZEROS_KEY, "{name-1}.qzeros");
         addDefaultNaming(SCALES_KEY, "{name-1}.scales");
         addDefaultNaming(WEIGHTS_KEY, "{name-1}.qweight");
     }
 
+    /**
+     * Group-wise 4-bit round-to-nearest quantization (used at quantize on load, see GptqQuantizationUtil)
+     */
     @Override
     public QuantizedMatrix quantize(ParameterType parameterType, Matrix matrix)
     {
-        // TODO
-        return null;
+        var quantizeConfig = config.getQuantizeConfig();
+        var groupSize = quantizeConfig != null ? quantizeConfig.getGroupSize() : DEFAULT_GROUP_SIZE;
+
+        return GptqQuantizationUtil.quantize(matrix, parameterType.isVertical(), groupSize, null, getOutputFloatType());
     }
 
     @Override
-    public Matrix load(ParameterReader reader, ParameterType parameterType, String parameterId, int rows, int cols)
+    public boolean save(SafetensorsWriter writer, ParameterType parameterType, String parameterId, QuantizedMatrix matrix)
     {
-        try
-        {
-            // Read the quantize_config.json
-            var quantizeConfigString = readTextFile(config.getModelPath() + "/quantize_config.json");
-            var gptqConfig = new ObjectMapper().readValue(quantizeConfigString, GptqConfig.class);
+        if ( !(matrix instanceof GptqMatrix gptqMatrix)) return false;
 
-            var realRows = rows;
-            var realCols = cols;
-
-            if (parameterType.isVertical())
+        var bits = gptqMatrix.getBits();
+        var valuesPerInt32 = 32 / bits;
+        var scales = gptqMatrix.getScales();
+        var zeros = gptqMatrix.getZeros();
+        var inputs = gptqMatrix.getGroupIndexes().length;
+        var groups = scales.length;
+        var outputs = scales[0].length;
+
+        // The stored format can't describe partial packed ints or partial groups
+        if (inputs % valuesPerInt32 != 0 || outputs % valuesPerInt32 != 0 || inputs % groups != 0) return false;
+
+        // Zeros, packed ints (within the row, the first value is on the highest bits)
+        var packedZeros = new int[groups][outputs / valuesPerInt32];
+        for (var group = 0; group < groups; group++)
+        {
+            for (var output = 0; output < outputs; output++)
             {
-                realRows = cols;
-                realCols = rows;
+                var shift = 32 - bits * (output % valuesPerInt32 + 1);
+                packedZeros[group][output / valuesPerInt32] |= (int) zeros[group][output] << shift;
             }
+        }
+
+        // The group indexes are stored, so the act order setting is used (it works for the consecutive groups as well)
+        var gptqConfig = "{\"bits\": " + bits + ", \"group_size\": " + inputs / groups + ", \"desc_act\": true}";
 
-            var matrix = readMatrixInternal(gptqConfig, reader, parameterId, realRows, realCols);
+        writer.addString(getFinalParameterId(parameterId, CONFIG_KEY), gptqConfig);
+        writer.addIntArray(getFinalParameterId(parameterId, GROUP_INDEX_KEY), gptqMatrix.getGroupIndexes());
+        writer.addIntArray2D(getFinalParameterId(parameterId, ZEROS_KEY), packedZeros);
+        writer.addFloatArray2D(getFinalParameterId(parameterId, SCALES_KEY), scales);
+        writer.addIntArray2D(getFinalParameterId(parameterId, WEIGHTS_KEY), gptqMatrix.getQuantizedWeights());
+
+        return true;
+    }
+
+    @Override
+    public Matrix load(ParameterReader reader, ParameterType parameterType, String parameterId, int rows, int cols)
+    {
+        try
+        {
+            // Read the quantize_config.json (or the config stored as a parameter, if it was saved by this app)
+            var configId = getFinalParameterId(parameterId, CONFIG_KEY);
+            var quantizeConfigString = reader.getParameterHeaders().containsKey(configId)
+                    ? reader.readString(configId)
+                    : readTextFile(config.getModelPath() + "/quantize_config.json");
+
+            var gptqConfig = new ObjectMapper().readValue(quantizeConfigString, GptqConfig.class);
 
             if (parameterType.isVertical())
             {
-                return MATH.transposeMatrix(matrix);
+                // The stored layout is the same in both orientations, the matrix is read as transposed
+                return readMatrixInternal(gptqConfig, reader, parameterId, cols, rows, true);
             }
             else
             {
-                return matrix;
+                return readMatrixInternal(gptqConfig, reader, parameterId, rows, cols, false);
             }
         }
         catch (JsonProcessingException e)
@@ -83,7 +123,8 @@ public class GptqQuantizer extends AbstractQuantizer
         }
     }
 
-    private Matrix readMatrixInternal(GptqConfig gptqConfig, ParameterReader reader, String id, int rows, int cols)
+    private Matrix readMatrixInternal(GptqConfig gptqConfig, ParameterReader reader, String id, int rows, int cols,
+                                      boolean isTransposed)
     {
         // Good blog: https://mlabonne.github.io/blog/posts/4_bit_Quantization_with_GPTQ.html
 
@@ -91,131 +132,107 @@ public class GptqQuantizer extends AbstractQuantizer
             where the rows correspond to different quantization chunks and the columns
             correspond to different weights in the linear layer."*/
 
-        // Read and unpack the quantized collections
-        int[] groupIndexes = readGroupIndexes(reader, id, rows);
-        int[][] zeros = readZeros(gptqConfig, reader, id, rows, cols);
-        Matrix scalesMatrix = readScales(gptqConfig, reader, id, rows, cols);
+        var bits = gptqConfig.getBits();
+        if (bits != 2 && bits != 4 && bits != 8)
+        {
+            /* "If bits is 3, the quantization method uses a more complex packing method
+               that packs 10 weights into 32 bits using a combination of bit-shifting and masking operations."*/
+            throw new IdentifiedException("GPTQ quantization with " + bits + " bits isn't supported");
+        }
+
+        // Read the quantized collections (the weights are kept packed, the de-quantization happens at the usage)
+        int[] groupIndexes = readGroupIndexes(gptqConfig, reader, id, rows);
+        float[][] zeros = readZeros(gptqConfig, reader, id, rows, cols);
+        float[][] scales = readScales(gptqConfig, reader, id, rows, cols);
         int[][] quantizedWeights = readQuantizedWeights(gptqConfig, reader, id, rows, cols);
 
-        // This is the collector of the de-quantized weights
-        Matrix resultMatrix = emptyMatrix(config.getQuantizationConfig().getOutputFloatType(), rows, cols);
+        return new GptqMatrix(getOutputFloatType(), bits, quantizedWeights,
+                groupIndexes, scales, zeros, isTransposed);
+    }
 
-        for (var col = 0; col < cols; col++)
+    private int[] readGroupIndexes(GptqConfig gptqConfig, ParameterReader reader, String id, int rows)
+    {
+        if (gptqConfig.getDescAct())
+        {
+            // GroupIndex, int32 (Interestingly, isn't packed. A whole int32 is used to store few different values)
+            return reader.readIntArray(getFinalParameterId(id, GROUP_INDEX_KEY), rows);
+        }
+        else
         {
-            var x = 0;
-            var groupIndex = 0;
+            // Without act order the groups are the consecutive blocks of the rows
+            var groupSize = getGroupSize(gptqConfig, rows);
+            var groupIndexes = new int[rows];
 
-            // Iterate over on the values within row
             for (var row = 0; row < rows; row++)
             {
-                if (gptqConfig.getDescAct())
-                {
-                    groupIndex = groupIndexes[row];
-                }
-                else
-                {
-                    x++;
-                    if (x > gptqConfig.getGroupSize())
-                    {
-                        groupIndex++;
-                        x = 0;
-                    }
-                }
-
-                int zero = zeros[groupIndex][col];
-
-                float scale = scalesMatrix.getValue(groupIndex, col);
-
-                int quantizedWeight = quantizedWeights[row][col];
-
-                // This is the core GPTQ de-quantization algorithm:
-                float weight = scale * (quantizedWeight - zero);
-
-                resultMatrix.setValue(row, col, weight);
+                groupIndexes[row] = row / groupSize;
             }
-        }
 
+            return groupIndexes;
+        }
+    }
 
-        // Iterate over on the rows
-        /*var x = 0;
-        var groupIndex = 0;
-        for (var row = 0; row < rows; row++)
-        {
-            groupIndex = groupIndexes.get(row);
+    private float[][] readZeros(GptqConfig gptqConfig, ParameterReader reader, String id, int rows, int cols)
+    {
+        var bits = gptqConfig.getBits();
+        var valuesPerInt32 = 32 / bits;
+        var mask = (1 << bits) - 1;
+        var zerosRows = rows / getGroupSize(gptqConfig, rows);
+        var zerosCols = cols / valuesPerInt32;
 
-            //This was an attempt to not using the groupIndex:
-            //x++;
-            //if (x > groupSize)
-            //{
-            //    groupIndex++;
-            //    x = 0;
-            //}
+        int[][] zerosMatrix = reader.readIntArray2D(getFinalParameterId(id, ZEROS_KEY), zerosRows, zerosCols);
 
-            // Iterate over on the values within row
+        // Zeros, packed ints (within the row, the first value is on the highest bits)
+        var zeros = new float[zerosRows][cols];
+        for (var row = 0; row < zerosRows; row++)
+        {
             for (var col = 0; col < cols; col++)
             {
-                // At symmetric quantization the zero is always 0, otherwise use the stored value.
-                int zero = gptqConfig.getSym() ? 1 : zeros[groupIndex][col] + 1;
-
-                float scale = scalesMatrix.getValue(groupIndex, col);
-
-                int quantizedValue = quantizedWeights[row][col];
-
-                // This is the core GPTQ de-quantization algorithm:
-                float weight = scale * (quantizedValue - zero);
-
-                resultMatrix.setValue(row, col, weight);
+                var shift = 32 - bits * (col % valuesPerInt32 + 1);
+                zeros[row][col] = (zerosMatrix[row][col / valuesPerInt32] >>> shift) & mask;
             }
-        }*/
+        }
 
-        return resultMatrix;
+        return zeros;
     }
 
-    private int[] readGroupIndexes(ParameterReader reader, String id, int rows)
+    private float[][] readScales(GptqConfig gptqConfig, ParameterReader reader, String id, int rows, int cols)
     {
-        // GroupIndex, int32 (Interestingly, isn't packed. A whole int32 is used to store few different values)
-        return reader.readIntArray(getFinalParameterId(id, GROUP_INDEX_KEY), rows);
-    }
+        // Scales, FLOAT 16 (or FLOAT 32, if it was saved by this app)
+        var scalesId = getFinalParameterId(id, SCALES_KEY);
+        var scalesRows = rows / getGroupSize(gptqConfig, rows);
 
-    private int[][] readZeros(GptqConfig gptqConfig, ParameterReader reader, String id, int rows, int cols)
-    {
-        var bits = gptqConfig.getBits();
-        var valuesPerInt32 = 32 / bits;
-        var zerosRows = rows / gptqConfig.getGroupSize();
-        var zerosCols = cols / valuesPerInt32;
+        if (reader.getDataType(scalesId) == DataType.FLOAT_32)
+        {
+            return reader.readFloatArray2D(scalesId, scalesRows, cols);
+        }
 
-        int[][] zerosMatrix = reader.readIntArray2D(getFinalParameterId(id, ZEROS_KEY), zerosRows, zerosCols);
-        return unpack4bitsFromIntMatrixByRow(zerosMatrix); // TODO: Only 4 bits is supported here
-    }
+        Matrix scalesMatrix = reader.readFloat16Matrix(scalesId, scalesRows, cols);
 
-    private Matrix readScales(GptqConfig gptqConfig, ParameterReader reader, String id, int rows, int cols)
-    {
-        // Scales, FLOAT 16
-        var scalesRows = rows / gptqConfig.getGroupSize();
-        return reader.readFloat16Matrix(getFinalParameterId(id, SCALES_KEY), scalesRows, cols);
+        var scales = new float[scalesRows][];
+        for (var row = 0; row < scalesRows; row++)
+        {
+            scales[row] = scalesMatrix.row(row).getValues();
+        }
+
+        return scales;
     }
 
     private int[][] readQuantizedWeights(GptqConfig gptqConfig, ParameterReader reader, String parameterId, int rows, int cols)
     {
-        var bits = gptqConfig.getBits();
-        var valuesPerInt32 = 32 / bits;
-        if (bits == 2 || bits == 4 || bits == 8 || bits == 16)
-        {
-                /* "If bits is 2, 4, 8, or 16, the quantization method packs multiple weights
-                   into a single 32-bit word using bit-shifting operations."*/
-            // Quantized weights, packed ints
-            var weightRows = rows / valuesPerInt32;
-            int[][] quantizedWeightsMatrix = reader.readIntArray2D(getFinalParameterId(parameterId, WEIGHTS_KEY), weightRows, cols);
+        /* "If bits is 2, 4, 8, or 16, the quantization method packs multiple weights
+           into a single 32-bit word using bit-shifting operations."*/
+        // Quantized weights, packed ints
+        var valuesPerInt32 = 32 / gptqConfig.getBits();
+        var weightRows = rows / valuesPerInt32;
 
-            return unpackIntMatrixByCol(quantizedWeightsMatrix, valuesPerInt32, bits);
-        }
-        else if (bits == 3)
-        {
-                /* "If bits is 3, the quantization method uses a more complex packing method
-                   that packs 10 weights into 32 bits using a combination of bit-shifting and masking operations."*/
-            // TODO
-        }
-        return null;
+        return reader.readIntArray2D(getFinalParameterId(parameterId, WEIGHTS_KEY), weightRows, cols);
+    }
+
+    private int getGroupSize(GptqConfig gptqConfig, int rows)
+    {
+        // Group size -1 means a single group (the scales and zeros belong to the whole column)
+        return gptqConfig.getGroupSize() > 0 ? gptqConfig.getGroupSize() : rows;
     }
 
     @Override
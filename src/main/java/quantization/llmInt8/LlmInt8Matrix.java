@@ -1,6 +1,7 @@
 package quantization.llmInt8;
 
 import math.dataType.DataType;
+import math.dataType.vector.Vector;
 import quantization.QuantizedMatrix;
 
 /**
@@ -14,20 +15,106 @@ public class LlmInt8Matrix extends QuantizedMatrix
     private final float[] scb;
     private final byte[][] quantizedValues;
 
+    // The scale belongs to the output neurons, which are the columns in horizontal, the rows in vertical orientation
+    private final boolean isVertical;
+
     public LlmInt8Matrix(DataType outputFloatType, float[] scb, byte[][] quantizedValues)
+    {
+        this(outputFloatType, scb, quantizedValues, false);
+    }
+
+    public LlmInt8Matrix(DataType outputFloatType, float[] scb, byte[][] quantizedValues, boolean isVertical)
     {
         super(outputFloatType);
         this.scb = scb;
         this.quantizedValues = quantizedValues;
+        this.isVertical = isVertical;
     }
 
     @Override
     public float getValue(int rowId, int colId)
     {
         // This is the de-quantization algorithm:
-        return scb[colId] * quantizedValues[rowId][colId] / 127;
+        var scale = isVertical ? scb[rowId] : scb[colId];
+        return scale * quantizedValues[rowId][colId] / 127;
+    }
+
+    /**
+     * Dot products of the vector and the byte rows, the scale is applied once per result value
+     * (If the scale belongs to the columns, the input vector is scaled once instead.)
+     */
+    @Override
+    public void mulVectorByTransposed(Vector vector, Vector result, int from, int to)
+    {
+        var input = isVertical ? vector.getValues() : scaledInput(vector);
+
+        for (var rowId = from; rowId < to; rowId++)
+        {
+            var sum = dotProduct(input, 0, quantizedValues[rowId], input.length);
+
+            result.set(rowId, isVertical ? sum * scb[rowId] / 127 : sum);
+        }
+    }
+
+    /**
+     * Sums of the byte rows multiplied by the vector values, the scale is applied once per result value
+     * (If the scale belongs to the rows, the input vector is scaled once instead.)
+     */
+    @Override
+    public void mulVector(Vector vector, Vector result, int from, int to)
+    {
+        var input = isVertical ? scaledInput(vector) : vector.getValues();
+        var sums = new float[to - from];
+
+        for (var rowId = 0; rowId < quantizedValues.length; rowId++)
+        {
+            var value = input[rowId];
+            var row = quantizedValues[rowId];
+
+            for (var colId = from; colId < to; colId++)
+            {
+                sums[colId - from] += value * row[colId];
+            }
+        }
+
+        for (var colId = from; colId < to; colId++)
+        {
+            result.set(colId, isVertical ? sums[colId - from] : sums[colId - from] * scb[colId] / 127);
+        }
+    }
+
+    /**
+     * Returns the input values multiplied by the scales (which belong to the input side in this case)
+     */
+    public float[] scaledInput(Vector vector)
+    {
+        var values = new float[vector.size()];
+
+        for (var i = 0; i < values.length; i++)
+        {
+            values[i] = vector.get(i) * scb[i] / 127;
+        }
+
+        return values;
     }
 
+    private static float dotProduct(float[] values, int offset, byte[] quantizedValues, int size)
+    {
+        var sum = 0f;
+
+        for (var i = 0; i < size; i++)
+        {
+            sum = sum + values[offset + i] * quantizedValues[i];
+        }
+
+        return sum;
+    }
+
+    // Getters
+    public float[] getScb() {return scb;}
+    public byte[][] getQuantizedValues() {return quantizedValues;}
+    public boolean isVertical() {return isVertical;}
+
     @Override
     public int getRowCount()
     {
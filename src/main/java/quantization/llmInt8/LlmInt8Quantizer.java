@@ -2,9 +2,9 @@ package quantization.llmInt8;
 
 import config.Config;
 import config.ParameterType;
-import math.dataType.DataType;
 import math.dataType.matrix.Matrix;
 import parameters.ParameterReader;
+import parameters.safetensors.SafetensorsWriter;
 import quantization.AbstractQuantizer;
 import quantization.QuantizedMatrix;
 
@@ -41,19 +41,26 @@ public class LlmInt8Quantizer extends AbstractQuantizer
     @Override
     public Matrix load(ParameterReader reader, ParameterType parameterType, String parameterId, int rows, int cols)
     {
-        float[] scb = reader.readFloatArray(getFinalParameterId(parameterId, SCB_KEY), cols);
-
-        byte[][] weights = reader.readByteArray2D(getFinalParameterId(parameterId, WEIGHTS_KEY), cols, rows);
+        var outputFloatType = getOutputFloatType();
 
         if (parameterType.isHorizontal())
         {
-            // LLM.int8() stores the parameters in vertical format
+            // LLM.int8() stores the parameters in vertical format (the output neurons are the rows)
+            float[] scb = reader.readFloatArray(getFinalParameterId(parameterId, SCB_KEY), cols);
+            byte[][] weights = reader.readByteArray2D(getFinalParameterId(parameterId, WEIGHTS_KEY), cols, rows);
+
             // In the case our model expects it in horizontal, transpose it...
             weights = MATH.transposeByteMatrix(weights);
+
+            return new LlmInt8Matrix(outputFloatType, scb, weights);
         }
+        else
+        {
+            float[] scb = reader.readFloatArray(getFinalParameterId(parameterId, SCB_KEY), rows);
+            byte[][] weights = reader.readByteArray2D(getFinalParameterId(parameterId, WEIGHTS_KEY), rows, cols);
 
-        var outputFloatType = config.getQuantizationConfig().getOutputFloatType();
-        return new LlmInt8Matrix(outputFloatType, scb, weights);
+            return new LlmInt8Matrix(outputFloatType, scb, weights, true);
+        }
     }
 
     @Override
@@ -95,7 +102,23 @@ public class LlmInt8Quantizer extends AbstractQuantizer
             values = MATH.transposeByteMatrix(values);
         }
 
-        return new LlmInt8Matrix(DataType.FLOAT_16, scb, values);
+        return new LlmInt8Matrix(getOutputFloatType(), scb, values, !parameterType.isHorizontal());
+    }
+
+    @Override
+    public boolean save(SafetensorsWriter writer, ParameterType parameterType, String parameterId, QuantizedMatrix matrix)
+    {
+        if ( !(matrix instanceof LlmInt8Matrix int8Matrix)) return false;
+
+        // LLM.int8() stores the parameters in vertical format (see load())
+        var weights = int8Matrix.isVertical()
+                ? int8Matrix.getQuantizedValues()
+                : MATH.transposeByteMatrix(int8Matrix.getQuantizedValues());
+
+        writer.addFloatArray(getFinalParameterId(parameterId, SCB_KEY), int8Matrix.getScb());
+        writer.addByteArray2D(getFinalParameterId(parameterId, WEIGHTS_KEY), weights);
+
+        return true;
     }
 
     @Override
@@ -0,0 +1,195 @@
+package quantization.qlora;
+
+import math.dataType.DataType;
+import math.dataType.vector.Vector;
+import quantization.QuantizedMatrix;
+
+import static math.BasicMathUtility.absMax;
+
+/**
+ * Base of the QLoRA matrices, which implements the vector-matrix multiplications directly on the 4-bit values
+
+ * The 16 possible values are looked up from a table (quantMap divided by its absMax), the two 4-bit values
+ * of a byte are unpacked together, and the absMax of a block (which is de-quantized in the case of
+ * double quantization) is determined only once per block.
+ */
+public abstract class QloraMatrix extends QuantizedMatrix
+{
+    protected final int blockSize;
+    protected final byte[][] values;
+
+    // Transposed orientation: two rows are packed into a byte (otherwise two columns)
+    private final boolean isTransposed;
+
+    // The de-quantized values of the 16 possible 4-bit values (without the absMax of the block)
+    private final float[] lookup;
+
+    public QloraMatrix(DataType outputFloatType, int blockSize, float[] quantMap, byte[][] values,
+                       boolean isTransposed)
+    {
+        super(outputFloatType);
+        this.blockSize = blockSize;
+        this.values = values;
+        this.isTransposed = isTransposed;
+
+        var maxQuantMap = absMax(quantMap);
+        this.lookup = new float[16];
+        for (var i = 0; i < 16; i++)
+        {
+            lookup[i] = quantMap[i] / maxQuantMap;
+        }
+    }
+
+    /**
+     * Returns the absMax of a block (the scale of the values within the block)
+     */
+    protected abstract float getAbsMax(int blockId);
+
+    @Override
+    public void mulVectorByTransposed(Vector vector, Vector result, int from, int to)
+    {
+        var input = vector.getValues();
+        var cols = getColCount();
+
+        if ( !isTransposed)
+        {
+            // The blocks are within the rows, so a row is a sequence of blocks
+            var blocksPerRow = cols / blockSize;
+
+            for (var rowId = from; rowId < to; rowId++)
+            {
+                var bytes = values[rowId];
+                var sum = 0f;
+
+                for (var block = 0; block < blocksPerRow; block++)
+                {
+                    var colId = block * blockSize;
+                    var end = (colId + blockSize) / 2;
+                    var blockSum = 0f;
+
+                    for (var i = colId / 2; i < end; i++)
+                    {
+                        var value = bytes[i];
+                        blockSum += input[colId] * lookup[(value >> 4) & 0xF] + input[colId + 1] * lookup[value & 0xF];
+                        colId += 2;
+                    }
+
+                    sum += blockSum * getAbsMax(rowId * blocksPerRow + block);
+                }
+
+                result.set(rowId, sum);
+            }
+        }
+        else
+        {
+            // The blocks are within the columns, so the input is scaled by the absMax of the blocks
+            // (once for every block of rows)
+            var blocksPerCol = getRowCount() / blockSize;
+            var scaledInput = new float[cols];
+
+            for (var rowId = from; rowId < to; )
+            {
+                var block = rowId / blockSize;
+                var end = Math.min(to, (block + 1) * blockSize);
+
+                for (var colId = 0; colId < cols; colId++)
+                {
+                    scaledInput[colId] = input[colId] * getAbsMax(colId * blocksPerCol + block);
+                }
+
+                for (; rowId < end; rowId++)
+                {
+                    var bytes = values[rowId / 2];
+                    var shift = (rowId & 1) == 0 ? 4 : 0;
+                    var sum = 0f;
+
+                    for (var colId = 0; colId < cols; colId++)
+                    {
+                        sum += scaledInput[colId] * lookup[(bytes[colId] >> shift) & 0xF];
+                    }
+
+                    result.set(rowId, sum);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void mulVector(Vector vector, Vector result, int from, int to)
+    {
+        var input = vector.getValues();
+        var sums = new float[to - from];
+
+        if ( !isTransposed)
+        {
+            var blocksPerRow = getColCount() / blockSize;
+
+            for (var rowId = 0; rowId < getRowCount(); rowId++)
+            {
+                var bytes = values[rowId];
+
+                for (var colId = from; colId < to; )
+                {
+                    var block = colId / blockSize;
+                    var end = Math.min(to, (block + 1) * blockSize);
+                    var scaledValue = input[rowId] * getAbsMax(rowId * blocksPerRow + block);
+
+                    for (; colId < end; colId++)
+                    {
+                        var shift = (colId & 1) == 0 ? 4 : 0;
+                        sums[colId - from] += scaledValue * lookup[(bytes[colId / 2] >> shift) & 0xF];
+                    }
+                }
+            }
+        }
+        else
+        {
+            // The sums are collected for every block of rows, and scaled by the absMax at the end of the block
+            var blocksPerCol = getRowCount() / blockSize;
+            var blockSums = new float[to - from];
+
+            for (var block = 0; block < blocksPerCol; block++)
+            {
+                for (var rowId = block * blockSize; rowId < (block + 1) * blockSize; rowId += 2)
+                {
+                    var bytes = values[rowId / 2];
+                    var upper = input[rowId];
+                    var lower = input[rowId + 1];
+
+                    for (var colId = from; colId < to; colId++)
+                    {
+                        var value = bytes[colId];
+                        blockSums[colId - from] += upper * lookup[(value >> 4) & 0xF] + lower * lookup[value & 0xF];
+                    }
+                }
+
+                for (var colId = from; colId < to; colId++)
+                {
+                    sums[colId - from] += blockSums[colId - from] * getAbsMax(colId * blocksPerCol + block);
+                    blockSums[colId - from] = 0;
+                }
+            }
+        }
+
+        for (var colId = from; colId < to; colId++)
+        {
+            result.set(colId, sums[colId - from]);
+        }
+    }
+
+    // Getters
+    public int getBlockSize() {return blockSize;}
+    public byte[][] getQuantizedValues() {return values;}
+
+    @Override
+    public int getRowCount()
+    {
+        return isTransposed ? values.length * 2 : values.length;
+    }
+
+    @Override
+    public int getColCount()
+    {
+        return isTransposed ? values[0].length : values[0].length * 2;
+    }
+}
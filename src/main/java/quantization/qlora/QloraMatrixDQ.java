@@ -1,13 +1,11 @@
 package quantization.qlora;
 
 import math.dataType.DataType;
-import quantization.QuantizedMatrix;
 
 import static math.BasicMathUtility.absMax;
 
-public class QloraMatrixDQ extends QuantizedMatrix
+public class QloraMatrixDQ extends QloraMatrix
 {
-    private final int blockSize;
     private final int nestedBlockSize;
     private final float nestedOffset;
 
@@ -15,7 +13,6 @@ public class QloraMatrixDQ extends QuantizedMatrix
     private final float[] nestedQuantMap;
     private final float[] nestedAbsMax;
     private final byte[] quantizedAbsMax;
-    private final byte[][] values;
 
     private final int blocksPerRow;
     private final float maxQuantMap;
@@ -25,8 +22,7 @@ public class QloraMatrixDQ extends QuantizedMatrix
                          float[] quantMap, float[] nestedQuantMap, float[] nestedAbsMax, byte[] quantizedAbsMax,
                          byte[][] values)
     {
-        super(outputFloatType);
-        this.blockSize = blockSize;
+        super(outputFloatType, blockSize, quantMap, values, false);
         this.nestedBlockSize = nestedBlockSize;
         this.nestedOffset = nestedOffset;
 
@@ -34,7 +30,6 @@ public class QloraMatrixDQ extends QuantizedMatrix
         this.nestedQuantMap = nestedQuantMap;
         this.nestedAbsMax = nestedAbsMax;
         this.quantizedAbsMax = quantizedAbsMax;
-        this.values = values;
 
         this.blocksPerRow = getColCount() / blockSize;
         this.maxQuantMap = absMax(quantMap);
@@ -82,14 +77,8 @@ public class QloraMatrixDQ extends QuantizedMatrix
     }
 
     @Override
-    public int getRowCount()
+    protected float getAbsMax(int blockId)
     {
-        return values.length;
-    }
-
-    @Override
-    public int getColCount()
-    {
-        return values[0].length * 2;
+        return deQuantizeAbsMax(blockId);
     }
 }
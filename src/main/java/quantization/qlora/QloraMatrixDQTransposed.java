@@ -1,13 +1,11 @@
 package quantization.qlora;
 
 import math.dataType.DataType;
-import quantization.QuantizedMatrix;
 
 import static math.BasicMathUtility.absMax;
 
-public class QloraMatrixDQTransposed extends QuantizedMatrix
+public class QloraMatrixDQTransposed extends QloraMatrix
 {
-    private final int blockSize;
     private final int nestedBlockSize;
     private final float nestedOffset;
 
@@ -15,7 +13,6 @@ public class QloraMatrixDQTransposed extends QuantizedMatrix
     private final float[] nestedQuantMap;
     private final float[] nestedAbsMax;
     private final byte[] quantizedAbsMax;
-    private final byte[][] values;
 
     private final int blocksPerCol;
     private final float maxQuantMap;
@@ -25,8 +22,7 @@ public class QloraMatrixDQTransposed extends QuantizedMatrix
                                    float[] quantMap, float[] nestedQuantMap, float[] nestedAbsMax,
                                    byte[] quantizedAbsMax, byte[][] values)
     {
-        super(outputFloatType);
-        this.blockSize = blockSize;
+        super(outputFloatType, blockSize, quantMap, values, true);
         this.nestedBlockSize = nestedBlockSize;
         this.nestedOffset = nestedOffset;
 
@@ -34,7 +30,6 @@ public class QloraMatrixDQTransposed extends QuantizedMatrix
         this.nestedQuantMap = nestedQuantMap;
         this.nestedAbsMax = nestedAbsMax;
         this.quantizedAbsMax = quantizedAbsMax;
-        this.values = values;
 
         this.blocksPerCol = getRowCount() / blockSize;
         this.maxQuantMap = absMax(quantMap);
@@ -77,14 +72,8 @@ public class QloraMatrixDQTransposed extends QuantizedMatrix
     }
 
     @Override
-    public int getRowCount()
+    protected float getAbsMax(int blockId)
     {
-        return values.length * 2;
-    }
-
-    @Override
-    public int getColCount()
-    {
-        return values[0].length;
+        return deQuantizeAbsMax(blockId);
     }
 }
@@ -1,29 +1,23 @@
 package quantization.qlora;
 
 import math.dataType.DataType;
-import quantization.QuantizedMatrix;
 
 import static math.BasicMathUtility.absMax;
 
-public class QloraMatrixSimple extends QuantizedMatrix
+public class QloraMatrixSimple extends QloraMatrix
 {
-    private final int blockSize;
-
     private final float[] quantMap;
     private final float[] absMax;
-    private final byte[][] values;
 
     private final int blocksPerRow;
     private final float maxQuantMap;
 
     public QloraMatrixSimple(DataType outputFloatType, int blockSize, float[] quantMap, float[] absMax, byte[][] values)
     {
-        super(outputFloatType);
-        this.blockSize = blockSize;
+        super(outputFloatType, blockSize, quantMap, values, false);
 
         this.quantMap = quantMap;
         this.absMax = absMax;
-        this.values = values;
 
         this.blocksPerRow = getColCount() / blockSize;
         this.maxQuantMap = absMax(quantMap);
@@ -48,14 +42,12 @@ public class QloraMatrixSimple extends QuantizedMatrix
     }
 
     @Override
-    public int getRowCount()
+    protected float getAbsMax(int blockId)
     {
-        return values.length;
+        return absMax[blockId];
     }
 
-    @Override
-    public int getColCount()
-    {
-        return values[0].length * 2;
-    }
+    // Getters
+    public float[] getQuantMap() {return quantMap;}
+    public float[] getAbsMaxValues() {return absMax;}
 }
@@ -1,17 +1,13 @@
 package quantization.qlora;
 
 import math.dataType.DataType;
-import quantization.QuantizedMatrix;
 
 import static math.BasicMathUtility.absMax;
 
-public class QloraMatrixSimpleTransposed extends QuantizedMatrix
+public class QloraMatrixSimpleTransposed extends QloraMatrix
 {
-    private final int blockSize;
-
     private final float[] quantMap;
     private final float[] absMax;
-    private final byte[][] values;
 
     private final int blocksPerCol;
     private final float maxQuantMap;
@@ -19,12 +15,10 @@ public class QloraMatrixSimpleTransposed extends QuantizedMatrix
     public QloraMatrixSimpleTransposed(DataType outputFloatType, int blockSize, float[] quantMap, float[] absMax,
                                        byte[][] values)
     {
-        super(outputFloatType);
-        this.blockSize = blockSize;
+        super(outputFloatType, blockSize, quantMap, values, true);
 
         this.quantMap = quantMap;
         this.absMax = absMax;
-        this.values = values;
 
         this.blocksPerCol = getRowCount() / blockSize;
         this.maxQuantMap = absMax(quantMap);
@@ -49,14 +43,12 @@ public class QloraMatrixSimpleTransposed extends QuantizedMatrix
     }
 
     @Override
-    public int getRowCount()
+    protected float getAbsMax(int blockId)
     {
-        return values.length * 2;
+        return absMax[blockId];
     }
 
-    @Override
-    public int getColCount()
-    {
-        return values[0].length;
-    }
+    // Getters
+    public float[] getQuantMap() {return quantMap;}
+    public float[] getAbsMaxValues() {return absMax;}
 }
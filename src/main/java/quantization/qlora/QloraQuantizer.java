@@ -5,9 +5,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import app.IdentifiedException;
 import config.Config;
 import config.ParameterType;
-import math.dataType.DataType;
 import math.dataType.matrix.Matrix;
 import parameters.ParameterReader;
+import parameters.safetensors.SafetensorsWriter;
 import quantization.AbstractQuantizer;
 import quantization.QuantizedMatrix;
 
@@ -43,6 +43,7 @@ import static java.lang.Math.abs;
  */
 public class QloraQuantizer extends AbstractQuantizer
 {
+    private static final String DEFAULT_VARIANT = "nf4";
     private static final String DEFAULT_QUANT_STATE_KEY_PREFIX = "quant_state.bitsandbytes__";
     private static final String QUANT_STATE_KEY = "quantState";
     private static final String ABS_MAX_KEY = "absMax";
@@ -80,8 +81,7 @@ public class QloraQuantizer extends AbstractQuantizer
         try
         {
             var variant = determineVariant(reader);
-            var quantizationConfig = config.getQuantizationConfig();
-            var outputFloatType = quantizationConfig.getOutputFloatType();
+            var outputFloatType = getOutputFloatType();
 
             // Read the QuantState, which iss a special JSON parameter, containing the settings of the quantization
             QloraQuantState quantState = readQuantState(reader, variant, parameterId);
@@ -170,7 +170,7 @@ public class QloraQuantizer extends AbstractQuantizer
             }
         }
 
-        return "nf4";
+        return DEFAULT_VARIANT;
     }
 
     private QloraQuantState readQuantState(ParameterReader reader, String variant, String parameterId) throws JsonProcessingException
@@ -202,6 +202,13 @@ public class QloraQuantizer extends AbstractQuantizer
                 0.7229568362236023f,
                 1.0f};
 
+        if (parameterType.isHorizontal())
+        {
+            // QLoRA stores the parameters in vertical format (the blocks are within the rows of the vertical matrix)
+            // In the case our model stores it in horizontal, transpose it, and later transpose the result again
+            matrix = MATH.transposeMatrix(matrix);
+        }
+
         var rows = matrix.getRowCount();
         var cols = matrix.getColCount();
         var blockSize = 64;
@@ -242,7 +249,54 @@ public class QloraQuantizer extends AbstractQuantizer
             }
         }
 
-        return new QloraMatrixSimple(DataType.FLOAT_32, blockSize, quantMap, absMax, values);
+        if (parameterType.isHorizontal())
+        {
+            return new QloraMatrixSimpleTransposed(getOutputFloatType(), blockSize, quantMap, absMax,
+                    MATH.transposeByteMatrix(values));
+        }
+
+        return new QloraMatrixSimple(getOutputFloatType(), blockSize, quantMap, absMax, values);
+    }
+
+    @Override
+    public boolean save(SafetensorsWriter writer, ParameterType parameterType, String parameterId, QuantizedMatrix matrix)
+    {
+        // Only the simple (not double quantized) variant is created by the quantization, so only that is supported
+        QloraMatrix qloraMatrix;
+        float[] quantMap;
+        float[] absMax;
+
+        if (matrix instanceof QloraMatrixSimple simpleMatrix)
+        {
+            qloraMatrix = simpleMatrix;
+            quantMap = simpleMatrix.getQuantMap();
+            absMax = simpleMatrix.getAbsMaxValues();
+        }
+        else if (matrix instanceof QloraMatrixSimpleTransposed transposedMatrix)
+        {
+            qloraMatrix = transposedMatrix;
+            quantMap = transposedMatrix.getQuantMap();
+            absMax = transposedMatrix.getAbsMaxValues();
+        }
+        else
+        {
+            return false;
+        }
+
+        // QLoRA stores the parameters in vertical format (see load())
+        var weights = matrix instanceof QloraMatrixSimpleTransposed
+                ? MATH.transposeByteMatrix(qloraMatrix.getQuantizedValues())
+                : qloraMatrix.getQuantizedValues();
+
+        var quantState = "{\"quant_type\": \"" + DEFAULT_VARIANT + "\", \"blocksize\": " + qloraMatrix.getBlockSize() + "}";
+        var quantStateId = getFinalParameterId(parameterId, QUANT_STATE_KEY).replace("{variant}", DEFAULT_VARIANT);
+
+        writer.addString(quantStateId, quantState);
+        writer.addFloatArray(getFinalParameterId(parameterId, QUANT_MAP_KEY), quantMap);
+        writer.addFloatArray(getFinalParameterId(parameterId, ABS_MAX_KEY), absMax);
+        writer.addByteArray2D(parameterId, weights);
+
+        return true;
     }
 
     private int findNearest(float[] quantMap,  float value)
@@ -0,0 +1,176 @@
+package transformer;
+
+import math.dataType.matrix.Float32FlatMatrix;
+import math.dataType.matrix.Matrix;
+import math.dataType.vector.Float32Vector;
+import math.dataType.vector.Vector;
+
+/**
+ * KV cache which stores the keys and values of a head in a continuous array
+
+ * The keys and the values are stored in a single float array each, in [kvHead][pos][headSize] layout,
+ * so the stored keys (or values) of a head are continuous, and they can be returned as a matrix view (no copy).
+ * The arrays are allocated at the first append, and they are grown by doubling the capacity,
+ * so appending a position has an amortized constant cost. The memory is kept at clear(), and reused by the next session.
+
+ * At local (sliding window) attention the first positions can be removed. It only moves the start position,
+ * the live positions are moved back to the beginning only when the capacity is reached.
+ */
+public class ContiguousKvCache implements KvCache
+{
+    private final int kvHeadCount;
+
+    // Number of positions allocated for every head
+    private int capacity;
+    private int headSize;
+
+    private float[] keys;
+    private float[] values;
+
+    // The first stored position (larger than 0 only if the first positions were removed)
+    private int start;
+
+    // Number of stored positions by head (the heads are appended one by one)
+    private final int[] sizes;
+
+    public ContiguousKvCache(int kvHeadCount, int initialCapacity)
+    {
+        this.kvHeadCount = kvHeadCount;
+        this.capacity = Math.max(1, initialCapacity);
+        this.sizes = new int[kvHeadCount];
+    }
+
+    @Override
+    public void append(int head, Vector key, Vector value)
+    {
+        if (keys == null)
+        {
+            headSize = key.size();
+            keys = new float[kvHeadCount * capacity * headSize];
+            values = new float[kvHeadCount * capacity * headSize];
+        }
+
+        if (start + sizes[head] == capacity)
+        {
+            reallocate();
+        }
+
+        var offset = rowOffset(head, start + sizes[head]);
+        copy(key, keys, offset);
+        copy(value, values, offset);
+
+        sizes[head]++;
+    }
+
+    @Override
+    public Matrix getKeys(int head)
+    {
+        return new Float32FlatMatrix(keys, rowOffset(head, start), sizes[head], headSize);
+    }
+
+    @Override
+    public Matrix getValues(int head)
+    {
+        return new Float32FlatMatrix(values, rowOffset(head, start), sizes[head], headSize);
+    }
+
+    @Override
+    public int size()
+    {
+        return sizes[0];
+    }
+
+    @Override
+    public void removeFirst()
+    {
+        start++;
+
+        for (var head = 0; head < kvHeadCount; head++)
+        {
+            sizes[head]--;
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        start = 0;
+
+        for (var head = 0; head < kvHeadCount; head++)
+        {
+            sizes[head] = 0;
+        }
+    }
+
+    /**
+     * Creates an independent deep copy of the stored keys and values
+     */
+    @Override
+    public KvCache fork()
+    {
+        var fork = new ContiguousKvCache(kvHeadCount, capacity);
+
+        if (keys != null)
+        {
+            fork.headSize = headSize;
+            fork.keys = keys.clone();
+            fork.values = values.clone();
+            fork.start = start;
+            System.arraycopy(sizes, 0, fork.sizes, 0, kvHeadCount);
+        }
+
+        return fork;
+    }
+
+    /**
+     * Moves the stored positions to the beginning of the heads' segments,
+     * doubling the capacity if more than the half of it is in use
+     */
+    private void reallocate()
+    {
+        var newCapacity = sizes[0] * 2 > capacity ? capacity * 2 : capacity;
+
+        var newKeys = newCapacity == capacity ? keys : new float[kvHeadCount * newCapacity * headSize];
+        var newValues = newCapacity == capacity ? values : new float[kvHeadCount * newCapacity * headSize];
+
+        for (var head = 0; head < kvHeadCount; head++)
+        {
+            var from = rowOffset(head, start);
+            var to = head * newCapacity * headSize;
+            var length = sizes[head] * headSize;
+
+            System.arraycopy(keys, from, newKeys, to, length);
+            System.arraycopy(values, from, newValues, to, length);
+        }
+
+        keys = newKeys;
+        values = newValues;
+        capacity = newCapacity;
+        start = 0;
+    }
+
+    private int rowOffset(int head, int pos)
+    {
+        return (head * capacity + pos) * headSize;
+    }
+
+    private void copy(Vector vector, float[] array, int offset)
+    {
+        if (vector instanceof Float32Vector float32Vector)
+        {
+            System.arraycopy(float32Vector.getArray(), float32Vector.getOffset(), array, offset, headSize);
+        }
+        else
+        {
+            for (var i = 0; i < headSize; i++)
+            {
+                array[offset + i] = vector.get(i);
+            }
+        }
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+}
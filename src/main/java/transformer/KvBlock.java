@@ -0,0 +1,19 @@
+package transformer;
+
+/**
+ * Block of the paged KV cache: the keys and values of a fixed number of positions of a head ([pos][headSize])
+ * The block can be shared by multiple caches (forked sessions), the reference count is maintained by the KvBlockPool.
+ */
+public class KvBlock
+{
+    final float[] keys;
+    final float[] values;
+
+    int referenceCount;
+
+    KvBlock(int size)
+    {
+        this.keys = new float[size];
+        this.values = new float[size];
+    }
+}
@@ -0,0 +1,86 @@
+package transformer;
+
+import app.IdentifiedException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Pool of the blocks of the paged KV cache, shared by all attention layers (and all sessions) of a model
+
+ * The blocks have the same size, so a released block can be reused by any layer or session without fragmentation.
+ * The blocks are reference counted: a forked cache shares the blocks of the original,
+ * and a block is returned to the pool only if it isn't used by any cache.
+ */
+public class KvBlockPool
+{
+    private final int blockSize;
+    private int headSize;
+
+    private final Deque<KvBlock> freeBlocks = new ArrayDeque<>();
+    private int allocatedBlockCount;
+
+    public KvBlockPool(int blockSize)
+    {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns a block (a released one if there is any), for the provided head size
+     */
+    public synchronized KvBlock allocate(int headSize)
+    {
+        if (this.headSize == 0)
+        {
+            this.headSize = headSize;
+        }
+        else if (this.headSize != headSize)
+        {
+            throw new IdentifiedException("KV block pool is created for head size " + this.headSize
+                    + ", but requested for " + headSize);
+        }
+
+        var block = freeBlocks.pollFirst();
+        if (block == null)
+        {
+            block = new KvBlock(blockSize * headSize);
+            allocatedBlockCount++;
+        }
+
+        block.referenceCount = 1;
+        return block;
+    }
+
+    /**
+     * Registers a new user of the block (a forked cache)
+     */
+    public synchronized void share(KvBlock block)
+    {
+        block.referenceCount++;
+    }
+
+    /**
+     * Removes a user of the block, and returns it to the pool if it isn't used anymore
+     */
+    public synchronized void release(KvBlock block)
+    {
+        block.referenceCount--;
+
+        if (block.referenceCount == 0)
+        {
+            freeBlocks.addFirst(block);
+        }
+    }
+
+    /**
+     * Returns true if the block is used by multiple caches (so it has to be copied before modification)
+     */
+    public synchronized boolean isShared(KvBlock block)
+    {
+        return block.referenceCount > 1;
+    }
+
+    public int getBlockSize() {return blockSize;}
+    public synchronized int getAllocatedBlockCount() {return allocatedBlockCount;}
+    public synchronized int getFreeBlockCount() {return freeBlocks.size();}
+}
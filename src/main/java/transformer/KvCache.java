@@ -0,0 +1,76 @@
+package transformer;
+
+import config.Config;
+import math.dataType.matrix.Matrix;
+import math.dataType.vector.Vector;
+
+/**
+ * Storage of the keys and values of the previous tokens of an attention layer (KV cache)
+ * The keys and values are stored by "kv head" and "position", and returned as a matrix (a row per position)
+ */
+public interface KvCache
+{
+    // Initial number of positions allocated in the continuous KV cache (it is doubled when more is necessary)
+    int INITIAL_CAPACITY = 256;
+
+    /**
+     * Creates the KV cache of an attention layer
+     * If the kvBlockSize is configured the keys and values are stored in blocks of the shared pool (paged KV cache),
+     * otherwise in a continuous array per layer.
+     */
+    static KvCache create(Config config, int kvHeadCount)
+    {
+        if (config.getKvBlockSize() > 0)
+        {
+            return new PagedKvCache(config.getKvBlockPool(), kvHeadCount);
+        }
+
+        return new ContiguousKvCache(kvHeadCount, Math.min(config.getContextSize(), INITIAL_CAPACITY));
+    }
+
+    /**
+     * Stores the key and value of the next position of a head
+     */
+    void append(int head, Vector key, Vector value);
+
+    /**
+     * Stores the keys and values of multiple positions of a head (one row per position)
+     */
+    default void append(int head, Matrix keys, Matrix values)
+    {
+        for (var i = 0; i < keys.getRowCount(); i++)
+        {
+            append(head, keys.row(i), values.row(i));
+        }
+    }
+
+    /**
+     * Returns the stored keys of a head as a view (a row per position)
+     */
+    Matrix getKeys(int head);
+
+    /**
+     * Returns the stored values of a head as a view (a row per position)
+     */
+    Matrix getValues(int head);
+
+    /**
+     * Returns the number of stored positions (of the first head)
+     */
+    int size();
+
+    /**
+     * Removes the first stored position of all heads
+     */
+    void removeFirst();
+
+    /**
+     * Removes all stored positions
+     */
+    void clear();
+
+    /**
+     * Creates a copy of the cache, which can be continued independently (for example with a different sampling)
+     */
+    KvCache fork();
+}
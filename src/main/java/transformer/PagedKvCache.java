@@ -0,0 +1,201 @@
+package transformer;
+
+import math.dataType.matrix.Matrix;
+import math.dataType.vector.Float32Vector;
+import math.dataType.vector.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * KV cache which stores the keys and values in fixed size blocks drawn from a shared pool (paged KV cache)
+
+ * Every head has a block table (the list of its blocks), so only the necessary number of blocks are used,
+ * and the blocks are returned to the pool at clear(). (Memory isn't reserved for the full context of every session.)
+ * A forked cache shares the blocks of the original (copy-on-write): a shared block is copied only if a new position
+ * is appended into it. (The already filled blocks are never modified, so the common prefix is stored only once.)
+ */
+public class PagedKvCache implements KvCache
+{
+    private final KvBlockPool pool;
+    private final int blockSize;
+    private final int kvHeadCount;
+    private int headSize;
+
+    // Block table of every head
+    private final List<List<KvBlock>> blockTables = new ArrayList<>();
+
+    // Position of the first stored value within the first block (larger than 0 only if the first positions were removed)
+    private int start;
+
+    // Number of stored positions by head (the heads are appended one by one)
+    private final int[] sizes;
+
+    public PagedKvCache(KvBlockPool pool, int kvHeadCount)
+    {
+        this.pool = pool;
+        this.blockSize = pool.getBlockSize();
+        this.kvHeadCount = kvHeadCount;
+        this.sizes = new int[kvHeadCount];
+
+        for (var head = 0; head < kvHeadCount; head++)
+        {
+            blockTables.add(new ArrayList<>());
+        }
+    }
+
+    @Override
+    public void append(int head, Vector key, Vector value)
+    {
+        if (headSize == 0)
+        {
+            headSize = key.size();
+        }
+
+        var blockTable = blockTables.get(head);
+        var pos = start + sizes[head];
+        var blockId = pos / blockSize;
+        var offset = (pos % blockSize) * headSize;
+
+        if (blockId == blockTable.size())
+        {
+            blockTable.add(pool.allocate(headSize));
+        }
+        else if (pool.isShared(blockTable.get(blockId)))
+        {
+            // Copy-on-write: the block is used by a forked cache as well, so the filled part is copied into a new block
+            var sharedBlock = blockTable.get(blockId);
+            var block = pool.allocate(headSize);
+
+            System.arraycopy(sharedBlock.keys, 0, block.keys, 0, offset);
+            System.arraycopy(sharedBlock.values, 0, block.values, 0, offset);
+
+            blockTable.set(blockId, block);
+            pool.release(sharedBlock);
+        }
+
+        var block = blockTable.get(blockId);
+        copy(key, block.keys, offset);
+        copy(value, block.values, offset);
+
+        sizes[head]++;
+    }
+
+    @Override
+    public Matrix getKeys(int head)
+    {
+        var blockTable = blockTables.get(head);
+
+        var blocks = new float[blockTable.size()][];
+        for (var i = 0; i < blocks.length; i++)
+        {
+            blocks[i] = blockTable.get(i).keys;
+        }
+
+        return new PagedKvMatrix(blocks, blockSize, start, sizes[head], headSize);
+    }
+
+    @Override
+    public Matrix getValues(int head)
+    {
+        var blockTable = blockTables.get(head);
+
+        var blocks = new float[blockTable.size()][];
+        for (var i = 0; i < blocks.length; i++)
+        {
+            blocks[i] = blockTable.get(i).values;
+        }
+
+        return new PagedKvMatrix(blocks, blockSize, start, sizes[head], headSize);
+    }
+
+    @Override
+    public int size()
+    {
+        return sizes[0];
+    }
+
+    @Override
+    public void removeFirst()
+    {
+        start++;
+
+        for (var head = 0; head < kvHeadCount; head++)
+        {
+            sizes[head]--;
+        }
+
+        if (start == blockSize)
+        {
+            // The first block isn't used anymore
+            for (var blockTable : blockTables)
+            {
+                pool.release(blockTable.removeFirst());
+            }
+
+            start = 0;
+        }
+    }
+
+    /**
+     * Removes all stored positions (the blocks are returned to the pool)
+     */
+    @Override
+    public void clear()
+    {
+        for (var blockTable : blockTables)
+        {
+            for (var block : blockTable)
+            {
+                pool.release(block);
+            }
+
+            blockTable.clear();
+        }
+
+        start = 0;
+
+        for (var head = 0; head < kvHeadCount; head++)
+        {
+            sizes[head] = 0;
+        }
+    }
+
+    /**
+     * Creates a copy of the cache which shares all blocks with the original (copy-on-write)
+     */
+    @Override
+    public KvCache fork()
+    {
+        var fork = new PagedKvCache(pool, kvHeadCount);
+        fork.headSize = headSize;
+        fork.start = start;
+        System.arraycopy(sizes, 0, fork.sizes, 0, kvHeadCount);
+
+        for (var head = 0; head < kvHeadCount; head++)
+        {
+            for (var block : blockTables.get(head))
+            {
+                pool.share(block);
+                fork.blockTables.get(head).add(block);
+            }
+        }
+
+        return fork;
+    }
+
+    private void copy(Vector vector, float[] array, int offset)
+    {
+        if (vector instanceof Float32Vector float32Vector)
+        {
+            System.arraycopy(float32Vector.getArray(), float32Vector.getOffset(), array, offset, headSize);
+        }
+        else
+        {
+            for (var i = 0; i < headSize; i++)
+            {
+                array[offset + i] = vector.get(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package transformer;
+
+import app.IdentifiedException;
+import math.dataType.DataType;
+import math.dataType.matrix.AbstractMatrix;
+import math.dataType.vector.Float32Vector;
+import math.dataType.vector.Vector;
+
+/**
+ * Read-only view of the stored keys (or values) of a head in the paged KV cache
+ * The rows are returned as views of the blocks (the values aren't copied).
+ */
+class PagedKvMatrix extends AbstractMatrix
+{
+    private final float[][] blocks;
+    private final int blockSize;
+    private final int start;
+    private final int rows;
+    private final int cols;
+
+    PagedKvMatrix(float[][] blocks, int blockSize, int start, int rows, int cols)
+    {
+        this.blocks = blocks;
+        this.blockSize = blockSize;
+        this.start = start;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    @Override
+    public float getValue(int rowId, int colId)
+    {
+        var pos = start + rowId;
+        return blocks[pos / blockSize][(pos % blockSize) * cols + colId];
+    }
+
+    @Override
+    public void setValue(int rowId, int colId, float value)
+    {
+        throw new IdentifiedException("The stored keys and values of the paged KV cache can't be modified.");
+    }
+
+    @Override
+    public Vector row(int rowId)
+    {
+        var pos = start + rowId;
+        return new Float32Vector(blocks[pos / blockSize], (pos % blockSize) * cols, cols);
+    }
+
+    @Override
+    public void setRow(int rowId, Vector vector)
+    {
+        throw new IdentifiedException("The stored keys and values of the paged KV cache can't be modified.");
+    }
+
+    @Override
+    public Vector[] getVectorArray()
+    {
+        var vectorArray = new Vector[rows];
+
+        for (var i = 0; i < rows; i++)
+        {
+            vectorArray[i] = row(i);
+        }
+
+        return vectorArray;
+    }
+
+    @Override
+    public void addRow(Vector vector)
+    {
+        throw new IdentifiedException("The stored keys and values of the paged KV cache can't be modified.");
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return rows;
+    }
+
+    @Override
+    public int getColCount()
+    {
+        return cols;
+    }
+
+    @Override
+    public DataType getInternalFloatType()
+    {
+        return DataType.FLOAT_32;
+    }
+}
@@ -0,0 +1,253 @@
+package transformer;
+
+import math.IndexedValue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Selects the next token from the best candidates (logits of the top K tokens)
+ * Steps: penalties (repetition, frequency), top K, temperature, min-p, top-p, weighted random pick
+
+ * The sampler counts the occurrences of the tokens of the context (see accept()), which is used by the penalties.
+ * The penalties can only decrease the logits (see SamplerSettings.validate()), so the best K tokens after
+ * the penalties are always among the best (K + number of penalized tokens) tokens before. (See getCandidateCount().)
+ * The work buffers are reused, so there is no allocation per token (except if a buffer has to grow).
+ */
+public class Sampler
+{
+    private SamplerSettings settings;
+    private Random random;
+
+    // Number of occurrences in the context by token id, and the list of the distinct tokens in the context
+    private int[] tokenCounts = new int[0];
+    private int[] contextTokens = new int[64];
+    private int contextTokenCount;
+
+    // Work buffers
+    private float[] values = new float[0];
+    private int[] indices = new int[0];
+    private double[] probabilities = new double[0];
+
+    public Sampler(SamplerSettings settings)
+    {
+        settings.validate();
+
+        this.settings = settings;
+        reseed();
+    }
+
+    /**
+     * Registers a token of the context (input or generated token), which is used by the penalties
+     */
+    public void accept(int token)
+    {
+        if (token >= tokenCounts.length)
+        {
+            tokenCounts = Arrays.copyOf(tokenCounts, Math.max(token + 1, tokenCounts.length * 2));
+        }
+
+        if (tokenCounts[token] == 0)
+        {
+            if (contextTokenCount == contextTokens.length)
+            {
+                contextTokens = Arrays.copyOf(contextTokens, contextTokens.length * 2);
+            }
+
+            contextTokens[contextTokenCount++] = token;
+        }
+
+        tokenCounts[token]++;
+    }
+
+    /**
+     * Clears the registered tokens and restarts the random generator (at the start of a new session)
+     */
+    public void reset()
+    {
+        for (var i = 0; i < contextTokenCount; i++)
+        {
+            tokenCounts[contextTokens[i]] = 0;
+        }
+
+        contextTokenCount = 0;
+
+        reseed();
+    }
+
+    /**
+     * Restarts the random generator (from the seed if it is set), so every session gives the same result
+     */
+    public void reseed()
+    {
+        random = settings.getSeed() == null ? new Random() : new Random(settings.getSeed());
+    }
+
+    /**
+     * Returns the number of candidates (best logits) which are necessary to select from the top K tokens
+     */
+    public int getCandidateCount(int topK)
+    {
+        return hasPenalty() ? topK + contextTokenCount : topK;
+    }
+
+    /**
+     * Selects a token from the candidates (logits in reversed order, see getCandidateCount())
+     */
+    public int sample(List<IndexedValue> candidates, int topK)
+    {
+        var count = candidates.size();
+        ensureCapacity(count);
+
+        for (var i = 0; i < count; i++)
+        {
+            var candidate = candidates.get(i);
+            values[i] = candidate.value();
+            indices[i] = candidate.index();
+        }
+
+        if (hasPenalty())
+        {
+            applyPenalties(count);
+            sortByValue(count);
+        }
+
+        // Top K
+        count = Math.min(count, topK);
+
+        if (count == 0)
+        {
+            return candidates.isEmpty() ? 0 : candidates.get(0).index();
+        }
+
+        if (settings.getTemperature() <= 0)
+        {
+            // Greedy selection
+            return indices[0];
+        }
+
+        // Softmax with temperature (relative to the best, so the probability of the best token is 1 before normalization)
+        var max = values[0];
+        var total = 0d;
+        for (var i = 0; i < count; i++)
+        {
+            probabilities[i] = Math.exp((values[i] - max) / settings.getTemperature());
+            total = total + probabilities[i];
+        }
+
+        // Min-p: dropping the tokens which are much less probable than the best
+        if (settings.getMinP() > 0)
+        {
+            var i = 1;
+            while (i < count && probabilities[i] >= settings.getMinP()) i++;
+
+            for (var j = i; j < count; j++)
+            {
+                total = total - probabilities[j];
+            }
+
+            count = i;
+        }
+
+        // Top-p: keeping the best tokens until the sum of their probabilities reaches the limit
+        if (settings.getTopP() < 1)
+        {
+            var limit = settings.getTopP() * total;
+            var sum = 0d;
+            var i = 0;
+            while (i < count && sum < limit)
+            {
+                sum = sum + probabilities[i];
+                i++;
+            }
+
+            count = i;
+            total = sum;
+        }
+
+        // Weighted random pick
+        var pick = random.nextDouble() * total;
+        for (var i = 0; i < count; i++)
+        {
+            pick = pick - probabilities[i];
+            if (pick < 0) return indices[i];
+        }
+
+        return indices[count - 1];
+    }
+
+    private boolean hasPenalty()
+    {
+        return settings.getRepetitionPenalty() != 1f || settings.getFrequencyPenalty() != 0f;
+    }
+
+    private void applyPenalties(int count)
+    {
+        for (var i = 0; i < count; i++)
+        {
+            var token = indices[i];
+            var occurrences = token < tokenCounts.length ? tokenCounts[token] : 0;
+
+            if (occurrences > 0)
+            {
+                var value = values[i];
+
+                value = value > 0
+                        ? value / settings.getRepetitionPenalty()
+                        : value * settings.getRepetitionPenalty();
+
+                values[i] = value - occurrences * settings.getFrequencyPenalty();
+            }
+        }
+    }
+
+    /**
+     * Insertion sort of the candidates by value (higher first). The candidates were sorted before the penalties,
+     * so only the penalized values have to be moved.
+     */
+    private void sortByValue(int count)
+    {
+        for (var i = 1; i < count; i++)
+        {
+            var value = values[i];
+            var index = indices[i];
+
+            var j = i - 1;
+            while (j >= 0 && values[j] < value)
+            {
+                values[j + 1] = values[j];
+                indices[j + 1] = indices[j];
+                j--;
+            }
+
+            values[j + 1] = value;
+            indices[j + 1] = index;
+        }
+    }
+
+    private void ensureCapacity(int count)
+    {
+        if (values.length < count)
+        {
+            values = new float[count];
+            indices = new int[count];
+            probabilities = new double[count];
+        }
+    }
+
+    public SamplerSettings getSettings()
+    {
+        return settings;
+    }
+
+    /**
+     * Replaces the settings (the registered tokens are kept)
+     */
+    public void setSettings(SamplerSettings settings)
+    {
+        settings.validate();
+
+        this.settings = settings;
+    }
+}
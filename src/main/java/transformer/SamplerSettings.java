@@ -0,0 +1,85 @@
+package transformer;
+
+import app.IdentifiedException;
+
+import java.util.Objects;
+
+/**
+ * Settings of the token selection (see Sampler)
+ * (It is sent over the network in the query request, so it has an empty constructor and isn't immutable.)
+ */
+public class SamplerSettings
+{
+    // Divider of the logits before the softmax (zero means greedy selection: the best token is always selected)
+    private float temperature = 1f;
+
+    // Nucleus sampling: the best tokens are kept, until the sum of their probabilities reaches this value
+    private float topP = 1f;
+
+    // Tokens with lower probability than the probability of the best token multiplied by this value are dropped
+    private float minP = 0f;
+
+    // The logits of the tokens which are already in the context are divided (or multiplied if negative) by this value
+    private float repetitionPenalty = 1f;
+
+    // This value multiplied by the number of occurrences in the context is subtracted from the logit of a token
+    private float frequencyPenalty = 0f;
+
+    // Seed of the random generator (null means random seed), to have reproducible results
+    private Long seed;
+
+    public SamplerSettings() {}
+
+    public SamplerSettings(float temperature, float topP, float minP, float repetitionPenalty, float frequencyPenalty,
+                           Long seed)
+    {
+        this.temperature = temperature;
+        this.topP = topP;
+        this.minP = minP;
+        this.repetitionPenalty = repetitionPenalty;
+        this.frequencyPenalty = frequencyPenalty;
+        this.seed = seed;
+    }
+
+    /**
+     * Checks the penalties, which can only decrease the logits (repetition penalty >= 1, frequency penalty >= 0)
+     * (The sampler selects from a limited number of candidates, so a raised token could be missed.)
+     */
+    public void validate()
+    {
+        if (repetitionPenalty < 1)
+        {
+            throw new IdentifiedException("The repetition penalty can't be lower than 1: " + repetitionPenalty);
+        }
+
+        if (frequencyPenalty < 0)
+        {
+            throw new IdentifiedException("The frequency penalty can't be negative: " + frequencyPenalty);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if ( !(o instanceof SamplerSettings that)) return false;
+
+        return temperature == that.temperature && topP == that.topP && minP == that.minP
+                && repetitionPenalty == that.repetitionPenalty && frequencyPenalty == that.frequencyPenalty
+                && Objects.equals(seed, that.seed);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(temperature, topP, minP, repetitionPenalty, frequencyPenalty, seed);
+    }
+
+    // Getters
+    public float getTemperature() {return temperature;}
+    public float getTopP() {return topP;}
+    public float getMinP() {return minP;}
+    public float getRepetitionPenalty() {return repetitionPenalty;}
+    public float getFrequencyPenalty() {return frequencyPenalty;}
+    public Long getSeed() {return seed;}
+}
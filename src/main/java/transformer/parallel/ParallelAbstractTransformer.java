@@ -5,6 +5,8 @@ import math.dataType.matrix.Matrix;
 import math.dataType.vector.Vector;
 import network.info.DecoderBlockType;
 import parameters.ParameterStore;
+import transformer.KvCache;
+import transformer.Sampler;
 import transformer.TransformerType;
 
 import java.util.HashMap;
@@ -15,6 +17,9 @@ public abstract class ParallelAbstractTransformer extends ParameterStore
 {
     protected int decoderCount;
 
+    // Selector of the next token (holds the token occurrences of the context for the penalties)
+    protected Sampler sampler;
+
     protected final Map<Integer, ParallelBaseAttentionLayer> attentionLayers = new HashMap<>();
     protected final Map<Integer, ParallelBaseNeuralNetLayer> neuralNetLayers = new HashMap<>();
 
@@ -30,6 +35,7 @@ public abstract class ParallelAbstractTransformer extends ParameterStore
     {
         super.init(config);
         this.decoderCount = config.getDecoderCount();
+        this.sampler = new Sampler(config.getSamplerSettings());
     }
 
     public void initDecoders()
@@ -69,6 +75,61 @@ public abstract class ParallelAbstractTransformer extends ParameterStore
         {
             attentionLayer.clear();
         }
+
+        sampler.reset();
+    }
+
+    /**
+     * Returns the KV caches of the attention layers (by decoder id), which hold the state of the actual session
+     * (Multiple sessions can be kept in memory, activating one by setKvCaches())
+     */
+    public Map<Integer, KvCache> getKvCaches()
+    {
+        var kvCaches = new HashMap<Integer, KvCache>();
+
+        for (var entry : attentionLayers.entrySet())
+        {
+            kvCaches.put(entry.getKey(), entry.getValue().getKvCache());
+        }
+
+        return kvCaches;
+    }
+
+    /**
+     * Activates the provided KV caches (of a different session)
+     */
+    public void setKvCaches(Map<Integer, KvCache> kvCaches)
+    {
+        for (var entry : attentionLayers.entrySet())
+        {
+            entry.getValue().setKvCache(kvCaches.get(entry.getKey()));
+        }
+    }
+
+    /**
+     * Returns a copy of the KV caches, which can be continued independently
+     * (At the paged KV cache the forked caches share the stored blocks, so the common prefix isn't copied.)
+     */
+    public Map<Integer, KvCache> forkKvCaches()
+    {
+        var kvCaches = new HashMap<Integer, KvCache>();
+
+        for (var entry : attentionLayers.entrySet())
+        {
+            kvCaches.put(entry.getKey(), entry.getValue().getKvCache().fork());
+        }
+
+        return kvCaches;
+    }
+
+    public Sampler getSampler()
+    {
+        return sampler;
+    }
+
+    public void setSampler(Sampler sampler)
+    {
+        this.sampler = sampler;
     }
 
     @Override
@@ -1,14 +1,11 @@
 package transformer.parallel;
 
 import config.Config;
-import math.dataType.DataType;
 import math.dataType.matrix.Matrix;
 import math.dataType.vector.Vector;
+import transformer.KvCache;
 import transformer.serial.BaseDecoderLayer;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public abstract class ParallelBaseAttentionLayer extends BaseDecoderLayer
 {
     protected float attentionScale = 1;
@@ -17,8 +14,7 @@ public abstract class ParallelBaseAttentionLayer extends BaseDecoderLayer
     // At multi-head attention models (MHA, standard) the "kv head count" is the same as the "head count".
     // At grouped-query attention (GQA) "kv head count" is smaller than the "head count".
     // At multi-query attention (MQA) "kv head count" is 1.
-    private final List<Matrix> storedKeys = new ArrayList<>();
-    private final List<Matrix> storedValues = new ArrayList<>();
+    private KvCache kvCache;
 
     public abstract void loadParameters();
 
@@ -30,63 +26,86 @@ public abstract class ParallelBaseAttentionLayer extends BaseDecoderLayer
     {
         super.init(config, decoderId);
 
+        kvCache = KvCache.create(config, kvHeadCount);
+
         loadParameters();
     }
 
     protected void store(int head, Matrix keys, Matrix values)
     {
-        initStore(keys.getInternalFloatType());
-
-        for (var i = 0; i < keys.getRowCount(); i++)
-        {
-            storedKeys.get(head).addRow(keys.row(i));
-            storedValues.get(head).addRow(values.row(i));
-        }
+        kvCache.append(head, keys, values);
     }
 
     protected void store(int head, Vector keys, Vector values)
     {
-        initStore(keys.getFloatType());
+        kvCache.append(head, keys, values);
+    }
+
+    protected Matrix getStoredKeys(int head)
+    {
+        return kvCache.getKeys(head);
+    }
 
-        storedKeys.get(head).addRow(keys);
-        storedValues.get(head).addRow(values);
+    protected Matrix getStoredValues(int head)
+    {
+        return kvCache.getValues(head);
     }
 
-    private void initStore(DataType internalFloatType)
+    /**
+     * Returns the stored keys of all key-value heads (to process the attention of all heads by a single call)
+     */
+    protected Matrix[] getStoredKeys()
     {
-        if (storedKeys.isEmpty())
+        var keys = new Matrix[kvHeadCount];
+        for (var head = 0; head < kvHeadCount; head++)
         {
-            for (var i = 0; i < kvHeadCount; i++)
-            {
-                storedKeys.add(Matrix.emptyMatrix(internalFloatType, 0, 0));
-                storedValues.add(Matrix.emptyMatrix(internalFloatType, 0, 0));
-            }
+            keys[head] = kvCache.getKeys(head);
         }
+
+        return keys;
     }
 
-    protected Matrix getStoredKeys(int head)
+    /**
+     * Returns the stored values of all key-value heads
+     */
+    protected Matrix[] getStoredValues()
     {
-        return storedKeys.get(head);
+        var values = new Matrix[kvHeadCount];
+        for (var head = 0; head < kvHeadCount; head++)
+        {
+            values[head] = kvCache.getValues(head);
+        }
+
+        return values;
     }
 
-    protected Matrix getStoredValues(int head)
+    protected int storedSize()
     {
-        return storedValues.get(head);
+        return kvCache.size();
     }
 
-    protected int storedSize()
+    /**
+     * Removes the first stored position (key and value) of all heads (used at local attention)
+     */
+    protected void removeFirstStored()
     {
-        return storedKeys.getFirst().getRowCount();
+        kvCache.removeFirst();
     }
 
-    protected void removeFirstStoredKey()
+    /**
+     * Returns the stored keys and values (the state of the actual session)
+     */
+    public KvCache getKvCache()
     {
-        storedKeys.removeFirst();
+        return kvCache;
     }
 
-    protected void removeFirstStoredValue()
+    /**
+     * Replaces the stored keys and values (to continue a different session)
+     */
+    public void setKvCache(KvCache kvCache)
     {
-        storedValues.removeFirst();
+        this.kvCache = kvCache;
     }
 
     /**
@@ -94,13 +113,6 @@ public abstract class ParallelBaseAttentionLayer extends BaseDecoderLayer
      */
     public void clear()
     {
-        storedKeys.clear();
-        storedValues.clear();
-
-        /*for (var i = 0; i < kvHeadCount; i++)
-        {
-            storedKeys.add(new ArrayList<>());
-            storedValues.add(new ArrayList<>());
-        }*/
+        kvCache.clear();
     }
 }
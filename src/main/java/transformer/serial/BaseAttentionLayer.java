@@ -1,10 +1,9 @@
 package transformer.serial;
 
 import config.Config;
+import math.dataType.matrix.Matrix;
 import math.dataType.vector.Vector;
-
-import java.util.ArrayList;
-import java.util.List;
+import transformer.KvCache;
 
 public abstract class BaseAttentionLayer extends BaseDecoderLayer
 {
@@ -14,8 +13,7 @@ public abstract class BaseAttentionLayer extends BaseDecoderLayer
     // At multi-head attention models (MHA, standard) the "kv head count" is the same as the "head count".
     // At grouped-query attention (GQA) "kv head count" is smaller than the "head count".
     // At multi-query attention (MQA) "kv head count" is 1.
-    private final List<List<Vector>> storedKeys = new ArrayList<>();
-    private final List<List<Vector>> storedValues = new ArrayList<>();
+    private KvCache kvCache;
 
     public abstract void loadParameters();
 
@@ -25,44 +23,81 @@ public abstract class BaseAttentionLayer extends BaseDecoderLayer
     {
         super.init(config, decoderId);
 
-        for (var i = 0; i < kvHeadCount; i++)
-        {
-            storedKeys.add(new ArrayList<>());
-            storedValues.add(new ArrayList<>());
-        }
+        kvCache = KvCache.create(config, kvHeadCount);
 
         loadParameters();
     }
 
     protected void store(int head, Vector key, Vector value)
     {
-        storedKeys.get(head).add(key);
-        storedValues.get(head).add(value);
+        kvCache.append(head, key, value);
+    }
+
+    protected Matrix getStoredKeys(int head)
+    {
+        return kvCache.getKeys(head);
     }
 
-    protected List<Vector> getStoredKeys(int head)
+    protected Matrix getStoredValues(int head)
     {
-        return storedKeys.get(head);
+        return kvCache.getValues(head);
     }
 
-    protected List<Vector> getStoredValues(int head)
+    /**
+     * Returns the stored keys of all key-value heads (to process the attention of all heads by a single call)
+     */
+    protected Matrix[] getStoredKeys()
     {
-        return storedValues.get(head);
+        var keys = new Matrix[kvHeadCount];
+        for (var head = 0; head < kvHeadCount; head++)
+        {
+            keys[head] = kvCache.getKeys(head);
+        }
+
+        return keys;
+    }
+
+    /**
+     * Returns the stored values of all key-value heads
+     */
+    protected Matrix[] getStoredValues()
+    {
+        var values = new Matrix[kvHeadCount];
+        for (var head = 0; head < kvHeadCount; head++)
+        {
+            values[head] = kvCache.getValues(head);
+        }
+
+        return values;
     }
 
     protected int storedSize()
     {
-        return storedKeys.getFirst().size();
+        return kvCache.size();
     }
 
-    protected void removeFirstStoredKey()
+    /**
+     * Removes the first stored position (key and value) of all heads (used at local attention)
+     */
+    protected void removeFirstStored()
     {
-        storedKeys.removeFirst();
+        kvCache.removeFirst();
     }
 
-    protected void removeFirstStoredValue()
+    /**
+     * Returns the stored keys and values (the state of the actual session)
+     */
+    public KvCache getKvCache()
     {
-        storedValues.removeFirst();
+        return kvCache;
+    }
+
+    /**
+     * Replaces the stored keys and values (to continue a different session)
+     */
+    public void setKvCache(KvCache kvCache)
+    {
+        this.kvCache = kvCache;
     }
 
     /**
@@ -70,13 +105,6 @@ public abstract class BaseAttentionLayer extends BaseDecoderLayer
      */
     public void clear()
     {
-        storedKeys.clear();
-        storedValues.clear();
-
-        for (var i = 0; i < kvHeadCount; i++)
-        {
-            storedKeys.add(new ArrayList<>());
-            storedValues.add(new ArrayList<>());
-        }
+        kvCache.clear();
     }
 }
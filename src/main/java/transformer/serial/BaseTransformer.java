@@ -2,6 +2,7 @@ package transformer.serial;
 
 import config.Config;
 import math.IndexedValue;
+import math.dataType.matrix.Matrix;
 import math.dataType.vector.Vector;
 
 import java.util.List;
@@ -34,6 +35,9 @@ public abstract class BaseTransformer extends AbstractTransformer
      */
     public Integer processToken(int pos, int tokenId, int topK, boolean isInputOnly)
     {
+        // Register the token in the context (used by the penalties of the token selection)
+        sampler.accept(tokenId);
+
         // Head of the transformer - call the preProcess of the implementation
         Vector hiddenState = processTokenMain(pos, tokenId, isInputOnly);
 
@@ -71,20 +75,26 @@ public abstract class BaseTransformer extends AbstractTransformer
     }
 
     /**
-     * Selects randomly the token from the provided logits (list of probabilities), using the topK settings
+     * Selects the token from the provided logits, using the topK and the sampler settings
      */
     protected int selectBestToken(Vector logits, int topK)
     {
         // Sort (higher to lower) the result of the dot products, retaining the order (index) of the related token
-        List<IndexedValue> orderedLogits = MATH.reverseAndFilter(logits.getValues(), topK);
+        List<IndexedValue> orderedLogits = MATH.reverseAndFilter(logits, sampler.getCandidateCount(topK));
 
-        // Convert the logits to probabilities
-        float[] probabilities = MATH.softmax(orderedLogits);
+        return sampler.sample(orderedLogits, topK);
+    }
 
-        // Pick one token randomly, using a weighted random selection
-        int index = MATH.weightedRandomPick(probabilities);
+    /**
+     * Selects the token by the dot product of the hidden state and the token embeddings, using the topK
+     * and the sampler settings (Only the best logits are collected, the logits of all tokens aren't stored)
+     */
+    protected int selectBestToken(Vector hiddenState, Matrix tokenEmbeddings, int topK)
+    {
+        // Multiply (dot product) the output with all token embeddings, retaining the best results (higher to lower)
+        List<IndexedValue> orderedLogits =
+                MATH.mulVectorByTransposedMatrixTopK(hiddenState, tokenEmbeddings, sampler.getCandidateCount(topK));
 
-        // Lookup the token id
-        return orderedLogits.get(index).index();
+        return sampler.sample(orderedLogits, topK);
     }
 }
@@ -36,10 +36,8 @@ public class GoogleTransformer extends BaseTransformer
 
     public int generateToken(Vector hiddenState, int topK)
     {
-        // Multiply (dot product) the output with all token embeddings.
+        // Multiply (dot product) the output with all token embeddings, and select the next token from the best ones.
         // It will give a higher value if the output is more similar to the token embedding
-        Vector logits = hiddenState.multiplyByTransposed(matrix(tokenEmbeddings));
-
-        return selectBestToken(logits, topK);
+        return selectBestToken(hiddenState, matrix(tokenEmbeddings), topK);
     }
 }
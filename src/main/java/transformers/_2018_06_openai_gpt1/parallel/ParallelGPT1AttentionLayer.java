@@ -120,27 +120,31 @@ public class ParallelGPT1AttentionLayer extends ParallelBaseAttentionLayer
         // Collector of the attention results for all heads
         Matrix valueAggregate = emptyMatrix(headCount, headSize);
 
-        // Score the previous tokens (including the actual), separately for all heads
+        // Split the queries by head
+        Matrix queryHeads = MATH.splitVector(queries, headCount);
+
+        // Store the keys and values of the actual token, separately for all heads
         for (int head = 0; head < headCount; head++)
         {
-            // Split the query, key and value vectors into pieces for all heads
-            Vector query = queries.part(headCount, head);
+            // Split the key and value vectors into pieces for all heads
             Vector key = keys.part(headCount, head);
             Vector value = values.part(headCount, head);
 
             // Store the keys and values (these will be available while the following tokens will be processed)0
             store(head, key, value);
-
-            // Process the core of the attention mechanism (scaled dot product attention)
-            Vector attentionResult = scaledDotProductAttention(
-                                            query,
-                                            getStoredKeys(head),
-                                            getStoredValues(head));
-
-            // Add the result to the collector for the actual head
-            valueAggregate.setRow(head, attentionResult);
         }
 
+        // Score the previous tokens (including the actual) for all heads
+        // (The heads are independent, so the parallel math provider can process them on multiple threads.)
+        MATH.multiHeadAttention(
+                queryHeads,
+                getStoredKeys(),
+                getStoredValues(),
+                attentionScale,
+                null,
+                0,
+                valueAggregate);
+
         // Concatenate the results of all heads
         hiddenState = valueAggregate.flatten();
 
@@ -161,37 +165,4 @@ public class ParallelGPT1AttentionLayer extends ParallelBaseAttentionLayer
 
         return attention;
     }
-
-    private Vector scaledDotProductAttention(Vector query, Matrix keys, Matrix values)
-    {
-        int tokenCount = keys.getRowCount();
-
-        // Score all tokens using the actual query and the keys, multiplying by the scale
-        Vector scores = emptyVector(tokenCount);
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedKey = keys.row(pos);
-
-            // The core of the scaled dot product attention
-            float score = query.dotProduct(relatedKey) * attentionScale;
-            scores.set(pos, score);
-        }
-
-        // Normalize the scores into a range between 0 and 1
-        scores = MATH.softmax(scores);
-
-        // Apply the score on the values vectors
-        Vector result = Vector.emptyVector(query.getFloatType(), query.size());
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedValue = values.row(pos);
-            float score = scores.get(pos);
-
-            // Multiply the values by the score and sum up
-            Vector scoredValue = relatedValue.multiply(score);
-            result = result.add(scoredValue);
-        }
-
-        return result;
-    }
 }
@@ -60,14 +60,7 @@ public class ParallelGPT1NeuralNetLayer extends ParallelBaseNeuralNetLayer
         hiddenState = hiddenState.multiply(matrix(layer1Weight));
         hiddenState = hiddenState.addBroadcast(vector(layer1Bias));
 
-        for (var i = 0; i < hiddenState.getRowCount(); i++)
-        {
-            for (int neuron = 0; neuron < intermediateSize; neuron++)
-            {
-                float activation = gelu(hiddenState.getValue(i, neuron));
-                hiddenState.setValue(i, neuron, activation);
-            }
-        }
+        MATH.geluInPlace(hiddenState);
 
         // Layer 2: <hiddenSize> neurons (without activation function)
         hiddenState = hiddenState.multiply(matrix(layer2Weight));
@@ -82,11 +75,7 @@ public class ParallelGPT1NeuralNetLayer extends ParallelBaseNeuralNetLayer
         hiddenState = hiddenState.multiply(matrix(layer1Weight));
         hiddenState = hiddenState.add(vector(layer1Bias));
 
-        for (int neuron = 0; neuron < intermediateSize; neuron++)
-        {
-            float activation = gelu(hiddenState.get(neuron));
-            hiddenState.set(neuron, activation);
-        }
+        MATH.geluInPlace(hiddenState);
 
         // Layer 2: <hiddenSize> neurons (without activation function)
         hiddenState = hiddenState.multiply(matrix(layer2Weight));
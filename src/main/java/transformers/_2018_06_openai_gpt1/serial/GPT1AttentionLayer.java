@@ -5,8 +5,6 @@ import math.dataType.matrix.Matrix;
 import transformer.serial.BaseAttentionLayer;
 import math.dataType.vector.Vector;
 
-import java.util.List;
-
 import static math.MathUtil.MATH;
 import static config.ParameterType.*;
 import static math.BasicMathUtility.sqrt;
@@ -19,6 +17,10 @@ public class GPT1AttentionLayer extends BaseAttentionLayer
 {
     Parameter normWeight, normBias, queryKeyValueWeight, queryKeyValueBias, projectionWeight, projectionBias;
 
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector queryKeyValues, aggregateState, projectionState;
+    Matrix valueAggregate;
+
     public void loadParameters()
     {
         normWeight          = loadVector(NORM_WEIGHT,       "ln_1.weight",        hiddenSize);
@@ -30,6 +32,12 @@ public class GPT1AttentionLayer extends BaseAttentionLayer
 
         // Calculate the attention scale
         attentionScale = 1 / sqrt(headSize);
+
+        // Allocate the buffers
+        queryKeyValues  = emptyVector(hiddenSize * 3);
+        aggregateState  = emptyVector(hiddenSize);
+        projectionState = emptyVector(hiddenSize);
+        valueAggregate  = emptyMatrix(headCount, headSize);
     }
 
     public Vector process(Vector inputHiddenState, boolean isInputOnly)
@@ -41,10 +49,10 @@ public class GPT1AttentionLayer extends BaseAttentionLayer
         if ( !(isInputOnly && lastDecoder) )
         {
             // Residual connection
-            hiddenState = hiddenState.add(inputHiddenState);
+            MATH.addInPlace(hiddenState, inputHiddenState);
 
             // Normalization
-            hiddenState = MATH.layerNorm(hiddenState, vector(normWeight), vector(normBias), epsilon);
+            MATH.layerNorm(hiddenState, vector(normWeight), vector(normBias), epsilon, hiddenState);
         }
 
         return hiddenState;
@@ -53,78 +61,47 @@ public class GPT1AttentionLayer extends BaseAttentionLayer
     private Vector attention(Vector hiddenState)
     {
         // Calculate the query-key-value vectors for the actual token
-        Vector queryKeyValue = hiddenState.multiply(matrix(queryKeyValueWeight));
-        queryKeyValue = queryKeyValue.add(vector(queryKeyValueBias));
+        MATH.mulVectorByMatrix(hiddenState, matrix(queryKeyValueWeight), queryKeyValues);
+        MATH.addInPlace(queryKeyValues, vector(queryKeyValueBias));
 
         // Slice the query/key/value
-        Vector queries = queryKeyValue.part(3, 0);
-        Vector keys = queryKeyValue.part(3, 1);
-        Vector values = queryKeyValue.part(3, 2);
+        Vector queries = MATH.sliceVector(queryKeyValues, 0, hiddenSize);
+        Vector keys = MATH.sliceVector(queryKeyValues, hiddenSize, hiddenSize);
+        Vector values = MATH.sliceVector(queryKeyValues, hiddenSize * 2, hiddenSize);
 
-        // Collector of the attention results for all heads
-        Matrix valueAggregate = emptyMatrix(headCount, headSize);
+        // Split the queries by head
+        Matrix queryHeads = MATH.splitVector(queries, headCount);
 
-        // Score the previous tokens (including the actual), separately for all heads
+        // Store the keys and values of the actual token, separately for all heads
         for (int head = 0; head < headCount; head++)
         {
-            // Get the part for the actual head of the query, key and value vectors
-            Vector query = queries.part(headCount, head);
-            Vector key = keys.part(headCount, head);
-            Vector value = values.part(headCount, head);
+            // Get the part for the actual head of the key and value vectors
+            Vector key = MATH.sliceVector(keys, head * headSize, headSize);
+            Vector value = MATH.sliceVector(values, head * headSize, headSize);
 
             // Store the keys and values (these will be available while the following tokens will be processed)
             store(head, key, value);
-
-            // Process the core of the attention mechanism (scaled dot product attention)
-            Vector attentionResult = scaledDotProductAttention(
-                                            query,
-                                            getStoredKeys(head),
-                                            getStoredValues(head));
-
-            // Add the result to the collector for the actual head
-            valueAggregate.setRow(head, attentionResult);
         }
 
+        // Score the previous tokens (including the actual) for all heads
+        // (The heads are independent, so the parallel math provider can process them on multiple threads.)
+        // The result is written directly into the collector of the attention results (valueAggregate)
+        MATH.multiHeadAttention(
+                queryHeads,
+                getStoredKeys(),
+                getStoredValues(),
+                attentionScale,
+                null,
+                0,
+                valueAggregate);
+
         // Concatenate the results of all heads
-        hiddenState = valueAggregate.flatten();
+        hiddenState = MATH.flattenMatrix(valueAggregate, aggregateState);
 
         // Projection neural layer
-        hiddenState = hiddenState.multiply(matrix(projectionWeight));
-        hiddenState = hiddenState.add(vector(projectionBias));
+        hiddenState = MATH.mulVectorByMatrix(hiddenState, matrix(projectionWeight), projectionState);
+        MATH.addInPlace(hiddenState, vector(projectionBias));
 
         return hiddenState;
     }
-
-    private Vector scaledDotProductAttention(Vector query, List<Vector> keys, List<Vector> values)
-    {
-        int tokenCount = keys.size();
-
-        // Score all tokens using the actual query and the keys, multiplying by the scale
-        Vector scores = emptyVector(tokenCount);
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedKey = keys.get(pos);
-
-            // The core of the scaled dot product attention
-            float score = query.dotProduct(relatedKey) * attentionScale;
-            scores.set(pos, score);
-        }
-
-        // Normalize the scores into a range between 0 and 1
-        scores = MATH.softmax(scores);
-
-        // Apply the score on the values vectors
-        Vector result = Vector.emptyVector(query.getFloatType(), query.size());
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedValue = values.get(pos);
-            float score = scores.get(pos);
-
-            // Multiply the values by the score and sum up
-            Vector scoredValue = relatedValue.multiply(score);
-            result = result.add(scoredValue);
-        }
-
-        return result;
-    }
 }
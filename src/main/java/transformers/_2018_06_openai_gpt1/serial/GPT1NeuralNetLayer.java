@@ -15,6 +15,9 @@ public class GPT1NeuralNetLayer extends BaseNeuralNetLayer
 {
     Parameter normWeight, normBias, layer1Weight, layer1Bias, layer2Weight, layer2Bias;
 
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector layer1State, layer2State;
+
     public void loadParameters()
     {
         normWeight   = loadVector(NORM_WEIGHT,       "ln_2.weight",       hiddenSize);
@@ -23,6 +26,10 @@ public class GPT1NeuralNetLayer extends BaseNeuralNetLayer
         layer1Bias   = loadVector(BIAS,              "mlp.c_fc.bias",     intermediateSize);
         layer2Weight = loadMatrix(HORIZONTAL_WEIGHT, "mlp.c_proj.weight", intermediateSize, hiddenSize);
         layer2Bias   = loadVector(BIAS,              "mlp.c_proj.bias",   hiddenSize);
+
+        // Allocate the buffers
+        layer1State = emptyVector(intermediateSize);
+        layer2State = emptyVector(hiddenSize);
     }
 
     public Vector process(Vector inputHiddenState)
@@ -31,10 +38,10 @@ public class GPT1NeuralNetLayer extends BaseNeuralNetLayer
         Vector hiddenState = neuralNet(inputHiddenState);
 
         // Residual connection
-        hiddenState = hiddenState.add(inputHiddenState);
+        MATH.addInPlace(hiddenState, inputHiddenState);
 
         // Normalization
-        hiddenState = MATH.layerNorm(hiddenState, vector(normWeight), vector(normBias), epsilon);
+        MATH.layerNorm(hiddenState, vector(normWeight), vector(normBias), epsilon, hiddenState);
 
         return hiddenState;
     }
@@ -42,18 +49,14 @@ public class GPT1NeuralNetLayer extends BaseNeuralNetLayer
     private Vector neuralNet(Vector hiddenState)
     {
         // Layer 1: <intermediateSize> neurons (usually 4 * <hiddenSize>) (using gelu activation function)
-        hiddenState = hiddenState.multiply(matrix(layer1Weight));
-        hiddenState = hiddenState.add(vector(layer1Bias));
+        hiddenState = MATH.mulVectorByMatrix(hiddenState, matrix(layer1Weight), layer1State);
+        MATH.addInPlace(hiddenState, vector(layer1Bias));
 
-        for (int neuron = 0; neuron < intermediateSize; neuron++)
-        {
-            float activation = gelu(hiddenState.get(neuron));
-            hiddenState.set(neuron, activation);
-        }
+        MATH.geluInPlace(hiddenState);
 
         // Layer 2: <hiddenSize> neurons (without activation function)
-        hiddenState = hiddenState.multiply(matrix(layer2Weight));
-        hiddenState = hiddenState.add(vector(layer2Bias));
+        hiddenState = MATH.mulVectorByMatrix(hiddenState, matrix(layer2Weight), layer2State);
+        MATH.addInPlace(hiddenState, vector(layer2Bias));
 
         return hiddenState;
     }
@@ -17,6 +17,9 @@ public class FairseqNeuralNetLayer extends BaseNeuralNetLayer
 {
     Parameter normWeight, normBias, layer1Weight, layer1Bias, layer2Weight, layer2Bias;
 
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector normState, layer1State, layer2State;
+
     String activationFunction = "relu";
 
     public void loadParameters()
@@ -29,18 +32,23 @@ public class FairseqNeuralNetLayer extends BaseNeuralNetLayer
         layer2Bias   = loadVector(BIAS,            "fc2.bias",                hiddenSize);
 
         activationFunction = config.getValue("activation_function");
+
+        // Allocate the buffers
+        normState   = emptyVector(hiddenSize);
+        layer1State = emptyVector(intermediateSize);
+        layer2State = emptyVector(hiddenSize);
     }
 
     public Vector process(Vector inputHiddenState)
     {
         // Normalization
-        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon);
+        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon, normState);
 
         // Neural layers
         hiddenState = neuralNet(hiddenState);
 
         // Residual connection
-        hiddenState = hiddenState.add(inputHiddenState);
+        MATH.addInPlace(hiddenState, inputHiddenState);
 
         return hiddenState;
     }
@@ -48,8 +56,8 @@ public class FairseqNeuralNetLayer extends BaseNeuralNetLayer
     private Vector neuralNet(Vector hiddenState)
     {
         // Layer 1: <intermediateSize> neurons (4 * <hiddenSize>) (using GELU activation function)
-        hiddenState = hiddenState.multiplyByTransposed(matrix(layer1Weight));
-        hiddenState = hiddenState.add(vector(layer1Bias));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(layer1Weight), layer1State);
+        MATH.addInPlace(hiddenState, vector(layer1Bias));
 
         for (int neuron = 0; neuron < intermediateSize; neuron++)
         {
@@ -58,8 +66,8 @@ public class FairseqNeuralNetLayer extends BaseNeuralNetLayer
         }
 
         // Layer 2: <hiddenSize> neurons (without activation function)
-        hiddenState = hiddenState.multiplyByTransposed(matrix(layer2Weight));
-        hiddenState = hiddenState.add(vector(layer2Bias));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(layer2Weight), layer2State);
+        MATH.addInPlace(hiddenState, vector(layer2Bias));
 
         return hiddenState;
     }
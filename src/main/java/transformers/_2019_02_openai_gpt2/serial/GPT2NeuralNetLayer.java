@@ -15,6 +15,9 @@ public class GPT2NeuralNetLayer extends BaseNeuralNetLayer
 {
     Parameter normWeight, normBias, layer1Weight, layer1Bias, layer2Weight, layer2Bias;
 
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector normState, layer1State, layer2State;
+
     public void loadParameters()
     {
         normWeight   = loadVector(NORM_WEIGHT,       "ln_2.weight",       hiddenSize);
@@ -23,18 +26,23 @@ public class GPT2NeuralNetLayer extends BaseNeuralNetLayer
         layer1Bias   = loadVector(BIAS,              "mlp.c_fc.bias",     intermediateSize);
         layer2Weight = loadMatrix(HORIZONTAL_WEIGHT, "mlp.c_proj.weight", intermediateSize, hiddenSize);
         layer2Bias   = loadVector(BIAS,              "mlp.c_proj.bias",   hiddenSize);
+
+        // Allocate the buffers
+        normState   = emptyVector(hiddenSize);
+        layer1State = emptyVector(intermediateSize);
+        layer2State = emptyVector(hiddenSize);
     }
 
     public Vector process(Vector inputHiddenState)
     {
         // Normalization
-        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon);
+        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon, normState);
 
         // Neural layers
         hiddenState = neuralNet(hiddenState);
 
         // Residual connection
-        hiddenState = hiddenState.add(inputHiddenState);
+        MATH.addInPlace(hiddenState, inputHiddenState);
 
         return hiddenState;
     }
@@ -42,18 +50,14 @@ public class GPT2NeuralNetLayer extends BaseNeuralNetLayer
     private Vector neuralNet(Vector hiddenState)
     {
         // Layer 1: <intermediateSize> neurons (usually 4 * <hiddenSize>) (using gelu activation function)
-        hiddenState = hiddenState.multiply(matrix(layer1Weight));
-        hiddenState = hiddenState.add(vector(layer1Bias));
+        hiddenState = MATH.mulVectorByMatrix(hiddenState, matrix(layer1Weight), layer1State);
+        MATH.addInPlace(hiddenState, vector(layer1Bias));
 
-        for (int neuron = 0; neuron < intermediateSize; neuron++)
-        {
-            float activation = gelu(hiddenState.get(neuron));
-            hiddenState.set(neuron, activation);
-        }
+        MATH.geluInPlace(hiddenState);
 
         // Layer 2: <hiddenSize> neurons (without activation function)
-        hiddenState = hiddenState.multiply(matrix(layer2Weight));
-        hiddenState = hiddenState.add(vector(layer2Bias));
+        hiddenState = MATH.mulVectorByMatrix(hiddenState, matrix(layer2Weight), layer2State);
+        MATH.addInPlace(hiddenState, vector(layer2Bias));
 
         return hiddenState;
     }
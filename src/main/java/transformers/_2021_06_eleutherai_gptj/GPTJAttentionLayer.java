@@ -6,8 +6,6 @@ import position.rotary.RotaryPositionEmbedding;
 import transformer.serial.BaseAttentionLayer;
 import math.dataType.vector.Vector;
 
-import java.util.List;
-
 import static math.MathUtil.MATH;
 import static config.ParameterType.*;
 
@@ -18,10 +16,14 @@ import static config.ParameterType.*;
  */
 public class GPTJAttentionLayer extends BaseAttentionLayer
 {
-    Parameter normWeight, normBias, queryWeight, keyWeight, valueWeight, projectionWeight;
+    Parameter normWeight, normBias, queryWeight, keyWeight, valueWeight, queryKeyValueWeight, projectionWeight;
 
     RotaryPositionEmbedding positionEmbedding;
 
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector normState, queryKeyValues, aggregateState, projectionState, compoundState;
+    Matrix valueAggregate;
+
     public void loadParameters()
     {
         normWeight       = loadVector(NORM_WEIGHT,     "ln_1.weight",          hiddenSize);
@@ -31,14 +33,25 @@ public class GPTJAttentionLayer extends BaseAttentionLayer
         valueWeight      = loadMatrix(VERTICAL_WEIGHT, "attn.v_proj.weight",   hiddenSize, hiddenSize);
         projectionWeight = loadMatrix(VERTICAL_WEIGHT, "attn.out_proj.weight", hiddenSize, hiddenSize);
 
+        // Fuse the query, key and value weights (a single multiplication calculates all of them)
+        queryKeyValueWeight = stackMatrices(VERTICAL_WEIGHT, "attn.qkv_proj.weight", queryWeight, keyWeight, valueWeight);
+
         // Initialize the position embedder
         positionEmbedding = new RotaryPositionEmbedding(config, hiddenSize / headCount);
+
+        // Allocate the buffers
+        normState       = emptyVector(hiddenSize);
+        queryKeyValues  = emptyVector(hiddenSize * 3);
+        aggregateState  = emptyVector(hiddenSize);
+        projectionState = emptyVector(hiddenSize);
+        compoundState   = emptyVector(hiddenSize * 3);
+        valueAggregate  = emptyMatrix(headCount, headSize);
     }
 
     public Vector process(Vector inputHiddenState, boolean isInputOnly)
     {
         // Normalization
-        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon);
+        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon, normState);
 
         // Attention
         Vector attentionOutputHiddenState = attention(hiddenState);
@@ -47,8 +60,7 @@ public class GPTJAttentionLayer extends BaseAttentionLayer
         if ( !(isInputOnly && lastDecoder) )
         {
             // Join the input hidden state, hidden state and output hidden state (to pass all to the neural net block)
-            hiddenState = MATH.joinVectors(inputHiddenState, hiddenState);
-            hiddenState = MATH.joinVectors(hiddenState, attentionOutputHiddenState);
+            hiddenState = MATH.joinVectors(inputHiddenState, hiddenState, attentionOutputHiddenState, compoundState);
         }
 
         return hiddenState;
@@ -56,78 +68,50 @@ public class GPTJAttentionLayer extends BaseAttentionLayer
 
     private Vector attention(Vector hiddenState)
     {
-        // Calculate the query, key and value vectors for the actual token
-        Vector queries = hiddenState.multiplyByTransposed(matrix(queryWeight));
-        Vector keys = hiddenState.multiplyByTransposed(matrix(keyWeight));
-        Vector values = hiddenState.multiplyByTransposed(matrix(valueWeight));
+        // Calculate the query-key-value vectors for the actual token
+        MATH.mulVectorByTransposedMatrix(hiddenState, matrix(queryKeyValueWeight), queryKeyValues);
+
+        // Slice the query/key/value
+        Vector queries = MATH.sliceVector(queryKeyValues, 0, hiddenSize);
+        Vector keys = MATH.sliceVector(queryKeyValues, hiddenSize, hiddenSize);
+        Vector values = MATH.sliceVector(queryKeyValues, hiddenSize * 2, hiddenSize);
 
         // Position embedding (RoPE)
         positionEmbedding.applyInterleaved(queries, storedSize());
         positionEmbedding.applyInterleaved(keys, storedSize());
 
-        // Collector of the attention results for all heads
-        Matrix valueAggregate = emptyMatrix(headCount, headSize);
+        // Split the queries by head
+        Matrix queryHeads = MATH.splitVector(queries, headCount);
 
-        // Score the previous tokens (including the actual), separately for all heads
+        // Store the keys and values of the actual token, separately for all heads
         for (int head = 0; head < headCount; head++)
         {
-            // Get the part for the actual head of the query, key and value vectors
-            Vector query = queries.part(headCount, head);
-            Vector key = keys.part(headCount, head);
-            Vector value = values.part(headCount, head);
+            // Get the part for the actual head of the key and value vectors
+            Vector key = MATH.sliceVector(keys, head * headSize, headSize);
+            Vector value = MATH.sliceVector(values, head * headSize, headSize);
 
             // Store the keys and values (these will be available while the following tokens will be processed)
             store(head, key, value);
-
-            // Process the core of the attention mechanism (dot product attention)
-            Vector attentionResult = dotProductAttention(
-                                            query,
-                                            getStoredKeys(head),
-                                            getStoredValues(head));
-
-            // Add the result to the collector for the actual head
-            valueAggregate.setRow(head, attentionResult);
         }
 
+        // Score the previous tokens (including the actual) for all heads
+        // (The heads are independent, so the parallel math provider can process them on multiple threads.)
+        // The result is written directly into the collector of the attention results (valueAggregate)
+        MATH.multiHeadAttention(
+                queryHeads,
+                getStoredKeys(),
+                getStoredValues(),
+                1,
+                null,
+                0,
+                valueAggregate);
+
         // Concatenate the results of all heads
-        hiddenState = valueAggregate.flatten();
+        hiddenState = MATH.flattenMatrix(valueAggregate, aggregateState);
 
         // Projection neural layer
-        hiddenState = hiddenState.multiplyByTransposed(matrix(projectionWeight));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(projectionWeight), projectionState);
 
         return hiddenState;
     }
-
-    private Vector dotProductAttention(Vector query, List<Vector> keys, List<Vector> values)
-    {
-        int tokenCount = keys.size();
-
-        // Score all tokens using the actual query and the keys
-        Vector scores = emptyVector(tokenCount);
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedKey = keys.get(pos);
-
-            // The core of the dot product attention
-            float score = query.dotProduct(relatedKey);
-            scores.set(pos, score);
-        }
-
-        // Normalize the scores into a range between 0 and 1
-        scores = MATH.softmax(scores);
-
-        // Apply the score on the values vectors
-        Vector result = Vector.emptyVector(query.getFloatType(), query.size());
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedValue = values.get(pos);
-            float score = scores.get(pos);
-
-            // Multiply the values by the score and sum up
-            Vector scoredValue = relatedValue.multiply(score);
-            result = result.add(scoredValue);
-        }
-
-        return result;
-    }
 }
@@ -5,6 +5,7 @@ import math.dataType.matrix.Matrix;
 import transformer.serial.BaseNeuralNetLayer;
 import math.dataType.vector.Vector;
 
+import static math.MathUtil.MATH;
 import static config.ParameterType.*;
 import static config.ParameterType.BIAS;
 
@@ -17,38 +18,41 @@ public class GPTJNeuralNetLayer extends BaseNeuralNetLayer
 {
     Parameter layer1Weight, layer1Bias, layer2Weight, layer2Bias;
 
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector layer1State, layer2State;
+
     public void loadParameters()
     {
         layer1Weight = loadMatrix(VERTICAL_WEIGHT, "mlp.fc_in.weight",  intermediateSize, hiddenSize);
         layer1Bias   = loadVector(BIAS,            "mlp.fc_in.bias",    intermediateSize);
         layer2Weight = loadMatrix(VERTICAL_WEIGHT, "mlp.fc_out.weight", hiddenSize, intermediateSize);
         layer2Bias   = loadVector(BIAS,            "mlp.fc_out.bias",   hiddenSize);
+
+        // Allocate the buffers
+        layer1State = emptyVector(intermediateSize);
+        layer2State = emptyVector(hiddenSize);
     }
 
     public Vector process(Vector hiddenStateCompound)
     {
         // Split the input hidden states
-        Vector inputHiddenState = hiddenStateCompound.part(3, 0);
-        Vector hiddenState = hiddenStateCompound.part(3, 1);
-        Vector attentionOutputHiddenState = hiddenStateCompound.part(3, 2);
+        Vector inputHiddenState = MATH.sliceVector(hiddenStateCompound, 0, hiddenSize);
+        Vector hiddenState = MATH.sliceVector(hiddenStateCompound, hiddenSize, hiddenSize);
+        Vector attentionOutputHiddenState = MATH.sliceVector(hiddenStateCompound, hiddenSize * 2, hiddenSize);
 
         // Layer 1: <intermediateSize> neurons (usually 4 * <hiddenSize>) (using gelu activation function)
-        hiddenState = hiddenState.multiplyByTransposed(matrix(layer1Weight));
-        hiddenState = hiddenState.add(vector(layer1Bias));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(layer1Weight), layer1State);
+        MATH.addInPlace(hiddenState, vector(layer1Bias));
 
-        for (int i = 0; i < intermediateSize; i++)
-        {
-            float activation = gelu(hiddenState.get(i));
-            hiddenState.set(i, activation);
-        }
+        MATH.geluInPlace(hiddenState);
 
         // Layer 2: <hiddenSize> neurons (without activation function)
-        hiddenState = hiddenState.multiplyByTransposed(matrix(layer2Weight));
-        hiddenState = hiddenState.add(vector(layer2Bias));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(layer2Weight), layer2State);
+        MATH.addInPlace(hiddenState, vector(layer2Bias));
 
         // Add the three input states
-        hiddenState = hiddenState.add(inputHiddenState);
-        hiddenState = hiddenState.add(attentionOutputHiddenState);
+        MATH.addInPlace(hiddenState, inputHiddenState);
+        MATH.addInPlace(hiddenState, attentionOutputHiddenState);
 
         return hiddenState;
     }
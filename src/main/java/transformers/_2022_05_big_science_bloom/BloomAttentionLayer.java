@@ -6,8 +6,6 @@ import position.alibi.AlibiPositionEmbedding;
 import transformer.serial.BaseAttentionLayer;
 import math.dataType.vector.Vector;
 
-import java.util.List;
-
 import static math.MathUtil.MATH;
 import static config.ParameterType.*;
 import static math.BasicMathUtility.sqrt;
@@ -23,6 +21,13 @@ public class BloomAttentionLayer extends BaseAttentionLayer
 
     AlibiPositionEmbedding position = new AlibiPositionEmbedding();
 
+    // ALiBi slopes of all heads (the scaling is applied after the position embedding, so the slope is scaled as well)
+    float[] alibiSlopes;
+
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector normState, queryKeyValues, aggregateState, projectionState;
+    Matrix queryHeads, valueAggregate;
+
     public void loadParameters()
     {
         // Load parameters
@@ -38,12 +43,27 @@ public class BloomAttentionLayer extends BaseAttentionLayer
 
         // Initialize the position embedder
         position.init(headCount);
+
+        // Calculate the scaled ALiBi slopes of all heads
+        alibiSlopes = new float[headCount];
+        for (int head = 0; head < headCount; head++)
+        {
+            alibiSlopes[head] = position.getSlope(head) * attentionScale;
+        }
+
+        // Allocate the buffers
+        normState       = emptyVector(hiddenSize);
+        queryKeyValues  = emptyVector(hiddenSize * 3);
+        aggregateState  = emptyVector(hiddenSize);
+        projectionState = emptyVector(hiddenSize);
+        queryHeads      = emptyMatrix(headCount, headSize);
+        valueAggregate  = emptyMatrix(headCount, headSize);
     }
 
     public Vector process(Vector inputHiddenState, boolean isInputOnly)
     {
         // Normalization
-        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon);
+        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon, normState);
 
         // Attention
         hiddenState = attention(hiddenState);
@@ -52,7 +72,7 @@ public class BloomAttentionLayer extends BaseAttentionLayer
         if ( !(isInputOnly && lastDecoder) )
         {
             // Residual connection
-            hiddenState = hiddenState.add(inputHiddenState);
+            MATH.addInPlace(hiddenState, inputHiddenState);
         }
 
         return hiddenState;
@@ -61,80 +81,46 @@ public class BloomAttentionLayer extends BaseAttentionLayer
     private Vector attention(Vector hiddenState)
     {
         // Calculate the query-key-value vectors for the actual token
-        Vector queryKeyValues = hiddenState.multiplyByTransposed(matrix(queryKeyValueWeight));
-        queryKeyValues = queryKeyValues.add(vector(queryKeyValueBias));
-
-        // Collector of the attention results for all heads
-        Matrix valueAggregate = emptyMatrix(headCount, headSize);
+        MATH.mulVectorByTransposedMatrix(hiddenState, matrix(queryKeyValueWeight), queryKeyValues);
+        MATH.addInPlace(queryKeyValues, vector(queryKeyValueBias));
 
-        // Score the previous tokens (including the actual), separately for all heads
+        // Store the keys and values of the actual token, separately for all heads
         for (int head = 0; head < headCount; head++)
         {
-            Vector queryKeyValue = queryKeyValues.part(headCount, head);
+            // The query, key and value vectors are stored by head
+            int offset = head * headSize * 3;
 
             // Get the part for the actual head of the query, key and value vectors
-            Vector query = queryKeyValue.part(headCount, head);
-            Vector key = queryKeyValue.part(headCount, head);
-            Vector value = queryKeyValue.part(headCount, head);
+            Vector query = MATH.sliceVector(queryKeyValues, offset, headSize);
+            Vector key = MATH.sliceVector(queryKeyValues, offset + headSize, headSize);
+            Vector value = MATH.sliceVector(queryKeyValues, offset + headSize * 2, headSize);
+
+            // Collect the queries of all heads
+            queryHeads.setRow(head, query);
 
             // Store the keys and values (these will be available while the following tokens will be processed)
             store(head, key, value);
-
-            // Process the core of the attention mechanism (dot product attention)
-            Vector attentionResult = dotProductAttention(
-                                            head,
-                                            query,
-                                            getStoredKeys(head),
-                                            getStoredValues(head));
-
-            // Add the result to the collector for the actual head
-            valueAggregate.setRow(head, attentionResult);
         }
 
+        // Score the previous tokens (including the actual) for all heads (dot product attention, with ALiBi bias)
+        // (The heads are independent, so the parallel math provider can process them on multiple threads.)
+        // The result is written directly into the collector of the attention results (valueAggregate)
+        MATH.multiHeadAttention(
+                queryHeads,
+                getStoredKeys(),
+                getStoredValues(),
+                attentionScale,
+                alibiSlopes,
+                0,
+                valueAggregate);
+
         // Concatenate the results of all heads
-        hiddenState = valueAggregate.flatten();
+        hiddenState = MATH.flattenMatrix(valueAggregate, aggregateState);
 
         // Projection neural layer
-        hiddenState = hiddenState.multiplyByTransposed(matrix(projectionWeight));
-        hiddenState = hiddenState.add(vector(projectionBias));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(projectionWeight), projectionState);
+        MATH.addInPlace(hiddenState, vector(projectionBias));
 
         return hiddenState;
     }
-
-    private Vector dotProductAttention(int head, Vector query, List<Vector> keys, List<Vector> values)
-    {
-        int tokenCount = keys.size();
-
-        // Score all tokens using the actual query and the keys
-        Vector scores = emptyVector(tokenCount);
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedKey = keys.get(pos);
-
-            // The core of the dot product attention (the scaling is applied only after the position embedding)
-            float score = query.dotProduct(relatedKey);
-
-            // Position embedding at score
-            score = position.apply(score, head, tokenCount - pos);
-
-            scores.set(pos, score * attentionScale);
-        }
-
-        // Normalize the scores into a range between 0 and 1
-        scores = MATH.softmax(scores);
-
-        // Apply the score on the values vectors
-        Vector result = Vector.emptyVector(query.getFloatType(), query.size());
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedValue = values.get(pos);
-            float score = scores.get(pos);
-
-            // Multiply the values by the score and sum up
-            Vector scoredValue = relatedValue.multiply(score);
-            result = result.add(scoredValue);
-        }
-
-        return result;
-    }
 }
@@ -5,8 +5,6 @@ import math.dataType.matrix.Matrix;
 import transformer.serial.BaseAttentionLayer;
 import math.dataType.vector.Vector;
 
-import java.util.List;
-
 import static math.MathUtil.MATH;
 import static config.ParameterType.*;
 import static math.BasicMathUtility.sqrt;
@@ -21,6 +19,10 @@ public class OPTAttentionLayer extends BaseAttentionLayer
     public Parameter normWeight, normBias, queryWeight, queryBias, keyWeight, keyBias, valueWeight, valueBias,
             projectionWeight, projectionBias;
 
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector normState, queryState, keyState, valueState, aggregateState, projectionState;
+    Matrix valueAggregate;
+
     public void loadParameters()
     {
         normWeight       = loadVector(NORM_WEIGHT,     "self_attn_layer_norm.weight", hiddenSize);
@@ -36,12 +38,21 @@ public class OPTAttentionLayer extends BaseAttentionLayer
 
         // Calculate the attention scale
         attentionScale = 1 / sqrt(headSize);
+
+        // Allocate the buffers
+        normState       = emptyVector(hiddenSize);
+        queryState      = emptyVector(hiddenSize);
+        keyState        = emptyVector(hiddenSize);
+        valueState      = emptyVector(hiddenSize);
+        aggregateState  = emptyVector(hiddenSize);
+        projectionState = emptyVector(hiddenSize);
+        valueAggregate  = emptyMatrix(headCount, headSize);
     }
 
     public Vector process(Vector inputHiddenState, boolean isInputOnly)
     {
         // Normalization
-        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon);
+        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon, normState);
 
         // Attention
         hiddenState = attention(hiddenState);
@@ -50,7 +61,7 @@ public class OPTAttentionLayer extends BaseAttentionLayer
         if ( !(isInputOnly && lastDecoder) )
         {
             // Residual connection
-            hiddenState = hiddenState.add(inputHiddenState);
+            MATH.addInPlace(hiddenState, inputHiddenState);
         }
 
         return hiddenState;
@@ -59,82 +70,51 @@ public class OPTAttentionLayer extends BaseAttentionLayer
     public Vector attention(Vector hiddenState)
     {
         // Calculate the query, key and value vectors for the actual token
-        Vector queries = hiddenState.multiplyByTransposed(matrix(queryWeight));
-        queries = queries.add(vector(queryBias));
+        Vector queries = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(queryWeight), queryState);
+        MATH.addInPlace(queries, vector(queryBias));
 
         // Attention scale applied on query
-        queries = queries.multiply(attentionScale);
+        MATH.scaleInPlace(queries, attentionScale);
 
-        Vector keys = hiddenState.multiplyByTransposed(matrix(keyWeight));
-        keys = keys.add(vector(keyBias));
+        Vector keys = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(keyWeight), keyState);
+        MATH.addInPlace(keys, vector(keyBias));
 
-        Vector values = hiddenState.multiplyByTransposed(matrix(valueWeight));
-        values = values.add(vector(valueBias));
+        Vector values = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(valueWeight), valueState);
+        MATH.addInPlace(values, vector(valueBias));
 
-        // Collector of the attention results for all heads
-        Matrix valueAggregate = emptyMatrix(headCount, headSize);
+        // Split the queries by head
+        Matrix queryHeads = MATH.splitVector(queries, headCount);
 
-        // Score the previous tokens (including the actual), separately for all heads
+        // Store the keys and values of the actual token, separately for all heads
         for (int head = 0; head < headCount; head++)
         {
-            // Get the part for the actual head of the query, key and value vectors
-            Vector query = queries.part(headCount, head);
-            Vector key = keys.part(headCount, head);
-            Vector value = values.part(headCount, head);
+            // Get the part for the actual head of the key and value vectors
+            Vector key = MATH.sliceVector(keys, head * headSize, headSize);
+            Vector value = MATH.sliceVector(values, head * headSize, headSize);
 
             // Store the keys and values (these will be available while the following tokens will be processed)
             store(head, key, value);
-
-            // Process the core of the attention mechanism (dot product attention)
-            Vector attentionResult = dotProductAttention(
-                                            query,
-                                            getStoredKeys(head),
-                                            getStoredValues(head));
-
-            // Add the result to the collector for the actual head
-            valueAggregate.setRow(head, attentionResult);
         }
 
+        // Score the previous tokens (including the actual) for all heads
+        // (The heads are independent, so the parallel math provider can process them on multiple threads.)
+        // The result is written directly into the collector of the attention results (valueAggregate)
+        MATH.multiHeadAttention(
+                queryHeads,
+                getStoredKeys(),
+                getStoredValues(),
+                1,
+                null,
+                0,
+                valueAggregate);
+
         // Concatenate the results of all heads
-        hiddenState = valueAggregate.flatten();
+        hiddenState = MATH.flattenMatrix(valueAggregate, aggregateState);
 
         // Projection neural layer
-        hiddenState = hiddenState.multiplyByTransposed(matrix(projectionWeight));
-        hiddenState = hiddenState.add(vector(projectionBias));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(projectionWeight), projectionState);
+        MATH.addInPlace(hiddenState, vector(projectionBias));
 
         return hiddenState;
     }
-
-    private Vector dotProductAttention(Vector query, List<Vector> keys, List<Vector> values)
-    {
-        int tokenCount = keys.size();
-
-        // Score all tokens using the actual query and the keys
-        Vector scores = emptyVector(tokenCount);
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedKey = keys.get(pos);
-
-            // The core of the dot product attention
-            float score = query.dotProduct(relatedKey);
-            scores.set(pos, score);
-        }
-
-        // Normalize the scores into a range between 0 and 1
-        scores = MATH.softmax(scores);
-
-        // Apply the score on the values vectors
-        Vector result = Vector.emptyVector(query.getFloatType(), query.size());
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedValue = values.get(pos);
-            float score = scores.get(pos);
-
-            // Multiply the values by the score and sum up
-            Vector scoredValue = relatedValue.multiply(score);
-            result = result.add(scoredValue);
-        }
-
-        return result;
-    }
 }
@@ -16,6 +16,9 @@ public class OPTNeuralNetLayer extends BaseNeuralNetLayer
 {
     public Parameter normWeight, normBias, layer1Weight, layer1Bias, layer2Weight, layer2Bias;
 
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector normState, layer1State, layer2State;
+
     public void loadParameters()
     {
         normWeight   = loadVector(NORM_WEIGHT,     "final_layer_norm.weight", hiddenSize);
@@ -24,18 +27,23 @@ public class OPTNeuralNetLayer extends BaseNeuralNetLayer
         layer1Bias   = loadVector(BIAS,            "fc1.bias",                intermediateSize);
         layer2Weight = loadMatrix(VERTICAL_WEIGHT, "fc2.weight",              hiddenSize, intermediateSize);
         layer2Bias   = loadVector(BIAS,            "fc2.bias",                hiddenSize);
+
+        // Allocate the buffers
+        normState   = emptyVector(hiddenSize);
+        layer1State = emptyVector(intermediateSize);
+        layer2State = emptyVector(hiddenSize);
     }
 
     public Vector process(Vector inputHiddenState)
     {
         // Normalization
-        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon);
+        Vector hiddenState = MATH.layerNorm(inputHiddenState, vector(normWeight), vector(normBias), epsilon, normState);
 
         // Neural layers
         hiddenState = neuralNet(hiddenState);
 
         // Residual connection
-        hiddenState = hiddenState.add(inputHiddenState);
+        MATH.addInPlace(hiddenState, inputHiddenState);
 
         return hiddenState;
     }
@@ -43,8 +51,8 @@ public class OPTNeuralNetLayer extends BaseNeuralNetLayer
     public Vector neuralNet(Vector hiddenState)
     {
         // Layer 1: <intermediateSize> neurons (usually 4 * <hiddenSize>) (using ReLU activation function)
-        hiddenState = hiddenState.multiplyByTransposed(matrix(layer1Weight));
-        hiddenState = hiddenState.add(vector(layer1Bias));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(layer1Weight), layer1State);
+        MATH.addInPlace(hiddenState, vector(layer1Bias));
 
         for (int neuron = 0; neuron < intermediateSize; neuron++)
         {
@@ -53,8 +61,8 @@ public class OPTNeuralNetLayer extends BaseNeuralNetLayer
         }
 
         // Layer 2: <hiddenSize> neurons (without activation function)
-        hiddenState = hiddenState.multiplyByTransposed(matrix(layer2Weight));
-        hiddenState = hiddenState.add(vector(layer2Bias));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(layer2Weight), layer2State);
+        MATH.addInPlace(hiddenState, vector(layer2Bias));
 
         return hiddenState;
     }
@@ -65,10 +65,8 @@ public class OPT350 extends BaseTransformer
         // Extra projection step (OPT 350M specific)
         hiddenState = hiddenState.multiplyByTransposed(matrix(projectOut));
 
-        // Multiply (dot product) the output with all token embeddings.
+        // Multiply (dot product) the output with all token embeddings, and select the next token from the best ones.
         // It will give a higher value if the output is more similar to the token embedding
-        Vector logits = hiddenState.multiplyByTransposed(matrix(tokenEmbeddings));
-
-        return selectBestToken(logits, topK);
+        return selectBestToken(hiddenState, matrix(tokenEmbeddings), topK);
     }
 }
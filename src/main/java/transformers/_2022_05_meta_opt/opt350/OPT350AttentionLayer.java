@@ -22,10 +22,10 @@ public class OPT350AttentionLayer extends OPTAttentionLayer
         if ( !(isInputOnly && lastDecoder) )
         {
             // Residual connection
-            hiddenState = hiddenState.add(inputHiddenState);
+            MATH.addInPlace(hiddenState, inputHiddenState);
 
             // Normalization
-            hiddenState = MATH.layerNorm(hiddenState, vector(normWeight), vector(normBias), epsilon);
+            MATH.layerNorm(hiddenState, vector(normWeight), vector(normBias), epsilon, hiddenState);
         }
 
         return hiddenState;
@@ -19,10 +19,10 @@ public class OPT350NeuralNetLayer extends OPTNeuralNetLayer
         Vector hiddenState = neuralNet(inputHiddenState);
 
         // Residual connection
-        hiddenState = hiddenState.add(inputHiddenState);
+        MATH.addInPlace(hiddenState, inputHiddenState);
 
         // Normalization
-        hiddenState = MATH.layerNorm(hiddenState, vector(normWeight), vector(normBias), epsilon);
+        MATH.layerNorm(hiddenState, vector(normWeight), vector(normBias), epsilon, hiddenState);
 
         return hiddenState;
     }
@@ -49,10 +49,8 @@ public class Mistral extends BaseTransformer
         // Final normalization
         hiddenState = MATH.RMSLayerNorm(hiddenState, vector(outputNormWeight), epsilon);
 
-        // Multiply (dot product) the output with all token embeddings.
+        // Multiply (dot product) the output with all token embeddings, and select the next token from the best ones.
         // It will give a higher value if the output is more similar to the token embedding
-        Vector logits = hiddenState.multiplyByTransposed(matrix(embeddingWeight));
-
-        return selectBestToken(logits, topK);
+        return selectBestToken(hiddenState, matrix(embeddingWeight), topK);
     }
 }
@@ -6,8 +6,6 @@ import position.rotary.RotaryPositionEmbedding;
 import transformer.serial.BaseAttentionLayer;
 import math.dataType.vector.Vector;
 
-import java.util.List;
-
 import static math.BasicMathUtility.sqrt;
 import static math.MathUtil.MATH;
 import static config.ParameterType.*;
@@ -19,10 +17,14 @@ import static config.ParameterType.*;
  */
 public class MistralAttentionLayer extends BaseAttentionLayer
 {
-    Parameter normWeight, queryWeight, keyWeight, valueWeight, projectionWeight;
+    Parameter normWeight, queryWeight, keyWeight, valueWeight, queryKeyValueWeight, projectionWeight;
 
     RotaryPositionEmbedding positionEmbedding;
 
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector normState, queryKeyValues, aggregateState, projectionState;
+    Matrix valueAggregate;
+
     boolean isLocalAttention;
     int maxLocalAttentionSize = 256;
 
@@ -35,11 +37,21 @@ public class MistralAttentionLayer extends BaseAttentionLayer
         valueWeight      = loadMatrix(VERTICAL_WEIGHT, "self_attn.v_proj.weight", hiddenSize / headPerKvHead, hiddenSize);
         projectionWeight = loadMatrix(VERTICAL_WEIGHT, "self_attn.o_proj.weight", hiddenSize, hiddenSize);
 
+        // Fuse the query, key and value weights (a single multiplication calculates all of them)
+        queryKeyValueWeight = stackMatrices(VERTICAL_WEIGHT, "self_attn.qkv_proj.weight", queryWeight, keyWeight, valueWeight);
+
         // Calculate the attention scale
-        this.attentionScale = 1 / sqrt(kvSize);
+        this.attentionScale = 1 / sqrt(headSize);
+
+        // Initialize the position embedder (applied separately on every head)
+        positionEmbedding = new RotaryPositionEmbedding(config, headSize);
 
-        // Initialize the position embedder
-        positionEmbedding = new RotaryPositionEmbedding(config, kvSize);
+        // Allocate the buffers
+        normState       = emptyVector(hiddenSize);
+        queryKeyValues  = emptyVector(hiddenSize + 2 * kvSize);
+        aggregateState  = emptyVector(headCount * headSize);
+        projectionState = emptyVector(hiddenSize);
+        valueAggregate  = emptyMatrix(headCount, headSize);
 
         // Every second decoder has local attention (if the decoderId is an odd number),
         // which means the attention size is capped. (It is called "sparse attention".)
@@ -50,7 +62,7 @@ public class MistralAttentionLayer extends BaseAttentionLayer
     public Vector process(Vector inputHiddenState, boolean isInputOnly)
     {
         // Normalization
-        Vector hiddenState = MATH.RMSLayerNorm(inputHiddenState, vector(normWeight), epsilon);
+        Vector hiddenState = MATH.RMSLayerNorm(inputHiddenState, vector(normWeight), epsilon, normState);
 
         // Grouped Query Attention (GQA)
         hiddenState = attentionGQA(hiddenState);
@@ -59,7 +71,7 @@ public class MistralAttentionLayer extends BaseAttentionLayer
         if ( !(isInputOnly && lastDecoder) )
         {
             // Residual connection
-            hiddenState = hiddenState.add(inputHiddenState);
+            MATH.addInPlace(hiddenState, inputHiddenState);
         }
 
         return hiddenState;
@@ -68,93 +80,62 @@ public class MistralAttentionLayer extends BaseAttentionLayer
     protected Vector attentionGQA(Vector hiddenState)
     {
         // Calculate the query, key and value vectors for the actual token
-        Vector queries = hiddenState.multiplyByTransposed(matrix(queryWeight));
-        Vector keys = hiddenState.multiplyByTransposed(matrix(keyWeight));
-        Vector values = hiddenState.multiplyByTransposed(matrix(valueWeight));
+        MATH.mulVectorByTransposedMatrix(hiddenState, matrix(queryKeyValueWeight), queryKeyValues);
+
+        // Slice the query/key/value
+        Vector queries = MATH.sliceVector(queryKeyValues, 0, hiddenSize);
+        Vector keys = MATH.sliceVector(queryKeyValues, hiddenSize, kvSize);
+        Vector values = MATH.sliceVector(queryKeyValues, hiddenSize + kvSize, kvSize);
 
         // At local attention we can forget the stored keys/values for the too distant tokens (above limit)
         if (isLocalAttention && storedSize() > maxLocalAttentionSize)
         {
-            removeFirstStoredKey();
-            removeFirstStoredValue();
+            removeFirstStored();
         }
 
-        // Collector of the attention results for all heads
-        Matrix valueAggregate = emptyMatrix(headCount, headSize);
-
         // This is the position of the actually processed token:
         int pos = storedSize();
 
-        // Score the previous tokens (including the actual), separately for all heads
-        int head = 0;
-        for (int kvHead = 0; kvHead < kvHeadCount; kvHead++)
+        // Split the queries by head, and apply the position embedding on them
+        Matrix queryHeads = MATH.splitVector(queries, headCount);
+        for (int head = 0; head < headCount; head++)
         {
-            // Get the query vector for the actual head
-            Vector query = queries.part(headCount, head);
-
-            for (int i = 0; i < headPerKvHead; i++)
-            {
-                // Get the key and value vectors for the actual key-value head
-                Vector key = keys.part(kvHeadCount, i);
-                Vector value = values.part(kvHeadCount, i);
-
-                // Position embedding on the query and key
-                positionEmbedding.applyInterleaved(query, pos);
-                positionEmbedding.applyInterleaved(key, pos);
-
-                // Store the keys and values (these will be available while the following tokens will be processed)
-                store(kvHead, key, value);
+            positionEmbedding.applyInterleaved(queryHeads.row(head), pos);
+        }
 
-                Vector attentionResult = scaledDotProductAttention(
-                                                query,
-                                                getStoredKeys(kvHead),
-                                                getStoredValues(kvHead));
+        // Store the key and value of the actual token, by key-value head
+        for (int kvHead = 0; kvHead < kvHeadCount; kvHead++)
+        {
+            // Get the key and value vectors for the actual key-value head
+            Vector key = MATH.sliceVector(keys, kvHead * headSize, headSize);
+            Vector value = MATH.sliceVector(values, kvHead * headSize, headSize);
 
-                valueAggregate.setRow(head, attentionResult);
+            // Position embedding on the key
+            positionEmbedding.applyInterleaved(key, pos);
 
-                head++;
-            }
+            // Store the keys and values (these will be available while the following tokens will be processed)
+            store(kvHead, key, value);
         }
 
+        // Attention of all query heads, by the groups which share the same key-value head
+        // (The stored keys and values are read only once for the whole group, and the groups are independent,
+        // so the parallel math provider can process them on multiple threads.)
+        // The result is written directly into the collector of the attention results (valueAggregate)
+        MATH.multiHeadAttention(
+                queryHeads,
+                getStoredKeys(),
+                getStoredValues(),
+                attentionScale,
+                null,
+                0,
+                valueAggregate);
+
         // Concatenate the results of all heads
-        hiddenState = valueAggregate.flatten();
+        hiddenState = MATH.flattenMatrix(valueAggregate, aggregateState);
 
         // Projection neural layer
-        hiddenState = hiddenState.multiplyByTransposed(matrix(projectionWeight));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(projectionWeight), projectionState);
 
         return hiddenState;
     }
-
-    private Vector scaledDotProductAttention(Vector query, List<Vector> keys, List<Vector> values)
-    {
-        int tokenCount = keys.size();
-
-        // Score all tokens using the actual query and the keys, multiplying by the scale
-        Vector scores = emptyVector(tokenCount);
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedKey = keys.get(pos);
-
-            // The core of the scaled dot product attention
-            float score = query.dotProduct(relatedKey) * attentionScale;
-            scores.set(pos, score);
-        }
-
-        // Normalize the scores into a range between 0 and 1
-        scores = MATH.softmax(scores);
-
-        // Apply the score on the values vectors
-        Vector result = Vector.emptyVector(query.getFloatType(), query.size());
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedValue = values.get(pos);
-            float score = scores.get(pos);
-
-            // Multiply the values by the score and sum up
-            Vector scoredValue = relatedValue.multiply(score);
-            result = result.add(scoredValue);
-        }
-
-        return result;
-    }
 }
@@ -21,7 +21,7 @@ import static math.MathUtil.MATH;
  */
 public class ParallelGemmaAttentionLayer extends ParallelBaseAttentionLayer
 {
-    Parameter normWeight, queryWeight, keyWeight, valueWeight, projectionWeight;
+    Parameter normWeight, queryWeight, keyWeight, valueWeight, queryKeyValueWeight, projectionWeight;
 
     RotaryPositionEmbedding positionEmbedding;
 
@@ -33,6 +33,9 @@ public class ParallelGemmaAttentionLayer extends ParallelBaseAttentionLayer
         valueWeight      = loadMatrix(VERTICAL_WEIGHT, "self_attn.v_proj.weight", kvSize, hiddenSize);
         projectionWeight = loadMatrix(VERTICAL_WEIGHT, "self_attn.o_proj.weight", hiddenSize, hiddenSize);
 
+        // Fuse the query, key and value weights (a single multiplication calculates all of them)
+        queryKeyValueWeight = stackMatrices(VERTICAL_WEIGHT, "self_attn.qkv_proj.weight", queryWeight, keyWeight, valueWeight);
+
         // Calculate the attention scale
         this.attentionScale = 1 / sqrt(kvSize);
 
@@ -102,12 +105,13 @@ public class ParallelGemmaAttentionLayer extends ParallelBaseAttentionLayer
 
     private Matrix attentionMHAParallel(Matrix hiddenState)
     {
-        // Calculate the query, key and value vectors for the actual token
-        Matrix query = hiddenState.multiplyByTransposed(matrix(queryWeight));
+        // Calculate the query-key-value vectors for all tokens (a single matrix multiplication)
+        Matrix queryKeyValue = hiddenState.multiplyByTransposed(matrix(queryKeyValueWeight));
 
-        // The key and value matrices are smaller (less head count) than the query matrix
-        Matrix key = hiddenState.multiplyByTransposed(matrix(keyWeight));
-        Matrix value = hiddenState.multiplyByTransposed(matrix(valueWeight));
+        // Slice the query/key/value (the key and value are smaller (less head count) than the query)
+        Matrix query = MATH.sliceMatrix(queryKeyValue, 0, hiddenSize);
+        Matrix key = MATH.sliceMatrix(queryKeyValue, hiddenSize, kvSize);
+        Matrix value = MATH.sliceMatrix(queryKeyValue, hiddenSize + kvSize, kvSize);
 
         // Collector of the attention results for all heads
         List<Matrix> valueAggregate = new ArrayList<>(headCount);
@@ -151,12 +155,13 @@ public class ParallelGemmaAttentionLayer extends ParallelBaseAttentionLayer
 
     private Vector attentionMHA(Vector hiddenState)
     {
-        // Calculate the query, key and value vectors for the actual token
-        Vector query = hiddenState.multiplyByTransposed(matrix(queryWeight));
+        // Calculate the query-key-value vectors for the actual token
+        Vector queryKeyValue = hiddenState.multiplyByTransposed(matrix(queryKeyValueWeight));
 
-        // The key and value matrices are smaller (less head count) than the query matrix
-        Vector key = hiddenState.multiplyByTransposed(matrix(keyWeight));
-        Vector value = hiddenState.multiplyByTransposed(matrix(valueWeight));
+        // Slice the query/key/value (the key and value are smaller (less head count) than the query)
+        Vector query = MATH.sliceVector(queryKeyValue, 0, hiddenSize);
+        Vector key = MATH.sliceVector(queryKeyValue, hiddenSize, kvSize);
+        Vector value = MATH.sliceVector(queryKeyValue, hiddenSize + kvSize, kvSize);
 
         // Collector of the attention results for all heads
         Matrix valueAggregate = emptyMatrix(headCount, headSize);
@@ -164,11 +169,14 @@ public class ParallelGemmaAttentionLayer extends ParallelBaseAttentionLayer
         // This is the position of the actually processed token:
         int pos = storedSize();
 
-        // Score the previous tokens (including the actual), separately for all heads
+        // Split the queries by head
+        Matrix queryHeads = MATH.splitVector(query, headCount);
+
+        // Store the keys and values of the actual token, separately for all heads
         for (int head = 0; head < headCount; head++)
         {
             // Get the part for the actual head of the query, key and value vectors
-            Vector queryByHead = query.part(headCount, head);
+            Vector queryByHead = queryHeads.row(head);
             Vector keyByHead = key.part(headCount, head);
             Vector valueByHead = value.part(headCount, head);
 
@@ -178,17 +186,19 @@ public class ParallelGemmaAttentionLayer extends ParallelBaseAttentionLayer
 
             // Store the keys and values (these will be available while the following tokens will be processed)
             store(head, keyByHead, valueByHead);
-
-            // Process the core of the attention mechanism (scaled dot product attention)
-            Vector attentionResult = scaledDotProductAttention(
-                                            queryByHead,
-                                            getStoredKeys(head),
-                                            getStoredValues(head));
-
-            // Add the result to the collector for the actual head
-            valueAggregate.setRow(head, attentionResult);
         }
 
+        // Score the previous tokens (including the actual) for all heads
+        // (The heads are independent, so the parallel math provider can process them on multiple threads.)
+        MATH.multiHeadAttention(
+                queryHeads,
+                getStoredKeys(),
+                getStoredValues(),
+                attentionScale,
+                null,
+                0,
+                valueAggregate);
+
         // Concatenate the results of all heads
         hiddenState = valueAggregate.flatten();
 
@@ -200,12 +210,13 @@ public class ParallelGemmaAttentionLayer extends ParallelBaseAttentionLayer
 
     protected Matrix attentionMQAParallel(Matrix hiddenState)
     {
-        // Calculate the query, key and value vectors for the actual token
-        Matrix query = hiddenState.multiplyByTransposed(matrix(queryWeight));
+        // Calculate the query-key-value vectors for all tokens (a single matrix multiplication)
+        Matrix queryKeyValue = hiddenState.multiplyByTransposed(matrix(queryKeyValueWeight));
 
-        // The key and value matrices are smaller (less head count) than the query matrix
-        Matrix key = hiddenState.multiplyByTransposed(matrix(keyWeight));
-        Matrix value = hiddenState.multiplyByTransposed(matrix(valueWeight));
+        // Slice the query/key/value (the key and value are smaller (less head count) than the query)
+        Matrix query = MATH.sliceMatrix(queryKeyValue, 0, hiddenSize);
+        Matrix key = MATH.sliceMatrix(queryKeyValue, hiddenSize, kvSize);
+        Matrix value = MATH.sliceMatrix(queryKeyValue, hiddenSize + kvSize, kvSize);
 
         // No splitting for the key and value vectors, because at MQA the same vector is used for all heads
 
@@ -248,12 +259,13 @@ public class ParallelGemmaAttentionLayer extends ParallelBaseAttentionLayer
 
     protected Vector attentionMQA(Vector hiddenState)
     {
-        // Calculate the query, key and value vectors for the actual token
-        Vector query = hiddenState.multiplyByTransposed(matrix(queryWeight));
+        // Calculate the query-key-value vectors for the actual token
+        Vector queryKeyValue = hiddenState.multiplyByTransposed(matrix(queryKeyValueWeight));
 
-        // The key and value matrices are smaller (less head count) than the query matrix
-        Vector key = hiddenState.multiplyByTransposed(matrix(keyWeight));
-        Vector value = hiddenState.multiplyByTransposed(matrix(valueWeight));
+        // Slice the query/key/value (the key and value are smaller (less head count) than the query)
+        Vector query = MATH.sliceVector(queryKeyValue, 0, hiddenSize);
+        Vector key = MATH.sliceVector(queryKeyValue, hiddenSize, kvSize);
+        Vector value = MATH.sliceVector(queryKeyValue, hiddenSize + kvSize, kvSize);
 
         // No splitting for the key and value vectors, because at MQA the same vector is used for all heads
 
@@ -264,26 +276,25 @@ public class ParallelGemmaAttentionLayer extends ParallelBaseAttentionLayer
         // Store the keys and values (these will be available while the following tokens will be processed)
         store(0, key, value);
 
-        // Matrix for collecting the attention results for all heads
-        Matrix valueAggregate = emptyMatrix(headCount, headSize);
-
-        // Score the previous tokens (including the actual), separately for all heads
+        // Split the queries by head, and apply the position embedding on them (separately within a head)
+        Matrix queryHeads = MATH.splitVector(query, headCount);
         for (int head = 0; head < headCount; head++)
         {
-            // Get the part for the actual head of the query, key and value vectors
-            Vector queryByHead = query.part(headCount, head);
-
-            // Position embedding on the query (separately within a head)
-            positionEmbedding.applySliced(queryByHead, pos);
-
-            Vector attentionResult = scaledDotProductAttention(
-                    queryByHead,
-                    getStoredKeys(0),
-                    getStoredValues(0));
-
-            valueAggregate.setRow(head, attentionResult);
+            positionEmbedding.applySliced(queryHeads.row(head), pos);
         }
 
+        // Attention of all query heads, which share the single key-value head
+        // (The stored keys and values are read only once for all heads. The parallel math provider splits
+        // the positions between the threads, because there is only a single key-value head.)
+        Matrix valueAggregate = MATH.multiHeadAttention(
+                                        queryHeads,
+                                        getStoredKeys(),
+                                        getStoredValues(),
+                                        attentionScale,
+                                        null,
+                                        0,
+                                        emptyMatrix(headCount, headSize));
+
         // Concatenate the results for all heads
         hiddenState = valueAggregate.flatten();
 
@@ -303,37 +314,4 @@ public class ParallelGemmaAttentionLayer extends ParallelBaseAttentionLayer
 
         return attention;
     }
-
-    private Vector scaledDotProductAttention(Vector query, Matrix keys, Matrix values)
-    {
-        int tokenCount = keys.getRowCount();
-
-        // Score all tokens using the actual query and the keys, multiplying by the scale
-        Vector scores = emptyVector(tokenCount);
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedKey = keys.row(pos);
-
-            // The core of the scaled dot product attention
-            float score = query.dotProduct(relatedKey) * attentionScale;
-            scores.set(pos, score);
-        }
-
-        // Normalize the scores into a range between 0 and 1
-        scores = MATH.softmax(scores);
-
-        // Apply the score on the values vectors
-        Vector result = Vector.emptyVector(query.getFloatType(), query.size());
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedValue = values.row(pos);
-            float score = scores.get(pos);
-
-            // Multiply the values by the score and sum up
-            Vector scoredValue = relatedValue.multiply(score);
-            result = result.add(scoredValue);
-        }
-
-        return result;
-    }
 }
@@ -7,6 +7,7 @@ import transformer.parallel.ParallelBaseNeuralNetLayer;
 
 import static config.ParameterType.NORM_WEIGHT;
 import static config.ParameterType.VERTICAL_WEIGHT;
+import static math.ActivationFunction.GELU;
 import static math.MathUtil.MATH;
 
 /**
@@ -17,12 +18,18 @@ public class ParallelGemmaNeuralNetLayer extends ParallelBaseNeuralNetLayer
 {
     Parameter normWeight, gateProjectionWeight, upProjectionWeight, downProjectionWeight;
 
+    // Buffer of the gated linear unit result (allocated once, reused at every token)
+    Vector gatedState;
+
     public void loadParameters()
     {
         normWeight           = loadVector(NORM_WEIGHT,     "post_attention_layernorm.weight", hiddenSize);
         gateProjectionWeight = loadMatrix(VERTICAL_WEIGHT, "mlp.gate_proj.weight",            intermediateSize, hiddenSize);
         upProjectionWeight   = loadMatrix(VERTICAL_WEIGHT, "mlp.up_proj.weight",              intermediateSize, hiddenSize);
         downProjectionWeight = loadMatrix(VERTICAL_WEIGHT, "mlp.down_proj.weight",            hiddenSize, intermediateSize);
+
+        // Allocate the buffer
+        gatedState = emptyVector(intermediateSize);
     }
 
     public Matrix processParallel(Matrix inputHiddenState)
@@ -59,15 +66,11 @@ public class ParallelGemmaNeuralNetLayer extends ParallelBaseNeuralNetLayer
         Matrix gateState = hiddenState.multiplyByTransposed(matrix(gateProjectionWeight));
         Matrix upState = hiddenState.multiplyByTransposed(matrix(upProjectionWeight));
 
+        // Use GELU activation function on the gate layer (no activation function on the other)
+        MATH.geluInPlace(gateState);
+
         for (var i = 0; i < hiddenState.getRowCount(); i++)
         {
-            // Use GELU activation function on the gate layer (no activation function on the other)
-            for (int neuron = 0; neuron < intermediateSize; neuron++)
-            {
-                float activation = gelu(gateState.getValue(i, neuron));
-                gateState.setValue(i, neuron, activation);
-            }
-
             // Fuse the two by multiplying the outputs
             for (int neuron = 0; neuron < intermediateSize; neuron++)
             {
@@ -84,26 +87,13 @@ public class ParallelGemmaNeuralNetLayer extends ParallelBaseNeuralNetLayer
 
     private Vector neuralNet(Vector hiddenState)
     {
-        // Feed parallel the gate and up layers with the same input
-        Vector gateState = hiddenState.multiplyByTransposed(matrix(gateProjectionWeight));
-        Vector upState = hiddenState.multiplyByTransposed(matrix(upProjectionWeight));
-
-        // Use GELU activation function on the gate layer (no activation function on the other)
-        for (int neuron = 0; neuron < intermediateSize; neuron++)
-        {
-            float activation = gelu(gateState.get(neuron));
-            gateState.set(neuron, activation);
-        }
-
-        // Fuse the two by multiplying the outputs
-        for (int neuron = 0; neuron < intermediateSize; neuron++)
-        {
-            float fused = gateState.get(neuron) * upState.get(neuron);
-            gateState.set(neuron, fused);
-        }
+        // Feed parallel the gate and up layers with the same input,
+        // use GELU activation function on the gate layer (no activation function on the other),
+        // and fuse the two by multiplying the outputs (calculated together, neuron by neuron)
+        MATH.gatedLinearUnit(hiddenState, matrix(gateProjectionWeight), matrix(upProjectionWeight), GELU, gatedState);
 
         // Use the down layer (no activation function)
-        hiddenState = gateState.multiplyByTransposed(matrix(downProjectionWeight));
+        hiddenState = gatedState.multiplyByTransposed(matrix(downProjectionWeight));
 
         return hiddenState;
     }
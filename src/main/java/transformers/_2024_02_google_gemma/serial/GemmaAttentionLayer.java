@@ -7,8 +7,6 @@ import math.dataType.vector.Vector;
 import position.rotary.RotaryPositionEmbedding;
 import transformer.serial.BaseAttentionLayer;
 
-import java.util.List;
-
 import static math.BasicMathUtility.sqrt;
 import static math.MathUtil.MATH;
 import static config.ParameterType.*;
@@ -23,6 +21,10 @@ public class GemmaAttentionLayer extends BaseAttentionLayer
 
     RotaryPositionEmbedding positionEmbedding;
 
+    // Buffers of the intermediate results (allocated once, reused at every token)
+    Vector normState, queryState, keyState, valueState, aggregateState, projectionState;
+    Matrix valueAggregate;
+
     public void loadParameters()
     {
         normWeight       = loadVector(NORM_WEIGHT,     "input_layernorm.weight",  hiddenSize);
@@ -36,12 +38,21 @@ public class GemmaAttentionLayer extends BaseAttentionLayer
 
         // Initialize the position embedding
         positionEmbedding = new RotaryPositionEmbedding(config, hiddenSize / headCount);
+
+        // Allocate the buffers
+        normState       = emptyVector(hiddenSize);
+        queryState      = emptyVector(hiddenSize);
+        keyState        = emptyVector(kvSize);
+        valueState      = emptyVector(kvSize);
+        aggregateState  = emptyVector(hiddenSize);
+        projectionState = emptyVector(hiddenSize);
+        valueAggregate  = emptyMatrix(headCount, headSize);
     }
 
     public Vector process(Vector inputHiddenState, boolean isInputOnly)
     {
         // Normalization
-        Vector hiddenState = MATH.RMSLayerNorm(inputHiddenState, vector(normWeight), epsilon, 1f);
+        Vector hiddenState = MATH.RMSLayerNorm(inputHiddenState, vector(normWeight), epsilon, 1f, normState);
 
         // Here the MHA and MQA cases are implemented separately to demonstrate the difference
         // You can check the Llama implementation where only the more general GQA case is implemented,
@@ -66,7 +77,7 @@ public class GemmaAttentionLayer extends BaseAttentionLayer
         if ( !(isInputOnly && lastDecoder) )
         {
             // Residual connection
-            hiddenState = hiddenState.add(inputHiddenState);
+            MATH.addInPlace(hiddenState, inputHiddenState);
         }
 
         return hiddenState;
@@ -75,25 +86,25 @@ public class GemmaAttentionLayer extends BaseAttentionLayer
     private Vector attentionMHA(Vector hiddenState)
     {
         // Calculate the query, key and value vectors for the actual token
-        Vector query = hiddenState.multiplyByTransposed(matrix(queryWeight));
+        Vector query = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(queryWeight), queryState);
 
         // The key and value matrices are smaller (less head count) than the query matrix
-        Vector key = hiddenState.multiplyByTransposed(matrix(keyWeight));
-        Vector value = hiddenState.multiplyByTransposed(matrix(valueWeight));
-
-        // Collector of the attention results for all heads
-        Matrix valueAggregate = emptyMatrix(headCount, headSize);
+        Vector key = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(keyWeight), keyState);
+        Vector value = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(valueWeight), valueState);
 
         // This is the position of the actually processed token:
         int pos = storedSize();
 
-        // Score the previous tokens (including the actual), separately for all heads
+        // Split the queries by head
+        Matrix queryHeads = MATH.splitVector(query, headCount);
+
+        // Store the keys and values of the actual token, separately for all heads
         for (int head = 0; head < headCount; head++)
         {
             // Get the part for the actual head of the query, key and value vectors
-            Vector queryByHead = query.part(headCount, head);
-            Vector keyByHead = key.part(headCount, head);
-            Vector valueByHead = value.part(headCount, head);
+            Vector queryByHead = queryHeads.row(head);
+            Vector keyByHead = MATH.sliceVector(key, head * headSize, headSize);
+            Vector valueByHead = MATH.sliceVector(value, head * headSize, headSize);
 
             // Position embedding on the query and key
             positionEmbedding.applySliced(queryByHead, pos);
@@ -101,22 +112,25 @@ public class GemmaAttentionLayer extends BaseAttentionLayer
 
             // Store the keys and values (these will be available while the following tokens will be processed)
             store(head, keyByHead, valueByHead);
-
-            // Process the core of the attention mechanism (scaled dot product attention)
-            Vector attentionResult = scaledDotProductAttention(
-                                            queryByHead,
-                                            getStoredKeys(head),
-                                            getStoredValues(head));
-
-            // Add the result to the collector for the actual head
-            valueAggregate.setRow(head, attentionResult);
         }
 
+        // Score the previous tokens (including the actual) for all heads
+        // (The heads are independent, so the parallel math provider can process them on multiple threads.)
+        // The result is written directly into the collector of the attention results (valueAggregate)
+        MATH.multiHeadAttention(
+                queryHeads,
+                getStoredKeys(),
+                getStoredValues(),
+                attentionScale,
+                null,
+                0,
+                valueAggregate);
+
         // Concatenate the results of all heads
-        hiddenState = valueAggregate.flatten();
+        hiddenState = MATH.flattenMatrix(valueAggregate, aggregateState);
 
         // Projection neural layer
-        hiddenState = hiddenState.multiplyByTransposed(matrix(projectionWeight));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(projectionWeight), projectionState);
 
         return hiddenState;
     }
@@ -124,11 +138,11 @@ public class GemmaAttentionLayer extends BaseAttentionLayer
     protected Vector attentionMQA(Vector hiddenState)
     {
         // Calculate the query, key and value vectors for the actual token
-        Vector query = hiddenState.multiplyByTransposed(matrix(queryWeight));
+        Vector query = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(queryWeight), queryState);
 
         // The key and value matrices are smaller (less head count) than the query matrix
-        Vector key = hiddenState.multiplyByTransposed(matrix(keyWeight));
-        Vector value = hiddenState.multiplyByTransposed(matrix(valueWeight));
+        Vector key = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(keyWeight), keyState);
+        Vector value = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(valueWeight), valueState);
 
         // Position embedding on the key
         int pos = storedSize();
@@ -137,65 +151,32 @@ public class GemmaAttentionLayer extends BaseAttentionLayer
         // Store the keys and values (these will be available while the following tokens will be processed)
         store(0, key, value);
 
-        // Matrix for collecting the attention results for all heads
-        Matrix valueAggregate = emptyMatrix(headCount, headSize);
-
-        // Score the previous tokens (including the actual), separately for all heads
+        // Split the queries by head, and apply the position embedding on them (separately within a head)
+        Matrix queryHeads = MATH.splitVector(query, headCount);
         for (int head = 0; head < headCount; head++)
         {
-            // Get the part for the actual head of the query, key and value vectors
-            Vector queryByHead = query.part(headCount, head);
-
-            // Position embedding on the query (separately within a head)
-            positionEmbedding.applySliced(queryByHead, pos);
-
-            Vector attentionResult = scaledDotProductAttention(
-                                            queryByHead,
-                                            getStoredKeys(0),
-                                            getStoredValues(0));
-
-            valueAggregate.setRow(head, attentionResult);
+            positionEmbedding.applySliced(queryHeads.row(head), pos);
         }
 
+        // Attention of all query heads, which share the single key-value head
+        // (The stored keys and values are read only once for all heads. The parallel math provider splits
+        // the positions between the threads, because there is only a single key-value head.)
+        // The result is written directly into the collector of the attention results (valueAggregate)
+        MATH.multiHeadAttention(
+                queryHeads,
+                getStoredKeys(),
+                getStoredValues(),
+                attentionScale,
+                null,
+                0,
+                valueAggregate);
+
         // Concatenate the results for all heads
-        hiddenState = valueAggregate.flatten();
+        hiddenState = MATH.flattenMatrix(valueAggregate, aggregateState);
 
         // Projection neural layer
-        hiddenState = hiddenState.multiplyByTransposed(matrix(projectionWeight));
+        hiddenState = MATH.mulVectorByTransposedMatrix(hiddenState, matrix(projectionWeight), projectionState);
 
         return hiddenState;
     }
-
-    private Vector scaledDotProductAttention(Vector query, List<Vector> keys, List<Vector> values)
-    {
-        int tokenCount = keys.size();
-
-        // Score all tokens using the actual query and the keys, multiplying by the scale
-        Vector scores = emptyVector(tokenCount);
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedKey = keys.get(pos);
-
-            // The core of the scaled dot product attention
-            float score = query.dotProduct(relatedKey) * attentionScale;
-            scores.set(pos, score);
-        }
-
-        // Normalize the scores into a range between 0 and 1
-        scores = MATH.softmax(scores);
-
-        // Apply the score on the values vectors
-        Vector result = Vector.emptyVector(query.getFloatType(), query.size());
-        for (int pos = 0; pos < tokenCount; pos++)
-        {
-            Vector relatedValue = values.get(pos);
-            float score = scores.get(pos);
-
-            // Multiply the values by the score and sum up
-            Vector scoredValue = relatedValue.multiply(score);
-            result = result.add(scoredValue);
-        }
-
-        return result;
-    }
 }
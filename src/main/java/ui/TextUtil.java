@@ -118,6 +118,36 @@ public class TextUtil
         return defaultValue;
     }
 
+    public static float readFloat(String value, float defaultValue)
+    {
+        try
+        {
+            return Float.parseFloat(value);
+        }
+        catch (Exception e)
+        {
+            System.out.println("\nWARNING: The provided value can't be converted to float (" + value
+                    + "). Default value will be used.\n");
+        }
+
+        return defaultValue;
+    }
+
+    public static Long readLong(String value, Long defaultValue)
+    {
+        try
+        {
+            return Long.parseLong(value);
+        }
+        catch (Exception e)
+        {
+            System.out.println("\nWARNING: The provided value can't be converted to integer (" + value
+                    + "). Default value will be used.\n");
+        }
+
+        return defaultValue;
+    }
+
     public static String toCenter(String text, int size)
     {
         var length = countCharacters(text);
@@ -1,8 +1,11 @@
 package base;
 
+import math.FastMath;
 import math.NeuralNetUtil;
 import math.dataType.DataType;
 import math.dataType.vector.Vector;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 import static math.MathUtil.MATH;
@@ -13,6 +16,19 @@ public class NeuralNetUtilTest
 {
     private final NeuralNetUtil neuralNetUtil = new TestNeuralNetUtil();
 
+    // The expected values are calculated by the exact functions (the fast versions are tested by FastMathTest)
+    @Before
+    public void setUp()
+    {
+        FastMath.setExact(true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        FastMath.setExact(false);
+    }
+
     @Test
     public void geluTest()
     {
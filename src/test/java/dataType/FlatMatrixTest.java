@@ -0,0 +1,144 @@
+package dataType;
+
+import base.BaseTest;
+import math.AbstractMathUtility;
+import math.MathUtil;
+import math.dataType.DataType;
+import math.dataType.matrix.BrainFloat16FlatMatrix;
+import math.dataType.matrix.Float16FlatMatrix;
+import math.dataType.matrix.Float32FlatMatrix;
+import math.dataType.matrix.Matrix;
+import math.dataType.matrix.MatrixType;
+import math.dataType.vector.Vector;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlatMatrixTest extends BaseTest
+{
+    private static final AbstractMathUtility MATH = MathUtil.getInstance();
+
+    @Test
+    public void emptyMatrixTest()
+    {
+        assertTrue(Matrix.emptyMatrix(DataType.FLOAT_32, 2, 3) instanceof Float32FlatMatrix);
+        assertTrue(Matrix.emptyMatrix(DataType.FLOAT_16, 2, 3) instanceof Float16FlatMatrix);
+        assertTrue(Matrix.emptyMatrix(DataType.BRAIN_FLOAT_16, 2, 3) instanceof BrainFloat16FlatMatrix);
+    }
+
+    @Test
+    public void rowViewTest()
+    {
+        var values = new float[] {1, 2, 3, 4, 5, 6};
+        var matrix = new Float32FlatMatrix(values, 3, 2);
+
+        assertVectorEquals(new float[] {3, 4}, matrix.row(1), 0);
+
+        // The row is a view, so modifying it changes the matrix
+        matrix.row(1).set(0, 30);
+        assertEquals(30, matrix.getValue(1, 0), 0);
+        assertEquals(30, values[2], 0);
+
+        // Setting a row copies the values
+        var vector = createVector(7, 8);
+        matrix.setRow(2, vector);
+        vector.set(0, 70);
+        assertMatrixEquals(new float[][] {{1, 2}, {30, 4}, {7, 8}}, matrix, 0);
+    }
+
+    @Test
+    public void offsetViewTest()
+    {
+        var values = new float[] {0, 0, 1, 2, 3, 4};
+        var matrix = new Float32FlatMatrix(values, 2, 2, 2);
+
+        assertMatrixEquals(new float[][] {{1, 2}, {3, 4}}, matrix, 0);
+        assertVectorEquals(new float[] {3, 4}, matrix.row(1), 0);
+    }
+
+    @Test
+    public void addRowTest()
+    {
+        var matrix = Matrix.emptyMatrix(MatrixType.FLAT_FLOAT_32, 0, 0);
+
+        for (var i = 0; i < 10; i++)
+        {
+            matrix.addRow(createVector(i, 2 * i, 3 * i));
+        }
+
+        assertEquals(10, matrix.getRowCount());
+        assertEquals(3, matrix.getColCount());
+        assertVectorEquals(new float[] {9, 18, 27}, matrix.row(9), 0);
+        assertVectorEquals(new float[] {4, 8, 12}, matrix.row(4), 0);
+    }
+
+    @Test
+    public void float16Test()
+    {
+        var matrix = Matrix.emptyMatrix(MatrixType.FLAT_FLOAT_16, 2, 3);
+        matrix.setRow(0, createVector(1, 2, 3));
+        matrix.setRow(1, createVector(4, 5, 6));
+
+        assertMatrixEquals(new float[][] {{1, 2, 3}, {4, 5, 6}}, matrix, 0);
+        assertVectorEquals(new float[] {4, 5, 6}, matrix.row(1), 0);
+        assertVectorEquals(new float[] {1 + 4, 2 + 5, 3 + 6}, MATH.mulVectorByMatrix(createVector(1, 1), matrix), 0);
+    }
+
+    @Test
+    public void mulVectorByFlatMatrixTest()
+    {
+        var matrix = createMatrix(new float[][] {{1, 0, 2}, {0, 3, 0}, {4, 0, 5}, {0, 6, 0}});
+        var vector = createVector(2, 5, 1, 8);
+        var expectedResult = new float[] {2 + 4, 15 + 48, 4 + 5};
+
+        assertVectorEquals(expectedResult, MATH.mulVectorByMatrix(vector, matrix), 0);
+        assertVectorEquals(new float[] {3, 3, 9, 6}, MATH.mulVectorByTransposedMatrix(createVector(1, 1, 1), matrix), 0);
+    }
+
+    @Test
+    public void mulVectorBy16BitTransposedMatrixTest()
+    {
+        // Odd size to test the remaining values after the full processor blocks
+        var size = 37;
+        var values = new float[3][size];
+        var vector = createVector(new float[size]);
+
+        for (var i = 0; i < size; i++)
+        {
+            // Including negative, small (subnormal in Float 16) and large values
+            values[0][i] = i - 18;
+            values[1][i] = (i % 2 == 0 ? 1 : -1) * 3e-6f * i;
+            values[2][i] = 1000f + i;
+            vector.set(i, 0.5f - (i % 5));
+        }
+
+        for (var floatType : new DataType[] {DataType.FLOAT_16, DataType.BRAIN_FLOAT_16})
+        {
+            var matrix = Matrix.emptyMatrix(floatType, 3, size);
+            for (var row = 0; row < 3; row++)
+            {
+                matrix.setRow(row, createVector(values[row]));
+            }
+
+            // Expected values calculated from the stored (rounded) values
+            var expected = new float[3];
+            for (var row = 0; row < 3; row++)
+            {
+                for (var i = 0; i < size; i++)
+                {
+                    expected[row] += vector.get(i) * matrix.getValue(row, i);
+                }
+            }
+
+            assertVectorEquals(expected, MATH.mulVectorByTransposedMatrix(vector, matrix), 1e-2f);
+
+            // Dot product of a float and a 16-bit vector, and two 16-bit vectors
+            assertEquals(expected[0], MATH.dotProduct(vector, matrix.row(0)), 1e-2f);
+            assertEquals(expected[0], MATH.dotProduct(matrix.row(0), vector), 1e-2f);
+
+            var vector16 = Vector.of(floatType, vector.getValues());
+            assertEquals(expected[2], MATH.dotProduct(vector16, matrix.row(2)), 1e-2f);
+        }
+    }
+}
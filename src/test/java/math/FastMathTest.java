@@ -0,0 +1,114 @@
+package math;
+
+import base.BaseTest;
+import math.dataType.vector.Vector;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static math.MathUtil.MATH;
+import static math.dataType.DataType.FLOAT_32;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FastMathTest extends BaseTest
+{
+    private final Random random = new Random(42);
+
+    @After
+    public void tearDown()
+    {
+        FastMath.setExact(false);
+    }
+
+    @Test
+    public void expTest()
+    {
+        for (var x = -87f; x <= 88f; x += 0.01f)
+        {
+            var expected = Math.exp(x);
+            var relativeError = Math.abs(FastMath.exp(x) - expected) / expected;
+
+            assertTrue("exp(" + x + "), relative error: " + relativeError, relativeError < 1e-6);
+        }
+
+        assertEquals(0f, FastMath.exp(-100f), 0f);
+        assertEquals(Float.POSITIVE_INFINITY, FastMath.exp(100f), 0f);
+    }
+
+    @Test
+    public void tanhTest()
+    {
+        for (var x = -12f; x <= 12f; x += 0.001f)
+        {
+            assertEquals("tanh(" + x + ")", Math.tanh(x), FastMath.tanh(x), 1e-6);
+        }
+    }
+
+    @Test
+    public void sigmoidTest()
+    {
+        for (var x = -100f; x <= 100f; x += 0.01f)
+        {
+            assertEquals("sigmoid(" + x + ")", 1 / (1 + Math.exp(-x)), FastMath.sigmoid(x), 1e-6);
+        }
+    }
+
+    @Test
+    public void softmaxInPlaceTest()
+    {
+        var values = randomValues(1001, 20);
+        var expected = values.clone();
+
+        FastMath.setExact(true);
+        MATH.softmaxInPlace(expected, 0, expected.length);
+
+        FastMath.setExact(false);
+        MATH.softmaxInPlace(values, 0, values.length);
+
+        assertVectorEquals(expected, Vector.of(FLOAT_32, values), 1e-7f);
+    }
+
+    @Test
+    public void swigluInPlaceTest()
+    {
+        var values = randomValues(1001, 20);
+        var expected = values.clone();
+
+        FastMath.setExact(true);
+        MATH.swigluInPlace(expected);
+
+        FastMath.setExact(false);
+        MATH.swigluInPlace(values);
+
+        assertVectorEquals(expected, Vector.of(FLOAT_32, values), 1e-5f);
+    }
+
+    @Test
+    public void geluInPlaceTest()
+    {
+        var values = randomValues(1001, 20);
+        var expected = values.clone();
+
+        FastMath.setExact(true);
+        MATH.geluInPlace(expected);
+
+        FastMath.setExact(false);
+        MATH.geluInPlace(values);
+
+        assertVectorEquals(expected, Vector.of(FLOAT_32, values), 1e-5f);
+    }
+
+    private float[] randomValues(int size, float range)
+    {
+        var values = new float[size];
+
+        for (var i = 0; i < size; i++)
+        {
+            values[i] = (random.nextFloat() * 2 - 1) * range;
+        }
+
+        return values;
+    }
+}
@@ -1,14 +1,32 @@
 package math;
 
 import base.BaseTest;
+import math.dataType.DataType;
+import math.dataType.Float16;
 import math.dataType.matrix.Matrix;
 import math.dataType.matrix.MatrixType;
+import math.dataType.matrix.StackedMatrix;
+import math.dataType.matrix.TransposedMatrix;
 import math.dataType.vector.Vector;
 import org.junit.Test;
+import quantization.awq.AwqMatrix;
+import quantization.block.BlockQuantizationUtil;
+import quantization.block.Q4Matrix;
+import quantization.gptq.GptqMatrix;
+import quantization.gptq.GptqQuantizationUtil;
+import quantization.llmInt8.LlmInt8Matrix;
+import quantization.qlora.QloraMatrixDQ;
+import quantization.qlora.QloraMatrixDQTransposed;
+import quantization.qlora.QloraMatrixSimple;
+import quantization.qlora.QloraMatrixSimpleTransposed;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+
 import static math.dataType.matrix.Matrix.emptyMatrix;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class MathUtilityTest extends BaseTest
 {
@@ -604,6 +622,55 @@ public class MathUtilityTest extends BaseTest
         assertMatrixEquals(expectedResult, MATH.mulMatrixByScalar(matrix, 3), 0);
     }
 
+    @Test
+    public void addInPlaceTest()
+    {
+        var vector = createVector(1, 2, 3, 4);
+        var addition = createVector(4, 5, 6, 7);
+
+        MATH.addInPlace(vector, addition);
+
+        assertVectorEquals(new float[]{5, 7, 9, 11}, vector, 0);
+        assertVectorEquals(new float[]{4, 5, 6, 7}, addition, 0);
+    }
+
+    @Test
+    public void scaleInPlaceTest()
+    {
+        var vector = createVector(5, 6, 7, 8);
+
+        MATH.scaleInPlace(vector, 3);
+
+        assertVectorEquals(new float[]{15, 18, 21, 24}, vector, 0);
+    }
+
+    @Test
+    public void mulVectorByTransposedMatrixIntoResultTest()
+    {
+        var vector = createVector(5, 6, 7, 8);
+        var matrix = createMatrix(new float[][] {{1, 4, 7, 10}, {2, 5, 8, 11}, {3, 6, 9, 12}});
+        var expectedResult = new float[]{5 + 6*4 + 7*7 + 8*10, 5*2 + 6*5 + 7*8 + 8*11, 5*3 + 6*6 + 7*9 + 8*12};
+
+        // Write into a row of a matrix, so the result is a view with an offset
+        var resultMatrix = emptyMatrix(DataType.FLOAT_32, 2, 3);
+        var result = MATH.mulVectorByTransposedMatrix(vector, matrix, resultMatrix.row(1));
+
+        assertVectorEquals(expectedResult, result, 0);
+        assertVectorEquals(expectedResult, resultMatrix.row(1), 0);
+        assertVectorEquals(new float[]{0, 0, 0}, resultMatrix.row(0), 0);
+    }
+
+    @Test
+    public void softmaxInPlaceTest()
+    {
+        var vector = createVector(1, 2, 3, 4);
+        var expectedResult = MATH.softmax(createVector(1, 2, 3, 4));
+
+        MATH.softmax(vector, vector);
+
+        assertVectorEquals(expectedResult.getValues(), vector, 1e-7f);
+    }
+
     @Test
     public void mulVectorByMatrixTest()
     {
@@ -624,6 +691,26 @@ public class MathUtilityTest extends BaseTest
         assertVectorEquals(expectedResult, MATH.mulVectorByTransposedMatrix(vector, matrix), 0);
     }
 
+    @Test
+    public void gatedLinearUnitTest()
+    {
+        var vector = createVector(5, 6, 7, 8);
+        var gate = createMatrix(new float[][] {{1, 0, 0, 0}, {0, -1, 0, 0}, {0, 0, 0, 0.5f}});
+        var up = createMatrix(new float[][] {{1, 1, 1, 1}, {0, 0, 1, 0}, {2, 0, 0, 0}});
+        var expectedResult = new float[]{5 * 26, 0, 4 * 10};
+
+        var result = emptyMatrix(DataType.FLOAT_32, 1, 3).row(0);
+        MATH.gatedLinearUnit(vector, gate, up, ActivationFunction.RELU, result);
+
+        assertVectorEquals(expectedResult, result, 0);
+
+        // The activation is applied on the gate only
+        MATH.gatedLinearUnit(vector, gate, up, ActivationFunction.SWIGLU, result);
+
+        assertEquals(5 * 26 * (1 / (1 + Math.exp(-5))), result.get(0), 1e-3);
+        assertEquals(-6 * 7 * (1 / (1 + Math.exp(6))), result.get(1), 1e-3);
+    }
+
     @Test
     public void mulMatrixByMatrixTest()
     {
@@ -648,6 +735,106 @@ public class MathUtilityTest extends BaseTest
         assertMatrixEquals(expectedResult, MATH.mulMatrixByTransposedMatrix(matrix1, matrix2), 0);
     }
 
+    @Test
+    public void mulByTransposedStoredMatrixTest()
+    {
+        // The matrix is stored in transposed orientation, but it behaves as the original (4 x 3) matrix
+        var matrix = new TransposedMatrix(createMatrix(new float[][] {{1, 4, 7, 10}, {2, 5, 8, 11}, {3, 6, 9, 12}}));
+        var vector = createVector(5, 6, 7, 8);
+        var expectedResult = new float[]{5 + 6*4 + 7*7 + 8*10, 5*2 + 6*5 + 7*8 + 8*11, 5*3 + 6*6 + 7*9 + 8*12};
+
+        assertEquals(4, matrix.getRowCount());
+        assertEquals(3, matrix.getColCount());
+        assertEquals(10, matrix.getValue(3, 0), 0);
+
+        assertVectorEquals(expectedResult, MATH.mulVectorByMatrix(vector, matrix), 0);
+        assertMatrixEquals(new float[][] {expectedResult},
+                MATH.mulMatrixByMatrix(createMatrix(new float[][] {{5, 6, 7, 8}}), matrix), 0);
+    }
+
+    @Test
+    public void preparedMatrixTest()
+    {
+        // The prepared matrix (converted to the provider's own representation) gives the same results
+        var values = new float[][] {{1, 2, 3}, {4, 5, 6}, {7, 8, 9}, {10, 11, 12}};
+        var matrix = createMatrix(values);
+        var prepared = MATH.prepareMatrix(createMatrix(values));
+
+        assertMatrixEquals(values, prepared, 0);
+
+        var vector = createVector(5, 6, 7, 8);
+        var colVector = createVector(1, -2, 3);
+        var input = createMatrix(new float[][] {{5, 6, 7, 8}, {1, 0, -1, 2}});
+        var colInput = createMatrix(new float[][] {{1, -2, 3}, {0, 1, 2}});
+
+        assertVectorEquals(MATH.mulVectorByMatrix(vector, matrix).getValues(),
+                MATH.mulVectorByMatrix(vector, prepared), 1e-5f);
+        assertVectorEquals(MATH.mulVectorByTransposedMatrix(colVector, matrix).getValues(),
+                MATH.mulVectorByTransposedMatrix(colVector, prepared), 1e-5f);
+
+        assertMatrixEquals(toArray(MATH.mulMatrixByMatrix(input, matrix)), MATH.mulMatrixByMatrix(input, prepared), 1e-5f);
+        assertMatrixEquals(toArray(MATH.mulMatrixByTransposedMatrix(colInput, matrix)),
+                MATH.mulMatrixByTransposedMatrix(colInput, prepared), 1e-5f);
+
+        assertMatrixEquals(toArray(MATH.transposeMatrix(matrix)), MATH.transposeMatrix(prepared), 0);
+        assertMatrixEquals(toArray(MATH.stackMatrices(List.of(matrix, matrix))),
+                MATH.stackMatrices(List.of(prepared, MATH.prepareMatrix(createMatrix(values)))), 0);
+
+        var topK = MATH.mulVectorByTransposedMatrixTopK(colVector, prepared, 2);
+        assertEquals(3, topK.get(0).index());
+        assertEquals(2, topK.get(1).index());
+    }
+
+    private static float[][] toArray(Matrix matrix)
+    {
+        var result = new float[matrix.getRowCount()][];
+        for (var i = 0; i < result.length; i++)
+        {
+            result[i] = matrix.row(i).getValues();
+        }
+
+        return result;
+    }
+
+    @Test
+    public void mulLargeMatrixByMatrixTest()
+    {
+        // Sizes which aren't divisible by the tile and block sizes (odd rows, more than one k block)
+        var matrix1 = createSequenceMatrix(13, 300, 1);
+        var matrix2 = createSequenceMatrix(300, 37, 2);
+        var transposed = MATH.transposeMatrix(matrix2);
+
+        var expectedResult = new float[13][37];
+        for (var i = 0; i < 13; i++)
+        {
+            for (var j = 0; j < 37; j++)
+            {
+                for (var k = 0; k < 300; k++)
+                {
+                    expectedResult[i][j] += matrix1.getValue(i, k) * matrix2.getValue(k, j);
+                }
+            }
+        }
+
+        assertMatrixEquals(expectedResult, MATH.mulMatrixByMatrix(matrix1, matrix2), 1e-3f);
+        assertMatrixEquals(expectedResult, MATH.mulMatrixByTransposedMatrix(matrix1, transposed), 1e-3f);
+    }
+
+    private Matrix createSequenceMatrix(int rows, int cols, int seed)
+    {
+        var matrix = emptyMatrix(DataType.FLOAT_32, rows, cols);
+
+        for (var i = 0; i < rows; i++)
+        {
+            for (var j = 0; j < cols; j++)
+            {
+                matrix.setValue(i, j, ((i * 7 + j * 3 + seed) % 11 - 5) / 8f);
+            }
+        }
+
+        return matrix;
+    }
+
     @Test
     public void splitVectorTest()
     {
@@ -712,6 +899,24 @@ public class MathUtilityTest extends BaseTest
         assertMatrixEquals(expectedResult, MATH.joinMatrices(List.of(matrix1, matrix2)), 0);
     }
 
+    @Test
+    public void stackMatrices()
+    {
+        var matrix1 = createMatrix(new float[][] {{1, 2, 3, 4}, {5, 6, 7, 8}});
+        var matrix2 = createMatrix(new float[][] {{11, 13, 15, 17}});
+        var expectedResult = new float[][]{{1, 2, 3, 4}, {5, 6, 7, 8}, {11, 13, 15, 17}};
+
+        assertMatrixEquals(expectedResult, MATH.stackMatrices(List.of(matrix1, matrix2)), 0);
+        assertMatrixEquals(expectedResult, new StackedMatrix(List.of(matrix1, matrix2)), 0);
+
+        // Multiplication by the stacked matrix gives the results of the parts after each other
+        var vector = createVector(1, 0, 2, 0);
+        var result = MATH.mulVectorByTransposedMatrix(vector, new StackedMatrix(List.of(matrix1, matrix2)));
+
+        assertVectorEquals(new float[] {7, 19, 41}, result, 0);
+        assertVectorEquals(new float[] {19, 41}, MATH.sliceVector(result, 1, 2), 0);
+    }
+
     @Test
     public void transposeMatrix()
     {
@@ -743,6 +948,174 @@ public class MathUtilityTest extends BaseTest
         assertMatrixEquals(expectedResult, matrix, 0);
     }
 
+    @Test
+    public void attentionTest()
+    {
+        var random = new Random(42);
+        var tokenCount = 20;
+        var headSize = 8;
+
+        var query = createVector(randomArray(random, headSize));
+        var keys = new float[tokenCount][];
+        var values = new float[tokenCount][];
+
+        for (var pos = 0; pos < tokenCount; pos++)
+        {
+            // Increasing scores, to test the rescaling at a new maximum
+            keys[pos] = randomArray(random, headSize);
+            keys[pos][0] = keys[pos][0] + pos;
+            values[pos] = randomArray(random, headSize);
+        }
+
+        var keyMatrix = createMatrix(keys);
+        var valueMatrix = createMatrix(values);
+
+        var scale = 0.5f;
+        var alibiSlope = 0.25f;
+        var softCap = 5f;
+
+        // Expected result: scores, softmax and weighted sum of the values in separate steps
+        var scores = new float[tokenCount];
+        for (var pos = 0; pos < tokenCount; pos++)
+        {
+            var score = MATH.dotProduct(query, keyMatrix.row(pos)) * scale;
+            score = softCap * (float) Math.tanh(score / softCap);
+            scores[pos] = score - alibiSlope * (tokenCount - 1 - pos);
+        }
+
+        var probabilities = MATH.softmax(createVector(scores));
+
+        var expectedResult = new float[headSize];
+        for (var pos = 0; pos < tokenCount; pos++)
+        {
+            for (var i = 0; i < headSize; i++)
+            {
+                expectedResult[i] += probabilities.get(pos) * values[pos][i];
+            }
+        }
+
+        var result = MATH.attention(query, keyMatrix, valueMatrix, scale, alibiSlope, softCap);
+        assertVectorEquals(expectedResult, result, 1e-5f);
+
+        // Without the bias and the soft-capping
+        probabilities = MATH.softmax(MATH.mulVectorByScalar(MATH.mulVectorByTransposedMatrix(query, keyMatrix), scale));
+        var expectedValues = MATH.mulVectorByMatrix(probabilities, valueMatrix);
+
+        result = MATH.scaledDotProductAttention(query, keyMatrix, valueMatrix, scale);
+        assertVectorEquals(expectedValues.getValues(), result, 1e-5f);
+    }
+
+    @Test
+    public void groupedAttentionTest()
+    {
+        var random = new Random(42);
+        var tokenCount = 20;
+        var headSize = 8;
+        var headCount = 6;
+
+        var queries = new float[headCount][];
+        for (var head = 0; head < headCount; head++)
+        {
+            queries[head] = randomArray(random, headSize);
+        }
+
+        var keys = new float[tokenCount][];
+        var values = new float[tokenCount][];
+        for (var pos = 0; pos < tokenCount; pos++)
+        {
+            keys[pos] = randomArray(random, headSize);
+            values[pos] = randomArray(random, headSize);
+        }
+
+        var queryMatrix = createMatrix(queries);
+        var keyMatrix = createMatrix(keys);
+        var valueMatrix = createMatrix(values);
+
+        // The rows of the group should be the same as the attention of the queries one by one
+        var result = createMatrix(new float[headCount][headSize]);
+        MATH.groupedAttention(queryMatrix, keyMatrix, valueMatrix, 0.5f, 5f, result, 2, 5);
+
+        for (var head = 0; head < headCount; head++)
+        {
+            if (head < 2 || head >= 5)
+            {
+                assertVectorEquals(new float[headSize], result.row(head), 0);
+            }
+            else
+            {
+                var expected = MATH.attention(createVector(queries[head]), keyMatrix, valueMatrix, 0.5f, 0, 5f);
+                assertVectorEquals(expected.getValues(), result.row(head), 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void multiHeadAttentionTest()
+    {
+        var random = new Random(7);
+        var tokenCount = 30;
+        var headSize = 8;
+        var headCount = 6;
+        var kvHeadCount = 2;
+
+        var queries = new float[headCount][];
+        var alibiSlopes = new float[headCount];
+        for (var head = 0; head < headCount; head++)
+        {
+            queries[head] = randomArray(random, headSize);
+            alibiSlopes[head] = 0.1f * head;
+        }
+
+        var keyMatrices = new Matrix[kvHeadCount];
+        var valueMatrices = new Matrix[kvHeadCount];
+        for (var kvHead = 0; kvHead < kvHeadCount; kvHead++)
+        {
+            var keys = new float[tokenCount][];
+            var values = new float[tokenCount][];
+            for (var pos = 0; pos < tokenCount; pos++)
+            {
+                keys[pos] = randomArray(random, headSize);
+                values[pos] = randomArray(random, headSize);
+            }
+
+            keyMatrices[kvHead] = createMatrix(keys);
+            valueMatrices[kvHead] = createMatrix(values);
+        }
+
+        var queryMatrix = createMatrix(queries);
+
+        // Every query head should be the same as the attention of the head one by one (using the kv head of its group)
+        var result = MATH.multiHeadAttention(queryMatrix, keyMatrices, valueMatrices, 0.5f, alibiSlopes, 0,
+                createMatrix(new float[headCount][headSize]));
+
+        for (var head = 0; head < headCount; head++)
+        {
+            var kvHead = head / (headCount / kvHeadCount);
+            var expected = MATH.attention(createVector(queries[head]), keyMatrices[kvHead], valueMatrices[kvHead],
+                    0.5f, alibiSlopes[head], 0);
+
+            assertVectorEquals(expected.getValues(), result.row(head), 1e-6f);
+        }
+
+        // Collecting the positions in chunks and merging the partial results should give the same
+        var state = new AttentionState(3, headSize);
+        MATH.collectAttention(queryMatrix, keyMatrices[1], valueMatrices[1], 0.5f, alibiSlopes, 0, 3, 0, 10, state);
+
+        var otherState = new AttentionState(3, headSize);
+        MATH.collectAttention(queryMatrix, keyMatrices[1], valueMatrices[1], 0.5f, alibiSlopes, 0, 3, 10, 30,
+                otherState);
+
+        state.merge(otherState);
+
+        var mergedResult = createMatrix(new float[headCount][headSize]);
+        state.writeResult(mergedResult, 3);
+
+        for (var head = 3; head < headCount; head++)
+        {
+            assertVectorEquals(result.row(head).getValues(), mergedResult.row(head), 1e-6f);
+        }
+    }
+
     @Test
     public void averageTest()
     {
@@ -750,4 +1123,400 @@ public class MathUtilityTest extends BaseTest
 
         assertEquals(3.5f, MATH.average(vector), 0);
     }
+
+    @Test
+    public void reverseAndFilterTest()
+    {
+        var values = new float[] {3, -1, 7, 0, 7, 2, 9, -5, 4};
+
+        var result = MATH.reverseAndFilter(values, 4);
+
+        assertEquals(List.of(new IndexedValue(9, 6), new IndexedValue(7, 2), new IndexedValue(7, 4),
+                new IndexedValue(4, 8)), result);
+
+        // Random values compared to a full sort
+        var random = new Random(42);
+        var randomValues = new float[10000];
+        for (var i = 0; i < randomValues.length; i++)
+        {
+            randomValues[i] = random.nextFloat();
+        }
+
+        var sorted = randomValues.clone();
+        Arrays.sort(sorted);
+
+        var topValues = MATH.reverseAndFilter(createVector(randomValues), 40);
+
+        assertEquals(40, topValues.size());
+        for (var i = 0; i < 40; i++)
+        {
+            assertEquals(sorted[sorted.length - 1 - i], topValues.get(i).value(), 0);
+            assertEquals(topValues.get(i).value(), randomValues[topValues.get(i).index()], 0);
+        }
+    }
+
+    @Test
+    public void mulVectorByTransposedMatrixTopKTest()
+    {
+        var vector = createVector(1, 2);
+        var matrix = createMatrix(new float[][] {{1, 1}, {3, 0}, {0, 4}, {-1, 2}, {2, 1}});
+
+        var result = MATH.mulVectorByTransposedMatrixTopK(vector, matrix, 3);
+
+        assertEquals(List.of(new IndexedValue(8, 2), new IndexedValue(4, 4), new IndexedValue(3, 0)), result);
+    }
+
+    @Test
+    public void mulVectorByQuantizedMatrixTest()
+    {
+        var random = new Random(42);
+        var rows = 5;
+        var cols = 37;
+
+        var quantizedValues = new byte[rows][cols];
+        for (var row : quantizedValues)
+        {
+            random.nextBytes(row);
+        }
+
+        for (var isVertical : new boolean[] {true, false})
+        {
+            var scb = new float[isVertical ? rows : cols];
+            for (var i = 0; i < scb.length; i++)
+            {
+                scb[i] = random.nextFloat();
+            }
+
+            var matrix = new LlmInt8Matrix(DataType.FLOAT_32, scb, quantizedValues, isVertical);
+            var deQuantized = matrix.toDeQuantized();
+
+            var vector = createVector(new float[cols]);
+            for (var i = 0; i < cols; i++)
+            {
+                vector.set(i, random.nextFloat() - 0.5f);
+            }
+
+            var expected = MATH.mulVectorByTransposedMatrix(vector, deQuantized);
+            assertVectorEquals(expected.getValues(), MATH.mulVectorByTransposedMatrix(vector, matrix), 1e-4f);
+
+            var rowVector = createVector(1, -2, 0.5f, 3, -0.25f);
+
+            expected = MATH.mulVectorByMatrix(rowVector, deQuantized);
+            assertVectorEquals(expected.getValues(), MATH.mulVectorByMatrix(rowVector, matrix), 1e-4f);
+        }
+    }
+
+    @Test
+    public void mulVectorByQloraMatrixTest()
+    {
+        var random = new Random(42);
+        var blockSize = 4;
+        var rows = 8;
+        var cols = 12;
+        var blockCount = rows * cols / blockSize;
+
+        var quantMap = randomArray(random, 16);
+        var absMax = randomArray(random, blockCount);
+        var nestedQuantMap = randomArray(random, 256);
+        var nestedAbsMax = randomArray(random, blockCount / 2);
+        var quantizedAbsMax = new byte[blockCount];
+        random.nextBytes(quantizedAbsMax);
+
+        var values = new byte[rows][cols / 2];
+        var transposedValues = new byte[rows / 2][cols];
+        for (var row : values) random.nextBytes(row);
+        for (var row : transposedValues) random.nextBytes(row);
+
+        var matrices = List.of(
+                new QloraMatrixSimple(DataType.FLOAT_32, blockSize, quantMap, absMax, values),
+                new QloraMatrixSimpleTransposed(DataType.FLOAT_32, blockSize, quantMap, absMax, transposedValues),
+                new QloraMatrixDQ(DataType.FLOAT_32, blockSize, 2, 0.1f, quantMap, nestedQuantMap, nestedAbsMax,
+                        quantizedAbsMax, values),
+                new QloraMatrixDQTransposed(DataType.FLOAT_32, blockSize, 2, 0.1f, quantMap, nestedQuantMap,
+                        nestedAbsMax, quantizedAbsMax, transposedValues));
+
+        var vector = createVector(randomArray(random, cols));
+        var rowVector = createVector(randomArray(random, rows));
+
+        for (var matrix : matrices)
+        {
+            var deQuantized = matrix.toDeQuantized();
+
+            var expected = MATH.mulVectorByTransposedMatrix(vector, deQuantized);
+            assertVectorEquals(expected.getValues(), MATH.mulVectorByTransposedMatrix(vector, matrix), 1e-4f);
+
+            expected = MATH.mulVectorByMatrix(rowVector, deQuantized);
+            assertVectorEquals(expected.getValues(), MATH.mulVectorByMatrix(rowVector, matrix), 1e-4f);
+
+            // Partial calculation (starting inside a block)
+            var result = createVector(new float[cols]);
+            matrix.mulVector(rowVector, result, 3, 9);
+            for (var i = 3; i < 9; i++)
+            {
+                assertEquals(expected.get(i), result.get(i), 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void mulVectorByGptqMatrixTest()
+    {
+        var random = new Random(42);
+        var inputs = 16;
+        var outputs = 6;
+        var groupCount = 4;
+
+        var quantizedWeights = new int[inputs / 8][outputs];
+        for (var row : quantizedWeights)
+        {
+            for (var i = 0; i < outputs; i++) row[i] = random.nextInt();
+        }
+
+        var scales = new float[groupCount][];
+        var zeros = new float[groupCount][outputs];
+        for (var group = 0; group < groupCount; group++)
+        {
+            scales[group] = randomArray(random, outputs);
+            for (var i = 0; i < outputs; i++) zeros[group][i] = random.nextInt(16);
+        }
+
+        // Consecutive groups, and mixed groups (act order)
+        var groupIndexes = new int[inputs];
+        var mixedGroupIndexes = new int[inputs];
+        for (var i = 0; i < inputs; i++)
+        {
+            groupIndexes[i] = i / 4;
+            mixedGroupIndexes[i] = random.nextInt(groupCount);
+        }
+
+        var matrices = List.of(
+                new GptqMatrix(DataType.FLOAT_32, 4, quantizedWeights, groupIndexes, scales, zeros, false),
+                new GptqMatrix(DataType.FLOAT_32, 4, quantizedWeights, mixedGroupIndexes, scales, zeros, false),
+                new GptqMatrix(DataType.FLOAT_32, 4, quantizedWeights, groupIndexes, scales, zeros, true),
+                new GptqMatrix(DataType.FLOAT_32, 4, quantizedWeights, mixedGroupIndexes, scales, zeros, true));
+
+        // The first value is on the highest 4 bits
+        var quantizedValue = (quantizedWeights[1][2] >>> 20) & 0xF;
+        assertEquals(scales[2][2] * (quantizedValue - zeros[2][2]), matrices.get(0).getValue(10, 2), 0f);
+        assertEquals(matrices.get(0).getValue(10, 2), matrices.get(2).getValue(2, 10), 0f);
+
+        for (var matrix : matrices)
+        {
+            var deQuantized = matrix.toDeQuantized();
+            var vector = createVector(randomArray(random, matrix.getColCount()));
+            var rowVector = createVector(randomArray(random, matrix.getRowCount()));
+
+            var expected = MATH.mulVectorByTransposedMatrix(vector, deQuantized);
+            assertVectorEquals(expected.getValues(), MATH.mulVectorByTransposedMatrix(vector, matrix), 1e-4f);
+
+            expected = MATH.mulVectorByMatrix(rowVector, deQuantized);
+            assertVectorEquals(expected.getValues(), MATH.mulVectorByMatrix(rowVector, matrix), 1e-4f);
+
+            // Partial calculation
+            var result = createVector(new float[matrix.getColCount()]);
+            matrix.mulVector(rowVector, result, 1, 5);
+            for (var i = 1; i < 5; i++)
+            {
+                assertEquals(expected.get(i), result.get(i), 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void gptqQuantizeTest()
+    {
+        var random = new Random(42);
+        var inputs = 64;
+        var outputs = 12;
+        var groupSize = 16;
+
+        var weights = new float[inputs][];
+        for (var i = 0; i < inputs; i++) weights[i] = randomArray(random, outputs);
+        var matrix = createMatrix(weights);
+
+        // Round-to-nearest: the error is at most the half of the step within a group
+        var quantized = GptqQuantizationUtil.quantize(matrix, false, groupSize, null, DataType.FLOAT_32);
+        assertMatrixEquals(weights, quantized.toDeQuantized(), 2f / 15 / 2 + 1e-6f);
+
+        // Vertical orientation
+        var transposed = MATH.transposeMatrix(matrix);
+        var quantizedVertical = GptqQuantizationUtil.quantize(transposed, true, groupSize, null, DataType.FLOAT_32);
+        for (var i = 0; i < inputs; i++)
+        {
+            for (var j = 0; j < outputs; j++)
+            {
+                assertEquals(quantized.getValue(i, j), quantizedVertical.getValue(j, i), 0f);
+            }
+        }
+
+        // The error compensation decreases the error of the outputs at the calibration inputs
+        // (The inputs are correlated, so the error of an input can be compensated by the others.)
+        var samples = new float[32][];
+        for (var i = 0; i < samples.length; i++)
+        {
+            var base = random.nextFloat() * 2 - 1;
+            samples[i] = randomArray(random, inputs);
+            for (var j = 0; j < inputs; j++) samples[i][j] = base + 0.3f * samples[i][j];
+        }
+
+        var calibration = createMatrix(samples);
+        var compensated = GptqQuantizationUtil.quantize(matrix, false, groupSize, calibration, DataType.FLOAT_32);
+
+        var roundToNearestError = 0d;
+        var compensatedError = 0d;
+        for (var sample : samples)
+        {
+            var vector = createVector(sample);
+            var expected = MATH.mulVectorByMatrix(vector, matrix);
+            var roundToNearest = MATH.mulVectorByMatrix(vector, quantized);
+            var result = MATH.mulVectorByMatrix(vector, compensated);
+
+            for (var i = 0; i < outputs; i++)
+            {
+                roundToNearestError += Math.pow(expected.get(i) - roundToNearest.get(i), 2);
+                compensatedError += Math.pow(expected.get(i) - result.get(i), 2);
+            }
+        }
+
+        assertTrue(compensatedError < roundToNearestError);
+    }
+
+    @Test
+    public void mulVectorByAwqMatrixTest()
+    {
+        var random = new Random(42);
+        var inputs = 16;
+        var outputs = 16;
+        var groupSize = 4;
+
+        var quantizedWeights = new int[inputs][outputs / 8];
+        for (var row : quantizedWeights)
+        {
+            for (var i = 0; i < row.length; i++) row[i] = random.nextInt();
+        }
+
+        var scales = new float[inputs / groupSize][];
+        var zeros = new float[inputs / groupSize][outputs];
+        for (var group = 0; group < scales.length; group++)
+        {
+            scales[group] = randomArray(random, outputs);
+            for (var i = 0; i < outputs; i++) zeros[group][i] = random.nextInt(16);
+        }
+
+        var matrix = new AwqMatrix(DataType.FLOAT_32, quantizedWeights, scales, zeros, groupSize, false);
+        var transposed = new AwqMatrix(DataType.FLOAT_32, quantizedWeights, scales, zeros, groupSize, true);
+
+        // AWQ order: the output 9 is the second output of the second int, which is on the 5th lowest 4 bits
+        var quantizedValue = (quantizedWeights[6][1] >>> 16) & 0xF;
+        assertEquals(scales[1][9] * (quantizedValue - zeros[1][9]), matrix.getValue(6, 9), 0f);
+        assertEquals(matrix.getValue(6, 9), transposed.getValue(9, 6), 0f);
+
+        for (var awqMatrix : List.of(matrix, transposed))
+        {
+            var deQuantized = awqMatrix.toDeQuantized();
+            var vector = createVector(randomArray(random, awqMatrix.getColCount()));
+            var rowVector = createVector(randomArray(random, awqMatrix.getRowCount()));
+
+            var expected = MATH.mulVectorByTransposedMatrix(vector, deQuantized);
+            assertVectorEquals(expected.getValues(), MATH.mulVectorByTransposedMatrix(vector, awqMatrix), 1e-4f);
+
+            expected = MATH.mulVectorByMatrix(rowVector, deQuantized);
+            assertVectorEquals(expected.getValues(), MATH.mulVectorByMatrix(rowVector, awqMatrix), 1e-4f);
+
+            // Partial calculation (crossing the boundary of the packed ints)
+            var result = createVector(new float[awqMatrix.getColCount()]);
+            awqMatrix.mulVector(rowVector, result, 5, 11);
+            for (var i = 5; i < 11; i++)
+            {
+                assertEquals(expected.get(i), result.get(i), 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void mulVectorByBlockQuantizedMatrixTest()
+    {
+        var random = new Random(42);
+
+        // The input size isn't a multiple of the block size, so the last block is partial
+        for (var inputs : new int[] {64, 80})
+        {
+            var outputs = 6;
+
+            var weights = new float[outputs][];
+            for (var i = 0; i < outputs; i++) weights[i] = randomArray(random, inputs);
+            var vertical = createMatrix(weights);
+            var horizontal = MATH.transposeMatrix(vertical);
+
+            var matrices = List.of(
+                    BlockQuantizationUtil.quantizeQ8(vertical, true, DataType.FLOAT_32),
+                    BlockQuantizationUtil.quantizeQ8(horizontal, false, DataType.FLOAT_32),
+                    BlockQuantizationUtil.quantizeQ4(vertical, true, DataType.FLOAT_32),
+                    BlockQuantizationUtil.quantizeQ4(horizontal, false, DataType.FLOAT_32));
+
+            for (var matrix : matrices)
+            {
+                var deQuantized = matrix.toDeQuantized();
+                var vector = createVector(randomArray(random, matrix.getColCount()));
+                var rowVector = createVector(randomArray(random, matrix.getRowCount()));
+
+                var expected = MATH.mulVectorByTransposedMatrix(vector, deQuantized);
+                assertVectorEquals(expected.getValues(), MATH.mulVectorByTransposedMatrix(vector, matrix), 1e-4f);
+
+                expected = MATH.mulVectorByMatrix(rowVector, deQuantized);
+                assertVectorEquals(expected.getValues(), MATH.mulVectorByMatrix(rowVector, matrix), 1e-4f);
+            }
+        }
+
+        // Q4_0 layout: the byte [j] of a block holds the value [j] on the lower, the value [j + 16] on the higher bits
+        var quantizedValues = new byte[1][Q4Matrix.BYTES_PER_BLOCK];
+        quantizedValues[0][3] = (byte) 0xA1;
+        var scales = new short[][] {{Float16.toShort(0.5f)}};
+        var matrix = new Q4Matrix(DataType.FLOAT_32, quantizedValues, scales, 32, false);
+
+        assertEquals(0.5f * (1 - 8), matrix.getValue(0, 3), 0f);
+        assertEquals(0.5f * (10 - 8), matrix.getValue(0, 19), 0f);
+    }
+
+    @Test
+    public void blockQuantizeTest()
+    {
+        var random = new Random(42);
+        var inputs = 80;
+        var outputs = 12;
+
+        var weights = new float[inputs][];
+        for (var i = 0; i < inputs; i++) weights[i] = randomArray(random, outputs);
+        var matrix = createMatrix(weights);
+        var transposed = MATH.transposeMatrix(matrix);
+
+        // The error is at most the half of the step (plus the rounding of the FLOAT 16 scale)
+        var q8 = BlockQuantizationUtil.quantizeQ8(matrix, false, DataType.FLOAT_32);
+        assertMatrixEquals(weights, q8.toDeQuantized(), 0.6f / 127);
+
+        // Q4_0: the step is the (maximum / 8), the positive extreme can be rounded down by a full step
+        var q4 = BlockQuantizationUtil.quantizeQ4(matrix, false, DataType.FLOAT_32);
+        assertMatrixEquals(weights, q4.toDeQuantized(), 1f / 8 + 1e-3f);
+
+        // Vertical orientation
+        var q4Vertical = BlockQuantizationUtil.quantizeQ4(transposed, true, DataType.FLOAT_32);
+        for (var i = 0; i < inputs; i++)
+        {
+            for (var j = 0; j < outputs; j++)
+            {
+                assertEquals(q4.getValue(i, j), q4Vertical.getValue(j, i), 0f);
+            }
+        }
+    }
+
+    private static float[] randomArray(Random random, int size)
+    {
+        var values = new float[size];
+        for (var i = 0; i < size; i++)
+        {
+            values[i] = random.nextFloat() * 2 - 1;
+        }
+
+        return values;
+    }
 }
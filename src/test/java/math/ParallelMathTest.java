@@ -0,0 +1,209 @@
+package math;
+
+import base.BaseTest;
+import math.dataType.DataType;
+import math.dataType.matrix.Matrix;
+import math.dataType.vector.Vector;
+import math.impl.parallel.ParallelMath;
+import math.impl.standard.StandardMath;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static math.dataType.matrix.Matrix.emptyMatrix;
+import static math.dataType.vector.Vector.emptyVector;
+import static org.junit.Assert.assertEquals;
+
+public class ParallelMathTest extends BaseTest
+{
+    private static final AbstractMathUtility STANDARD_MATH = new StandardMath();
+    private static final AbstractMathUtility PARALLEL_MATH = new ParallelMath();
+
+    private final Random random = new Random(42);
+
+    @BeforeClass
+    public static void setUp()
+    {
+        ParallelUtil.setThreadCount(4);
+        ParallelUtil.setMinParallelAttentionSize(0);
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        ParallelUtil.setThreadCount(0);
+        ParallelUtil.setMinParallelAttentionSize(-1);
+    }
+
+    @Test
+    public void mulVectorByTransposedMatrixTest()
+    {
+        var vector = randomVector(300);
+        var matrix = randomMatrix(1000, 300);
+
+        var expected = STANDARD_MATH.mulVectorByTransposedMatrix(vector, matrix);
+
+        assertVectorEquals(expected.getValues(), PARALLEL_MATH.mulVectorByTransposedMatrix(vector, matrix), 1e-4f);
+    }
+
+    @Test
+    public void mulVectorByMatrixTest()
+    {
+        var vector = randomVector(300);
+        var matrix = randomMatrix(300, 1000);
+
+        var expected = STANDARD_MATH.mulVectorByMatrix(vector, matrix);
+
+        assertVectorEquals(expected.getValues(), PARALLEL_MATH.mulVectorByMatrix(vector, matrix), 1e-4f);
+    }
+
+    @Test
+    public void mulMatrixByMatrixTest()
+    {
+        var matrix1 = randomMatrix(20, 200);
+        var matrix2 = randomMatrix(200, 300);
+
+        var expected = STANDARD_MATH.mulMatrixByMatrix(matrix1, matrix2);
+        var actual = PARALLEL_MATH.mulMatrixByMatrix(matrix1, matrix2);
+
+        assertMatrixEquals(toArray(expected), actual, 1e-4f);
+
+        // Single row (the row itself is split between the threads)
+        var single = randomMatrix(1, 200);
+
+        expected = STANDARD_MATH.mulMatrixByMatrix(single, matrix2);
+        actual = PARALLEL_MATH.mulMatrixByMatrix(single, matrix2);
+
+        assertMatrixEquals(toArray(expected), actual, 1e-4f);
+    }
+
+    @Test
+    public void mulMatrixByTransposedMatrixTest()
+    {
+        var matrix1 = randomMatrix(20, 200);
+        var matrix2 = randomMatrix(300, 200);
+
+        var expected = STANDARD_MATH.mulMatrixByTransposedMatrix(matrix1, matrix2);
+        var actual = PARALLEL_MATH.mulMatrixByTransposedMatrix(matrix1, matrix2);
+
+        assertMatrixEquals(toArray(expected), actual, 1e-4f);
+    }
+
+    @Test
+    public void gatedLinearUnitTest()
+    {
+        var vector = randomVector(300);
+        var gate = randomMatrix(1000, 300);
+        var up = randomMatrix(1000, 300);
+
+        var expected = STANDARD_MATH.gatedLinearUnit(vector, gate, up, ActivationFunction.SWIGLU, randomVector(1000));
+        var actual = PARALLEL_MATH.gatedLinearUnit(vector, gate, up, ActivationFunction.SWIGLU, randomVector(1000));
+
+        assertVectorEquals(expected.getValues(), actual, 1e-4f);
+    }
+
+    @Test
+    public void smallMatrixTest()
+    {
+        // Below the threshold it is calculated on a single thread
+        var vector = createVector(5, 6, 7, 8);
+        var matrix = createMatrix(new float[][] {{1, 4, 7, 10}, {2, 5, 8, 11}, {3, 6, 9, 12}});
+        var expectedResult = new float[]{5 + 6*4 + 7*7 + 8*10, 5*2 + 6*5 + 7*8 + 8*11, 5*3 + 6*6 + 7*9 + 8*12};
+
+        assertVectorEquals(expectedResult, PARALLEL_MATH.mulVectorByTransposedMatrix(vector, matrix), 0);
+    }
+
+    @Test
+    public void mulVectorByTransposedMatrixTopKTest()
+    {
+        var vector = randomVector(300);
+        var matrix = randomMatrix(5000, 300);
+
+        var expected = STANDARD_MATH.mulVectorByTransposedMatrixTopK(vector, matrix, 40);
+        var result = PARALLEL_MATH.mulVectorByTransposedMatrixTopK(vector, matrix, 40);
+
+        assertEquals(expected.size(), result.size());
+        for (var i = 0; i < expected.size(); i++)
+        {
+            assertEquals(expected.get(i).index(), result.get(i).index());
+        }
+    }
+
+    @Test
+    public void multiHeadAttentionTest()
+    {
+        // More key-value heads than threads (processed parallel by head), with ALiBi bias
+        var queries = randomMatrix(8, 16);
+        var keys = new Matrix[8];
+        var values = new Matrix[8];
+        var alibiSlopes = new float[8];
+
+        for (var head = 0; head < 8; head++)
+        {
+            keys[head] = randomMatrix(300, 16);
+            values[head] = randomMatrix(300, 16);
+            alibiSlopes[head] = 0.01f * (head + 1);
+        }
+
+        var expected = STANDARD_MATH.multiHeadAttention(queries, keys, values, 0.25f, alibiSlopes, 0,
+                emptyMatrix(DataType.FLOAT_32, 8, 16));
+        var actual = PARALLEL_MATH.multiHeadAttention(queries, keys, values, 0.25f, alibiSlopes, 0,
+                emptyMatrix(DataType.FLOAT_32, 8, 16));
+
+        assertMatrixEquals(toArray(expected), actual, 1e-5f);
+    }
+
+    @Test
+    public void multiQueryAttentionTest()
+    {
+        // Single key-value head (the positions are split into chunks, and the partial results are merged)
+        var queries = randomMatrix(6, 16);
+        var keys = new Matrix[] {randomMatrix(1000, 16)};
+        var values = new Matrix[] {randomMatrix(1000, 16)};
+
+        var expected = STANDARD_MATH.multiHeadAttention(queries, keys, values, 4f, null, 30f,
+                emptyMatrix(DataType.FLOAT_32, 6, 16));
+        var actual = PARALLEL_MATH.multiHeadAttention(queries, keys, values, 4f, null, 30f,
+                emptyMatrix(DataType.FLOAT_32, 6, 16));
+
+        assertMatrixEquals(toArray(expected), actual, 1e-5f);
+    }
+
+    private Vector randomVector(int size)
+    {
+        var vector = emptyVector(DataType.FLOAT_32, size);
+
+        for (var i = 0; i < size; i++)
+        {
+            vector.set(i, random.nextFloat() - 0.5f);
+        }
+
+        return vector;
+    }
+
+    private Matrix randomMatrix(int rows, int cols)
+    {
+        var matrix = emptyMatrix(DataType.FLOAT_32, rows, cols);
+
+        for (var i = 0; i < rows; i++)
+        {
+            matrix.setRow(i, randomVector(cols));
+        }
+
+        return matrix;
+    }
+
+    private float[][] toArray(Matrix matrix)
+    {
+        var values = new float[matrix.getRowCount()][];
+
+        for (var i = 0; i < matrix.getRowCount(); i++)
+        {
+            values[i] = matrix.row(i).getValues();
+        }
+
+        return values;
+    }
+}
@@ -21,6 +21,18 @@ public class TypeConversionUtilityTest
         assertArrayEquals(new int[]{-8, -7, -6, -5, -4, -3, -2, -1, 0, 1, 2, 3, 4, 5, 6, 7}, array);
     }
 
+    @Test
+    public void unpackAwqInt_4Bit_test()
+    {
+        // Nibbles from the lowest bits: 0, 1, 2, ... 7, which are the values 0, 2, 4, 6, 1, 3, 5, 7
+        var input = 0b0111_0110_0101_0100_0011_0010_0001_0000;
+
+        var array = new int[10];
+        unpackAwq4bitsFromInt32(input, array, 2);
+
+        assertArrayEquals(new int[]{0, 0, 0, 4, 1, 5, 2, 6, 3, 7}, array);
+    }
+
     @Test
     public void unpackIntMatrixByRow_test()
     {
@@ -0,0 +1,56 @@
+package parameters;
+
+import base.BaseTest;
+import math.dataType.DataType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import parameters.safetensors.SafetensorsReader;
+import parameters.safetensors.SafetensorsWriter;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SafetensorsWriterTest extends BaseTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndReadTest() throws IOException
+    {
+        var floats = new float[] {1.5f, -2.25f, 3f};
+        var floats2D = new float[][] {{1f, 2f}, {3f, 4f}, {5f, 6f}};
+        var bytes2D = new byte[][] {{1, -2, 3, -128}, {127, 0, -1, 5}};
+        var shorts2D = new short[][] {{1, -2, 3}, {0x3C00, 0, -1}};
+        var ints = new int[] {0, 1, Integer.MIN_VALUE};
+        var ints2D = new int[][] {{7, -8}, {0x12345678, -1}};
+
+        var writer = new SafetensorsWriter();
+        writer.addString("layer.config", "{\"bits\": 4}");
+        writer.addFloatArray("layer.floats", floats);
+        writer.addFloatArray2D("layer.floats2D", floats2D);
+        writer.addByteArray2D("layer.bytes2D", bytes2D);
+        writer.addFloat16Array2D("layer.shorts2D", shorts2D);
+        writer.addIntArray("layer.ints", ints);
+        writer.addIntArray2D("layer.ints2D", ints2D);
+        writer.write(new File(folder.getRoot(), "test.safetensors"));
+
+        var reader = new SafetensorsReader(folder.getRoot().getAbsolutePath());
+
+        assertEquals("{\"bits\": 4}", reader.readString("layer.config"));
+        assertArrayEquals(floats, reader.readFloatArray("layer.floats", 3), 0f);
+        assertArrayEquals(floats2D, reader.readFloatArray2D("layer.floats2D", 3, 2));
+        assertArrayEquals(bytes2D, reader.readByteArray2D("layer.bytes2D", 2, 4));
+        assertArrayEquals(shorts2D, reader.readShortArray2D("layer.shorts2D", 2, 3));
+        assertArrayEquals(ints, reader.readIntArray("layer.ints", 3));
+        assertArrayEquals(ints2D, reader.readIntArray2D("layer.ints2D", 2, 2));
+
+        assertEquals(DataType.FLOAT_32, reader.getDataType("layer.floats2D"));
+        assertEquals(DataType.BYTE, reader.getDataType("layer.bytes2D"));
+        assertEquals(DataType.FLOAT_16, reader.getDataType("layer.shorts2D"));
+    }
+}
@@ -0,0 +1,72 @@
+package transformer;
+
+import base.BaseTest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContiguousKvCacheTest extends BaseTest
+{
+    @Test
+    public void appendTest()
+    {
+        var cache = new ContiguousKvCache(2, 1);
+
+        for (var pos = 0; pos < 5; pos++)
+        {
+            cache.append(0, createVector(pos, 1), createVector(-pos, 1));
+            cache.append(1, createVector(pos, 2), createVector(-pos, 2));
+        }
+
+        assertEquals(5, cache.size());
+        assertEquals(8, cache.getCapacity());
+
+        assertMatrixEquals(new float[][] {{0, 1}, {1, 1}, {2, 1}, {3, 1}, {4, 1}}, cache.getKeys(0), 0);
+        assertMatrixEquals(new float[][] {{0, 2}, {-1, 2}, {-2, 2}, {-3, 2}, {-4, 2}}, cache.getValues(1), 0);
+    }
+
+    @Test
+    public void removeFirstTest()
+    {
+        var cache = new ContiguousKvCache(2, 4);
+
+        // Sliding window of 3 positions
+        for (var pos = 0; pos < 10; pos++)
+        {
+            if (cache.size() == 3)
+            {
+                cache.removeFirst();
+            }
+
+            cache.append(0, createVector(pos), createVector(-pos));
+            cache.append(1, createVector(10 + pos), createVector(-10 - pos));
+        }
+
+        // The live positions are moved back instead of growing the capacity
+        assertEquals(4, cache.getCapacity());
+
+        assertMatrixEquals(new float[][] {{7}, {8}, {9}}, cache.getKeys(0), 0);
+        assertMatrixEquals(new float[][] {{-17}, {-18}, {-19}}, cache.getValues(1), 0);
+    }
+
+    @Test
+    public void clearTest()
+    {
+        var cache = new ContiguousKvCache(1, 2);
+
+        for (var pos = 0; pos < 3; pos++)
+        {
+            cache.append(0, createVector(pos), createVector(pos));
+        }
+
+        cache.clear();
+        assertEquals(0, cache.size());
+
+        cache.append(0, createVector(5), createVector(6));
+
+        // The memory is reused
+        assertEquals(4, cache.getCapacity());
+        assertMatrixEquals(new float[][] {{5}}, cache.getKeys(0), 0);
+        assertMatrixEquals(new float[][] {{6}}, cache.getValues(0), 0);
+    }
+}
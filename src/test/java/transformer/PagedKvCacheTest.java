@@ -0,0 +1,106 @@
+package transformer;
+
+import base.BaseTest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PagedKvCacheTest extends BaseTest
+{
+    @Test
+    public void appendTest()
+    {
+        var pool = new KvBlockPool(2);
+        var cache = new PagedKvCache(pool, 2);
+
+        for (var pos = 0; pos < 5; pos++)
+        {
+            cache.append(0, createVector(pos, 1), createVector(-pos, 1));
+            cache.append(1, createVector(pos, 2), createVector(-pos, 2));
+        }
+
+        assertEquals(5, cache.size());
+        assertEquals(6, pool.getAllocatedBlockCount());
+
+        assertMatrixEquals(new float[][] {{0, 1}, {1, 1}, {2, 1}, {3, 1}, {4, 1}}, cache.getKeys(0), 0);
+        assertMatrixEquals(new float[][] {{0, 2}, {-1, 2}, {-2, 2}, {-3, 2}, {-4, 2}}, cache.getValues(1), 0);
+    }
+
+    @Test
+    public void removeFirstTest()
+    {
+        var pool = new KvBlockPool(2);
+        var cache = new PagedKvCache(pool, 1);
+
+        // Sliding window of 3 positions
+        for (var pos = 0; pos < 10; pos++)
+        {
+            if (cache.size() == 3)
+            {
+                cache.removeFirst();
+            }
+
+            cache.append(0, createVector(pos), createVector(-pos));
+        }
+
+        assertMatrixEquals(new float[][] {{7}, {8}, {9}}, cache.getKeys(0), 0);
+        assertMatrixEquals(new float[][] {{-7}, {-8}, {-9}}, cache.getValues(0), 0);
+
+        // The blocks of the removed positions are reused
+        assertEquals(2, pool.getAllocatedBlockCount());
+    }
+
+    @Test
+    public void clearTest()
+    {
+        var pool = new KvBlockPool(2);
+        var cache = new PagedKvCache(pool, 1);
+
+        for (var pos = 0; pos < 3; pos++)
+        {
+            cache.append(0, createVector(pos), createVector(pos));
+        }
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(2, pool.getFreeBlockCount());
+
+        cache.append(0, createVector(5), createVector(6));
+
+        assertEquals(2, pool.getAllocatedBlockCount());
+        assertMatrixEquals(new float[][] {{5}}, cache.getKeys(0), 0);
+        assertMatrixEquals(new float[][] {{6}}, cache.getValues(0), 0);
+    }
+
+    @Test
+    public void forkTest()
+    {
+        var pool = new KvBlockPool(2);
+        var cache = new PagedKvCache(pool, 1);
+
+        // Common prefix: a full and a partially filled block
+        for (var pos = 0; pos < 3; pos++)
+        {
+            cache.append(0, createVector(pos), createVector(-pos));
+        }
+
+        var fork = cache.fork();
+        assertEquals(2, pool.getAllocatedBlockCount());
+
+        // Only the partially filled block is copied
+        cache.append(0, createVector(10), createVector(-10));
+        fork.append(0, createVector(20), createVector(-20));
+        assertEquals(3, pool.getAllocatedBlockCount());
+
+        assertMatrixEquals(new float[][] {{0}, {1}, {2}, {10}}, cache.getKeys(0), 0);
+        assertMatrixEquals(new float[][] {{0}, {1}, {2}, {20}}, fork.getKeys(0), 0);
+        assertMatrixEquals(new float[][] {{0}, {-1}, {-2}, {-20}}, fork.getValues(0), 0);
+
+        // The shared block is returned to the pool only if both caches are cleared
+        cache.clear();
+        assertEquals(1, pool.getFreeBlockCount());
+
+        fork.clear();
+        assertEquals(3, pool.getFreeBlockCount());
+    }
+}
@@ -0,0 +1,125 @@
+package transformer;
+
+import app.IdentifiedException;
+import math.IndexedValue;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SamplerTest
+{
+    private final List<IndexedValue> candidates = List.of(
+            new IndexedValue(5f, 10),
+            new IndexedValue(4f, 20),
+            new IndexedValue(1f, 30),
+            new IndexedValue(-2f, 40));
+
+    @Test
+    public void greedyTest()
+    {
+        var sampler = new Sampler(new SamplerSettings(0, 1, 0, 1, 0, null));
+
+        for (var i = 0; i < 10; i++)
+        {
+            assertEquals(10, sampler.sample(candidates, 4));
+        }
+    }
+
+    @Test
+    public void seedTest()
+    {
+        var sampler1 = new Sampler(new SamplerSettings(2, 1, 0, 1, 0, 42L));
+        var sampler2 = new Sampler(new SamplerSettings(2, 1, 0, 1, 0, 42L));
+
+        var firstSession = new int[100];
+        for (var i = 0; i < 100; i++)
+        {
+            firstSession[i] = sampler1.sample(candidates, 4);
+            assertEquals(firstSession[i], sampler2.sample(candidates, 4));
+        }
+
+        // The next session starts the same random sequence
+        sampler1.reset();
+        for (var i = 0; i < 100; i++)
+        {
+            assertEquals(firstSession[i], sampler1.sample(candidates, 4));
+        }
+    }
+
+    @Test
+    public void topKTest()
+    {
+        var sampler = new Sampler(new SamplerSettings(100, 1, 0, 1, 0, 42L));
+
+        for (var i = 0; i < 100; i++)
+        {
+            var token = sampler.sample(candidates, 2);
+            assertTrue(token == 10 || token == 20);
+        }
+    }
+
+    @Test
+    public void topPTest()
+    {
+        // The probability of the best token is 0.7, so only the best two tokens are kept
+        var sampler = new Sampler(new SamplerSettings(1, 0.8f, 0, 1, 0, 42L));
+
+        var selected = new boolean[2];
+        for (var i = 0; i < 200; i++)
+        {
+            var token = sampler.sample(candidates, 4);
+            assertTrue(token == 10 || token == 20);
+            selected[token == 10 ? 0 : 1] = true;
+        }
+
+        assertTrue(selected[0] && selected[1]);
+    }
+
+    @Test
+    public void minPTest()
+    {
+        // The probability of the second token is e^-1 = 0.37 relative to the best, the third is e^-4 = 0.018
+        var sampler = new Sampler(new SamplerSettings(1, 1, 0.1f, 1, 0, 42L));
+
+        for (var i = 0; i < 200; i++)
+        {
+            var token = sampler.sample(candidates, 4);
+            assertTrue(token == 10 || token == 20);
+        }
+    }
+
+    @Test
+    public void penaltyTest()
+    {
+        var sampler = new Sampler(new SamplerSettings(0, 1, 0, 2, 0, null));
+
+        // More candidates are necessary, because the penalized tokens can be moved back
+        assertEquals(4, sampler.getCandidateCount(4));
+        sampler.accept(10);
+        assertEquals(5, sampler.getCandidateCount(4));
+
+        // The logit of the best token is halved (5 -> 2.5), so the second becomes the best
+        assertEquals(20, sampler.sample(candidates, 4));
+
+        // Frequency penalty: subtracted by the number of occurrences
+        sampler = new Sampler(new SamplerSettings(0, 1, 0, 1, 0.75f, null));
+        sampler.accept(10);
+        assertEquals(10, sampler.sample(candidates, 4));
+        sampler.accept(10);
+        assertEquals(20, sampler.sample(candidates, 4));
+
+        // After reset there's no penalty
+        sampler.reset();
+        assertEquals(10, sampler.sample(candidates, 4));
+    }
+
+    @Test(expected = IdentifiedException.class)
+    public void increasingPenaltyTest()
+    {
+        // A penalty which would increase the logits isn't accepted (the raised token could be out of the candidates)
+        new Sampler(new SamplerSettings(0, 1, 0, 0.5f, 0, null));
+    }
+}